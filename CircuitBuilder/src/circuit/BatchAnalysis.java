@@ -0,0 +1,302 @@
+package circuit;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Non-interactive analysis of netlists, used by UserMain when it is started with the -batch option.
+ *
+ * A netlist stream holds one or more circuits in the Netlist syntax, a line containing only END finishes a circuit and the next line starts a new one. Each circuit is analyzed as soon as
+ * it has been read, straight from its CompactCircuit without building Node or Component objects, and its results are written as plain lines that are easy to read back from a script:
+ *
+ * circuit N source
+ * ground X
+ * voltage V
+ * resistance R
+ * current I
+ * node Id voltage          (one line per node, in increasing Id order)
+ * R1 current / V1 current  (one line per component, in the order they were read)
+ * end
+ *
+ * A circuit that cannot be read or analyzed gives an error line instead of its results, and the remaining circuits are still analyzed.
+ *
+ * Circuits are independent of each other, so with a ForkJoinPool they are analyzed concurrently while the next ones are being read - results are still printed in the order
+ * the circuits were read, and only a few circuits per thread are held in memory at a time.
+ *
+ * Files are memory-mapped - a large single circuit is loaded on all cores by a ParallelNetlistLoader, anything else is read by a NetlistParser. Other streams such as standard input are read line by line.
+ *
+ * @author Michael Sinclair.
+ * @version 2.509
+ * @since 18 October 2026.
+ */
+
+public class BatchAnalysis {
+	/* circuits read ahead per pool thread */
+	private static final int MAX_PENDING_PER_THREAD = 4;
+
+	/* instance variables */
+	private final PrintStream out;
+	/* only print the total voltage, resistance and current of each circuit */
+	private final boolean totalsOnly;
+	/* threads to analyze on, null to analyze each circuit on the reading thread */
+	private final ForkJoinPool pool;
+	/* circuits whose results have not been printed yet, in the order they were read */
+	private final ArrayDeque<Result> pending;
+	private int circuits;
+	private int failures;
+
+	/** Constructor for analyzing one circuit at a time
+	 * @param PrintStream output - where results are written
+	 * @param boolean totals - true to leave out node voltages and component currents
+	 */
+	public BatchAnalysis(PrintStream output, boolean totals) {
+		this(output, totals, null);
+	}
+
+	/** Constructor for analyzing circuits concurrently
+	 * @param PrintStream output - where results are written
+	 * @param boolean totals - true to leave out node voltages and component currents
+	 * @param ForkJoinPool threads - or null to analyze one circuit at a time
+	 */
+	public BatchAnalysis(PrintStream output, boolean totals, ForkJoinPool threads) {
+		out = output;
+		totalsOnly = totals;
+		pool = threads;
+		pending = new ArrayDeque<>();
+		circuits = 0;
+		failures = 0;
+	}
+
+	/* methods */
+
+	/** Read and analyze every circuit in a netlist stream
+	 * @param BufferedReader in
+	 * @param String source - name of the stream, printed with each circuit
+	 * @throws IOException if the stream cannot be read
+	 */
+	public void run(BufferedReader in, String source) throws IOException {
+		Netlist netlist = new Netlist();
+		String error = null;
+		int lineNumber = 0;
+		String line;
+		while((line = in.readLine()) != null) {
+			lineNumber++;
+			if(line.trim().equalsIgnoreCase("END")) {
+				finishCircuit(netlist, source, error);
+				error = null;
+				continue;
+			}
+			/* the rest of a circuit with an error is skipped */
+			if(error != null) {
+				continue;
+			}
+			try {
+				netlist.parseLine(line);
+			} catch (IllegalArgumentException e) {
+				error = "line "+lineNumber+": "+e.getMessage();
+			}
+		}
+		/* END is optional after the last circuit */
+		finishCircuit(netlist, source, error);
+		drain(0);
+	}
+
+	/** Analyze every circuit of a netlist file
+	 * @param Path file
+	 * @throws IOException if the file cannot be read
+	 */
+	public void run(Path file) throws IOException {
+		String source = file.toString();
+		ParallelNetlistLoader loader = ParallelNetlistLoader.open(file);
+		CompactCircuit loaded = loader.load();
+		if(loaded == null) {
+			run(NetlistParser.open(file), source);
+		}
+		else if(loaded.getComponentCount()>0) {
+			analyzeCircuit(loaded, loader.getGround(), source, null);
+			drain(0);
+		}
+	}
+
+	/** Analyze every circuit of a memory-mapped netlist
+	 * @param NetlistParser parser
+	 * @param String source - name of the netlist, printed with each circuit
+	 */
+	public void run(NetlistParser parser, String source) {
+		Netlist netlist = new Netlist(parser.estimateComponents());
+		while(parser.hasMore()) {
+			String error = null;
+			try {
+				parser.next(netlist);
+			} catch (IllegalArgumentException e) {
+				error = e.getMessage();
+				parser.skipCircuit();
+			}
+			finishCircuit(netlist, source, error);
+		}
+		drain(0);
+	}
+
+	/** Analyze the circuit read so far and print its results, then empty the netlist for the next circuit
+	 * @param Netlist netlist
+	 * @param String source
+	 * @param String error - error found while reading, or null
+	 */
+	private void finishCircuit(Netlist netlist, String source, String error) {
+		/* nothing between two END lines */
+		if(netlist.size() == 0 && error == null) {
+			netlist.clear();
+			return;
+		}
+		if(error == null) {
+			int ground = netlist.getGround();
+			analyzeCircuit(netlist.toCompact(), ground, source, null);
+		}
+		else {
+			analyzeCircuit(null, 0, source, error);
+		}
+		netlist.clear();
+	}
+
+	/** Analyze a circuit, on the pool if there is one, and print the results of the circuits that have finished in the order they were read
+	 * @param CompactCircuit compact - or null if the circuit could not be read
+	 * @param int ground
+	 * @param String source
+	 * @param String error - error found while reading, or null
+	 */
+	private void analyzeCircuit(CompactCircuit compact, int ground, String source, String error) {
+		circuits++;
+		Result result = new Result(circuits, source);
+		if(pool == null || error != null) {
+			result.analyze(compact, ground, error, totalsOnly);
+			result.task = CompletableFuture.completedFuture(null);
+		}
+		else {
+			/* circuits share nothing, so each is analyzed on its own thread */
+			result.task = CompletableFuture.runAsync(() -> result.analyze(compact, ground, null, totalsOnly), pool);
+		}
+		pending.addLast(result);
+		/* bound the number of circuits held in memory */
+		drain(pool == null ? 0 : MAX_PENDING_PER_THREAD*pool.getParallelism());
+	}
+
+	/** Print finished results in order until at most a given number are waiting
+	 * @param int keep
+	 */
+	private void drain(int keep) {
+		while(pending.size()>keep || !pending.isEmpty() && pending.peekFirst().task.isDone()) {
+			Result result = pending.removeFirst();
+			/* rethrows anything unexpected from the analyzing thread */
+			result.task.join();
+			out.print(result.text);
+			if(result.failed) {
+				failures++;
+			}
+		}
+	}
+
+	/** The printed results of one circuit */
+	private static class Result {
+		private final int number;
+		private final String source;
+		/* completes when the circuit has been analyzed */
+		private CompletableFuture<Void> task;
+		private String text;
+		private boolean failed;
+
+		/** Constructor
+		 * @param int circuit - number of the circuit in the batch
+		 * @param String from - source it was read from
+		 */
+		Result(int circuit, String from) {
+			number = circuit;
+			source = from;
+		}
+
+		/** Analyze the circuit and format its results
+		 * @param CompactCircuit compact
+		 * @param int ground
+		 * @param String error - error found while reading, or null
+		 * @param boolean totalsOnly
+		 */
+		void analyze(CompactCircuit compact, int ground, String error, boolean totalsOnly) {
+			/* use StringBuilder to reduce overhead from operating on immutable strings */
+			StringBuilder sb = new StringBuilder();
+			line(sb.append("circuit ").append(number).append(' ').append(source));
+			int header = sb.length();
+			if(error == null) {
+				try {
+					CircuitAnalysis analysis = new CircuitAnalysis(ground, compact);
+					/* node voltages are only solved for when they are printed */
+					if(totalsOnly) {
+						analysis.analyzeVoltage();
+						analysis.analyzeResistance();
+					}
+					else {
+						analysis.analyze();
+					}
+					formatResults(sb, analysis, totalsOnly);
+				} catch (IllegalArgumentException | IllegalStateException e) {
+					/* for example ground not in the circuit or voltage sources in parallel */
+					error = e.getMessage();
+					sb.setLength(header);
+				}
+			}
+			if(error != null) {
+				line(sb.append("error ").append(error));
+				failed = true;
+			}
+			line(sb.append("end"));
+			text = sb.toString();
+		}
+
+		/** Format the results of an analyzed circuit
+		 * @param StringBuilder sb
+		 * @param CircuitAnalysis analysis
+		 * @param boolean totalsOnly
+		 */
+		private static void formatResults(StringBuilder sb, CircuitAnalysis analysis, boolean totalsOnly) {
+			line(sb.append("ground ").append(analysis.getG()));
+			line(sb.append("voltage ").append(analysis.getV()));
+			line(sb.append("resistance ").append(analysis.getR()));
+			line(sb.append("current ").append(analysis.getV()/analysis.getR()));
+			if(totalsOnly) {
+				return;
+			}
+			CompactCircuit compact = analysis.getSnapshot();
+			for(int i = 0; i<compact.getNodeCount(); i++) {
+				int id = compact.getNodeId(i);
+				line(sb.append("node ").append(id).append(' ').append(analysis.getNodeVoltage(id)));
+			}
+			for(int k = 0; k<compact.getComponentCount(); k++) {
+				sb.append(compact.getKind(k) == CompactCircuit.VOLTAGE ? 'V' : 'R').append(compact.getComponentId(k));
+				line(sb.append(' ').append(analysis.getComponentCurrent(k)));
+			}
+		}
+
+		/** end a line
+		 * @param StringBuilder sb
+		 */
+		private static void line(StringBuilder sb) {
+			sb.append(System.lineSeparator());
+		}
+	}
+
+	/** get the number of circuits read
+	 * @return int
+	 */
+	public int getCircuitCount() {
+		return circuits;
+	}
+
+	/** get the number of circuits that could not be read or analyzed
+	 * @return int
+	 */
+	public int getFailureCount() {
+		return failures;
+	}
+}
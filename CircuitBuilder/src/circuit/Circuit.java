@@ -1,68 +1,543 @@
 package circuit;
 import java.util.ArrayList;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * The circuit to which components can be added to. 
- * 
- * An object of this class exists in the program as a singleton object. 
- * 
- * It holds the ArrayList of components in the circuit.
- * 
+ * The circuit to which components can be added to.
+ *
+ * Any number of circuits can exist side by side and be analyzed at the same time, forks of a circuit can be made for what-if calculations.
+ *
+ * It holds the ArrayList of components in the circuit, and the registry of nodes those components are attached to. Component Ids are allocated by each circuit as components are added,
+ * so R1 of one circuit has nothing to do with R1 of another.
+ *
+ * Analysis reads an immutable CompactCircuit snapshot of the circuit. The snapshot is cached and only rebuilt after the circuit has been changed, so taking it again is O(1).
+ * A fork starts out as nothing more than a shared reference to the snapshot - its own node and component objects are only built the first time the fork is read or changed.
+ *
+ * The series-parallel DecompositionTree of the circuit is also kept across edits. Adding a resistor across an existing part or removing one of several parallel resistors updates the tree in place,
+ * which only recomputes the path from the changed resistor to the root, other edits drop the tree so it is rebuilt by the next analysis. A resistor is only added in place while the tree is a single
+ * part between nodes with voltage sources - a part left dangling can be closed into a loop that a fresh reduction drops, so the tree would no longer match the state of the circuit.
+ * Changing the value of a resistor with setResistance() always updates the tree in place. Every edit keeps the total voltage and the total resistance at the root of the tree as Totals,
+ * so totalResistance() answers in O(depth) after such edits without a snapshot or a nodal solve. A full CircuitAnalysis still takes a new snapshot and solves the circuit, which is O(N) after any edit.
+ *
+ * A circuit can be edited by one thread while other threads analyze and display it. Edits are made one at a time under an edit lock, and every state that is read is published as an
+ * immutable Version - the snapshot together with copies of the component and node lists and the decomposition tree of that state - through a volatile field, so reading never sees a
+ * half finished edit. Versions are only built when a reader asks for one, so an edit stays O(1) however the circuit is read: a reader that finds the published version out of date
+ * builds the new one if the lock is free, at a cost of O(N) for the snapshot and the list copies, and a reader that finds an edit in progress carries on with the last published version
+ * instead of waiting - a finished state, though it may be behind by the edits made since the circuit was last read. A tree that has been handed to a reader is copied before the next
+ * in-place change, which is O(N) once per read.
+ * Each version also caches the factorization used for resistance queries between nodes, so it is computed once per state of the circuit however many queries are made.
+ * The node and component objects are shared by every version, so analyses never write their results into them - the circuit only keeps a reference to the engine that solved the last analysis.
+ *
  * @author Michael Sinclair.
- * @version 2.400
+ * @version 2.521
  * @since 12 February 2019.
  */
 
 /*
- * TODO Explore storing nodes and components as HashMap - Map<String,Node> or Map<String,Component> where they would be named rather than numbered.
- * TODO Explore not having a singleton Circuit.
+ * TODO Explore storing components as HashMap - Map<String,Component> where they would be named rather than numbered.
  */
 
 public class Circuit {
-	
-	/*Creates only one instance of a circuit.*/
-	private static Circuit instance = null;
-	protected static Circuit getInstance() {
-		if (instance == null) {
-        instance = new Circuit();
-		}
-    return instance;
-	}
-	
-	/**Instance variable list to contain components.*/
+
+	/**Lock held while the circuit is changed, only one edit is made at a time.*/
+	private final ReentrantLock editLock;
+	/**Latest consistent state of the circuit handed to readers.*/
+	private volatile Version published;
+	/**Number of edits made, the published version is out of date if it was taken before the last one.*/
+	private volatile int edits;
+	/**Instance variable list to contain components, only used under the edit lock.*/
 	private ArrayList<Component> components;
-	/**Private constructor ensures only one instance of circuit can be created.*/
-	private Circuit() {
+	/**Position of each component in the list, keyed by its type letter and Id.*/
+	private LongIntHashMap componentIndex;
+	/**Nodes in the circuit, looked up by Id.*/
+	private NodeRegistry nodes;
+	/**Series-parallel decomposition of the current state, null if it has to be rebuilt.*/
+	private DecompositionTree decomposition;
+	/**The decomposition has been published, so it must be copied before it is changed.*/
+	private boolean decompositionShared;
+	/**Next Ids to give to resistors and voltage sources added without one.*/
+	private int nextResistorId;
+	private int nextVoltageId;
+	/**Engine that solved the last analysis of any version, its node voltages start the next iterative analysis.*/
+	private volatile CircuitSolver lastSolution;
+	/**Sum and number of the voltage sources, kept under the edit lock while the node and component objects exist.*/
+	private double voltageSum;
+	private int voltageCount;
+	/**Totals after the last edit, null until the circuit has been edited or read.*/
+	private volatile Totals totals;
+	/**Constructor for an empty circuit.*/
+	public Circuit() {
+		editLock = new ReentrantLock();
 		components = new ArrayList<>();
+		componentIndex = new LongIntHashMap(16);
+		nodes = new NodeRegistry();
+		nextResistorId = 1;
+		nextVoltageId = 1;
+		edits = 0;
+		published = new Version(0, CompactCircuit.fromComponents(components), new ArrayList<>(), new ArrayList<>(), null, 1, 1);
+	}
+
+	/**Private constructor for a fork, which shares the snapshot it was forked from until it is used.
+	 * @param CompactCircuit base
+	 * @param int resistorId - next resistor Id
+	 * @param int voltageId - next voltage source Id*/
+	private Circuit(CompactCircuit base, int resistorId, int voltageId) {
+		editLock = new ReentrantLock();
+		components = null;
+		nextResistorId = resistorId;
+		nextVoltageId = voltageId;
+		edits = 0;
+		published = new Version(0, base, null, null, null, resistorId, voltageId);
 	}
 
 	/*Methods.*/
 
-	/**Get method to get list of components
+	/**Get an immutable snapshot of the circuit, component k of the list is component k of the snapshot - O(1) unless the circuit changed since the last snapshot
+	 * @return CompactCircuit*/
+	protected CompactCircuit snapshot(){
+		return current(false, false).getSnapshot();
+	}
+
+	/**Get the series-parallel decomposition of the circuit, only reduced again if the last edit could not be applied to the kept tree
+	 * @return DecompositionTree*/
+	protected DecompositionTree decomposition(){
+		Version version = current(false, true);
+		if(version.getDecomposition() != null) {
+			return version.getDecomposition();
+		}
+		/* the circuit is being edited, reduce the published snapshot without keeping the tree */
+		SeriesParallelReducer reducer = new SeriesParallelReducer(version.getSnapshot(), true);
+		reducer.reduce();
+		return reducer.getTree();
+	}
+
+	/**Get a consistent version of the circuit for analysis - its snapshot and decomposition tree describe the same state, the node and component objects are not needed
+	 * @return Version*/
+	protected Version version(){
+		return current(false, true);
+	}
+
+	/**Get the engine that solved the last analysis of the circuit
+	 * @return CircuitSolver or null if the circuit has not been analyzed*/
+	protected CircuitSolver getLastSolution(){
+		return lastSolution;
+	}
+
+	/**Keep the engine that solved an analysis of the circuit, it must not be changed after it has been solved
+	 * @param CircuitSolver solution*/
+	protected void setLastSolution(CircuitSolver solution){
+		lastSolution = solution;
+	}
+
+	/**Get the total resistance seen by the voltage sources - O(1) from the totals kept by the last edit when the decomposition tree could be kept, otherwise the latest version is analyzed
+	 * @return double*/
+	protected double totalResistance(){
+		Totals kept = totals;
+		if(kept != null && kept.edit == edits && !Double.isNaN(kept.resistance)) {
+			return kept.resistance;
+		}
+		CompactCircuit snapshot = snapshot();
+		if(snapshot.getNodeCount() == 0) {
+			return 0.0;
+		}
+		/* the total resistance does not depend on which node is ground */
+		CircuitAnalysis analysis = new CircuitAnalysis(snapshot.getNodeId(0), this);
+		analysis.analyzeVoltage();
+		analysis.analyzeResistance();
+		return analysis.getR();
+	}
+
+	/**Get the total voltage of the sources - O(1) from the totals kept by the last edit, otherwise summed on the latest snapshot
+	 * @return double*/
+	protected double totalVoltage(){
+		Totals kept = totals;
+		if(kept != null && kept.edit == edits) {
+			return kept.voltage;
+		}
+		CompactCircuit snapshot = snapshot();
+		double sum = 0.0;
+		for(int k = 0; k<snapshot.getComponentCount(); k++) {
+			if(snapshot.getKind(k) == CompactCircuit.VOLTAGE) {
+				sum += snapshot.getValue(k);
+			}
+		}
+		return sum;
+	}
+
+	/**Get the number of voltage sources - O(1) from the totals kept by the last edit, otherwise counted on the latest snapshot
+	 * @return int*/
+	protected int voltageSourceCount(){
+		Totals kept = totals;
+		if(kept != null && kept.edit == edits) {
+			return kept.sources;
+		}
+		CompactCircuit snapshot = snapshot();
+		int sources = 0;
+		for(int k = 0; k<snapshot.getComponentCount(); k++) {
+			if(snapshot.getKind(k) == CompactCircuit.VOLTAGE) {
+				sources++;
+			}
+		}
+		return sources;
+	}
+
+	/**Replace the contents of the circuit with a compact circuit, for example a netlist loaded from a file - the node and component objects are only built when they are first used,
+	 * and new Ids continue after the largest loaded Ids
+	 * @param CompactCircuit loaded*/
+	protected void load(CompactCircuit loaded){
+		int resistors = 0;
+		int voltages = 0;
+		for(int k = 0; k<loaded.getComponentCount(); k++) {
+			if(loaded.getKind(k) == CompactCircuit.VOLTAGE) {
+				voltages = Math.max(voltages, loaded.getComponentId(k));
+			}
+			else {
+				resistors = Math.max(resistors, loaded.getComponentId(k));
+			}
+		}
+		editLock.lock();
+		try {
+			components = null;
+			componentIndex = null;
+			nodes = null;
+			decomposition = null;
+			nextResistorId = resistors+1;
+			nextVoltageId = voltages+1;
+			published = new Version(edits+1, loaded, null, null, null, nextResistorId, nextVoltageId);
+			edits++;
+		} finally {
+			editLock.unlock();
+		}
+	}
+
+	/**Fork the circuit in O(1) - the fork can be changed and analyzed without affecting this circuit
+	 * @return Circuit*/
+	protected Circuit fork(){
+		Version version = current(false, false);
+		return new Circuit(version.getSnapshot(), version.nextResistorId, version.nextVoltageId);
+	}
+
+	/**Get method to get list of components - the list is a copy of the components at the time and must not be changed, components are added and removed through the circuit
 	 * @param none
 	 * @return ArrayList<Component> components*/
 	protected ArrayList<Component> getComponents(){
-		return components;
+		return current(true, false).getComponents();
+	}
+
+	/**Get method to get list of nodes in the order they were created - the list is a copy and must not be changed
+	 * @return ArrayList<Node> nodes*/
+	protected ArrayList<Node> getNodes(){
+		return current(true, false).getNodes();
 	}
 
-	/**Add component to circuit
+	/**Find a node by Id
+	 * @param int id
+	 * @return Node or null if the circuit has no such node*/
+	protected Node findNode(int id){
+		editLock.lock();
+		try {
+			materialize();
+			return nodes.find(id);
+		} finally {
+			editLock.unlock();
+		}
+	}
+
+	/**Find a node by Id, creating it if it does not exist yet so components are attached to the same node objects
+	 * @param int id
+	 * @return Node*/
+	protected Node findOrCreateNode(int id){
+		editLock.lock();
+		try {
+			materialize();
+			return nodes.findOrCreate(id);
+		} finally {
+			editLock.unlock();
+		}
+	}
+
+	/**Add component to circuit and connect it to its nodes, giving it the next Id of its type if it does not have one yet
      * @param Component c.*/
 	protected void addComponent(Component c){
-		components.add(c);
+		editLock.lock();
+		try {
+			materialize();
+			if(c instanceof Voltage) {
+				if(c.getId() == 0) {
+					c.setId(nextVoltageId);
+				}
+				nextVoltageId = Math.max(nextVoltageId, c.getId()+1);
+			}
+			else {
+				if(c.getId() == 0) {
+					c.setId(nextResistorId);
+				}
+				nextResistorId = Math.max(nextResistorId, c.getId()+1);
+			}
+			componentIndex.put(c.key(), components.size());
+			components.add(c);
+			if(c instanceof Voltage) {
+				voltageSum += ((Voltage)c).getV();
+				voltageCount++;
+			}
+			/* track node connections */
+			c.getNode1().connect(c);
+			c.getNode2().connect(c);
+			/* keep the decomposition if the resistor goes across an existing part of the path between the sources */
+			if(decomposition != null && !(c instanceof Resistor && spansSources(decomposition)
+					&& unshared().addResistor(c.key(), c.getNode1().getId(), c.getNode2().getId(), ((Resistor)c).getR()))) {
+				decomposition = null;
+			}
+			edits++;
+			keepTotals();
+		} finally {
+			editLock.unlock();
+		}
+	}
+
+	/**Find a component by its type letter and Id, for example 'R' and 2 for R2
+	 * @param char type
+	 * @param int id
+	 * @return Component or null if not in the circuit*/
+	protected Component findComponent(char type, int id){
+		editLock.lock();
+		try {
+			materialize();
+			int i = componentIndex.get(LongIntHashMap.pack(type, id), -1);
+			return i<0 ? null : components.get(i);
+		} finally {
+			editLock.unlock();
+		}
+	}
+
+	/**Remove a component by its type letter and Id in O(1) and disconnect it from its nodes - the last component is moved into the freed position so the order of the list changes
+	 * @param char type
+	 * @param int id
+	 * @return Component the removed component, or null if not in the circuit*/
+	protected Component removeComponent(char type, int id){
+		editLock.lock();
+		try {
+			materialize();
+			long key = LongIntHashMap.pack(type, id);
+			int i = componentIndex.get(key, -1);
+			if(i<0) {
+				return null;
+			}
+			componentIndex.remove(key);
+			Component removed = components.get(i);
+			int last = components.size()-1;
+			/* swap the last component into the gap */
+			if(i != last) {
+				Component moved = components.get(last);
+				components.set(i, moved);
+				componentIndex.put(moved.key(), i);
+			}
+			components.remove(last);
+			removed.getNode1().disconnect(removed);
+			removed.getNode2().disconnect(removed);
+			if(removed instanceof Voltage) {
+				/* start the sum again when the last source goes, so rounding does not build up */
+				voltageCount--;
+				voltageSum = voltageCount == 0 ? 0.0 : voltageSum-((Voltage)removed).getV();
+			}
+			/* keep the decomposition if the resistor was one of several in parallel */
+			if(decomposition != null && !(removed instanceof Resistor && unshared().removeResistor(key))) {
+				decomposition = null;
+			}
+			edits++;
+			keepTotals();
+			return removed;
+		} finally {
+			editLock.unlock();
+		}
 	}
 
-	/**Return information of all components in circuit
+	/**Change the resistance of a resistor - the decomposition tree is updated along the path from the resistor to the root instead of being reduced again
+	 * @param int id
+	 * @param double r
+	 * @return boolean false if the circuit has no such resistor*/
+	protected boolean setResistance(int id, double r){
+		editLock.lock();
+		try {
+			materialize();
+			long key = LongIntHashMap.pack('R', id);
+			int i = componentIndex.get(key, -1);
+			if(i<0) {
+				return false;
+			}
+			/* published versions keep the old resistor, so it is replaced rather than changed */
+			Component old = components.get(i);
+			Resistor changed = new Resistor(r, old.getNode1(), old.getNode2(), id);
+			old.getNode1().disconnect(old);
+			old.getNode2().disconnect(old);
+			components.set(i, changed);
+			changed.getNode1().connect(changed);
+			changed.getNode2().connect(changed);
+			if(decomposition != null && !unshared().updateResistor(key, r)) {
+				decomposition = null;
+			}
+			edits++;
+			keepTotals();
+			return true;
+		} finally {
+			editLock.unlock();
+		}
+	}
+
+	/**Get the latest version of the circuit, publishing a new one if the circuit has changed - never waits for an edit in progress unless node and component objects
+	 * are asked for and have never been built
+	 * @param boolean objects - the version must hold the node and component lists
+	 * @param boolean tree - the version should hold the decomposition tree if it can be built without waiting
+	 * @return Version*/
+	private Version current(boolean objects, boolean tree){
+		Version version = published;
+		if(version.edit == edits && (!objects || version.getComponents() != null) && (!tree || version.getDecomposition() != null)) {
+			return version;
+		}
+		if(objects && version.getComponents() == null) {
+			editLock.lock();
+		}
+		else if(!editLock.tryLock()) {
+			/* an edit is in progress, the last published version is still a consistent state */
+			return version;
+		}
+		try {
+			return publish(objects, tree);
+		} finally {
+			editLock.unlock();
+		}
+	}
+
+	/**Publish a version of the current state with what is asked for, called under the edit lock
+	 * @param boolean objects
+	 * @param boolean tree
+	 * @return Version*/
+	private Version publish(boolean objects, boolean tree){
+		Version version = published;
+		if(version.edit != edits) {
+			version = new Version(edits, CompactCircuit.fromComponents(components), new ArrayList<>(components), new ArrayList<>(nodes.getNodes()), null, nextResistorId, nextVoltageId);
+		}
+		if(objects && version.getComponents() == null) {
+			materialize();
+			version = new Version(edits, version.getSnapshot(), new ArrayList<>(components), new ArrayList<>(nodes.getNodes()), version.getDecomposition(), nextResistorId, nextVoltageId);
+		}
+		if(tree && version.getDecomposition() == null) {
+			if(decomposition == null) {
+				SeriesParallelReducer reducer = new SeriesParallelReducer(version.getSnapshot(), true);
+				reducer.reduce();
+				decomposition = reducer.getTree();
+			}
+			decompositionShared = true;
+			version = new Version(edits, version.getSnapshot(), version.getComponents(), version.getNodes(), decomposition, nextResistorId, nextVoltageId);
+			if(components != null) {
+				keepTotals();
+			}
+		}
+		published = version;
+		return version;
+	}
+
+	/**Keep the totals of the current state, O(1) - called under the edit lock while the node and component objects exist*/
+	private void keepTotals(){
+		double resistance = Double.NaN;
+		if(decomposition != null && decomposition.getRootCount()<=1) {
+			resistance = decomposition.getRootCount() == 0 ? 0.0 : decomposition.getTotalResistance();
+		}
+		totals = new Totals(edits, voltageSum, voltageCount, resistance);
+	}
+
+	/**Test if a decomposition is a single part between two nodes with voltage sources attached, so that every part of it carries current - called under the edit lock
+	 * @param DecompositionTree tree
+	 * @return boolean*/
+	private boolean spansSources(DecompositionTree tree){
+		int root = tree.getRoot();
+		return root>=0 && hasSource(nodes.find(tree.getTerminal1(root))) && hasSource(nodes.find(tree.getTerminal2(root)));
+	}
+
+	/**Test if a node has a voltage source attached
+	 * @param Node node
+	 * @return boolean*/
+	private static boolean hasSource(Node node){
+		if(node == null) {
+			return false;
+		}
+		for(Component attached:node.getAttachments()) {
+			if(attached instanceof Voltage) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**Get the decomposition for an in-place change, copying it first if readers may still be using it
+	 * @return DecompositionTree*/
+	private DecompositionTree unshared(){
+		if(decompositionShared) {
+			decomposition = new DecompositionTree(decomposition);
+			decompositionShared = false;
+		}
+		return decomposition;
+	}
+
+	/**Build the node and component objects of a fork from the snapshot it shares, done once on first use under the edit lock*/
+	private void materialize(){
+		if(components != null) {
+			return;
+		}
+		/* nothing has been edited since the fork or load, so the published snapshot is the current state */
+		CompactCircuit snapshot = published.getSnapshot();
+		int count = snapshot.getComponentCount();
+		ArrayList<Component> built = new ArrayList<>(count);
+		componentIndex = new LongIntHashMap(count);
+		nodes = new NodeRegistry(snapshot.getNodeCount());
+		for(int i = 0; i<snapshot.getNodeCount(); i++) {
+			nodes.findOrCreate(snapshot.getNodeId(i));
+		}
+		for(int k = 0; k<count; k++) {
+			Node node1 = nodes.find(snapshot.getNodeId(snapshot.getNode1(k)));
+			Node node2 = nodes.find(snapshot.getNodeId(snapshot.getNode2(k)));
+			Component c;
+			if(snapshot.getKind(k) == CompactCircuit.VOLTAGE) {
+				c = new Voltage(snapshot.getValue(k), node1, node2, snapshot.getComponentId(k));
+			}
+			else {
+				c = new Resistor(snapshot.getValue(k), node1, node2, snapshot.getComponentId(k));
+			}
+			componentIndex.put(c.key(), k);
+			built.add(c);
+			node1.connect(c);
+			node2.connect(c);
+		}
+		components = built;
+		voltageSum = 0.0;
+		voltageCount = 0;
+		for(int k = 0; k<count; k++) {
+			if(snapshot.getKind(k) == CompactCircuit.VOLTAGE) {
+				voltageSum += snapshot.getValue(k);
+				voltageCount++;
+			}
+		}
+	}
+
+	/**Return information of all components in circuit, read from the published snapshot so it never waits for an edit
 	     * @return String.*/
 	@Override
 	public String toString(){
+		CompactCircuit snapshot = snapshot();
 		/* use StringBuilder to reduce overhead from operating on immutable strings */
 	    StringBuilder sb = new StringBuilder();
-	    /*For each component in array.*/
-	    for(Component component : components){
-	    	/* obtain component information in general way to make program more scalable (add more component types) */
-	    	sb.append(component.myClass());
-	    	sb.append(": ");
-	    	sb.append(component.toString());
+	    /*For each component in the snapshot, in the same format as the component classes.*/
+	    for(int k = 0; k<snapshot.getComponentCount(); k++){
+	    	boolean voltage = snapshot.getKind(k) == CompactCircuit.VOLTAGE;
+	    	sb.append(voltage ? "Voltage: V" : "Resistor: R");
+	    	sb.append(snapshot.getComponentId(k));
+	    	sb.append(" ");
+	    	sb.append(snapshot.getNodeId(snapshot.getNode1(k)));
+	    	sb.append(" ");
+	    	sb.append(snapshot.getNodeId(snapshot.getNode2(k)));
+	    	sb.append(" ");
+	    	sb.append(Double.toString(snapshot.getValue(k)));
+	    	sb.append(voltage ? " Volts" : " Ohms");
 	    	sb.append("\n");
 	    }
 	    /* remove last \n character */
@@ -71,4 +546,100 @@ public class Circuit {
 	    }
 	    return sb.toString();
 	}
+
+	/**
+	 * Total voltage, number of voltage sources and total resistance of the state after an edit, found without a snapshot. The resistance is NaN when the tree was dropped or the circuit is not series/parallel.
+	 */
+	private static final class Totals {
+		private final int edit;
+		private final double voltage;
+		private final int sources;
+		private final double resistance;
+
+		/**Constructor
+		 * @param int editCount - number of edits made to the circuit before this state
+		 * @param double voltageSum
+		 * @param int voltageSources
+		 * @param double totalR - or NaN*/
+		private Totals(int editCount, double voltageSum, int voltageSources, double totalR) {
+			edit = editCount;
+			voltage = voltageSum;
+			sources = voltageSources;
+			resistance = totalR;
+		}
+	}
+
+	/**
+	 * An immutable state of a circuit, as published to readers. The snapshot, the component and node lists and the decomposition tree all describe the same state,
+	 * component k of the list is component k of the snapshot. The lists are copies that are never changed, and the lists or the tree may be null if they were not needed yet.
+	 */
+	protected static final class Version {
+		private final int edit;
+		private final CompactCircuit snapshot;
+		private final ArrayList<Component> components;
+		private final ArrayList<Node> nodes;
+		private final DecompositionTree tree;
+		private final int nextResistorId;
+		private final int nextVoltageId;
+		/**Factorization for resistance queries, built by the first query on this version.*/
+		private volatile EffectiveResistance resistance;
+
+		/**Constructor
+		 * @param int editCount - number of edits made to the circuit before this state
+		 * @param CompactCircuit compact
+		 * @param ArrayList<Component> comps - or null
+		 * @param ArrayList<Node> nodeList - or null
+		 * @param DecompositionTree decomposition - or null
+		 * @param int resistorId - next resistor Id
+		 * @param int voltageId - next voltage source Id*/
+		private Version(int editCount, CompactCircuit compact, ArrayList<Component> comps, ArrayList<Node> nodeList, DecompositionTree decomposition, int resistorId, int voltageId) {
+			edit = editCount;
+			snapshot = compact;
+			components = comps;
+			nodes = nodeList;
+			tree = decomposition;
+			nextResistorId = resistorId;
+			nextVoltageId = voltageId;
+		}
+
+		/**get the snapshot
+		 * @return CompactCircuit*/
+		protected CompactCircuit getSnapshot() {
+			return snapshot;
+		}
+
+		/**get the components, in snapshot order
+		 * @return ArrayList<Component> or null*/
+		protected ArrayList<Component> getComponents() {
+			return components;
+		}
+
+		/**get the nodes
+		 * @return ArrayList<Node> or null*/
+		protected ArrayList<Node> getNodes() {
+			return nodes;
+		}
+
+		/**get the decomposition tree, which must not be changed
+		 * @return DecompositionTree or null*/
+		protected DecompositionTree getDecomposition() {
+			return tree;
+		}
+
+		/**get the factorization that answers resistance queries on this version, built once and shared by every thread that queries it
+		 * @return EffectiveResistance*/
+		protected EffectiveResistance getEffectiveResistance() {
+			EffectiveResistance result = resistance;
+			if(result == null) {
+				synchronized(this) {
+					result = resistance;
+					if(result == null) {
+						result = new EffectiveResistance(snapshot);
+						resistance = result;
+					}
+				}
+			}
+			return result;
+		}
+	}
 }
@@ -1,6 +1,6 @@
 package circuit;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
 
 /** Assistant class to calculate circuit characteristics.
  * 
@@ -8,20 +8,36 @@ import java.util.Collections;
  * 
  * I decided to compartmentalize this part of the program in a separate class to simplify the coding and maintenance, but when considering resource management it would likely just be methods within UserMain.
  * 
+ * The analysis reads an immutable CompactCircuit snapshot and never copies or re-points the user's Node and Component objects. Only an analysis of a list of components writes the calculated
+ * node voltages and currents back into them - the objects of a Circuit are shared by every version other threads may be reading, so its results are only read with the get methods.
+ * Taking the snapshot of an unchanged Circuit is O(1), so repeated calculations do not pay for a copy of the circuit.
+ * 
  * The resistor reduction algorithm used by this class is to first reduce resistors that are in parallel between the same two nodes to a single equivalent resistor between those nodes, then to reduce any serial resistors 
- * to a single equivalent resistor between the two outer-nodes which will then create more parallel resistors between the same two nodes, and so on.
+ * to a single equivalent resistor between the two outer-nodes which will then create more parallel resistors between the same two nodes, and so on. This is done by SeriesParallelReducer on primitive working arrays.
+ * 
+ * Circuits that cannot be reduced this way (bridge or mesh networks) are reduced further with star-mesh (Y-Delta) transformations, eliminating the nodes with the fewest resistors first.
+ * Only if that does not leave a single resistor, for example when voltage sources are not all in one serial chain, is the total resistance found with the NodalAnalysis engine,
+ * which is also used to find node voltages and component currents for any topology.
+ * The nodal engine can be selected for the whole analysis with setNodalAnalysis(true), which skips the reduction entirely.
+ * For meshes too large to factor, setIterativeSolver() replaces the direct NodalAnalysis with the conjugate gradient engine IterativeAnalysis, started from the node voltages of the previous analysis.
+ * The resistance between any two nodes is found by findSpecificNodeResistance() from a factorization cached with the circuit version, see EffectiveResistance.
+ * For circuits too large to factor it can instead be approximated from a ResistanceSketch, which can be saved and mapped back in by later runs.
+ * Regular resistor lattices can use its multigrid mode, with the lattice detected from the node Ids or declared with setLattice().
+ * A series/parallel circuit whose resistor values keep changing can be compiled with compile() into generated code that finds the total resistance and every current for new values without reducing it again.
+ * The derivatives of the total resistance, total current and node voltages with respect to every resistor are found by sensitivity(), see SensitivityAnalysis.
  * 
  * 
  * @author Michael Sinclair.
- * @version 2.411
+ * @version 2.521
  * @since 16 February 2019.
  */
 
 public class CircuitAnalysis {
 	/* instance variables */
-	private ArrayList<Node> nodeList;
-	private ArrayList<Component> components;
-	/* store original lists in order to calculate specific information on them */
+	private final CompactCircuit snapshot;
+	/* series-parallel decomposition kept by the circuit, null to reduce the snapshot here */
+	private DecompositionTree decomposition;
+	/* original lists to write node/component specific results into, null unless analyzing a list of components */
 	private ArrayList<Component> originalComponents;
 	private ArrayList<Node> originalNodes;
 	private int ground;
@@ -29,88 +45,126 @@ public class CircuitAnalysis {
 	private double totalV;
 	private double totalR;
 	private int voltageSources;
-	/* to rewind resistor Id count for user to continue after calculations */
-	private int countResistors;
-	
-	/** Only constructor for this class
+	/* engine that solves node voltages and currents, created when first needed */
+	private CircuitSolver nodal;
+	private boolean nodalOnly;
+	/* preconditioner of the iterative engine, -1 to use the direct NodalAnalysis */
+	private byte iterative;
+	private double iterativeTolerance;
+	private ForkJoinPool iterativePool;
+	/* declared lattice for multigrid, null to detect it */
+	private int[] lattice;
+	/* version of the circuit being analyzed, which caches the factorization for resistance queries, and the circuit itself, which keeps the last solution - both null when not analyzing a Circuit */
+	private Circuit.Version version;
+	private Circuit circuit;
+	/* factorization for resistance queries when there is no version to cache it */
+	private EffectiveResistance resistance;
+	/* sketch for approximate resistance queries, the error bound and random seed it is built with, error 0 for exact queries */
+	private ResistanceSketch sketch;
+	private double sketchError;
+	private long sketchSeed;
+	/* voltage of each original node before it was cleared, to warm-start the iterative engine */
+	private double[] previousVoltages;
+	
+	/** Constructor for a list of components - results are written back into the components and nodes
 	 * 
 	 * @param int ground
 	 * @param ArrayList<Component> comps
 	 * @param ArrayList<Node> nodes
 	 */
 	public CircuitAnalysis(int groundId, ArrayList<Component> comps, ArrayList<Node> nodes) {
+		this(groundId, CompactCircuit.fromComponents(comps), comps, nodes);
+	}
+	
+	/** Constructor for a circuit - analyzes its latest published version, nothing is written into its components and nodes
+	 * 
+	 * @param int groundId
+	 * @param Circuit circuit
+	 */
+	public CircuitAnalysis(int groundId, Circuit circuit) {
+		this(groundId, circuit.version());
+		this.circuit = circuit;
+	}
+	
+	/** Constructor for one consistent version of a circuit, which stays the same if the circuit is edited during the analysis
+	 * 
+	 * @param int groundId
+	 * @param Circuit.Version version
+	 */
+	private CircuitAnalysis(int groundId, Circuit.Version version) {
+		this(groundId, version.getSnapshot(), null, null);
+		decomposition = version.getDecomposition();
+		this.version = version;
+	}
+	
+	/** Constructor for a bare snapshot - nothing outside this object is written to, results are read with the get methods
+	 * 
+	 * @param int groundId
+	 * @param CompactCircuit compact
+	 */
+	public CircuitAnalysis(int groundId, CompactCircuit compact) {
+		this(groundId, compact, null, null);
+	}
+	
+	/** Shared constructor
+	 * 
+	 * @param int groundId
+	 * @param CompactCircuit compact
+	 * @param ArrayList<Component> comps - list the snapshot was taken from, or null
+	 * @param ArrayList<Node> nodes - or null
+	 */
+	private CircuitAnalysis(int groundId, CompactCircuit compact, ArrayList<Component> comps, ArrayList<Node> nodes) {
 		/* initialize variables */
+		snapshot = compact;
 		originalComponents = comps;
 		originalNodes = nodes;
 		/* clear out any previous calculations on node/component specific information */
-		for(Component original:originalComponents) {
-			original.setCurrent(0.0);
-		}
-		for(Node original:originalNodes) {
-			original.setVoltage(0.0);
-			original.setCurrent(0.0);
+		previousVoltages = null;
+		if(originalComponents != null) {
+			for(Component original:originalComponents) {
+				original.setCurrent(0.0);
+			}
+			previousVoltages = new double[originalNodes.size()];
+			for(int i = 0; i<originalNodes.size(); i++) {
+				Node original = originalNodes.get(i);
+				previousVoltages[i] = original.getVoltage();
+				original.setVoltage(0.0);
+				original.setCurrent(0.0);
+			}
 		}
 		/* initialize the rest of the variables */
 		ground = groundId;
 		totalR = 0.0;
 		totalV = 0.0;
 		voltageSources = 0;
-		countResistors = 0;
-		/* copy the ArrayLists so that the User can continue operations after calculation, and to enable node specific calculations based on original list */
-		components = new ArrayList<>(comps);
-		/* have to create new Node objects to avoid altering the input list - basically dereferencing the node objects from the input and creating clone objects of them with t he same id */
-		nodeList = new ArrayList<>();
-		for(Node node:nodes) {
-			nodeList.add(new Node(node.getId()));
-		}
-		/* now point copied components to the copied nodeList, and attach the copied components to the copied nodes */
-		for (Component comp:components) {
-			for(Node node:nodeList) {
-				/* if the component points to this iteration's node */
-				if(comp.getNode1().getId()==node.getId()) {
-					/* point it to the new copy object in this class nodeList */
-					comp.setNode1(node);
-					/* and connect it to the attached copy node */
-					node.connect(comp);
-				}
-				/* same for second node */
-				if(comp.getNode2().getId()==node.getId()) {
-					comp.setNode2(node);
-					node.connect(comp);
-				}
-			}
-		}
-    	
-		/* sort the resistor nodes of the copies, maintain the ordering for the original list that the user input for their resistors */
-    	/* sort the ArrayList of components by node 1 and node 2 (smaller of both first) - note that by construction, voltages will always have ordered nodes */
-    	for (int j = 0; j<components.size();j++) {
-        	for (int i = 0; i<components.size()-1;i++) {
-        		if (components.get(i).compareTo(components.get(i+1))>0) {
-        			/* if component nodes are disordered, swap them */
-        			Collections.swap(components, i, i+1);
-        		}
-        	}
-    	}
+		nodal = null;
+		nodalOnly = false;
+		iterative = -1;
+		decomposition = null;
 	}
 
 	
 	/* methods */
 	
-	/** Automates circuit measurements by calling analyzeVoltage(),analyzeResistance(),printCharactersitics() and reduces resistor count for resistors created for circuit calculations */
+	/** Automates circuit measurements by calling analyze(), printCharactersitics() and printSpecifics() */
 	public void analyzeCircuit() {
+		/* perform the measurements */
+		analyze();
+		System.out.println("");
+		/* print out calculated circuit characteristics */
+		printCharacteristics();
+		/* print out node voltages and component currents */
+		printSpecifics();
+	}
+
+	/** Performs the circuit measurements by calling analyzeVoltage(), analyzeResistance() and findSpecifics() without printing anything, results are read with the get methods */
+	public void analyze() {
 		/* find total voltage and count voltage sources */
 		analyzeVoltage();
 		/* find total resistance of the circuit */
 		analyzeResistance();
-		System.out.println("");
-		/* print out calculated circuit characteristics */
-		printCharacteristics();
 		/* calculate node voltages and resistor currents */
 		findSpecifics();
-		/* rewind resistor count for user to continue altering circuit - for each resistor added, lower the global resistor id number to sync the number back with the user's circuit */
-		for(int i=0;i<countResistors;i++) {
-			Resistor.resnum--;
-		}
 	}
 
 	
@@ -118,11 +172,11 @@ public class CircuitAnalysis {
 	/** Finds total voltage in the circuit - note that this program can currently only handle directly serial voltage (connected in series to each other) */
 	protected void analyzeVoltage() {
 		/* for each component */
-		for (int i = 0; i<components.size();i++) {
+		for (int k = 0; k<snapshot.getComponentCount();k++) {
 			/* if it is a voltage */
-			if (components.get(i).getClass() == Voltage.class) {
+			if (snapshot.getKind(k) == CompactCircuit.VOLTAGE) {
 				/* get the voltage */
-				totalV+=((Voltage)(components.get(i))).getV();
+				totalV+=snapshot.getValue(k);
 				/* count voltage sources */
 				voltageSources++;
 			}
@@ -131,302 +185,170 @@ public class CircuitAnalysis {
 	
 	
 	
-	/** Finds total resistance in the circuit */
+	/** Finds total resistance in the circuit - falls back to nodal analysis if the circuit is not made of only series and parallel connections */
 	protected void analyzeResistance() {
-		/* while more than 1 resistor exists */
-		while(components.size()>voltageSources+1) {
-			/* reduce parallel resistors across the same nodes to one resistor */
-			analyzeParallelSameNode();
-			/* reduce serial resistors individually in the circuit */
-			analyzeSeriesIndividually();
+		/* skip the reduction when the nodal engine has been selected */
+		if(nodalOnly) {
+			totalR = nodalEquivalentResistance();
+			return;
 		}
-		
-		/* now that there is only one resistor in the circuit iterate through the circuit */
-		for (int i = 0; i<components.size();i++) {
-			/* if it is a resistor */
-			if (components.get(i) instanceof Resistor) {
-				/* get the resistance - note this only executes once */
-				totalR+=((Resistor)components.get(i)).getR();
-			}
+		/* the circuit keeps its decomposition up to date across edits, otherwise reduce parallel resistors across the same nodes, then collapse serial chains */
+		if(decomposition == null) {
+			SeriesParallelReducer reducer = new SeriesParallelReducer(snapshot, true);
+			reducer.reduce();
+			decomposition = reducer.getTree();
+		}
+		/* if more than 1 resistor is left the circuit is not series/parallel - eliminate the remaining nodes with star-mesh transformations instead */
+		if(decomposition.getRootCount()>1) {
+			totalR = starMeshResistance();
+			return;
 		}
+		/* now that there is only one resistor in the circuit, it is the total resistance */
+		totalR = decomposition.getRootCount() == 0 ? 0.0 : decomposition.getTotalResistance();
 	}
 	
-	
-	
-	/** Reduces same-node parallel resistors to a single equivalent resistor - old method no longer in use - leaving in code for now */
-	protected void analyzeParallelSameNodeOLDMETHODNOLONGERINUSE() {
-		ArrayList<Component> temp = new ArrayList<>();
-		ArrayList<Component> toRemove = new ArrayList<>();
-		ArrayList<Component> toConnect = new ArrayList<>();
-		/* for each node */
-		/* TODO eliminate second for loop to reduce time complexity */
-		for (int n = 0; n<nodeList.size();n++) {
-			/* find components connected to each other node */
-			for (int m = 0; m<nodeList.size();m++) {
-				/* components cannot have the same node on both sides & don't want to do the same two nodes twice */
-					if (n!=m && n<m) {
-						/* for each component */
-						for (int k = 0;k<components.size();k++) {
-							if(components.get(k).getNode1().getId() == n && components.get(k).getNode2().getId() == m) { 
-								/* if it is a resistor */
-								if (components.get(k).getClass() == Resistor.class) {
-									/* if it is between the two nodes */
-									if(components.get(k).getNode1().getId() == n && components.get(k).getNode2().getId() == m) {
-										/* add it to temporary list */
-										temp.add(components.get(k));
-									}
-								}
-							}
-						}
-						/* if a parallel connection was found between node n and m*/
-						if(temp.size()>1) {
-							/* create equivalent parallel resistor */
-							Resistor equivalent = new Resistor(parallelResistors(temp),findNode(n),findNode(m));
-							/* for rewinding resistor id */
-							countResistors++;
-							/* queue it for connection */
-							toConnect.add(equivalent);
-							/* queue resistors that need to be removed */
-							toRemove.addAll(temp);
-						}
-						/* clear the list for future calculations */
-						temp.clear();
-					}
-				}
-			}
-		/* remove resistors to be replaced by single equivalent resistor */
-		/* if there are items to be removed */
-		if(toRemove.size()>0) {
-			/* for each component to be removed */
-			for (Component remove:toRemove) {
-				/* for each component */
-				for(int i = 0; i <components.size();i++) {
-					/* if the component is a resistor and it is in the list of resistors to be removed */
-					if(components.get(i).getId()==remove.getId()&&components.get(i) instanceof Resistor) {
-						/* remove it from components */
-						remove.getNode1().disconnect(remove);
-						remove.getNode2().disconnect(remove);
-						components.remove(i);
-						/* need to consider that components has shrunk by 1 */
-						i--;
-					}
-				}
-			}
+	/** Method to calculate specific information about nodes/components - node voltages relative to ground, current leaving each node and current through each component */
+	protected void findSpecifics() {
+		CircuitSolver solution = nodalSolution();
+		/* write results into the objects the snapshot was taken from, or keep them with the circuit to warm-start its next analysis */
+		if(originalComponents != null) {
+			solution.applyResults(originalComponents, originalNodes);
 		}
-		/* attach equivalent resistors */
-		for(Component comp:toConnect) {
-			components.add(comp);
-			comp.getNode1().connect(comp);
-			comp.getNode2().connect(comp);
+		else if(circuit != null) {
+			circuit.setLastSolution(solution);
 		}
 	}
 	
-	/** Method to make same node analysis more efficient with better time complexity, using ArrayLists to sort components based on their node connections
-	 * TODO IS THIS MORE EFFICIENT THAN THE ABOVE METHOD?! It works now, check up on it later when more time
+	/** Solve the circuit with nodal analysis, or with the iterative engine if it was selected, only done once per CircuitAnalysis object
+	 * @return CircuitSolver
 	 */
-	public void analyzeParallelSameNode() {
-		ArrayList<Component> toConnect = new ArrayList<Component>();
-		ArrayList<Component> toRemove = new ArrayList<Component>();
-		/* this ArrayList will store components of the same first node that also have the same second node */
-		ArrayList<ArrayList<Component>> sameSecondNode = new ArrayList<ArrayList<Component>>();
-		/* this ArrayList will store an ArrayList of components that have the same first node */
-		ArrayList<ArrayList<Component>> sameFirstNode= new ArrayList<ArrayList<Component>>();
-		/* instantiate each ArrayList - maximum size will be size of components list i.e. only serial components 
-		 * (which would actually only have n-1 size really because the 'last node' points back to the 0th node so its first node is 0, same as 'first node' of 0 to 1 
-		 * chose to do this rather than dynamically create ArrayLists as with large number of components, 
-		 * as this would result in a lot more checking to see if each sub-ArrayList is instantiated yet*/
-		for(int i = 0; i<nodeList.size();i++) {
-			sameFirstNode.add(new ArrayList<Component>());
-			sameSecondNode.add(new ArrayList<Component>());
-		}
-		/* sort the components into this ArrayList based on their first node Id */
-		for(Component component:components) {
-			int indice1 = component.getNode1().getId();
-			sameFirstNode.get(indice1).add(component);
-		}
-		/* now iterate through those ArrayLists to see if any are bigger than 2, since voltages cannot be parallel they must have resistors if they have multiple components */
-		for(int i = 0; i<sameFirstNode.size();i++) {
-			/* if there are parallel resistors */
-			if (sameFirstNode.get(i).size()>1) {
-				/* find components with the same second node */
-				for(Component component:sameFirstNode.get(i)) {
-					/* sort them into the sameSecondNode list */
-					sameSecondNode.get(component.getNode2().getId()).add(component);
-				}
-				/* now for all sorted resistors */
-				for(int j = 0; j<sameSecondNode.size();j++) {
-					/* if there is more than one between the same two nodes */
-					if(sameSecondNode.get(j).size()>1) {
-						/* create equivalent parallel resistor */
-						Resistor equivalent = new Resistor(parallelResistors(sameSecondNode.get(j)),findNode(sameSecondNode.get(j).get(0).getNode1().getId()),findNode(sameSecondNode.get(j).get(0).getNode2().getId()));
-						/* for rewinding resistor id */
-						countResistors++;
-						/* queue it for connection */
-						toConnect.add(equivalent);
-						/* queue resistors that need to be removed */
-						toRemove.addAll(sameSecondNode.get(j));
-					}
-				}
-				sameSecondNode.clear();
+	protected CircuitSolver nodalSolution() {
+		if(nodal == null) {
+			if(iterative<0) {
+				nodal = new NodalAnalysis(ground, snapshot);
 			}
-		}
-		/* remove resistors to be replaced by single equivalent resistor */
-		/* if there are items to be removed */
-		if(toRemove.size()>0) {
-			/* for each component to be removed */
-			for (Component remove:toRemove) {
-				/* for each component */
-				for(int i = 0; i <components.size();i++) {
-					/* if the component is a resistor and it is in the list of resistors to be removed */
-					if(components.get(i).getId()==remove.getId()&&components.get(i) instanceof Resistor) {
-						/* remove it from components */
-						remove.getNode1().disconnect(remove);
-						remove.getNode2().disconnect(remove);
-						components.remove(i);
-						/* need to consider that components has shrunk by 1 */
-						i--;
-					}
+			else {
+				IterativeAnalysis engine = new IterativeAnalysis(ground, snapshot);
+				engine.setPreconditioner(iterative);
+				engine.setTolerance(iterativeTolerance);
+				engine.setPool(iterativePool);
+				engine.setInitialVoltages(warmStart());
+				if(lattice != null) {
+					engine.setLattice(lattice[0], lattice[1], lattice[2], lattice[3]);
 				}
+				nodal = engine;
 			}
+			nodal.solve();
 		}
-		/* attach equivalent resistors */
-		for(Component comp:toConnect) {
-			components.add(comp);
-			comp.getNode1().connect(comp);
-			comp.getNode2().connect(comp);
-		}
+		return nodal;
 	}
 	
-	/** Method that reduces any two serially connected resistors individually */
-	protected void analyzeSeriesIndividually() {
-		ArrayList<Component> toAdd = new ArrayList<>();
-		ArrayList<Component> toRemove = new ArrayList<>();
-		Node firstNode = null;
-		Node secondNode = null;
-		/* can only perform this operation a single time before calling it again - resulted in errors created floating resistors that could not be reduced further otherwise */
-		boolean doOnce = false;
-		/* for each node */
-		for(Node node:nodeList) {
-			/* if there are 2 attachments that are both resistors */
-			if (node.getAttachments().size()==2 && node.getAttachments().get(0) instanceof Resistor && node.getAttachments().get(1) instanceof Resistor && !doOnce) {
-				/* find first and second node by Id - one must have a first node prior to the current node being tested and one must have a node after */
-				if(node.getAttachments().get(0).getNode1().getId()<node.getAttachments().get(1).getNode1().getId()) {
-					firstNode = node.getAttachments().get(0).getNode1();
-					secondNode = node.getAttachments().get(1).getNode2();
-				}
-				else {
-					firstNode = node.getAttachments().get(1).getNode1();
-					secondNode = node.getAttachments().get(0).getNode2();
-				}
-				/* if not already queued for removal */
-				if(!toRemove.contains(node.getAttachments().get(0))) {
-					if(!toRemove.contains(node.getAttachments().get(1))) {
-						toRemove.add(node.getAttachments().get(0));
-						toRemove.add(node.getAttachments().get(1));
-						toAdd.add(new Resistor(((Resistor)node.getAttachments().get(0)).getR()+((Resistor)node.getAttachments().get(1)).getR(),firstNode,secondNode));
-						/* for rewinding resistor id */
-						countResistors++;
-					}
-				}
-				/* prevent program from combining more than two serial resistors at the same time */
-				doOnce = true;
+	/** Voltages the original nodes had before this analysis, or the last analysis of the circuit found, by dense node index of the snapshot
+	 * @return double[] or null when analyzing a bare snapshot or a circuit that has not been analyzed
+	 */
+	private double[] warmStart() {
+		if(previousVoltages == null) {
+			CircuitSolver previous = circuit == null ? null : circuit.getLastSolution();
+			if(previous == null) {
+				return null;
+			}
+			double[] guess = new double[snapshot.getNodeCount()];
+			for(int i = 0; i<guess.length; i++) {
+				guess[i] = previous.voltage(snapshot.getNodeId(i));
 			}
+			return guess;
 		}
-		/* combine serial resistors individually - first remove them from the circuit */
-		for(Component remove:toRemove) {
-			remove.getNode1().disconnect(remove);
-			remove.getNode2().disconnect(remove);
-			components.remove(remove);
+		double[] guess = new double[snapshot.getNodeCount()];
+		for(int i = 0; i<originalNodes.size(); i++) {
+			int index = snapshot.indexOf(originalNodes.get(i).getId());
+			if(index>=0) {
+				guess[index] = previousVoltages[i];
+			}
 		}
-		/* then add the equivalent resistors */
-		for(Component addR:toAdd) {
-			addR.getNode1().connect(addR);
-			addR.getNode2().connect(addR);
-			components.add(addR);
+		return guess;
+	}
+	
+	/** Total resistance of a circuit that is not series/parallel, found with star-mesh transformations - falls back to nodal analysis if they do not leave a single resistor
+	 * @return double
+	 */
+	private double starMeshResistance() {
+		SeriesParallelReducer reducer = new SeriesParallelReducer(snapshot);
+		reducer.reduce();
+		if(reducer.reduceStars() && reducer.remainingResistors() == 1) {
+			return reducer.remainingResistance();
 		}
+		return nodalEquivalentResistance();
 	}
 	
-	/** Method to calculate specific information about nodes/components - under construction */
-	/* TODO complete */
-	protected void findSpecifics() {
-		/* program requires 0th node to 1st node be a voltage source (with nothing in parallel) - first set node 0 to 0V and current leaving to full current - ground voltage will be adjusted later */
-		for (Node node0:originalNodes) {
-			if(node0.getId()==0) {
-				node0.setVoltage(0.0);
-				node0.setCurrent(totalV/totalR);
-			}
+	/** Total resistance seen by the voltage sources, found with nodal analysis
+	 * @return double
+	 */
+	private double nodalEquivalentResistance() {
+		if(voltageSources == 0) {
+			throw new IllegalStateException("Circuit cannot be reduced to series/parallel resistors and has no voltage source to drive a nodal analysis.");
 		}
+		return nodalSolution().equivalentResistance(totalV);
 	}
 	
-	/** find resistance between two specific nodes - under construction
+	/** find resistance between two specific nodes, with the voltage sources shorted - the factorization behind it is made by the first query and cached with the circuit version,
+	 * each query after that is one pair of triangular solves and queries may be made from several threads at once
 	 * @param Node node1
 	 * @param Node node2
-	 * @return double resistance */
-	protected double findSpecificNodeResistance(Node node1, Node node2) {
-		double resistance = 0.0;
-		
-		
-		
-		return resistance;
-	}
-	
-	
-	/** Find ArrayList index - note ArrayList has built in remove with object parameter but I wanted to use this instead as I was encountering problems with the built in method 
-	 * @param ArrayList<Component> findList
-	 * @param Component find
-	 * @return int */
-	protected int findIndex(ArrayList<Component> findList, Component find) {
-		int i;
-		/* iterate through ArrayList until object is found */
-		for (i = 0;i<findList.size();i++) {
-			if(findList.contains(find)) {
-				break;
-			}
+	 * @return double resistance, infinite if there is no path between the nodes */
+	public double findSpecificNodeResistance(Node node1, Node node2) {
+		ResistanceSketch approximate = resistanceSketch();
+		if(approximate != null) {
+			return approximate.resistance(node1.getId(), node2.getId());
 		}
-		return i;
-	}
-	
-	/** Determine if resistor already queued for removal, returns true to enable above loop if component is not already queued for removal 
-	 * @param Component resistor
-	 * @param ArrayList<Component> toRemove
-	 * @return boolean*/
-	protected boolean queuedRemoval(Component resistor, ArrayList<Component> toRemove){
-		/* for each component queued for removal */
-		for(Component component:toRemove) {
-			/* if the Id matches any resistor Id in the removal list, and for good measure check that it is a resistor */
-			if(component.getId()==resistor.getId() && component.getClass()==Resistor.class) {
-				/* return false to disable the above loop */
-				return false;
+		return effectiveResistance().resistance(node1.getId(), node2.getId());
+	}
+	
+	/** get the sketch for approximate resistance queries, built by the first query after setApproximateResistance()
+	 * @return ResistanceSketch or null for exact queries
+	 */
+	private ResistanceSketch resistanceSketch() {
+		synchronized(this) {
+			if(sketch == null && sketchError>0.0) {
+				sketch = ResistanceSketch.build(snapshot, ResistanceSketch.dimension(snapshot.getNodeCount(), sketchError), sketchSeed, iterativePool);
 			}
+			return sketch;
 		}
-		/* else return true */
-		return true;
-	}
-	
-	
-	/** Find node based on id 
-	 * @param int id
-	 * @return Node*/
-	protected Node findNode(int id) {
-		/* value to store index */
-		int i  = 0;
-		/* for each node */
-		for(Node node:nodeList) {
-			/* if it does not equal the desired node */
-			if(node.getId()!=id) {
-				/* increase the index */
-				i++;
-			}
-			/* if it does */
-			else {
-				/* stop searching */
-				break;
+	}
+	
+	/** get the factorization for resistance queries, from the circuit version if there is one
+	 * @return EffectiveResistance
+	 */
+	protected EffectiveResistance effectiveResistance() {
+		if(version != null) {
+			return version.getEffectiveResistance();
+		}
+		synchronized(this) {
+			if(resistance == null) {
+				resistance = new EffectiveResistance(snapshot);
 			}
+			return resistance;
 		}
-		return nodeList.get(i);
 	}
 	
 	
+	/** Compile the series/parallel structure of the circuit into an evaluator of total resistance and currents for new component values, given by snapshot component index
+	 * @return CompiledCircuit
+	 * @throws IllegalArgumentException if the circuit is not series/parallel
+	 */
+	public CompiledCircuit compile() {
+		return CompiledCircuit.compile(snapshot);
+	}
+	
+	/** Sensitivities of the results to every resistor, found by the adjoint method - reuses the factorization of this analysis when it was solved with the direct nodal engine
+	 * @return SensitivityAnalysis
+	 * @throws IllegalStateException if the circuit has no voltage source
+	 */
+	public SensitivityAnalysis sensitivity() {
+		if(nodal instanceof NodalAnalysis) {
+			return new SensitivityAnalysis((NodalAnalysis)nodal);
+		}
+		return new SensitivityAnalysis(ground, snapshot);
+	}
 	
 	/** Calculate parallel resistance from a list of resistors
 	 * @param ArrayList<Component> resistors
@@ -455,21 +377,67 @@ public class CircuitAnalysis {
 		System.out.println("Total current is: "+totalV/totalR+" Amps.");
 	}
 	
+	/** Print the voltage of each node relative to ground and the current through each component, read from the solution rather than from Node and Component objects */
+	protected void printSpecifics() {
+		CircuitSolver solution = nodalSolution();
+		for(int i = 0; i<snapshot.getNodeCount(); i++) {
+			System.out.println("Voltage at node "+snapshot.getNodeId(i)+" is: "+solution.nodeVoltage(i)+" Volts.");
+		}
+		for(int k = 0; k<snapshot.getComponentCount(); k++) {
+			String name = (snapshot.getKind(k) == CompactCircuit.VOLTAGE ? "V" : "R")+snapshot.getComponentId(k);
+			System.out.println("Current through "+name+" is: "+solution.branchCurrent(k)+" Amps.");
+		}
+	}
+	
 	/* get methods for testing private instance variables */
 	
-	/** get nodeList
-	 * @return ArrayList<Node> nodeList
+	/** get the nodes results are written to
+	 * @return ArrayList<Node> nodes, null unless analyzing a list of components
 	 */
 	public ArrayList<Node> getNodeList(){
-		return nodeList;
+		return originalNodes;
 	}
 	
-	/** gets the list of components
+	/** gets the list of components results are written to
 	 * 
-	 * @return ArrayList<Component> components
+	 * @return ArrayList<Component> components, null unless analyzing a list of components
 	 */
 	public ArrayList<Component> getComponents(){
-		return components;
+		return originalComponents;
+	}
+	
+	/** gets the series-parallel decomposition found by analyzeResistance()
+	 * 
+	 * @return DecompositionTree, null before analyzeResistance() or when the nodal engine was selected
+	 */
+	public DecompositionTree getDecomposition(){
+		return decomposition;
+	}
+	
+	/** gets the snapshot being analyzed
+	 * 
+	 * @return CompactCircuit snapshot
+	 */
+	public CompactCircuit getSnapshot(){
+		return snapshot;
+	}
+	
+	/** gets the voltage of a node relative to ground, calculated by findSpecifics()
+	 * 
+	 * @param int nodeId
+	 * @return double
+	 */
+	public double getNodeVoltage(int nodeId){
+		return nodalSolution().voltage(nodeId);
+	}
+	
+	/** gets the current through the k-th component of the snapshot, calculated by findSpecifics()
+	 * 
+	 * @param int k
+	 * @return double
+	 */
+	public double getComponentCurrent(int k){
+		return nodalSolution().branchCurrent(k);
 	}
 
 	/** get voltage
@@ -487,6 +455,67 @@ public class CircuitAnalysis {
 		return totalR;
 	}
 	
+	/** select the nodal analysis engine for the total resistance instead of series/parallel reduction
+	 * @param boolean useNodal
+	 */
+	public void setNodalAnalysis(boolean useNodal) {
+		nodalOnly = useNodal;
+	}
+	
+	/** select the preconditioned conjugate gradient engine instead of a direct factorization for node voltages and currents, and for the total resistance wherever nodal analysis is used
+	 * @param byte preconditioner - IterativeAnalysis.JACOBI, IterativeAnalysis.INCOMPLETE_CHOLESKY or IterativeAnalysis.MULTIGRID for regular lattices
+	 * @param double tolerance - residual to stop at, relative to the right hand side
+	 * @param ForkJoinPool pool - threads for the matrix-vector products, or null
+	 */
+	public void setIterativeSolver(byte preconditioner, double tolerance, ForkJoinPool pool) {
+		if(!IterativeAnalysis.isPreconditioner(preconditioner)) {
+			throw new IllegalArgumentException("Unknown preconditioner "+preconditioner+".");
+		}
+		iterative = preconditioner;
+		iterativeTolerance = tolerance;
+		iterativePool = pool;
+	}
+	
+	/** answer findSpecificNodeResistance() approximately from a random projection sketch, for circuits too large for exact queries - the sketch is built by the first query
+	 * @param double error - relative error bound, for example 0.1, or 0 for exact queries
+	 */
+	public void setApproximateResistance(double error) {
+		setApproximateResistance(error, System.nanoTime());
+	}
+	
+	/** answer findSpecificNodeResistance() approximately from a sketch with a given random seed, the same seed gives the same answers
+	 * @param double error - relative error bound, for example 0.1, or 0 for exact queries
+	 * @param long seed
+	 */
+	public synchronized void setApproximateResistance(double error, long seed) {
+		if(error != 0.0) {
+			ResistanceSketch.dimension(snapshot.getNodeCount(), error);
+		}
+		sketchError = error;
+		sketchSeed = seed;
+		sketch = null;
+	}
+	
+	/** answer findSpecificNodeResistance() from a sketch built or loaded earlier, which must come from the same circuit
+	 * @param ResistanceSketch approximate - or null for exact queries
+	 */
+	public synchronized void setResistanceSketch(ResistanceSketch approximate) {
+		sketch = approximate;
+		sketchError = 0.0;
+	}
+	
+	/** declare that the resistors form a regular lattice, solved with multigrid - the node at (x, y, z) has Id base + x + nx*(y + ny*z)
+	 * @param int base - Id of the node at (0, 0, 0)
+	 * @param int nx
+	 * @param int ny
+	 * @param int nz - 1 for a 2D lattice
+	 * @param double tolerance - residual to stop at, relative to the right hand side
+	 */
+	public void setLattice(int base, int nx, int ny, int nz, double tolerance) {
+		setIterativeSolver(IterativeAnalysis.MULTIGRID, tolerance, iterativePool);
+		lattice = new int[]{base, nx, ny, nz};
+	}
+	
 	/** gets the ground node id
 	 * 
 	 * @return int ground
@@ -0,0 +1,102 @@
+package circuit;
+import java.util.ArrayList;
+
+/**
+ * Common base of the engines CircuitAnalysis uses to find node voltages and component currents of a CompactCircuit.
+ *
+ * An engine only has to solve for the voltage of each dense node index and the current through each component, everything that follows from them -
+ * results by node Id, current leaving a node, the equivalent resistance seen by the sources and writing results into Node and Component objects - is found here the same way for every engine.
+ *
+ * NodalAnalysis factors the full modified nodal system directly, IterativeAnalysis solves the conductance system with preconditioned conjugate gradients for circuits too large to factor.
+ *
+ * @author Michael Sinclair.
+ * @version 2.512
+ * @since 18 October 2026.
+ */
+
+public abstract class CircuitSolver {
+	/* instance variables */
+	protected final CompactCircuit circuit;
+
+	/** Constructor
+	 * @param CompactCircuit compact - circuit to solve
+	 */
+	protected CircuitSolver(CompactCircuit compact) {
+		circuit = compact;
+	}
+
+	/* methods */
+
+	/** Solve the circuit, must be called before any result is read */
+	public abstract void solve();
+
+	/** get voltage of a node by its dense index
+	 * @param int node
+	 * @return double
+	 */
+	public abstract double nodeVoltage(int node);
+
+	/** get the current through a component, positive from node 1 to node 2 - for a voltage source this is the current it delivers
+	 * @param int edge
+	 * @return double
+	 */
+	public abstract double branchCurrent(int edge);
+
+	/** Write the solution into the given nodes and into the components the compact circuit was built from
+	 * node voltage is relative to ground, node current is the total current leaving the node through its branches, component current is positive from node 1 to node 2
+	 * @param ArrayList<Component> comps - same list and order the compact circuit was built from
+	 * @param ArrayList<Node> nodes
+	 */
+	public void applyResults(ArrayList<Component> comps, ArrayList<Node> nodes) {
+		for(int k = 0; k<comps.size(); k++) {
+			comps.get(k).setCurrent(branchCurrent(k));
+		}
+		for(Node node:nodes) {
+			int index = circuit.indexOf(node.getId());
+			node.setVoltage(index<0 ? 0.0 : nodeVoltage(index));
+			node.setCurrent(index<0 ? 0.0 : currentLeaving(index));
+		}
+	}
+
+	/** get voltage of a node relative to ground
+	 * @param int nodeId
+	 * @return double
+	 */
+	public double voltage(int nodeId) {
+		int index = circuit.indexOf(nodeId);
+		return index<0 ? 0.0 : nodeVoltage(index);
+	}
+
+	/** get the total current leaving a node through its branches, found from the CSR adjacency
+	 * @param int node
+	 * @return double
+	 */
+	public double currentLeaving(int node) {
+		int[] start = circuit.getAdjStart();
+		int[] edges = circuit.getAdjEdge();
+		double sum = 0.0;
+		for(int p = start[node]; p<start[node+1]; p++) {
+			int edge = edges[p];
+			double current = branchCurrent(edge);
+			/* positive current leaves node 1, negative current leaves node 2 */
+			if(circuit.getNode1(edge) == node ? current>0 : current<0) {
+				sum += Math.abs(current);
+			}
+		}
+		return sum;
+	}
+
+	/** Equivalent resistance seen by the voltage sources, found from the total power they deliver - R = Vtotal^2 / P, which is simply V/I for sources in series
+	 * @param double totalV
+	 * @return double
+	 */
+	public double equivalentResistance(double totalV) {
+		double power = 0.0;
+		for(int k = 0; k<circuit.getComponentCount(); k++) {
+			if(circuit.getKind(k) == CompactCircuit.VOLTAGE) {
+				power += circuit.getValue(k)*branchCurrent(k);
+			}
+		}
+		return totalV*totalV/power;
+	}
+}
@@ -0,0 +1,308 @@
+package circuit;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Compact structure-of-arrays representation of a circuit, kept alongside the Node/Component object model.
+ *
+ * Component k connects nodes node1[k] and node2[k] with value[k] (Ohms or Volts) and is of type kind[k]. Nodes are renumbered to dense indices 0..N-1 in increasing Id order,
+ * with nodeIds[] mapping an index back to the user's node Id. The Ids are sorted with a radix sort and looked up in a direct table, or a hash table when they are sparse, so building the
+ * compact form is O(n + m) for any spread of Ids. Adjacency is stored once in compressed sparse row (CSR) form: the components attached to node i are adjEdge[adjStart[i]] to adjEdge[adjStart[i+1]-1].
+ *
+ * A component costs 21 bytes plus 8 bytes of adjacency and a node 8 bytes, against well over 100 bytes for the equivalent objects, and analysis engines walk plain arrays instead of chasing references.
+ * Instances are never modified after construction.
+ *
+ * @author Michael Sinclair.
+ * @version 2.508
+ * @since 18 October 2026.
+ */
+
+public class CompactCircuit {
+	/* component kinds */
+	public static final byte RESISTOR = 0;
+	public static final byte VOLTAGE = 1;
+
+	/* instance variables */
+	private final int componentCount;
+	private final int nodeCount;
+	private final int[] node1;
+	private final int[] node2;
+	private final double[] value;
+	private final byte[] kind;
+	/* user visible Id of each component, i.e. the 2 in R2 */
+	private final int[] componentId;
+	/* user visible Id of each node index, sorted ascending */
+	private final int[] nodeIds;
+	/* direct Id to index table when the Ids are dense enough, otherwise null and the hash table is used - a table sized by the Id range could run out of memory on sparse Ids */
+	private final int[] indexTable;
+	private final int minId;
+	private final LongIntHashMap idIndex;
+	/* CSR adjacency */
+	private final int[] adjStart;
+	private final int[] adjEdge;
+
+	/** Constructor from primitive arrays holding user node Ids - the arrays are kept, not copied
+	 * @param int count - number of components used from the arrays
+	 * @param int[] firstIds - node 1 Id of each component, replaced by the node index
+	 * @param int[] secondIds - node 2 Id of each component, replaced by the node index
+	 * @param double[] values
+	 * @param byte[] kinds
+	 * @param int[] ids - component Ids
+	 */
+	public CompactCircuit(int count, int[] firstIds, int[] secondIds, double[] values, byte[] kinds, int[] ids) {
+		this(count, firstIds, secondIds, values, kinds, ids, distinctIds(count, firstIds, secondIds));
+	}
+
+	/** Constructor from primitive arrays and the sorted table of distinct node Ids, used when the table has already been built - the arrays are kept, not copied
+	 * @param int count - number of components used from the arrays
+	 * @param int[] firstIds - node 1 Id of each component, replaced by the node index
+	 * @param int[] secondIds - node 2 Id of each component, replaced by the node index
+	 * @param double[] values
+	 * @param byte[] kinds
+	 * @param int[] ids - component Ids
+	 * @param int[] sortedIds - every node Id once, in ascending order
+	 */
+	protected CompactCircuit(int count, int[] firstIds, int[] secondIds, double[] values, byte[] kinds, int[] ids, int[] sortedIds) {
+		componentCount = count;
+		node1 = firstIds;
+		node2 = secondIds;
+		value = values;
+		kind = kinds;
+		componentId = ids;
+		nodeIds = sortedIds;
+		int unique = sortedIds.length;
+		nodeCount = unique;
+		/* use a direct table if the Ids do not leave too many gaps */
+		minId = unique == 0 ? 0 : nodeIds[0];
+		long range = unique == 0 ? 0 : (long)nodeIds[unique-1]-minId+1;
+		if(range<=2L*unique+16) {
+			indexTable = new int[(int)range];
+			Arrays.fill(indexTable, -1);
+			for(int i = 0; i<unique; i++) {
+				indexTable[nodeIds[i]-minId] = i;
+			}
+			idIndex = null;
+		}
+		else {
+			indexTable = null;
+			idIndex = new LongIntHashMap(unique);
+			for(int i = 0; i<unique; i++) {
+				idIndex.put(nodeIds[i], i);
+			}
+		}
+		/* replace Ids by indices and count the degree of each node */
+		adjStart = new int[nodeCount+1];
+		for(int k = 0; k<count; k++) {
+			node1[k] = indexOf(node1[k]);
+			node2[k] = indexOf(node2[k]);
+			adjStart[node1[k]+1]++;
+			adjStart[node2[k]+1]++;
+		}
+		for(int i = 0; i<nodeCount; i++) {
+			adjStart[i+1] += adjStart[i];
+		}
+		adjEdge = new int[2*count];
+		int[] next = Arrays.copyOf(adjStart, nodeCount);
+		for(int k = 0; k<count; k++) {
+			adjEdge[next[node1[k]]++] = k;
+			adjEdge[next[node2[k]]++] = k;
+		}
+	}
+
+	/* methods */
+
+	/** Build the compact form of a list of components, component k of the list becomes component k of the compact circuit
+	 * @param ArrayList<Component> components
+	 * @return CompactCircuit
+	 */
+	public static CompactCircuit fromComponents(ArrayList<Component> components) {
+		int count = components.size();
+		int[] first = new int[count];
+		int[] second = new int[count];
+		double[] values = new double[count];
+		byte[] kinds = new byte[count];
+		int[] ids = new int[count];
+		for(int k = 0; k<count; k++) {
+			Component comp = components.get(k);
+			first[k] = comp.getNode1().getId();
+			second[k] = comp.getNode2().getId();
+			ids[k] = comp.getId();
+			if(comp instanceof Voltage) {
+				kinds[k] = VOLTAGE;
+				values[k] = ((Voltage)comp).getV();
+			}
+			else {
+				kinds[k] = RESISTOR;
+				values[k] = ((Resistor)comp).getR();
+			}
+		}
+		return new CompactCircuit(count, first, second, values, kinds, ids);
+	}
+
+	/** collect the distinct node Ids of the components in ascending order
+	 * @param int count
+	 * @param int[] firstIds
+	 * @param int[] secondIds
+	 * @return int[] sorted Ids
+	 */
+	protected static int[] distinctIds(int count, int[] firstIds, int[] secondIds) {
+		int[] all = new int[2*count];
+		System.arraycopy(firstIds, 0, all, 0, count);
+		System.arraycopy(secondIds, 0, all, count, count);
+		radixSort(all);
+		return unique(all, all.length);
+	}
+
+	/** sort Ids in linear time with stable counting passes over 8 bits at a time, the sign bit flipped so negative Ids come first - passes where every Id has the same 8 bits are skipped
+	 * @param int[] values - sorted in place
+	 */
+	protected static void radixSort(int[] values) {
+		int length = values.length;
+		int[] from = values;
+		int[] to = new int[length];
+		int[] start = new int[257];
+		for(int shift = 0; shift<32; shift += 8) {
+			Arrays.fill(start, 0);
+			for(int i = 0; i<length; i++) {
+				start[(((from[i]^Integer.MIN_VALUE)>>>shift)&0xFF)+1]++;
+			}
+			boolean same = false;
+			for(int b = 1; b<=256; b++) {
+				same |= start[b] == length;
+				start[b] += start[b-1];
+			}
+			if(same) {
+				continue;
+			}
+			for(int i = 0; i<length; i++) {
+				to[start[((from[i]^Integer.MIN_VALUE)>>>shift)&0xFF]++] = from[i];
+			}
+			int[] swap = from;
+			from = to;
+			to = swap;
+		}
+		if(from != values) {
+			System.arraycopy(from, 0, values, 0, length);
+		}
+	}
+
+	/** remove repeated values from the start of a sorted array
+	 * @param int[] sorted
+	 * @param int length
+	 * @return int[] a copy holding each value once
+	 */
+	protected static int[] unique(int[] sorted, int length) {
+		int unique = 0;
+		for(int i = 0; i<length; i++) {
+			if(i == 0 || sorted[i] != sorted[i-1]) {
+				sorted[unique++] = sorted[i];
+			}
+		}
+		return Arrays.copyOf(sorted, unique);
+	}
+
+	/** find the index of a node Id
+	 * @param int id
+	 * @return int index, or -1 if no component is attached to that node
+	 */
+	public int indexOf(int id) {
+		if(indexTable != null) {
+			long i = (long)id-minId;
+			return i<0 || i>=indexTable.length ? -1 : indexTable[(int)i];
+		}
+		return idIndex.get(id, -1);
+	}
+
+	/** get the node at the other end of a component
+	 * @param int edge
+	 * @param int node
+	 * @return int node index
+	 */
+	public int otherNode(int edge, int node) {
+		return node1[edge] == node ? node2[edge] : node1[edge];
+	}
+
+	/** get the number of components attached to a node
+	 * @param int node
+	 * @return int
+	 */
+	public int degree(int node) {
+		return adjStart[node+1]-adjStart[node];
+	}
+
+	/** get the number of components
+	 * @return int
+	 */
+	public int getComponentCount() {
+		return componentCount;
+	}
+
+	/** get the number of nodes
+	 * @return int
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/** get the user Id of a node index
+	 * @param int node
+	 * @return int
+	 */
+	public int getNodeId(int node) {
+		return nodeIds[node];
+	}
+
+	/** get node 1 index of a component
+	 * @param int edge
+	 * @return int
+	 */
+	public int getNode1(int edge) {
+		return node1[edge];
+	}
+
+	/** get node 2 index of a component
+	 * @param int edge
+	 * @return int
+	 */
+	public int getNode2(int edge) {
+		return node2[edge];
+	}
+
+	/** get the value of a component, Ohms for resistors and Volts for voltage sources
+	 * @param int edge
+	 * @return double
+	 */
+	public double getValue(int edge) {
+		return value[edge];
+	}
+
+	/** get the kind of a component, RESISTOR or VOLTAGE
+	 * @param int edge
+	 * @return byte
+	 */
+	public byte getKind(int edge) {
+		return kind[edge];
+	}
+
+	/** get the user Id of a component
+	 * @param int edge
+	 * @return int
+	 */
+	public int getComponentId(int edge) {
+		return componentId[edge];
+	}
+
+	/** get the CSR row pointers, adjacency of node i starts at getAdjStart()[i] - the array must not be modified
+	 * @return int[] adjStart
+	 */
+	public int[] getAdjStart() {
+		return adjStart;
+	}
+
+	/** get the CSR component indices - the array must not be modified
+	 * @return int[] adjEdge
+	 */
+	public int[] getAdjEdge() {
+		return adjEdge;
+	}
+}
@@ -0,0 +1,1161 @@
+package circuit;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Total resistance and branch currents of a series/parallel circuit as generated code, for re-evaluating a circuit with new resistor values without reducing it again.
+ *
+ * compile() reduces the circuit once and turns its DecompositionTree into straight-line code: the resistance of every SERIES and PARALLEL part is one sum or one sum of reciprocals
+ * of its children, held in a local variable, and the current of every part follows top down from the current the sources drive through the whole network - the parts of a series
+ * chain carry its current, the parts of a parallel group share the voltage across it. The code is written as Java bytecode and loaded as a subclass of this class through a class
+ * loader of its own, so there is no tree to walk, no object to read and nothing is allocated while evaluating, and the JIT compiles the evaluation into a run of arithmetic.
+ * Large trees are cut into methods small enough for the JIT to compile, which are called one after another rather than nested, so a deep tree cannot overflow the stack.
+ *
+ * Values are given by component index of the snapshot compiled, the order of the circuit's component list. The resistor entries are the resistances, the voltage source entries
+ * are the source voltages driving the network. Currents are positive from node 1 to node 2 and for a source are the current it delivers, as in CircuitSolver.
+ * Resistors outside the network between the sources, and sources that do not drive it, carry no current.
+ *
+ * The class file format limits the methods calling the pieces in turn to 64KB, enough for a few hundred thousand resistors - larger circuits, and parallel groups of tens of thousands
+ * of resistors, throw IllegalArgumentException and are better changed in place with DecompositionTree.updateResistor().
+ *
+ * Evaluators have no state, so one may be shared by any number of threads.
+ *
+ * @author Michael Sinclair.
+ * @version 2.521
+ * @since 18 October 2026.
+ */
+
+public abstract class CompiledCircuit {
+	/* names of generated classes are numbered so each is unique */
+	private static final AtomicInteger GENERATED = new AtomicInteger();
+
+	/* instance variables */
+	private int componentCount;
+
+	/** Constructor for generated subclasses */
+	protected CompiledCircuit() {
+	}
+
+	/* methods */
+
+	/** Total resistance of the circuit
+	 * @param double[] values - value of each component by index
+	 * @return double
+	 */
+	public abstract double resistance(double[] values);
+
+	/** Total resistance of the circuit and the current through each component
+	 * @param double[] values - value of each component by index
+	 * @param double[] currents - the current through each component is written here, by index
+	 * @return double total resistance
+	 */
+	public abstract double currents(double[] values, double[] currents);
+
+	/** get the number of components the values and currents are given for
+	 * @return int
+	 */
+	public int getComponentCount() {
+		return componentCount;
+	}
+
+	/** Compile a series/parallel circuit
+	 * @param CompactCircuit circuit
+	 * @return CompiledCircuit
+	 * @throws IllegalArgumentException if the circuit is not series/parallel or is too large to compile
+	 */
+	public static CompiledCircuit compile(CompactCircuit circuit) {
+		/* leaves are found by component index even if the circuit repeats Ids */
+		DecompositionTree tree = SeriesParallelReducer.indexedTree(circuit);
+		if(tree.getRootCount() != 1) {
+			throw new IllegalArgumentException("Only a circuit of series and parallel resistors can be compiled.");
+		}
+		int count = circuit.getComponentCount();
+		int[] resistorOf = new int[tree.size()];
+		Arrays.fill(resistorOf, -1);
+		for(int k = 0; k<count; k++) {
+			int leaf = circuit.getKind(k) == CompactCircuit.RESISTOR ? tree.getLeaf(LongIntHashMap.pack('R', k+1)) : -1;
+			if(leaf>=0) {
+				resistorOf[leaf] = k;
+			}
+		}
+		Generator generator = new Generator(circuit, tree, resistorOf);
+		String name = "circuit.CompiledCircuit$Generated"+GENERATED.incrementAndGet();
+		byte[] bytes = generator.classFile(name.replace('.', '/'));
+		try {
+			CompiledCircuit compiled = (CompiledCircuit)new Loader(CompiledCircuit.class.getClassLoader()).define(name, bytes).getDeclaredConstructor().newInstance();
+			compiled.componentCount = count;
+			return compiled;
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Generated evaluator could not be loaded.", e);
+		}
+	}
+
+	/** get the values of a compact circuit by component index, a starting point for changing some of them
+	 * @param CompactCircuit circuit
+	 * @return double[]
+	 */
+	public static double[] values(CompactCircuit circuit) {
+		double[] values = new double[circuit.getComponentCount()];
+		for(int k = 0; k<values.length; k++) {
+			values[k] = circuit.getValue(k);
+		}
+		return values;
+	}
+
+	/**
+	 * Loads one generated class, each class gets a loader of its own so it can be unloaded once its evaluator is no longer used.
+	 */
+	private static final class Loader extends ClassLoader {
+		/** Constructor
+		 * @param ClassLoader parent - loader of CompiledCircuit
+		 */
+		private Loader(ClassLoader parent) {
+			super(parent);
+		}
+
+		/** define the generated class
+		 * @param String name
+		 * @param byte[] bytes
+		 * @return Class<?>
+		 */
+		private Class<?> define(String name, byte[] bytes) {
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+
+	/**
+	 * Writes the class file of an evaluator. The tree is cut into chunks of at most CHUNK_SIZE tree nodes, because the JIT never compiles a method of more than 8000 bytes of bytecode,
+	 * and each chunk gets three static methods: r finds the resistance of the chunk from the resistances of the chunks right below it, passed as arguments; p parks the resistance of
+	 * the chunk in the current slot of one of its resistors, where the chunk above reads it before the current of that resistor is written; and d reads the current parked for the chunk
+	 * and shares it out, parking the current of each chunk right below it in the same way. resistance() and currents() call these in order, so the calls never nest however deep the tree is.
+	 */
+	private static final class Generator {
+		/* class file constants */
+		private static final int MAGIC = 0xCAFEBABE;
+		private static final int JAVA_8 = 52;
+		private static final int ACC_PUBLIC = 0x0001;
+		private static final int ACC_PRIVATE = 0x0002;
+		private static final int ACC_STATIC = 0x0008;
+		private static final int ACC_FINAL = 0x0010;
+		private static final int ACC_SUPER = 0x0020;
+		private static final int MAX_CODE = 65535;
+		private static final int MAX_LOCALS = 65535;
+		/* deepest operand stack of the arithmetic, resistance() also stacks the arguments of r */
+		private static final int MAX_STACK = 10;
+		/* tree nodes per chunk, about 20 bytes of bytecode each - also below the 127 double arguments a method can take */
+		private static final int CHUNK_SIZE = 120;
+		/* children per tree node, so a node always fits in a chunk */
+		private static final int FAN_OUT = 64;
+		private static final String SUPER = "circuit/CompiledCircuit";
+		private static final String RESISTANCE = "([D)D";
+		private static final String PARK = "([D[D)V";
+		/* opcodes */
+		private static final int ALOAD_0 = 0x2a;
+		private static final int ICONST_0 = 0x03;
+		private static final int BIPUSH = 0x10;
+		private static final int SIPUSH = 0x11;
+		private static final int DCONST_0 = 0x0e;
+		private static final int DCONST_1 = 0x0f;
+		private static final int DLOAD = 0x18;
+		private static final int DSTORE = 0x39;
+		private static final int DALOAD = 0x31;
+		private static final int DASTORE = 0x52;
+		private static final int DADD = 0x63;
+		private static final int DMUL = 0x6b;
+		private static final int DDIV = 0x6f;
+		private static final int DNEG = 0x77;
+		private static final int ISHL = 0x78;
+		private static final int IOR = 0x80;
+		private static final int DRETURN = 0xaf;
+		private static final int RETURN = 0xb1;
+		private static final int INVOKESPECIAL = 0xb7;
+		private static final int INVOKESTATIC = 0xb8;
+		private static final int WIDE = 0xc4;
+
+		private final CompactCircuit circuit;
+		/* copy of the decomposition in which no node has more than FAN_OUT children, longer chains and larger groups are split into parts of their own */
+		private int size;
+		private final int root;
+		private byte[] kind;
+		private int[] firstChild;
+		private int[] nextSibling;
+		private int[] terminal1;
+		private int[] terminal2;
+		/* component index of each leaf */
+		private int[] resistorOf;
+		/* chunk of each chunk root, -1 for every other tree node */
+		private final int[] chunkOf;
+		/* root of each chunk, chunks below before the chunks above them */
+		private final int[] chunks;
+		/* chunk roots right below each chunk, in the order r takes their resistances */
+		private final int[][] below;
+		/* component index whose current slot holds the resistance, then the current, of each chunk until the current of that component is written */
+		private final int[] parked;
+		/* user Id of the circuit node each tree node's current enters at */
+		private final int[] entry;
+		/* sources between the ends of the root, see sourcePath() */
+		private final int[] path;
+		/* components given a current by the generated code */
+		private final boolean[] covered;
+		private final ConstantPool constants;
+		private final int maxStack;
+		private String name;
+		/* state of the method being written */
+		private final int[] resistanceLocal;
+		/* argument of r holding the resistance of each chunk right below */
+		private final int[] argumentLocal;
+		private int nextLocal;
+		private int valuesSlot;
+		private int currentsSlot;
+
+		/** Constructor cuts the tree into chunks and follows the current through it
+		 * @param CompactCircuit compact
+		 * @param DecompositionTree decomposition
+		 * @param int[] leaves - component index of each leaf
+		 */
+		private Generator(CompactCircuit compact, DecompositionTree decomposition, int[] leaves) {
+			circuit = compact;
+			root = decomposition.getRoot();
+			copy(decomposition, leaves);
+			/* pre-order of the tree, reversed it puts every node after its children */
+			int[] order = new int[size];
+			int nodes = 0;
+			ArrayDeque<Integer> stack = new ArrayDeque<>();
+			stack.push(root);
+			while(!stack.isEmpty()) {
+				int t = stack.pop();
+				order[nodes++] = t;
+				for(int c = firstChild[t]; c>=0; c = nextSibling[c]) {
+					stack.push(c);
+				}
+			}
+			int[] position = new int[size];
+			for(int i = 0; i<nodes; i++) {
+				position[order[i]] = i;
+			}
+			/* weigh each node by the tree nodes its chunk would hold, and start a new chunk below any node that grows too heavy */
+			int[] weight = new int[size];
+			int[] subtree = new int[size];
+			chunkOf = new int[size];
+			Arrays.fill(chunkOf, -1);
+			int[] roots = new int[nodes];
+			int chunkCount = 0;
+			for(int i = nodes-1; i>=0; i--) {
+				int t = order[i];
+				weight[t] = 1;
+				subtree[t] = 1;
+				for(int c = firstChild[t]; c>=0; c = nextSibling[c]) {
+					weight[t] += weight[c];
+					subtree[t] += subtree[c];
+				}
+				for(int c = firstChild[t]; c>=0 && weight[t]>CHUNK_SIZE; c = nextSibling[c]) {
+					if(kind[c] != DecompositionTree.LEAF) {
+						chunkOf[c] = chunkCount;
+						roots[chunkCount++] = c;
+						weight[t] -= weight[c]-1;
+						weight[c] = 1;
+					}
+				}
+			}
+			chunkOf[root] = chunkCount;
+			roots[chunkCount++] = root;
+			chunks = Arrays.copyOf(roots, chunkCount);
+			/* each chunk parks its resistance with a resistor of its own subtree that no chunk below it has taken, there are always more resistors than chunks */
+			int[] nextFree = new int[nodes+1];
+			for(int i = 0; i<=nodes; i++) {
+				nextFree[i] = i<nodes && kind[order[i]] != DecompositionTree.LEAF ? i+1 : i;
+			}
+			parked = new int[chunkCount];
+			for(int j = 0; j<chunkCount; j++) {
+				int first = position[chunks[j]];
+				int free = find(nextFree, first);
+				if(free>=first+subtree[chunks[j]]) {
+					throw new IllegalStateException("No resistor left to park the resistance of tree node "+chunks[j]+".");
+				}
+				parked[j] = resistorOf[order[free]];
+				nextFree[free] = free+1;
+			}
+			/* the sources raise the second end of the root above the first, so the current enters the network at the second end */
+			path = sourcePath(terminal1[root], terminal2[root]);
+			entry = new int[size];
+			entry[root] = terminal2[root];
+			covered = new boolean[circuit.getComponentCount()];
+			for(int step:path) {
+				covered[step>>1] = true;
+			}
+			for(int i = 0; i<nodes; i++) {
+				int t = order[i];
+				if(kind[t] == DecompositionTree.LEAF) {
+					covered[resistorOf[t]] = true;
+				}
+				else if(kind[t] == DecompositionTree.PARALLEL) {
+					for(int c = firstChild[t]; c>=0; c = nextSibling[c]) {
+						entry[c] = entry[t];
+					}
+				}
+				else {
+					followChain(t);
+				}
+			}
+			below = new int[chunkCount][];
+			for(int j = 0; j<chunkCount; j++) {
+				int[] region = region(j);
+				int count = 0;
+				for(int t:region) {
+					for(int c = firstChild[t]; c>=0; c = nextSibling[c]) {
+						if(chunkOf[c]>=0) {
+							count++;
+						}
+					}
+				}
+				below[j] = new int[count];
+				count = 0;
+				for(int t:region) {
+					for(int c = firstChild[t]; c>=0; c = nextSibling[c]) {
+						if(chunkOf[c]>=0) {
+							below[j][count++] = c;
+						}
+					}
+				}
+			}
+			int arguments = 0;
+			for(int[] chunksBelow:below) {
+				arguments = Math.max(arguments, chunksBelow.length);
+			}
+			maxStack = Math.max(MAX_STACK, 1+2*arguments);
+			constants = new ConstantPool();
+			resistanceLocal = new int[size];
+			argumentLocal = new int[size];
+		}
+
+		/** copy the decomposition, splitting every chain or group of more than FAN_OUT parts
+		 * @param DecompositionTree tree
+		 * @param int[] leaves - component index of each leaf
+		 */
+		private void copy(DecompositionTree tree, int[] leaves) {
+			int original = tree.size();
+			/* every new part takes the place of at least two, so there are fewer new parts than tree nodes */
+			int capacity = 2*original+1;
+			kind = new byte[capacity];
+			firstChild = new int[capacity];
+			nextSibling = new int[capacity];
+			terminal1 = new int[capacity];
+			terminal2 = new int[capacity];
+			resistorOf = Arrays.copyOf(leaves, capacity);
+			for(int t = 0; t<original; t++) {
+				kind[t] = tree.getKind(t);
+				firstChild[t] = tree.getFirstChild(t);
+				nextSibling[t] = tree.getNextSibling(t);
+				terminal1[t] = tree.getTerminal1(t);
+				terminal2[t] = tree.getTerminal2(t);
+			}
+			size = original;
+			for(int t = 0; t<original; t++) {
+				if(kind[t] != DecompositionTree.LEAF) {
+					split(t);
+				}
+			}
+		}
+
+		/** put the children of a node into new parts of FAN_OUT children, and those into parts again, until the node has at most FAN_OUT children -
+		 * a new part of a chain is a run of the chain, so the parts of a series node are taken in chain order
+		 * @param int t
+		 */
+		private void split(int t) {
+			int count = 0;
+			for(int c = firstChild[t]; c>=0; c = nextSibling[c]) {
+				count++;
+			}
+			if(count<=FAN_OUT) {
+				return;
+			}
+			boolean series = kind[t] == DecompositionTree.SERIES;
+			int[] parts = new int[count];
+			/* circuit node the chain reaches before each part, and at its end */
+			int[] at = new int[count+1];
+			if(series) {
+				chainOrder(t, parts, at);
+			}
+			else {
+				count = 0;
+				for(int c = firstChild[t]; c>=0; c = nextSibling[c]) {
+					parts[count++] = c;
+				}
+			}
+			while(parts.length>FAN_OUT) {
+				int[] grouped = new int[(parts.length+FAN_OUT-1)/FAN_OUT];
+				int[] groupedAt = new int[grouped.length+1];
+				count = 0;
+				for(int from = 0; from<parts.length; from += FAN_OUT) {
+					int to = Math.min(from+FAN_OUT, parts.length);
+					groupedAt[count] = at[from];
+					if(to-from == 1) {
+						grouped[count++] = parts[from];
+						continue;
+					}
+					int v = size++;
+					kind[v] = kind[t];
+					resistorOf[v] = -1;
+					terminal1[v] = series ? at[from] : terminal1[t];
+					terminal2[v] = series ? at[to] : terminal2[t];
+					link(v, parts, from, to);
+					grouped[count++] = v;
+				}
+				groupedAt[count] = at[parts.length];
+				parts = grouped;
+				at = groupedAt;
+			}
+			link(t, parts, 0, parts.length);
+		}
+
+		/** put the parts of a series node in chain order, from its first terminal to its second
+		 * @param int t
+		 * @param int[] parts - filled with the parts
+		 * @param int[] at - filled with the circuit node (user Id) before each part, and the end of the chain
+		 */
+		private void chainOrder(int t, int[] parts, int[] at) {
+			/* the parts at each circuit node of the chain, two at every node but the ends */
+			LongIntHashMap touching = new LongIntHashMap(2*parts.length);
+			for(int c = firstChild[t]; c>=0; c = nextSibling[c]) {
+				for(int end:new int[]{terminal1[c], terminal2[c]}) {
+					touching.put(LongIntHashMap.pack(end, touching.containsKey(LongIntHashMap.pack(end, 0)) ? 1 : 0), c);
+				}
+			}
+			int node = terminal1[t];
+			int previous = -1;
+			for(int i = 0; i<parts.length; i++) {
+				int c = touching.get(LongIntHashMap.pack(node, 0), -1);
+				if(c == previous) {
+					c = touching.get(LongIntHashMap.pack(node, 1), -1);
+				}
+				if(c<0) {
+					throw new IllegalStateException("Series part "+t+" is not a chain from node "+terminal1[t]+".");
+				}
+				parts[i] = c;
+				at[i] = node;
+				node = terminal1[c] == node ? terminal2[c] : terminal1[c];
+				previous = c;
+			}
+			at[parts.length] = node;
+		}
+
+		/** make parts[from..to) the children of a node, in that order
+		 * @param int t
+		 * @param int[] parts
+		 * @param int from
+		 * @param int to
+		 */
+		private void link(int t, int[] parts, int from, int to) {
+			firstChild[t] = parts[from];
+			for(int i = from; i<to; i++) {
+				nextSibling[parts[i]] = i+1<to ? parts[i+1] : -1;
+			}
+		}
+
+		/** find which way round each part of a series chain is, by following the chain from the node its current enters at
+		 * @param int t - SERIES tree node
+		 */
+		private void followChain(int t) {
+			int children = 0;
+			for(int c = firstChild[t]; c>=0; c = nextSibling[c]) {
+				children++;
+			}
+			int[] chain = new int[children];
+			children = 0;
+			for(int c = firstChild[t]; c>=0; c = nextSibling[c]) {
+				chain[children++] = c;
+			}
+			int at = entry[t];
+			for(int done = 0; done<chain.length; done++) {
+				int before = at;
+				for(int i = done; i<chain.length; i++) {
+					int c = chain[i];
+					if(terminal1[c] == at || terminal2[c] == at) {
+						chain[i] = chain[done];
+						chain[done] = c;
+						entry[c] = at;
+						at = terminal1[c] == at ? terminal2[c] : terminal1[c];
+						break;
+					}
+				}
+				if(at == before) {
+					throw new IllegalStateException("Series part "+t+" is not a chain from node "+entry[t]+".");
+				}
+			}
+		}
+
+		/** write the class file
+		 * @param String className - internal name of the class
+		 * @return byte[]
+		 */
+		private byte[] classFile(String className) {
+			name = className;
+			int thisClass = constants.classRef(name);
+			int superClass = constants.classRef(SUPER);
+			int superInit = constants.methodRef(SUPER, "<init>", "()V");
+			Code methods = new Code();
+			int methodCount = 0;
+			/* constructor */
+			Code code = new Code();
+			code.op(ALOAD_0);
+			code.op(INVOKESPECIAL);
+			code.u2(superInit);
+			code.op(RETURN);
+			method(methods, ACC_PUBLIC, "<init>", "()V", code, 1);
+			methodCount++;
+			for(int j = 0; j<chunks.length; j++) {
+				method(methods, ACC_PRIVATE | ACC_STATIC, "r"+j, resistanceType(j), chunkResistance(j), nextLocal);
+				method(methods, ACC_PRIVATE | ACC_STATIC, "p"+j, PARK, chunkPark(j), nextLocal);
+				method(methods, ACC_PRIVATE | ACC_STATIC, "d"+j, PARK, chunkShare(j), nextLocal);
+				methodCount += 3;
+			}
+			method(methods, ACC_PUBLIC | ACC_FINAL, "resistance", RESISTANCE, resistance(), nextLocal);
+			methodCount++;
+			method(methods, ACC_PUBLIC | ACC_FINAL, "currents", "([D[D)D", currents(), nextLocal);
+			methodCount++;
+			Code out = new Code();
+			out.u4(MAGIC);
+			out.u2(0);
+			out.u2(JAVA_8);
+			constants.writeTo(out);
+			out.u2(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+			out.u2(thisClass);
+			out.u2(superClass);
+			/* no interfaces, no fields */
+			out.u2(0);
+			out.u2(0);
+			out.u2(methodCount);
+			out.bytes(methods.toByteArray(), methods.size());
+			/* no class attributes */
+			out.u2(0);
+			return out.toByteArray();
+		}
+
+		/** code of resistance(values) - the resistance of every chunk bottom up, each handed the resistances of the chunks right below it
+		 * @return Code
+		 */
+		private Code resistance() {
+			Code code = new Code();
+			begin(1, -1, 2);
+			int[] chunkLocal = new int[chunks.length];
+			for(int j = 0; j<chunks.length; j++) {
+				aload(code, valuesSlot);
+				for(int c:below[j]) {
+					load(code, chunkLocal[chunkOf[c]]);
+				}
+				call(code, "r"+j, resistanceType(j));
+				chunkLocal[j] = local();
+				store(code, chunkLocal[j]);
+			}
+			load(code, chunkLocal[chunks.length-1]);
+			code.op(DRETURN);
+			return code;
+		}
+
+		/** code of currents(values, currents) - park the resistance of every chunk bottom up, drive the sources' current through the root and share it out top down
+		 * @return Code
+		 */
+		private Code currents() {
+			Code code = new Code();
+			begin(1, 2, 3);
+			for(int j = 0; j<chunks.length; j++) {
+				aload(code, valuesSlot);
+				aload(code, currentsSlot);
+				call(code, "p"+j, PARK);
+			}
+			int top = chunks.length-1;
+			int total = local();
+			parkedResistance(code, top);
+			store(code, total);
+			/* drive = V(second end) - V(first end) along the sources */
+			if(path.length == 0) {
+				code.op(DCONST_0);
+			}
+			for(int i = 0; i<path.length; i++) {
+				element(code, path[i]>>1);
+				if((path[i] & 1) != 0) {
+					code.op(DNEG);
+				}
+				if(i>0) {
+					code.op(DADD);
+				}
+			}
+			load(code, total);
+			code.op(DDIV);
+			int current = local();
+			store(code, current);
+			for(int step:path) {
+				aload(code, currentsSlot);
+				integer(code, step>>1);
+				load(code, current);
+				if((step & 1) != 0) {
+					code.op(DNEG);
+				}
+				code.op(DASTORE);
+			}
+			for(int k = 0; k<covered.length; k++) {
+				if(!covered[k]) {
+					aload(code, currentsSlot);
+					integer(code, k);
+					code.op(DCONST_0);
+					code.op(DASTORE);
+				}
+			}
+			aload(code, currentsSlot);
+			integer(code, parked[top]);
+			load(code, current);
+			code.op(DASTORE);
+			for(int j = chunks.length-1; j>=0; j--) {
+				aload(code, valuesSlot);
+				aload(code, currentsSlot);
+				call(code, "d"+j, PARK);
+			}
+			load(code, total);
+			code.op(DRETURN);
+			return code;
+		}
+
+		/** code of r(values, resistance of each chunk right below) for a chunk
+		 * @param int j
+		 * @return Code
+		 */
+		private Code chunkResistance(int j) {
+			Code code = new Code();
+			begin(0, -1, 1);
+			for(int c:below[j]) {
+				argumentLocal[c] = local();
+			}
+			resistances(code, j);
+			push(code, chunks[j], j);
+			code.op(DRETURN);
+			return code;
+		}
+
+		/** code of p(values, currents) for a chunk, reading the parked resistance of the chunks below it
+		 * @param int j
+		 * @return Code
+		 */
+		private Code chunkPark(int j) {
+			Code code = new Code();
+			begin(0, 1, 2);
+			resistances(code, j);
+			aload(code, currentsSlot);
+			integer(code, parked[j]);
+			push(code, chunks[j], j);
+			code.op(DASTORE);
+			code.op(RETURN);
+			return code;
+		}
+
+		/** code of d(values, currents) for a chunk, the current parked for it enters the chunk root at its entry node
+		 * @param int j
+		 * @return Code
+		 */
+		private Code chunkShare(int j) {
+			Code code = new Code();
+			begin(0, 1, 2);
+			int own = local();
+			parkedResistance(code, j);
+			store(code, own);
+			resistances(code, j);
+			ArrayDeque<int[]> parts = new ArrayDeque<>();
+			parts.push(new int[]{chunks[j], own});
+			while(!parts.isEmpty()) {
+				int[] part = parts.pop();
+				int t = part[0];
+				int current = part[1];
+				if(kind[t] == DecompositionTree.LEAF) {
+					aload(code, currentsSlot);
+					integer(code, resistorOf[t]);
+					load(code, current);
+					sign(code, t);
+					code.op(DASTORE);
+				}
+				else if(t != chunks[j] && chunkOf[t]>=0) {
+					/* park the current of the chunk below, its d runs after this one */
+					aload(code, currentsSlot);
+					integer(code, parked[chunkOf[t]]);
+					load(code, current);
+					code.op(DASTORE);
+				}
+				else if(kind[t] == DecompositionTree.SERIES) {
+					/* every part of the chain carries the chain current */
+					for(int c = firstChild[t]; c>=0; c = nextSibling[c]) {
+						parts.push(new int[]{c, current});
+					}
+				}
+				else {
+					/* the parts of a parallel group share the voltage across it */
+					load(code, current);
+					push(code, t, j);
+					code.op(DMUL);
+					int drop = local();
+					store(code, drop);
+					for(int c = firstChild[t]; c>=0; c = nextSibling[c]) {
+						if(kind[c] == DecompositionTree.LEAF) {
+							aload(code, currentsSlot);
+							integer(code, resistorOf[c]);
+							load(code, drop);
+							element(code, resistorOf[c]);
+							code.op(DDIV);
+							sign(code, c);
+							code.op(DASTORE);
+						}
+						else {
+							load(code, drop);
+							push(code, c, j);
+							code.op(DDIV);
+							int share = local();
+							store(code, share);
+							parts.push(new int[]{c, share});
+						}
+					}
+				}
+			}
+			code.op(RETURN);
+			return code;
+		}
+
+		/** emit the resistance of every internal node of a chunk into a local variable, children first
+		 * @param Code code
+		 * @param int j - chunk
+		 */
+		private void resistances(Code code, int j) {
+			int[] order = region(j);
+			for(int i = order.length-1; i>=0; i--) {
+				int t = order[i];
+				boolean series = kind[t] == DecompositionTree.SERIES;
+				/* series: sum of the children, parallel: 1 / sum of 1 / child */
+				if(!series) {
+					code.op(DCONST_1);
+				}
+				boolean first = true;
+				for(int c = firstChild[t]; c>=0; c = nextSibling[c]) {
+					if(!series) {
+						code.op(DCONST_1);
+					}
+					push(code, c, j);
+					if(!series) {
+						code.op(DDIV);
+					}
+					if(!first) {
+						code.op(DADD);
+					}
+					first = false;
+				}
+				if(!series) {
+					code.op(DDIV);
+				}
+				resistanceLocal[t] = local();
+				store(code, resistanceLocal[t]);
+			}
+		}
+
+		/** internal tree nodes of a chunk in pre-order, down to the chunks below it
+		 * @param int j
+		 * @return int[]
+		 */
+		private int[] region(int j) {
+			int[] order = new int[size];
+			int count = 0;
+			ArrayDeque<Integer> stack = new ArrayDeque<>();
+			stack.push(chunks[j]);
+			while(!stack.isEmpty()) {
+				int t = stack.pop();
+				if(kind[t] == DecompositionTree.LEAF || (t != chunks[j] && chunkOf[t]>=0)) {
+					continue;
+				}
+				order[count++] = t;
+				for(int c = firstChild[t]; c>=0; c = nextSibling[c]) {
+					stack.push(c);
+				}
+			}
+			return Arrays.copyOf(order, count);
+		}
+
+		/** get the descriptor of r for a chunk, the values then one double for each chunk right below
+		 * @param int j
+		 * @return String
+		 */
+		private String resistanceType(int j) {
+			StringBuilder type = new StringBuilder("([D");
+			for(int i = 0; i<below[j].length; i++) {
+				type.append('D');
+			}
+			return type.append(")D").toString();
+		}
+
+		/** push the resistance of a tree node seen from chunk j - a resistor value, a local, or the resistance of a chunk below, passed as an argument or parked
+		 * @param Code code
+		 * @param int t
+		 * @param int j
+		 */
+		private void push(Code code, int t, int j) {
+			if(kind[t] == DecompositionTree.LEAF) {
+				element(code, resistorOf[t]);
+			}
+			else if(t != chunks[j] && chunkOf[t]>=0) {
+				if(currentsSlot<0) {
+					load(code, argumentLocal[t]);
+				}
+				else {
+					parkedResistance(code, chunkOf[t]);
+				}
+			}
+			else {
+				load(code, resistanceLocal[t]);
+			}
+		}
+
+		/** push the value parked for chunk j
+		 * @param Code code
+		 * @param int j
+		 */
+		private void parkedResistance(Code code, int j) {
+			aload(code, currentsSlot);
+			integer(code, parked[j]);
+			code.op(DALOAD);
+		}
+
+		/** negate the current on the stack if it enters a resistor at node 2, currents are positive from node 1 to node 2
+		 * @param Code code
+		 * @param int leaf
+		 */
+		private void sign(Code code, int leaf) {
+			int k = resistorOf[leaf];
+			if(circuit.getNodeId(circuit.getNode1(k)) != entry[leaf]) {
+				code.op(DNEG);
+			}
+		}
+
+		/** find the voltage sources joining two circuit nodes
+		 * @param int fromId - user Id
+		 * @param int toId - user Id
+		 * @return int[] component index * 2 of each source on the way, + 1 if it is crossed from node 2 to node 1, empty if the nodes are not joined by sources
+		 */
+		private int[] sourcePath(int fromId, int toId) {
+			int from = circuit.indexOf(fromId);
+			int to = circuit.indexOf(toId);
+			int nodes = circuit.getNodeCount();
+			int[] reachedBy = new int[nodes];
+			Arrays.fill(reachedBy, -1);
+			int[] queue = new int[nodes];
+			int head = 0, tail = 0;
+			queue[tail++] = from;
+			reachedBy[from] = -2;
+			int[] start = circuit.getAdjStart();
+			int[] edges = circuit.getAdjEdge();
+			while(head<tail && reachedBy[to] == -1) {
+				int node = queue[head++];
+				for(int p = start[node]; p<start[node+1]; p++) {
+					int k = edges[p];
+					if(circuit.getKind(k) != CompactCircuit.VOLTAGE) {
+						continue;
+					}
+					int other = circuit.otherNode(k, node);
+					if(reachedBy[other] == -1) {
+						reachedBy[other] = 2*k+(circuit.getNode1(k) == node ? 0 : 1);
+						queue[tail++] = other;
+					}
+				}
+			}
+			if(reachedBy[to] == -1) {
+				return new int[0];
+			}
+			int length = 0;
+			for(int node = to; node != from; node = circuit.otherNode(reachedBy[node]>>1, node)) {
+				length++;
+			}
+			int[] steps = new int[length];
+			for(int node = to; node != from; node = circuit.otherNode(reachedBy[node]>>1, node)) {
+				steps[--length] = reachedBy[node];
+			}
+			return steps;
+		}
+
+		/** start a method
+		 * @param int values - local of the values array
+		 * @param int currents - local of the currents array, -1 if there is none
+		 * @param int firstLocal - first local after the parameters
+		 */
+		private void begin(int values, int currents, int firstLocal) {
+			valuesSlot = values;
+			currentsSlot = currents;
+			nextLocal = firstLocal;
+		}
+
+		/** push values[k]
+		 * @param Code code
+		 * @param int k
+		 */
+		private void element(Code code, int k) {
+			aload(code, valuesSlot);
+			integer(code, k);
+			code.op(DALOAD);
+		}
+
+		/** call a static method of the generated class
+		 * @param Code code
+		 * @param String method
+		 * @param String type
+		 */
+		private void call(Code code, String method, String type) {
+			code.op(INVOKESTATIC);
+			code.u2(constants.methodRef(name, method, type));
+		}
+
+		/** push an integer constant
+		 * @param Code code
+		 * @param int value
+		 */
+		private void integer(Code code, int value) {
+			if(value<=5) {
+				code.op(ICONST_0+value);
+			}
+			else if(value<=Byte.MAX_VALUE) {
+				code.op(BIPUSH);
+				code.u1(value);
+			}
+			else if(value<=Short.MAX_VALUE) {
+				code.op(SIPUSH);
+				code.u2(value);
+			}
+			else {
+				/* high and low 15 bits, folded back into one constant by the JIT, so large circuits do not fill the constant pool */
+				code.op(SIPUSH);
+				code.u2(value>>>15);
+				code.op(BIPUSH);
+				code.u1(15);
+				code.op(ISHL);
+				code.op(SIPUSH);
+				code.u2(value & Short.MAX_VALUE);
+				code.op(IOR);
+			}
+		}
+
+		/** allocate a double local variable
+		 * @return int
+		 */
+		private int local() {
+			int slot = nextLocal;
+			nextLocal += 2;
+			if(nextLocal>MAX_LOCALS) {
+				throw new IllegalArgumentException("Circuit is too large to compile.");
+			}
+			return slot;
+		}
+
+		/** load an array parameter
+		 * @param Code code
+		 * @param int slot - 0 to 3
+		 */
+		private static void aload(Code code, int slot) {
+			code.op(ALOAD_0+slot);
+		}
+
+		/** load a double local
+		 * @param Code code
+		 * @param int slot
+		 */
+		private static void load(Code code, int slot) {
+			local(code, DLOAD, slot);
+		}
+
+		/** store a double local
+		 * @param Code code
+		 * @param int slot
+		 */
+		private static void store(Code code, int slot) {
+			local(code, DSTORE, slot);
+		}
+
+		/** emit a local variable instruction, widened for slots above 255
+		 * @param Code code
+		 * @param int opcode
+		 * @param int slot
+		 */
+		private static void local(Code code, int opcode, int slot) {
+			if(slot>255) {
+				code.op(WIDE);
+				code.op(opcode);
+				code.u2(slot);
+			}
+			else {
+				code.op(opcode);
+				code.u1(slot);
+			}
+		}
+
+		/** write a method with its Code attribute
+		 * @param Code out
+		 * @param int access
+		 * @param String method
+		 * @param String type
+		 * @param Code code
+		 * @param int maxLocals
+		 */
+		private void method(Code out, int access, String method, String type, Code code, int maxLocals) {
+			if(code.size()>MAX_CODE) {
+				throw new IllegalArgumentException("Circuit is too large to compile.");
+			}
+			out.u2(access);
+			out.u2(constants.utf8(method));
+			out.u2(constants.utf8(type));
+			out.u2(1);
+			out.u2(constants.utf8("Code"));
+			/* max stack, max locals, code length, code, no exception table, no attributes */
+			out.u4(12+code.size());
+			out.u2(maxStack);
+			out.u2(maxLocals);
+			out.u4(code.size());
+			out.bytes(code.toByteArray(), code.size());
+			out.u2(0);
+			out.u2(0);
+		}
+
+		/** find the first free position at or after i, halving the path on the way
+		 * @param int[] next
+		 * @param int i
+		 * @return int
+		 */
+		private static int find(int[] next, int i) {
+			while(next[i] != i) {
+				next[i] = next[next[i]];
+				i = next[i];
+			}
+			return i;
+		}
+	}
+
+	/**
+	 * Constant pool of a generated class, every entry is added once and numbered in the order it was added.
+	 */
+	private static final class ConstantPool {
+		private final Code entries = new Code();
+		private final HashMap<String, Integer> indices = new HashMap<>();
+		private int count = 0;
+
+		/** get a UTF8 entry, names here are plain ASCII
+		 * @param String text
+		 * @return int index
+		 */
+		private int utf8(String text) {
+			Integer index = indices.get("U"+text);
+			if(index != null) {
+				return index;
+			}
+			entries.u1(1);
+			entries.u2(text.length());
+			for(int i = 0; i<text.length(); i++) {
+				entries.u1(text.charAt(i));
+			}
+			return add("U"+text);
+		}
+
+		/** get a class entry
+		 * @param String name - internal name
+		 * @return int index
+		 */
+		private int classRef(String name) {
+			Integer index = indices.get("C"+name);
+			if(index != null) {
+				return index;
+			}
+			int text = utf8(name);
+			entries.u1(7);
+			entries.u2(text);
+			return add("C"+name);
+		}
+
+		/** get a method entry
+		 * @param String owner - internal name of the class
+		 * @param String name
+		 * @param String type - descriptor
+		 * @return int index
+		 */
+		private int methodRef(String owner, String name, String type) {
+			String key = "M"+owner+"."+name+type;
+			Integer index = indices.get(key);
+			if(index != null) {
+				return index;
+			}
+			int ownerClass = classRef(owner);
+			int nameIndex = utf8(name);
+			int typeIndex = utf8(type);
+			entries.u1(12);
+			entries.u2(nameIndex);
+			entries.u2(typeIndex);
+			int nameAndType = add("N"+name+type);
+			entries.u1(10);
+			entries.u2(ownerClass);
+			entries.u2(nameAndType);
+			return add(key);
+		}
+
+		/** number the entry just written
+		 * @param String key
+		 * @return int index
+		 */
+		private int add(String key) {
+			indices.put(key, ++count);
+			return count;
+		}
+
+		/** write the count and the entries
+		 * @param Code out
+		 */
+		private void writeTo(Code out) {
+			if(count>=65535) {
+				throw new IllegalArgumentException("Circuit is too large to compile.");
+			}
+			out.u2(count+1);
+			out.bytes(entries.toByteArray(), entries.size());
+		}
+	}
+
+	/**
+	 * Big-endian byte buffer for class file parts.
+	 */
+	private static final class Code extends ByteArrayOutputStream {
+		/** write an opcode
+		 * @param int opcode
+		 */
+		private void op(int opcode) {
+			write(opcode);
+		}
+
+		/** write one byte
+		 * @param int value
+		 */
+		private void u1(int value) {
+			write(value);
+		}
+
+		/** write two bytes
+		 * @param int value
+		 */
+		private void u2(int value) {
+			write(value>>>8);
+			write(value);
+		}
+
+		/** write four bytes
+		 * @param int value
+		 */
+		private void u4(int value) {
+			u2(value>>>16);
+			u2(value);
+		}
+
+		/** write part of an array
+		 * @param byte[] data
+		 * @param int length
+		 */
+		private void bytes(byte[] data, int length) {
+			write(data, 0, length);
+		}
+	}
+}
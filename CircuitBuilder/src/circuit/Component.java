@@ -83,6 +83,14 @@ public abstract class Component implements Comparable<Component>{
     }
    
     
+    /** key identifying this component by its type letter (R or V) and Id, used to index components without a search
+     * 
+     * @return long
+     */
+    protected long key() {
+    	return LongIntHashMap.pack(myClass().charAt(0), id);
+    }
+    
     /** functionality will be added later, sets current through this component
      * @param double iC
      * */
@@ -122,7 +130,7 @@ public abstract class Component implements Comparable<Component>{
         return retList;
     }
     
-    /** Override equals method, returns true if Ids are the same otherwise false
+    /** Override equals method, returns true if Ids are the same otherwise false - a component that has not been given an Id by a circuit yet is only equal to itself
      * @param Component other
      * @return boolean
      * */
@@ -130,11 +138,22 @@ public abstract class Component implements Comparable<Component>{
     public boolean equals(Object other) {
     	if (other instanceof Component) {
     		Component testEqual = (Component) other;
+    		if (getId() == 0) {
+    			return this == testEqual;
+    		}
         	return getClass() == testEqual.getClass() && getId() == testEqual.getId();
     	}
     	return false;
     }
     
+    /** Override hashCode to match equals
+     * @return int
+     * */
+    @Override
+    public int hashCode() {
+    	return getId() == 0 ? System.identityHashCode(this) : Long.hashCode(key());
+    }
+    
     /** define compare method for sorting
     * if the first node Id is smaller than the other first node, method returns a negative number and vice versa
     * if the first node Id is the same, and the second node is smaller than the other second node, method returns a negative number and vice versa
@@ -0,0 +1,449 @@
+package circuit;
+import java.util.Arrays;
+
+/**
+ * Series-parallel decomposition of the resistors in a circuit, recorded by SeriesParallelReducer as it reduces the circuit.
+ *
+ * Every resistor is a leaf, every series chain that was collapsed is a SERIES node over the parts of the chain and every group of parallel parts is a PARALLEL node.
+ * Each node stores the user Ids of the two circuit nodes it connects, and an aggregate of its children - the sum of resistances for SERIES, the sum of conductances for PARALLEL -
+ * so a change to one child updates its parent in O(1) and a change to one resistor only needs the path from its leaf to the root to be recomputed, O(depth) instead of O(N).
+ *
+ * The tree is kept by Circuit across edits: removing a resistor from a parallel group and adding a resistor across the two ends of an existing part are applied in place,
+ * any other change makes the caller rebuild the tree. A circuit reduced to a single root is series/parallel and the root value is its total resistance.
+ *
+ * @author Michael Sinclair.
+ * @version 2.518
+ * @since 18 October 2026.
+ */
+
+public class DecompositionTree {
+	/* node kinds */
+	public static final byte LEAF = 0;
+	public static final byte SERIES = 1;
+	public static final byte PARALLEL = 2;
+
+	/* instance variables */
+	private int size;
+	private byte[] kind;
+	/* resistance of each node */
+	private double[] value;
+	/* sum of child resistances for SERIES, sum of child conductances for PARALLEL */
+	private double[] aggregate;
+	/* user node Ids at the two ends */
+	private int[] terminal1;
+	private int[] terminal2;
+	/* tree links, children kept in a doubly linked sibling list */
+	private int[] parent;
+	private int[] firstChild;
+	private int[] nextSibling;
+	private int[] prevSibling;
+	/* leaf of each resistor keyed by Component.key(), and the topmost node between each pair of circuit nodes */
+	private LongIntHashMap leafOf;
+	private LongIntHashMap partBetween;
+	private int rootCount;
+	private int root;
+
+	/** Constructor for an empty tree
+	 * @param int expected - expected number of tree nodes
+	 */
+	public DecompositionTree(int expected) {
+		int capacity = Math.max(expected, 16);
+		kind = new byte[capacity];
+		value = new double[capacity];
+		aggregate = new double[capacity];
+		terminal1 = new int[capacity];
+		terminal2 = new int[capacity];
+		parent = new int[capacity];
+		firstChild = new int[capacity];
+		nextSibling = new int[capacity];
+		prevSibling = new int[capacity];
+		leafOf = new LongIntHashMap(capacity/2);
+		partBetween = new LongIntHashMap(capacity/2);
+		size = 0;
+		rootCount = 0;
+		root = -1;
+	}
+
+	/** Copy constructor, used by Circuit to change its tree in place while analyses are still reading the original
+	 * @param DecompositionTree other
+	 */
+	public DecompositionTree(DecompositionTree other) {
+		size = other.size;
+		kind = Arrays.copyOf(other.kind, Math.max(size, 16));
+		value = Arrays.copyOf(other.value, kind.length);
+		aggregate = Arrays.copyOf(other.aggregate, kind.length);
+		terminal1 = Arrays.copyOf(other.terminal1, kind.length);
+		terminal2 = Arrays.copyOf(other.terminal2, kind.length);
+		parent = Arrays.copyOf(other.parent, kind.length);
+		firstChild = Arrays.copyOf(other.firstChild, kind.length);
+		nextSibling = Arrays.copyOf(other.nextSibling, kind.length);
+		prevSibling = Arrays.copyOf(other.prevSibling, kind.length);
+		leafOf = new LongIntHashMap(other.leafOf);
+		partBetween = new LongIntHashMap(other.partBetween);
+		rootCount = other.rootCount;
+		root = other.root;
+	}
+
+	/* methods used while the reducer builds the tree */
+
+	/** add a leaf for a resistor
+	 * @param long key - Component.key() of the resistor
+	 * @param int id1 - user Id of node 1
+	 * @param int id2 - user Id of node 2
+	 * @param double r
+	 * @return int tree node
+	 */
+	protected int addLeaf(long key, int id1, int id2, double r) {
+		int t = newNode(LEAF, id1, id2);
+		value[t] = r;
+		aggregate[t] = r;
+		leafOf.put(key, t);
+		return t;
+	}
+
+	/** add an internal node, children are added with addChild() and the value is then set with finish()
+	 * @param byte type - SERIES or PARALLEL
+	 * @param int id1
+	 * @param int id2
+	 * @return int tree node
+	 */
+	protected int addInternal(byte type, int id1, int id2) {
+		return newNode(type, id1, id2);
+	}
+
+	/** attach a child to an internal node
+	 * @param int t
+	 * @param int child
+	 */
+	protected void addChild(int t, int child) {
+		parent[child] = t;
+		prevSibling[child] = -1;
+		nextSibling[child] = firstChild[t];
+		if(firstChild[t]>=0) {
+			prevSibling[firstChild[t]] = child;
+		}
+		firstChild[t] = child;
+		aggregate[t] += kind[t] == SERIES ? value[child] : 1/value[child];
+	}
+
+	/** compute the value of an internal node once all its children are attached
+	 * @param int t
+	 */
+	protected void finish(int t) {
+		value[t] = kind[t] == SERIES ? aggregate[t] : 1/aggregate[t];
+	}
+
+	/** record the parts left at the end of the reduction, which have no parent
+	 * @param int[] parts
+	 * @param int count
+	 */
+	protected void setRoots(int[] parts, int count) {
+		rootCount = count;
+		root = count == 1 ? parts[0] : -1;
+	}
+
+	/* incremental updates */
+
+	/** change the resistance of a resistor and recompute the path to the root
+	 * @param long key
+	 * @param double r
+	 * @return boolean false if the resistor is not in the tree
+	 */
+	public boolean updateResistor(long key, double r) {
+		int leaf = leafOf.get(key, -1);
+		if(leaf<0) {
+			return false;
+		}
+		double old = value[leaf];
+		value[leaf] = r;
+		aggregate[leaf] = r;
+		propagate(leaf, old);
+		return true;
+	}
+
+	/** add a resistor in place if its two nodes are the ends of an existing part, which puts it in parallel with that part
+	 * @param long key
+	 * @param int id1
+	 * @param int id2
+	 * @param double r
+	 * @return boolean false if the tree has to be rebuilt
+	 */
+	public boolean addResistor(long key, int id1, int id2, double r) {
+		int part = partBetween.get(pairKey(id1, id2), -1);
+		/* a part left over at the end of the reduction might close a ring or a dangling branch, only the single root is known to be the whole circuit */
+		if(part<0 || leafOf.containsKey(key) || parent[part]<0 && part != root) {
+			return false;
+		}
+		ensureCapacity(size+2);
+		int leaf = addLeaf(key, id1, id2, r);
+		if(kind[part] == PARALLEL) {
+			/* join the existing parallel group */
+			double old = value[part];
+			addChild(part, leaf);
+			finish(part);
+			propagate(part, old);
+			return true;
+		}
+		/* put a new parallel node in the place of the part */
+		int above = parent[part];
+		double old = value[part];
+		int group = addInternal(PARALLEL, terminal1[part], terminal2[part]);
+		replaceChild(above, part, group);
+		addChild(group, part);
+		addChild(group, leaf);
+		finish(group);
+		partBetween.put(pairKey(id1, id2), group);
+		if(above<0) {
+			root = root == part ? group : root;
+			return true;
+		}
+		propagate(group, old);
+		return true;
+	}
+
+	/** remove a resistor in place if it is one of several parts in parallel
+	 * @param long key
+	 * @return boolean false if the tree has to be rebuilt
+	 */
+	public boolean removeResistor(long key) {
+		int leaf = leafOf.get(key, -1);
+		if(leaf<0) {
+			return false;
+		}
+		int above = parent[leaf];
+		/* removing a serial part or a whole root changes the structure of the circuit */
+		if(above<0 || kind[above] != PARALLEL || firstChild[above] == leaf && nextSibling[leaf]<0) {
+			return false;
+		}
+		leafOf.remove(key);
+		double old = value[above];
+		unlinkChild(above, leaf);
+		aggregate[above] -= 1/value[leaf];
+		finish(above);
+		propagate(above, old);
+		return true;
+	}
+
+	/** push the change of a node's value up to the root, updating each parent's aggregate by the difference only
+	 * @param int t - node whose value has changed
+	 * @param double old - its previous value
+	 */
+	private void propagate(int t, double old) {
+		int above = parent[t];
+		while(above>=0) {
+			double parentOld = value[above];
+			if(kind[above] == SERIES) {
+				aggregate[above] += value[t]-old;
+			}
+			else {
+				aggregate[above] += 1/value[t]-1/old;
+			}
+			finish(above);
+			t = above;
+			old = parentOld;
+			above = parent[t];
+		}
+	}
+
+	/* queries */
+
+	/** get the number of parts left after reduction, 1 for a series/parallel circuit
+	 * @return int
+	 */
+	public int getRootCount() {
+		return rootCount;
+	}
+
+	/** get the root of a series/parallel circuit
+	 * @return int tree node, or -1 if the circuit did not reduce to a single part
+	 */
+	public int getRoot() {
+		return root;
+	}
+
+	/** get the total resistance of a series/parallel circuit
+	 * @return double
+	 */
+	public double getTotalResistance() {
+		return root<0 ? Double.NaN : value[root];
+	}
+
+	/** get the number of nodes in the tree
+	 * @return int
+	 */
+	public int size() {
+		return size;
+	}
+
+	/** get the kind of a tree node
+	 * @param int t
+	 * @return byte
+	 */
+	public byte getKind(int t) {
+		return kind[t];
+	}
+
+	/** get the resistance of a tree node
+	 * @param int t
+	 * @return double
+	 */
+	public double getValue(int t) {
+		return value[t];
+	}
+
+	/** get the user Id of the circuit node at the first end of a tree node, node 1 of the resistor for a leaf
+	 * @param int t
+	 * @return int
+	 */
+	public int getTerminal1(int t) {
+		return terminal1[t];
+	}
+
+	/** get the user Id of the circuit node at the second end of a tree node
+	 * @param int t
+	 * @return int
+	 */
+	public int getTerminal2(int t) {
+		return terminal2[t];
+	}
+
+	/** get the first child of a tree node
+	 * @param int t
+	 * @return int child, or -1
+	 */
+	public int getFirstChild(int t) {
+		return firstChild[t];
+	}
+
+	/** get the next sibling of a tree node
+	 * @param int t
+	 * @return int sibling, or -1
+	 */
+	public int getNextSibling(int t) {
+		return nextSibling[t];
+	}
+
+	/** get the parent of a tree node
+	 * @param int t
+	 * @return int parent, or -1 for a root
+	 */
+	public int getParent(int t) {
+		return parent[t];
+	}
+
+	/** get the leaf of a resistor
+	 * @param long key - Component.key() of the resistor
+	 * @return int tree node, or -1
+	 */
+	public int getLeaf(long key) {
+		return leafOf.get(key, -1);
+	}
+
+	/** get the depth of a tree node, the root has depth 0
+	 * @param int t
+	 * @return int
+	 */
+	public int depth(int t) {
+		int d = 0;
+		while(parent[t]>=0) {
+			t = parent[t];
+			d++;
+		}
+		return d;
+	}
+
+	/* storage */
+
+	/** allocate a tree node
+	 * @param byte type
+	 * @param int id1
+	 * @param int id2
+	 * @return int
+	 */
+	private int newNode(byte type, int id1, int id2) {
+		ensureCapacity(size+1);
+		int t = size++;
+		kind[t] = type;
+		value[t] = 0.0;
+		aggregate[t] = 0.0;
+		terminal1[t] = id1;
+		terminal2[t] = id2;
+		parent[t] = -1;
+		firstChild[t] = -1;
+		nextSibling[t] = -1;
+		prevSibling[t] = -1;
+		/* the newest part between two nodes is the topmost one */
+		if(type != LEAF || !partBetween.containsKey(pairKey(id1, id2))) {
+			partBetween.put(pairKey(id1, id2), t);
+		}
+		return t;
+	}
+
+	/** take a child out of its parent's sibling list
+	 * @param int t
+	 * @param int child
+	 */
+	private void unlinkChild(int t, int child) {
+		if(prevSibling[child]>=0) {
+			nextSibling[prevSibling[child]] = nextSibling[child];
+		}
+		else {
+			firstChild[t] = nextSibling[child];
+		}
+		if(nextSibling[child]>=0) {
+			prevSibling[nextSibling[child]] = prevSibling[child];
+		}
+		parent[child] = -1;
+	}
+
+	/** put a new node in the place of a child within its parent's sibling list, the aggregate is left as it is
+	 * @param int t - parent, or -1 for a root
+	 * @param int child
+	 * @param int replacement
+	 */
+	private void replaceChild(int t, int child, int replacement) {
+		parent[replacement] = t;
+		prevSibling[replacement] = prevSibling[child];
+		nextSibling[replacement] = nextSibling[child];
+		if(t>=0) {
+			if(prevSibling[child]>=0) {
+				nextSibling[prevSibling[child]] = replacement;
+			}
+			else {
+				firstChild[t] = replacement;
+			}
+			if(nextSibling[child]>=0) {
+				prevSibling[nextSibling[child]] = replacement;
+			}
+		}
+		parent[child] = -1;
+	}
+
+	/** grow the arrays
+	 * @param int needed
+	 */
+	private void ensureCapacity(int needed) {
+		if(needed<=kind.length) {
+			return;
+		}
+		int capacity = Math.max(needed, 2*kind.length);
+		kind = Arrays.copyOf(kind, capacity);
+		value = Arrays.copyOf(value, capacity);
+		aggregate = Arrays.copyOf(aggregate, capacity);
+		terminal1 = Arrays.copyOf(terminal1, capacity);
+		terminal2 = Arrays.copyOf(terminal2, capacity);
+		parent = Arrays.copyOf(parent, capacity);
+		firstChild = Arrays.copyOf(firstChild, capacity);
+		nextSibling = Arrays.copyOf(nextSibling, capacity);
+		prevSibling = Arrays.copyOf(prevSibling, capacity);
+	}
+
+	/** key for a pair of node Ids that does not depend on their order
+	 * @param int a
+	 * @param int b
+	 * @return long
+	 */
+	private static long pairKey(int a, int b) {
+		return a<b ? LongIntHashMap.pack(a, b) : LongIntHashMap.pack(b, a);
+	}
+}
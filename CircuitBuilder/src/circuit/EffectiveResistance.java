@@ -0,0 +1,194 @@
+package circuit;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Resistance between any two nodes of a circuit, answered from one factorization.
+ *
+ * The resistance between nodes a and b is the voltage across them when 1A is driven in at a and out at b, with every voltage source replaced by a short as for a Thevenin resistance.
+ * Nodes joined by voltage sources are merged, one node of each connected part of the circuit is taken as its reference, and the conductance matrix of the remaining nodes -
+ * symmetric positive definite - is factored once with SparseLU in the minimum degree order of FillOrdering. Each query is then one forward and one back substitution: solve G x = e_a - e_b and
+ * read x_a - x_b.
+ *
+ * Nothing is changed after construction and solve() works on its own arrays, so any number of threads can query at once. Circuit caches one EffectiveResistance per published version,
+ * so every query on an unchanged circuit shares the same factorization.
+ *
+ * @author Michael Sinclair.
+ * @version 2.514
+ * @since 18 October 2026.
+ */
+
+public class EffectiveResistance {
+	/* pivot tolerance handed to the LU factorization, as in NodalAnalysis */
+	private static final double PIVOT_TOLERANCE = 0.1;
+
+	/* instance variables */
+	private final CompactCircuit circuit;
+	/* matrix row of each dense node, -1 for the reference node of its part */
+	private final int[] row;
+	/* connected part of each dense node, nodes in different parts have no path between them */
+	private final int[] part;
+	/* factorization of the reduced conductance matrix, null if every node is a reference */
+	private final SparseLU lu;
+
+	/** Constructor merges the nodes shorted by voltage sources and factors the conductance matrix
+	 * @param CompactCircuit compact
+	 */
+	public EffectiveResistance(CompactCircuit compact) {
+		circuit = compact;
+		int nodes = circuit.getNodeCount();
+		int count = circuit.getComponentCount();
+		/* first merge across voltage sources, then find the connected parts through the resistors */
+		int[] merged = new int[nodes];
+		for(int i = 0; i<nodes; i++) {
+			merged[i] = i;
+		}
+		for(int k = 0; k<count; k++) {
+			if(circuit.getKind(k) == CompactCircuit.VOLTAGE) {
+				union(merged, circuit.getNode1(k), circuit.getNode2(k));
+			}
+		}
+		int[] connected = new int[nodes];
+		for(int i = 0; i<nodes; i++) {
+			connected[i] = find(merged, i);
+		}
+		for(int k = 0; k<count; k++) {
+			if(circuit.getKind(k) == CompactCircuit.RESISTOR) {
+				union(connected, circuit.getNode1(k), circuit.getNode2(k));
+			}
+		}
+		part = new int[nodes];
+		/* the first merged node reached in each part is its reference, every other merged node gets a row */
+		int[] groupRow = new int[nodes];
+		boolean[] referenced = new boolean[nodes];
+		int rows = 0;
+		for(int i = 0; i<nodes; i++) {
+			part[i] = find(connected, i);
+			int group = find(merged, i);
+			if(group != i) {
+				continue;
+			}
+			if(!referenced[part[i]]) {
+				referenced[part[i]] = true;
+				groupRow[i] = -1;
+			}
+			else {
+				groupRow[i] = rows++;
+			}
+		}
+		row = new int[nodes];
+		for(int i = 0; i<nodes; i++) {
+			row[i] = groupRow[find(merged, i)];
+		}
+		if(rows == 0) {
+			lu = null;
+			return;
+		}
+		int[] rowIndex = new int[4*count];
+		int[] colIndex = new int[4*count];
+		double[] values = new double[4*count];
+		int entries = 0;
+		for(int k = 0; k<count; k++) {
+			if(circuit.getKind(k) != CompactCircuit.RESISTOR) {
+				continue;
+			}
+			int a = row[circuit.getNode1(k)];
+			int b = row[circuit.getNode2(k)];
+			if(a == b) {
+				/* both ends merged, the resistor carries no current */
+				continue;
+			}
+			double g = 1.0/circuit.getValue(k);
+			if(a>=0) {
+				rowIndex[entries] = a; colIndex[entries] = a; values[entries++] = g;
+			}
+			if(b>=0) {
+				rowIndex[entries] = b; colIndex[entries] = b; values[entries++] = g;
+			}
+			if(a>=0 && b>=0) {
+				rowIndex[entries] = a; colIndex[entries] = b; values[entries++] = -g;
+				rowIndex[entries] = b; colIndex[entries] = a; values[entries++] = -g;
+			}
+		}
+		SparseMatrix matrix = SparseMatrix.fromTriplets(rows, rowIndex, colIndex, values, entries);
+		lu = new SparseLU(matrix, FillOrdering.minimumDegree(matrix), PIVOT_TOLERANCE);
+	}
+
+	/* methods */
+
+	/** Resistance between two nodes
+	 * @param int nodeId1
+	 * @param int nodeId2
+	 * @return double - 0 for nodes shorted together, infinite for nodes with no path between them
+	 * @throws IllegalArgumentException if a node is not in the circuit
+	 */
+	public double resistance(int nodeId1, int nodeId2) {
+		int a = circuit.indexOf(nodeId1);
+		int b = circuit.indexOf(nodeId2);
+		if(a<0 || b<0) {
+			throw new IllegalArgumentException("Node "+(a<0 ? nodeId1 : nodeId2)+" is not connected to any component.");
+		}
+		if(part[a] != part[b]) {
+			return Double.POSITIVE_INFINITY;
+		}
+		if(row[a] == row[b]) {
+			return 0.0;
+		}
+		/* drive 1A in at a and out at b, the reference node of the part takes no row */
+		double[] rhs = new double[lu.size()];
+		if(row[a]>=0) {
+			rhs[row[a]] = 1.0;
+		}
+		if(row[b]>=0) {
+			rhs[row[b]] = -1.0;
+		}
+		double[] x = lu.solve(rhs);
+		return (row[a]<0 ? 0.0 : x[row[a]])-(row[b]<0 ? 0.0 : x[row[b]]);
+	}
+
+	/** Resistances between many pairs of nodes, answered concurrently
+	 * @param int[] first - node Ids
+	 * @param int[] second - node Ids, same length as first
+	 * @param ForkJoinPool pool - threads to answer on, or null for the common pool
+	 * @return double[] resistance between first[i] and second[i]
+	 */
+	public double[] resistances(int[] first, int[] second, ForkJoinPool pool) {
+		if(first.length != second.length) {
+			throw new IllegalArgumentException("Node pairs must have two nodes each.");
+		}
+		double[] result = new double[first.length];
+		Runnable queries = () -> IntStream.range(0, first.length).parallel().forEach(i -> result[i] = resistance(first[i], second[i]));
+		/* parallel streams run on the pool that invokes them */
+		(pool == null ? ForkJoinPool.commonPool() : pool).submit(queries).join();
+		return result;
+	}
+
+	/** find the representative of a node in a union-find forest, halving the path on the way
+	 * @param int[] parent
+	 * @param int i
+	 * @return int
+	 */
+	private static int find(int[] parent, int i) {
+		while(parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	/** join the sets of two nodes, the smaller representative is kept
+	 * @param int[] parent
+	 * @param int a
+	 * @param int b
+	 */
+	private static void union(int[] parent, int a, int b) {
+		int ra = find(parent, a);
+		int rb = find(parent, b);
+		if(ra<rb) {
+			parent[rb] = ra;
+		}
+		else if(rb<ra) {
+			parent[ra] = rb;
+		}
+	}
+}
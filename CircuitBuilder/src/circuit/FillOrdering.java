@@ -0,0 +1,324 @@
+package circuit;
+import java.util.Arrays;
+
+/**
+ * Fill-reducing column ordering for SparseLU.
+ *
+ * The order is a minimum degree ordering of the symmetric pattern of A + A^T - at each step the unknown connected to the fewest other unknowns is eliminated next, which keeps the fill-in
+ * of the factors small. On a grid this makes the factors grow like N log N rather than N^1.5 for the natural row by row numbering.
+ *
+ * Elimination is tracked on the quotient graph instead of the filled graph, so it runs in the memory of the original pattern: an eliminated unknown becomes an element standing for the clique
+ * of its neighbours, elements adjacent to it are absorbed into it, and the degree of an unknown is the number of distinct unknowns reachable through its own neighbours and its elements - or rather an upper bound of it, see below.
+ * Unknowns are kept in linked lists by degree, so finding the next pivot and moving an unknown whose degree changed are O(1). Rows that are much denser than the rest, such as a bus that reaches most of the circuit,
+ * are left to the end, and degrees are the approximate external degrees of approximate minimum degree (AMD) orderings rather than exact counts.
+ *
+ * @author Michael Sinclair.
+ * @version 2.511
+ * @since 18 October 2026.
+ */
+
+public class FillOrdering {
+	/* status of each unknown */
+	private static final byte VARIABLE = 0;
+	private static final byte ELEMENT = 1;
+	private static final byte ABSORBED = 2;
+	private static final byte DENSE = 3;
+
+	/* instance variables */
+	private final int n;
+	/* unknowns adjacent to each unknown, and elements adjacent to each unknown */
+	private int[][] variables;
+	private int[] variableCount;
+	private int[][] elements;
+	private int[] elementCount;
+	/* unknowns of each element */
+	private int[][] members;
+	private int[] memberCount;
+	private byte[] status;
+	private int[] degree;
+	/* mark[i] == stamp while i is in the set being built */
+	private int[] mark;
+	private int stamp;
+	/* unknowns of an element that are outside the element being formed */
+	private int[] outside;
+	/* unknowns of each degree as doubly linked lists */
+	private int[] bucketHead;
+	private int[] bucketNext;
+	private int[] bucketPrev;
+
+	/** Constructor builds the graph of a matrix, call order() to find the ordering
+	 * @param SparseMatrix a
+	 */
+	public FillOrdering(SparseMatrix a) {
+		n = a.size();
+		int[] ap = a.getColStart();
+		int[] ai = a.getRowIndex();
+		/* count the pattern of A + A^T without the diagonal, entries may be counted twice */
+		int[] count = new int[n];
+		for(int j = 0; j<n; j++) {
+			for(int p = ap[j]; p<ap[j+1]; p++) {
+				if(ai[p] != j) {
+					count[j]++;
+					count[ai[p]]++;
+				}
+			}
+		}
+		variables = new int[n][];
+		variableCount = new int[n];
+		elements = new int[n][];
+		elementCount = new int[n];
+		members = new int[n][];
+		memberCount = new int[n];
+		status = new byte[n];
+		degree = new int[n];
+		mark = new int[n];
+		stamp = 0;
+		outside = new int[n];
+		bucketHead = new int[n+1];
+		Arrays.fill(bucketHead, -1);
+		bucketNext = new int[n];
+		bucketPrev = new int[n];
+		for(int i = 0; i<n; i++) {
+			variables[i] = new int[count[i]];
+			elements[i] = new int[4];
+		}
+		for(int j = 0; j<n; j++) {
+			for(int p = ap[j]; p<ap[j+1]; p++) {
+				int i = ai[p];
+				if(i != j) {
+					variables[j][variableCount[j]++] = i;
+					variables[i][variableCount[i]++] = j;
+				}
+			}
+		}
+		/* remove the duplicates of symmetric entries */
+		for(int i = 0; i<n; i++) {
+			nextStamp();
+			int kept = 0;
+			for(int q = 0; q<variableCount[i]; q++) {
+				int v = variables[i][q];
+				if(mark[v] != stamp) {
+					mark[v] = stamp;
+					variables[i][kept++] = v;
+				}
+			}
+			variableCount[i] = kept;
+			degree[i] = kept;
+		}
+	}
+
+	/* methods */
+
+	/** Find a fill-reducing column order for a matrix
+	 * @param SparseMatrix a
+	 * @return int[] order[k] is the column to eliminate at step k
+	 */
+	public static int[] minimumDegree(SparseMatrix a) {
+		return new FillOrdering(a).order();
+	}
+
+	/** Run the minimum degree elimination
+	 * @return int[] order[k] is the column to eliminate at step k
+	 */
+	public int[] order() {
+		int[] order = new int[n];
+		int k = 0;
+		/* rows denser than this are ordered last */
+		int dense = Math.max(16, (int)(10*Math.sqrt(n)));
+		int remaining = 0;
+		for(int i = 0; i<n; i++) {
+			if(degree[i]>dense) {
+				status[i] = DENSE;
+			}
+			else {
+				remaining++;
+			}
+		}
+		for(int i = n-1; i>=0; i--) {
+			if(status[i] == VARIABLE) {
+				insert(i);
+			}
+		}
+		int minimum = 0;
+		while(remaining>0) {
+			while(bucketHead[minimum]<0) {
+				minimum++;
+			}
+			int pivot = bucketHead[minimum];
+			remove(pivot);
+			order[k++] = pivot;
+			remaining--;
+			int[] front = eliminate(pivot);
+			int count = memberCount[pivot];
+			for(int q = 0; q<count; q++) {
+				remove(front[q]);
+			}
+			updateDegrees(pivot, front, count, remaining);
+			for(int q = 0; q<count; q++) {
+				insert(front[q]);
+				minimum = Math.min(minimum, degree[front[q]]);
+			}
+		}
+		for(int i = 0; i<n; i++) {
+			if(status[i] == DENSE) {
+				order[k++] = i;
+			}
+		}
+		return order;
+	}
+
+	/** Turn an unknown into an element made of its neighbours, absorbing the elements next to it
+	 * @param int pivot
+	 * @return int[] unknowns of the new element, memberCount[pivot] long
+	 */
+	private int[] eliminate(int pivot) {
+		nextStamp();
+		mark[pivot] = stamp;
+		int[] front = new int[Math.max(4, variableCount[pivot])];
+		int count = 0;
+		for(int q = 0; q<variableCount[pivot]; q++) {
+			int v = variables[pivot][q];
+			if(status[v] == VARIABLE && mark[v] != stamp) {
+				mark[v] = stamp;
+				if(count == front.length) {
+					front = Arrays.copyOf(front, 2*count);
+				}
+				front[count++] = v;
+			}
+		}
+		for(int q = 0; q<elementCount[pivot]; q++) {
+			int e = elements[pivot][q];
+			if(status[e] != ELEMENT) {
+				continue;
+			}
+			for(int r = 0; r<memberCount[e]; r++) {
+				int v = members[e][r];
+				if(status[v] == VARIABLE && mark[v] != stamp) {
+					mark[v] = stamp;
+					if(count == front.length) {
+						front = Arrays.copyOf(front, 2*count);
+					}
+					front[count++] = v;
+				}
+			}
+			/* everything the element reached is now reached through the pivot */
+			status[e] = ABSORBED;
+			members[e] = null;
+		}
+		status[pivot] = ELEMENT;
+		members[pivot] = front;
+		memberCount[pivot] = count;
+		variables[pivot] = null;
+		elements[pivot] = null;
+		/* the members now reach each other through the new element, so their own lists only need what lies outside it */
+		for(int q = 0; q<count; q++) {
+			int i = front[q];
+			int kept = 0;
+			for(int r = 0; r<variableCount[i]; r++) {
+				int v = variables[i][r];
+				if(status[v] != ELEMENT && status[v] != ABSORBED && mark[v] != stamp) {
+					variables[i][kept++] = v;
+				}
+			}
+			variableCount[i] = kept;
+			kept = 0;
+			for(int r = 0; r<elementCount[i]; r++) {
+				int e = elements[i][r];
+				if(status[e] == ELEMENT) {
+					elements[i][kept++] = e;
+				}
+			}
+			if(kept == elements[i].length) {
+				elements[i] = Arrays.copyOf(elements[i], 2*kept);
+			}
+			elements[i][kept++] = pivot;
+			elementCount[i] = kept;
+		}
+		return front;
+	}
+
+	/** Update the degrees of the unknowns of a new element with the approximate external degree of approximate minimum degree orderings -
+	 * an upper bound found from the sizes of the elements instead of their union, which is exact for most unknowns and costs only one pass over their element lists
+	 * @param int pivot - the new element
+	 * @param int[] front - its unknowns
+	 * @param int count - number of unknowns in front
+	 * @param int remaining - unknowns not eliminated yet
+	 */
+	private void updateDegrees(int pivot, int[] front, int count, int remaining) {
+		/* first find |Le \ Lpivot| for every other element next to the front, counting down from |Le| */
+		nextStamp();
+		for(int q = 0; q<count; q++) {
+			int i = front[q];
+			for(int r = 0; r<elementCount[i]; r++) {
+				int e = elements[i][r];
+				if(e == pivot) {
+					continue;
+				}
+				if(mark[e] != stamp) {
+					mark[e] = stamp;
+					outside[e] = memberCount[e];
+				}
+				outside[e]--;
+			}
+		}
+		for(int q = 0; q<count; q++) {
+			int i = front[q];
+			int external = 0;
+			int kept = 0;
+			for(int r = 0; r<elementCount[i]; r++) {
+				int e = elements[i][r];
+				if(e != pivot && outside[e] == 0) {
+					/* the element lies entirely inside the new one, absorb it */
+					status[e] = ABSORBED;
+					members[e] = null;
+					continue;
+				}
+				if(e != pivot) {
+					external += outside[e];
+				}
+				elements[i][kept++] = e;
+			}
+			elementCount[i] = kept;
+			int d = variableCount[i]+count-1+external;
+			d = Math.min(d, degree[i]+count-1);
+			degree[i] = Math.max(0, Math.min(d, remaining-1));
+		}
+	}
+
+	/** start a new marked set, clearing the marks when the stamp would overflow */
+	private void nextStamp() {
+		if(stamp == Integer.MAX_VALUE) {
+			Arrays.fill(mark, 0);
+			stamp = 0;
+		}
+		stamp++;
+	}
+
+	/** put an unknown in the list of its degree
+	 * @param int i
+	 */
+	private void insert(int i) {
+		int d = degree[i];
+		bucketPrev[i] = -1;
+		bucketNext[i] = bucketHead[d];
+		if(bucketHead[d]>=0) {
+			bucketPrev[bucketHead[d]] = i;
+		}
+		bucketHead[d] = i;
+	}
+
+	/** take an unknown out of the list of its degree
+	 * @param int i
+	 */
+	private void remove(int i) {
+		if(bucketPrev[i]>=0) {
+			bucketNext[bucketPrev[i]] = bucketNext[i];
+		}
+		else {
+			bucketHead[degree[i]] = bucketNext[i];
+		}
+		if(bucketNext[i]>=0) {
+			bucketPrev[bucketNext[i]] = bucketPrev[i];
+		}
+	}
+}
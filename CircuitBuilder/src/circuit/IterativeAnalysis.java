@@ -0,0 +1,655 @@
+package circuit;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Iterative engine for very large resistor meshes, such as power distribution grids with millions of nodes, where the fill-in of a direct factorization no longer fits in memory.
+ *
+ * Node voltages are found with the preconditioned conjugate gradient (CG) method on the grounded conductance Laplacian. CG only works on symmetric positive definite systems,
+ * which the modified nodal system with its voltage source rows is not, so voltage sources are not given unknowns here: every node reached from ground through voltage sources alone has a known potential,
+ * and only the remaining nodes are solved for, with the currents into the known nodes moved to the right hand side. A circuit with a voltage source that is not tied to ground that way
+ * (a floating source) is rejected, NodalAnalysis handles those. Source currents are found after the solve from the currents of the resistors at their nodes.
+ *
+ * The conductance matrix is stored in CSR form with the diagonal kept apart, so memory stays linear in the number of components - there is no fill-in. Two preconditioners are available,
+ * JACOBI (the diagonal, trivially parallel) and INCOMPLETE_CHOLESKY (IC(0), a Cholesky factor restricted to the pattern of the matrix, which needs far fewer iterations on meshes).
+ * For circuits laid out as a regular 1D, 2D or 3D resistor lattice a third preconditioner, MULTIGRID, applies one geometric multigrid V-cycle of LatticeMultigrid, which keeps the number of iterations
+ * about the same whatever the size of the lattice, so the solve is O(N). The lattice is detected from the node Ids or declared with setLattice().
+ * The sparse matrix-vector product of each iteration is split into blocks of rows on a ForkJoinPool when one is given.
+ *
+ * Iteration stops when the residual is below the tolerance relative to the right hand side. Starting from the voltages of a previous analysis with setInitialVoltages() usually
+ * saves most of the iterations after a small edit. potentials() solves the same system for any injected currents with the sources shorted, as resistance calculations need. The same GMIN as NodalAnalysis keeps floating sections positive definite, they settle at 0V.
+ *
+ * @author Michael Sinclair.
+ * @version 2.515
+ * @since 18 October 2026.
+ */
+
+public class IterativeAnalysis extends CircuitSolver {
+	/* preconditioners */
+	public static final byte JACOBI = 0;
+	public static final byte INCOMPLETE_CHOLESKY = 1;
+	public static final byte MULTIGRID = 2;
+	/* conductance added from every unknown node to ground, as in NodalAnalysis */
+	private static final double GMIN = 1e-12;
+	/* default relative residual to stop at */
+	private static final double DEFAULT_TOLERANCE = 1e-10;
+	/* rows of the matrix-vector product handled by one task */
+	private static final int ROWS_PER_TASK = 4096;
+
+	/* instance variables */
+	/* dense index of the ground node */
+	private final int groundIndex;
+	/* row of each node, -1 for ground and nodes fixed by voltage sources */
+	private final int[] unknown;
+	/* voltage of each node - the fixed ones from the start, the rest after solve() */
+	private final double[] voltages;
+	/* number of unknowns */
+	private int size;
+	/* CSR off-diagonal conductances, columns in increasing order within a row */
+	private int[] rowStart;
+	private int[] columns;
+	private double[] values;
+	private double[] diagonal;
+	private double[] rhs;
+	/* IC(0) factor - strictly lower entries share the CSR positions, lowerEnd[i] is the end of row i's lower part */
+	private int[] lowerEnd;
+	private double[] factor;
+	private double[] factorDiagonal;
+	/* multigrid hierarchy of a lattice circuit */
+	private LatticeMultigrid multigrid;
+	/* current delivered by each voltage source, 0 for resistors */
+	private double[] sourceCurrent;
+	/* settings */
+	private byte preconditioner;
+	private double tolerance;
+	private int maxIterations;
+	private ForkJoinPool pool;
+	private double[] initial;
+	/* base Id and dimensions of a declared lattice, null to detect it */
+	private int[] lattice;
+	/* results of the last solve */
+	private int iterations;
+	private double residual;
+
+	/** Constructor fixes the potential of the nodes held by voltage sources and numbers the rest, call solve() to perform the analysis
+	 * @param int groundId
+	 * @param CompactCircuit compact
+	 */
+	public IterativeAnalysis(int groundId, CompactCircuit compact) {
+		super(compact);
+		groundIndex = circuit.indexOf(groundId);
+		if(groundIndex<0) {
+			throw new IllegalArgumentException("Ground node "+groundId+" is not connected to any component.");
+		}
+		int nodes = circuit.getNodeCount();
+		unknown = new int[nodes];
+		voltages = new double[nodes];
+		boolean[] fixed = fixPotentials();
+		size = 0;
+		for(int i = 0; i<nodes; i++) {
+			unknown[i] = fixed[i] ? -1 : size++;
+		}
+		preconditioner = INCOMPLETE_CHOLESKY;
+		tolerance = DEFAULT_TOLERANCE;
+		maxIterations = Math.max(1000, 10*(int)Math.sqrt(size));
+		pool = null;
+		initial = null;
+	}
+
+	/* methods */
+
+	/** Walk out from ground along voltage sources, giving every node reached a known potential
+	 * @return boolean[] fixed - true for ground and the nodes reached
+	 */
+	private boolean[] fixPotentials() {
+		int[] start = circuit.getAdjStart();
+		int[] edges = circuit.getAdjEdge();
+		boolean[] fixed = new boolean[circuit.getNodeCount()];
+		/* source each node was reached by, so it is not walked back */
+		int[] reachedBy = new int[circuit.getNodeCount()];
+		ArrayDeque<Integer> queue = new ArrayDeque<>();
+		fixed[groundIndex] = true;
+		reachedBy[groundIndex] = -1;
+		queue.add(groundIndex);
+		while(!queue.isEmpty()) {
+			int node = queue.poll();
+			for(int p = start[node]; p<start[node+1]; p++) {
+				int edge = edges[p];
+				if(circuit.getKind(edge) != CompactCircuit.VOLTAGE || edge == reachedBy[node]) {
+					continue;
+				}
+				int other = circuit.otherNode(edge, node);
+				if(fixed[other]) {
+					throw new IllegalArgumentException("Voltage sources form a loop, voltage source V"+circuit.getComponentId(edge)+" is in parallel with other sources.");
+				}
+				/* the source raises the potential from its node 1 to its node 2 */
+				double v = circuit.getValue(edge);
+				voltages[other] = circuit.getNode2(edge) == other ? voltages[node]+v : voltages[node]-v;
+				fixed[other] = true;
+				reachedBy[other] = edge;
+				queue.add(other);
+			}
+		}
+		for(int k = 0; k<circuit.getComponentCount(); k++) {
+			if(circuit.getKind(k) == CompactCircuit.VOLTAGE && !fixed[circuit.getNode1(k)]) {
+				throw new IllegalArgumentException("Voltage source V"+circuit.getComponentId(k)+" is not connected to ground through other voltage sources, which the iterative solver requires.");
+			}
+		}
+		return fixed;
+	}
+
+	/** Build the conductance system and solve it with preconditioned conjugate gradients
+	 * @throws IllegalStateException if the residual has not reached the tolerance after the maximum number of iterations
+	 */
+	@Override
+	public void solve() {
+		prepare();
+		double[] x = new double[size];
+		if(initial != null) {
+			for(int i = 0; i<unknown.length; i++) {
+				if(unknown[i]>=0) {
+					x[unknown[i]] = initial[i];
+				}
+			}
+		}
+		conjugateGradient(rhs, x, true);
+		for(int i = 0; i<unknown.length; i++) {
+			if(unknown[i]>=0) {
+				voltages[i] = x[unknown[i]];
+			}
+		}
+		/* only the solution is kept */
+		rowStart = null;
+		columns = null;
+		values = null;
+		diagonal = null;
+		rhs = null;
+		factor = null;
+		factorDiagonal = null;
+		lowerEnd = null;
+		multigrid = null;
+		findSourceCurrents();
+	}
+
+	/** Build the conductance system and the preconditioner, unless potentials() has already built them */
+	private synchronized void prepare() {
+		if(rowStart != null) {
+			return;
+		}
+		buildSystem();
+		if(preconditioner == INCOMPLETE_CHOLESKY) {
+			factorIncomplete();
+		}
+		else if(preconditioner == MULTIGRID) {
+			multigrid = new LatticeMultigrid(circuit, unknown, lattice);
+		}
+	}
+
+	/** Node potentials when given currents are driven into the nodes and every voltage source is replaced by a short, so ground and the nodes fixed by sources are all at 0V -
+	 * the system and preconditioner are built by the first call and kept for the next ones, which may run on several threads at once unless the preconditioner is MULTIGRID
+	 * @param double[] injected - current driven into each dense node, entries of fixed nodes are ignored
+	 * @return double[] potential of each dense node
+	 * @throws IllegalStateException if the residual has not reached the tolerance after the maximum number of iterations
+	 */
+	public double[] potentials(double[] injected) {
+		prepare();
+		double[] b = new double[size];
+		for(int i = 0; i<unknown.length; i++) {
+			if(unknown[i]>=0) {
+				b[unknown[i]] = injected[i];
+			}
+		}
+		double[] x = new double[size];
+		conjugateGradient(b, x, false);
+		double[] result = new double[unknown.length];
+		for(int i = 0; i<unknown.length; i++) {
+			if(unknown[i]>=0) {
+				result[i] = x[unknown[i]];
+			}
+		}
+		return result;
+	}
+
+	/** Stamp the resistors into CSR rows of the unknown nodes, conductances to fixed nodes go into the right hand side */
+	private void buildSystem() {
+		int[] start = circuit.getAdjStart();
+		int[] edges = circuit.getAdjEdge();
+		int nodes = unknown.length;
+		/* upper bound of the row lengths, parallel resistors are merged below */
+		int bound = 0;
+		for(int i = 0; i<nodes; i++) {
+			if(unknown[i]>=0) {
+				bound += start[i+1]-start[i];
+			}
+		}
+		rowStart = new int[size+1];
+		columns = new int[bound];
+		values = new double[bound];
+		diagonal = new double[size];
+		rhs = new double[size];
+		/* position of each column in the row being built */
+		int[] position = new int[size];
+		Arrays.fill(position, -1);
+		int count = 0;
+		for(int i = 0; i<nodes; i++) {
+			int row = unknown[i];
+			if(row<0) {
+				continue;
+			}
+			rowStart[row] = count;
+			diagonal[row] = GMIN;
+			for(int p = start[i]; p<start[i+1]; p++) {
+				int edge = edges[p];
+				if(circuit.getKind(edge) != CompactCircuit.RESISTOR) {
+					continue;
+				}
+				int other = circuit.otherNode(edge, i);
+				if(other == i) {
+					continue;
+				}
+				double g = 1.0/circuit.getValue(edge);
+				diagonal[row] += g;
+				int column = unknown[other];
+				if(column<0) {
+					rhs[row] += g*voltages[other];
+				}
+				else if(position[column]>=0) {
+					values[position[column]] -= g;
+				}
+				else {
+					position[column] = count;
+					columns[count] = column;
+					values[count++] = -g;
+				}
+			}
+			for(int p = rowStart[row]; p<count; p++) {
+				position[columns[p]] = -1;
+			}
+			sortRow(rowStart[row], count);
+		}
+		rowStart[size] = count;
+		columns = Arrays.copyOf(columns, count);
+		values = Arrays.copyOf(values, count);
+	}
+
+	/** insertion sort of one CSR row by column, rows are as short as the node degrees
+	 * @param int from
+	 * @param int to
+	 */
+	private void sortRow(int from, int to) {
+		for(int p = from+1; p<to; p++) {
+			int column = columns[p];
+			double value = values[p];
+			int q = p-1;
+			while(q>=from && columns[q]>column) {
+				columns[q+1] = columns[q];
+				values[q+1] = values[q];
+				q--;
+			}
+			columns[q+1] = column;
+			values[q+1] = value;
+		}
+	}
+
+	/** Incomplete Cholesky factorization with no fill - L L^T matches the matrix on its own pattern, row by row */
+	private void factorIncomplete() {
+		lowerEnd = new int[size];
+		factor = new double[values.length];
+		factorDiagonal = new double[size];
+		for(int i = 0; i<size; i++) {
+			int p = rowStart[i];
+			while(p<rowStart[i+1] && columns[p]<i) {
+				p++;
+			}
+			lowerEnd[i] = p;
+		}
+		for(int i = 0; i<size; i++) {
+			double squares = 0.0;
+			for(int p = rowStart[i]; p<lowerEnd[i]; p++) {
+				int k = columns[p];
+				/* dot product of the entries of rows i and k left of column k, both sorted */
+				double sum = values[p];
+				int q = rowStart[i];
+				int r = rowStart[k];
+				while(q<p && r<lowerEnd[k]) {
+					if(columns[q] == columns[r]) {
+						sum -= factor[q++]*factor[r++];
+					}
+					else if(columns[q]<columns[r]) {
+						q++;
+					}
+					else {
+						r++;
+					}
+				}
+				factor[p] = sum/factorDiagonal[k];
+				squares += factor[p]*factor[p];
+			}
+			double pivot = diagonal[i]-squares;
+			/* cannot happen for a conductance matrix, which is diagonally dominant, but keep the factor usable if rounding gets there */
+			factorDiagonal[i] = Math.sqrt(pivot>0 ? pivot : diagonal[i]);
+		}
+	}
+
+	/** Conjugate gradient iteration, preconditioned with the selected preconditioner
+	 * @param double[] b - right hand side
+	 * @param double[] x - starting guess, replaced with the solution
+	 * @param boolean record - true to split the products over the pool and keep the iteration count and residual, false for solves running side by side
+	 */
+	private void conjugateGradient(double[] b, double[] x, boolean record) {
+		double[] r = new double[size];
+		double[] z = new double[size];
+		double[] q = new double[size];
+		multiply(x, q, record);
+		for(int i = 0; i<size; i++) {
+			r[i] = b[i]-q[i];
+		}
+		double target = tolerance*norm(b);
+		double norm = norm(r);
+		int steps = 0;
+		if(norm>target) {
+			precondition(r, z);
+			double[] p = z.clone();
+			double rz = dot(r, z);
+			while(norm>target) {
+				if(steps == maxIterations) {
+					throw new IllegalStateException("Iterative solver did not converge in "+maxIterations+" iterations, residual is "+norm+".");
+				}
+				steps++;
+				multiply(p, q, record);
+				double alpha = rz/dot(p, q);
+				for(int i = 0; i<size; i++) {
+					x[i] += alpha*p[i];
+					r[i] -= alpha*q[i];
+				}
+				norm = norm(r);
+				if(norm<=target) {
+					break;
+				}
+				precondition(r, z);
+				double next = dot(r, z);
+				double beta = next/rz;
+				rz = next;
+				for(int i = 0; i<size; i++) {
+					p[i] = z[i]+beta*p[i];
+				}
+			}
+		}
+		if(record) {
+			iterations = steps;
+			residual = norm;
+		}
+	}
+
+	/** y = A x, split over the pool for large systems
+	 * @param double[] x
+	 * @param double[] y
+	 * @param boolean parallel - false to stay on the calling thread
+	 */
+	private void multiply(double[] x, double[] y, boolean parallel) {
+		if(!parallel || pool == null || size<=ROWS_PER_TASK) {
+			multiplyRows(x, y, 0, size);
+		}
+		else {
+			pool.invoke(new ProductTask(x, y, 0, size));
+		}
+	}
+
+	/** y = A x for a range of rows
+	 * @param double[] x
+	 * @param double[] y
+	 * @param int from
+	 * @param int to
+	 */
+	private void multiplyRows(double[] x, double[] y, int from, int to) {
+		for(int i = from; i<to; i++) {
+			double sum = diagonal[i]*x[i];
+			for(int p = rowStart[i]; p<rowStart[i+1]; p++) {
+				sum += values[p]*x[columns[p]];
+			}
+			y[i] = sum;
+		}
+	}
+
+	/** z = M^-1 r
+	 * @param double[] r
+	 * @param double[] z
+	 */
+	private void precondition(double[] r, double[] z) {
+		if(preconditioner == JACOBI) {
+			for(int i = 0; i<size; i++) {
+				z[i] = r[i]/diagonal[i];
+			}
+			return;
+		}
+		if(preconditioner == MULTIGRID) {
+			multigrid.apply(r, z);
+			return;
+		}
+		/* forward substitution with L, then back substitution with L^T read from the rows of L */
+		for(int i = 0; i<size; i++) {
+			double sum = r[i];
+			for(int p = rowStart[i]; p<lowerEnd[i]; p++) {
+				sum -= factor[p]*z[columns[p]];
+			}
+			z[i] = sum/factorDiagonal[i];
+		}
+		for(int i = size-1; i>=0; i--) {
+			z[i] /= factorDiagonal[i];
+			for(int p = rowStart[i]; p<lowerEnd[i]; p++) {
+				z[columns[p]] -= factor[p]*z[i];
+			}
+		}
+	}
+
+	/** @param double[] a
+	 * @param double[] b
+	 * @return double a . b
+	 */
+	private static double dot(double[] a, double[] b) {
+		double sum = 0.0;
+		for(int i = 0; i<a.length; i++) {
+			sum += a[i]*b[i];
+		}
+		return sum;
+	}
+
+	/** @param double[] a
+	 * @return double Euclidean norm of a
+	 */
+	private static double norm(double[] a) {
+		return Math.sqrt(dot(a, a));
+	}
+
+	/** Find the current of every voltage source from Kirchhoff's current law at the fixed nodes, peeling the chains of sources from their far ends towards ground */
+	private void findSourceCurrents() {
+		int count = circuit.getComponentCount();
+		int nodes = unknown.length;
+		sourceCurrent = new double[count];
+		/* net current leaving each fixed node through the branches resolved so far, and its sources not resolved yet */
+		double[] leaving = new double[nodes];
+		int[] open = new int[nodes];
+		for(int k = 0; k<count; k++) {
+			int a = circuit.getNode1(k);
+			int b = circuit.getNode2(k);
+			if(circuit.getKind(k) == CompactCircuit.RESISTOR) {
+				if(unknown[a]<0 || unknown[b]<0) {
+					double current = branchCurrent(k);
+					leaving[a] += current;
+					leaving[b] -= current;
+				}
+			}
+			else {
+				open[a]++;
+				open[b]++;
+			}
+		}
+		int[] start = circuit.getAdjStart();
+		int[] edges = circuit.getAdjEdge();
+		boolean[] resolved = new boolean[count];
+		ArrayDeque<Integer> queue = new ArrayDeque<>();
+		for(int i = 0; i<nodes; i++) {
+			if(i != groundIndex && open[i] == 1) {
+				queue.add(i);
+			}
+		}
+		while(!queue.isEmpty()) {
+			int node = queue.poll();
+			for(int p = start[node]; p<start[node+1]; p++) {
+				int edge = edges[p];
+				if(circuit.getKind(edge) != CompactCircuit.VOLTAGE || resolved[edge]) {
+					continue;
+				}
+				/* the source delivers its current out of node 2, so it carries whatever else leaves node 2 or enters node 1 */
+				double current = circuit.getNode2(edge) == node ? leaving[node] : -leaving[node];
+				sourceCurrent[edge] = current;
+				resolved[edge] = true;
+				int other = circuit.otherNode(edge, node);
+				leaving[other] += circuit.getNode1(edge) == other ? current : -current;
+				if(--open[other] == 1 && other != groundIndex) {
+					queue.add(other);
+				}
+			}
+		}
+	}
+
+	/** get voltage of a node by its dense index
+	 * @param int node
+	 * @return double
+	 */
+	@Override
+	public double nodeVoltage(int node) {
+		return voltages[node];
+	}
+
+	/** get the current through a component, positive from node 1 to node 2
+	 * @param int edge
+	 * @return double
+	 */
+	@Override
+	public double branchCurrent(int edge) {
+		if(circuit.getKind(edge) == CompactCircuit.RESISTOR) {
+			return (voltages[circuit.getNode1(edge)]-voltages[circuit.getNode2(edge)])/circuit.getValue(edge);
+		}
+		return sourceCurrent[edge];
+	}
+
+	/** select the preconditioner
+	 * @param byte type - JACOBI, INCOMPLETE_CHOLESKY or MULTIGRID
+	 */
+	public void setPreconditioner(byte type) {
+		if(!isPreconditioner(type)) {
+			throw new IllegalArgumentException("Unknown preconditioner "+type+".");
+		}
+		preconditioner = type;
+	}
+
+	/** @param byte type
+	 * @return boolean true if type is one of the preconditioners
+	 */
+	public static boolean isPreconditioner(byte type) {
+		return type == JACOBI || type == INCOMPLETE_CHOLESKY || type == MULTIGRID;
+	}
+
+	/** declare the lattice the resistors form for the MULTIGRID preconditioner instead of detecting it - the node at (x, y, z) has Id base + x + nx*(y + ny*z)
+	 * @param int base - Id of the node at (0, 0, 0)
+	 * @param int nx
+	 * @param int ny
+	 * @param int nz - 1 for a 2D lattice
+	 */
+	public void setLattice(int base, int nx, int ny, int nz) {
+		lattice = new int[]{base, nx, ny, nz};
+	}
+
+	/** set the residual to stop at, relative to the currents driven into the unknown nodes by the sources
+	 * @param double relative
+	 */
+	public void setTolerance(double relative) {
+		if(!(relative>0.0)) {
+			throw new IllegalArgumentException("Tolerance must be positive.");
+		}
+		tolerance = relative;
+	}
+
+	/** set the number of iterations after which solve() gives up
+	 * @param int limit
+	 */
+	public void setMaxIterations(int limit) {
+		if(limit<1) {
+			throw new IllegalArgumentException("At least one iteration is needed.");
+		}
+		maxIterations = limit;
+	}
+
+	/** set the pool the matrix-vector products are split over
+	 * @param ForkJoinPool threads - or null to run on the calling thread
+	 */
+	public void setPool(ForkJoinPool threads) {
+		pool = threads;
+	}
+
+	/** start the iteration from known node voltages, for example those of the previous analysis of the circuit - nodes fixed by voltage sources ignore their entry
+	 * @param double[] guess - voltage of each dense node index
+	 */
+	public void setInitialVoltages(double[] guess) {
+		if(guess != null && guess.length != unknown.length) {
+			throw new IllegalArgumentException("Initial voltages must have one entry per node.");
+		}
+		initial = guess;
+	}
+
+	/** get the number of iterations the last solve took
+	 * @return int
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+
+	/** get the norm of the residual the last solve stopped at
+	 * @return double
+	 */
+	public double getResidual() {
+		return residual;
+	}
+
+	/** get the number of unknown node voltages
+	 * @return int
+	 */
+	public int getUnknownCount() {
+		return size;
+	}
+
+	/** Computes the rows of a matrix-vector product, halving the range until it is small */
+	private class ProductTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final double[] x;
+		private final double[] y;
+		private final int from;
+		private final int to;
+
+		/** Constructor
+		 * @param double[] in
+		 * @param double[] out
+		 * @param int first
+		 * @param int last - exclusive
+		 */
+		ProductTask(double[] in, double[] out, int first, int last) {
+			x = in;
+			y = out;
+			from = first;
+			to = last;
+		}
+
+		@Override
+		protected void compute() {
+			if(to-from<=ROWS_PER_TASK) {
+				multiplyRows(x, y, from, to);
+				return;
+			}
+			int middle = (from+to) >>> 1;
+			invokeAll(new ProductTask(x, y, from, middle), new ProductTask(x, y, middle, to));
+		}
+	}
+}
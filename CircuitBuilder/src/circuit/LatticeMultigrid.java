@@ -0,0 +1,575 @@
+package circuit;
+import java.util.Arrays;
+
+/**
+ * Geometric multigrid for circuits whose resistors form a regular 1D, 2D or 3D lattice, used by IterativeAnalysis as the MULTIGRID preconditioner.
+ *
+ * A lattice is numbered row by row: the node at (x, y, z) has Id base + x + nx*(y + ny*z), and every resistor joins two neighbours along one axis, so its two Ids differ by 1, nx or nx*ny.
+ * Lattices are found from the node Ids by detect(), or declared with their dimensions. Nodes that only connect voltage sources may have any Id, lattice positions without a node are simply left out.
+ *
+ * Each level stores its operator as a stencil of up to 27 coefficients per point in primitive arrays, one array per offset. The finest level holds the conductances of the circuit with the nodes fixed
+ * by voltage sources decoupled, each coarser level halves every axis longer than 3 points and takes the Galerkin product R A P with linear interpolation P and its transpose R, so coarse stencils stay 9 point in 2D and 27 point in 3D.
+ * A V-cycle smooths with forward Gauss-Seidel going down and backward Gauss-Seidel coming up and solves the coarsest level directly, which makes it a symmetric preconditioner for conjugate gradients
+ * that needs about the same number of iterations whatever the size of the lattice - the whole solve is O(N).
+ *
+ * @author Michael Sinclair.
+ * @version 2.513
+ * @since 18 October 2026.
+ */
+
+public class LatticeMultigrid {
+	/* conductance added from every unknown node to ground, as in IterativeAnalysis */
+	private static final double GMIN = 1e-12;
+	/* index of the centre of a 3x3x3 stencil */
+	private static final int CENTER = 13;
+	/* Gauss-Seidel sweeps before and after each coarse correction */
+	private static final int SWEEPS = 2;
+	/* lattices with far more positions than nodes are not treated as lattices */
+	private static final int MAX_EMPTY_RATIO = 4;
+
+	/* instance variables */
+	private final Level[] levels;
+	/* row of the iterative system at each fine lattice position, -1 for positions without an unknown */
+	private final int[] unknownAt;
+	/* Cholesky factor of the coarsest level, row by row */
+	private final double[] coarsest;
+
+	/** Constructor builds the hierarchy of a lattice circuit
+	 * @param CompactCircuit circuit
+	 * @param int[] unknown - row of each dense node in the iterative system, -1 for nodes with a known potential
+	 * @param int[] lattice - base, nx, ny, nz as found by detect(), or null to detect it here
+	 * @throws IllegalArgumentException if the resistors do not form that lattice
+	 */
+	public LatticeMultigrid(CompactCircuit circuit, int[] unknown, int[] lattice) {
+		if(lattice == null) {
+			lattice = detect(circuit);
+			if(lattice == null) {
+				throw new IllegalArgumentException("Circuit is not a regular resistor lattice, which multigrid requires.");
+			}
+		}
+		else if(!fits(circuit, lattice)) {
+			throw new IllegalArgumentException("Resistors do not form a "+lattice[1]+" x "+lattice[2]+" x "+lattice[3]+" lattice.");
+		}
+		int base = lattice[0];
+		Level fine = new Level(lattice[1], lattice[2], lattice[3]);
+		unknownAt = new int[fine.size];
+		for(int p = 0; p<fine.size; p++) {
+			int index = circuit.indexOf(base+p);
+			unknownAt[p] = index<0 ? -1 : unknown[index];
+		}
+		stampFine(circuit, base, fine);
+		fine.finish();
+		/* coarsen until no axis is longer than 3 points */
+		int depth = 1;
+		for(Level level = fine; level.canCoarsen(); level = level.coarser()) {
+			depth++;
+		}
+		levels = new Level[depth];
+		levels[0] = fine;
+		for(int l = 1; l<depth; l++) {
+			levels[l] = levels[l-1].coarser();
+			galerkin(levels[l-1], levels[l]);
+			levels[l].finish();
+		}
+		coarsest = factorDense(levels[depth-1]);
+	}
+
+	/* methods */
+
+	/** Find the lattice formed by the resistors of a circuit from the differences of their node Ids
+	 * @param CompactCircuit circuit
+	 * @return int[] base, nx, ny, nz - or null if the resistors are not a lattice
+	 */
+	public static int[] detect(CompactCircuit circuit) {
+		long min = Long.MAX_VALUE;
+		long max = Long.MIN_VALUE;
+		int nodes = 0;
+		boolean[] counted = new boolean[circuit.getNodeCount()];
+		/* the distinct strides other than 1, a lattice has at most 2 */
+		long[] strides = new long[3];
+		int strideCount = 0;
+		for(int k = 0; k<circuit.getComponentCount(); k++) {
+			if(circuit.getKind(k) != CompactCircuit.RESISTOR) {
+				continue;
+			}
+			int a = circuit.getNode1(k);
+			int b = circuit.getNode2(k);
+			if(!counted[a]) {
+				counted[a] = true;
+				nodes++;
+			}
+			if(!counted[b]) {
+				counted[b] = true;
+				nodes++;
+			}
+			long first = circuit.getNodeId(a);
+			long second = circuit.getNodeId(b);
+			min = Math.min(min, Math.min(first, second));
+			max = Math.max(max, Math.max(first, second));
+			long stride = Math.abs(second-first);
+			if(stride == 0) {
+				return null;
+			}
+			if(stride == 1 || stride == strides[0] || stride == strides[1]) {
+				continue;
+			}
+			if(strideCount == 2) {
+				return null;
+			}
+			strides[strideCount++] = stride;
+		}
+		if(nodes == 0 || max-min+1>(long)MAX_EMPTY_RATIO*nodes+16) {
+			return null;
+		}
+		long span = max-min+1;
+		long nx = span;
+		long ny = 1;
+		long nz = 1;
+		if(strideCount>0) {
+			nx = Math.min(strides[0], strideCount == 2 ? strides[1] : Long.MAX_VALUE);
+			ny = (span+nx-1)/nx;
+		}
+		if(strideCount == 2) {
+			long plane = Math.max(strides[0], strides[1]);
+			if(plane%nx != 0) {
+				return null;
+			}
+			ny = plane/nx;
+			nz = (span+plane-1)/plane;
+		}
+		int[] lattice = {(int)min, (int)nx, (int)ny, (int)nz};
+		return fits(circuit, lattice) ? lattice : null;
+	}
+
+	/** Check that every resistor joins two neighbours of a lattice
+	 * @param CompactCircuit circuit
+	 * @param int[] lattice - base, nx, ny, nz
+	 * @return boolean
+	 */
+	public static boolean fits(CompactCircuit circuit, int[] lattice) {
+		long nx = lattice[1];
+		long ny = lattice[2];
+		long size = nx*ny*lattice[3];
+		if(nx<1 || ny<1 || lattice[3]<1 || size>Integer.MAX_VALUE) {
+			return false;
+		}
+		for(int k = 0; k<circuit.getComponentCount(); k++) {
+			if(circuit.getKind(k) != CompactCircuit.RESISTOR) {
+				continue;
+			}
+			long a = (long)circuit.getNodeId(circuit.getNode1(k))-lattice[0];
+			long b = (long)circuit.getNodeId(circuit.getNode2(k))-lattice[0];
+			long p = Math.min(a, b);
+			long stride = Math.abs(b-a);
+			if(p<0 || p+stride>=size) {
+				return false;
+			}
+			boolean along = stride == 1 && nx>1 && p%nx != nx-1
+					|| stride == nx && ny>1 && (p/nx)%ny != ny-1
+					|| stride == nx*ny && lattice[3]>1;
+			if(!along) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Stamp the conductances of the circuit into the finest level - positions without an unknown get an identity-like row scaled like their neighbours, and no coupling
+	 * @param CompactCircuit circuit
+	 * @param int base
+	 * @param Level fine
+	 */
+	private void stampFine(CompactCircuit circuit, int base, Level fine) {
+		double[] diagonal = fine.stencil(CENTER);
+		for(int k = 0; k<circuit.getComponentCount(); k++) {
+			if(circuit.getKind(k) != CompactCircuit.RESISTOR) {
+				continue;
+			}
+			int a = circuit.getNodeId(circuit.getNode1(k))-base;
+			int b = circuit.getNodeId(circuit.getNode2(k))-base;
+			double g = 1.0/circuit.getValue(k);
+			diagonal[a] += g;
+			diagonal[b] += g;
+			if(unknownAt[a]>=0 && unknownAt[b]>=0) {
+				fine.couple(a, b, -g);
+			}
+		}
+		for(int p = 0; p<fine.size; p++) {
+			if(unknownAt[p]>=0) {
+				diagonal[p] += GMIN;
+			}
+			else if(diagonal[p] == 0.0) {
+				diagonal[p] = 1.0;
+			}
+		}
+	}
+
+	/** Apply one V-cycle to a residual of the iterative system
+	 * @param double[] r - residual, one entry per unknown
+	 * @param double[] z - correction, one entry per unknown
+	 */
+	public void apply(double[] r, double[] z) {
+		Level fine = levels[0];
+		for(int p = 0; p<fine.size; p++) {
+			fine.b[p] = unknownAt[p]<0 ? 0.0 : r[unknownAt[p]];
+		}
+		cycle(0);
+		for(int p = 0; p<fine.size; p++) {
+			if(unknownAt[p]>=0) {
+				z[unknownAt[p]] = fine.x[p];
+			}
+		}
+	}
+
+	/** V-cycle on a level, solving A x = b from x = 0
+	 * @param int l
+	 */
+	private void cycle(int l) {
+		Level level = levels[l];
+		Arrays.fill(level.x, 0.0);
+		if(l == levels.length-1) {
+			solveDense(level);
+			return;
+		}
+		for(int s = 0; s<SWEEPS; s++) {
+			level.sweep(true);
+		}
+		Level coarse = levels[l+1];
+		level.residual();
+		level.restrict(coarse);
+		cycle(l+1);
+		level.prolong(coarse);
+		for(int s = 0; s<SWEEPS; s++) {
+			level.sweep(false);
+		}
+	}
+
+	/** Galerkin coarse operator R A P, found by interpolating both ends of every fine stencil entry
+	 * @param Level fine
+	 * @param Level coarse
+	 */
+	private static void galerkin(Level fine, Level coarse) {
+		int[] fx = new int[8], fy = new int[8], fz = new int[8];
+		double[] fw = new double[8];
+		int[] gx = new int[8], gy = new int[8], gz = new int[8];
+		double[] gw = new double[8];
+		for(int z = 0; z<fine.nz; z++) {
+			for(int y = 0; y<fine.ny; y++) {
+				for(int x = 0; x<fine.nx; x++) {
+					int p = fine.index(x, y, z);
+					int nf = fine.interpolation(x, y, z, fx, fy, fz, fw);
+					for(int o = 0; o<27; o++) {
+						double[] a = fine.stencil[o];
+						if(a == null || a[p] == 0.0) {
+							continue;
+						}
+						int ng = fine.interpolation(x+o%3-1, y+(o/3)%3-1, z+o/9-1, gx, gy, gz, gw);
+						for(int i = 0; i<nf; i++) {
+							int c = coarse.index(fx[i], fy[i], fz[i]);
+							double left = fw[i]*a[p];
+							for(int j = 0; j<ng; j++) {
+								int offset = (gx[j]-fx[i]+1)+3*(gy[j]-fy[i]+1)+9*(gz[j]-fz[i]+1);
+								coarse.stencil(offset)[c] += left*gw[j];
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/** Dense Cholesky factor of the coarsest level
+	 * @param Level level
+	 * @return double[] lower triangle, size by size row by row
+	 */
+	private static double[] factorDense(Level level) {
+		int n = level.size;
+		double[] l = new double[n*n];
+		for(int z = 0; z<level.nz; z++) {
+			for(int y = 0; y<level.ny; y++) {
+				for(int x = 0; x<level.nx; x++) {
+					int p = level.index(x, y, z);
+					for(int o = 0; o<27; o++) {
+						if(level.stencil[o] != null && level.inside(x+o%3-1, y+(o/3)%3-1, z+o/9-1)) {
+							l[p*n+level.index(x+o%3-1, y+(o/3)%3-1, z+o/9-1)] = level.stencil[o][p];
+						}
+					}
+				}
+			}
+		}
+		for(int j = 0; j<n; j++) {
+			double d = l[j*n+j];
+			for(int k = 0; k<j; k++) {
+				d -= l[j*n+k]*l[j*n+k];
+			}
+			l[j*n+j] = Math.sqrt(d);
+			for(int i = j+1; i<n; i++) {
+				double s = l[i*n+j];
+				for(int k = 0; k<j; k++) {
+					s -= l[i*n+k]*l[j*n+k];
+				}
+				l[i*n+j] = s/l[j*n+j];
+			}
+		}
+		return l;
+	}
+
+	/** solve the coarsest level with its Cholesky factor
+	 * @param Level level
+	 */
+	private void solveDense(Level level) {
+		int n = level.size;
+		double[] x = level.x;
+		for(int i = 0; i<n; i++) {
+			double s = level.b[i];
+			for(int k = 0; k<i; k++) {
+				s -= coarsest[i*n+k]*x[k];
+			}
+			x[i] = s/coarsest[i*n+i];
+		}
+		for(int i = n-1; i>=0; i--) {
+			double s = x[i];
+			for(int k = i+1; k<n; k++) {
+				s -= coarsest[k*n+i]*x[k];
+			}
+			x[i] = s/coarsest[i*n+i];
+		}
+	}
+
+	/** get the number of levels in the hierarchy
+	 * @return int
+	 */
+	public int getLevelCount() {
+		return levels.length;
+	}
+
+	/** One grid of the hierarchy with its operator and work vectors */
+	private static final class Level {
+		private final int nx;
+		private final int ny;
+		private final int nz;
+		private final int size;
+		/* coefficient of each of the 27 neighbours at each point, null for offsets never used */
+		private final double[][] stencil;
+		/* position shift of each offset */
+		private final int[] shift;
+		/* offsets with coefficients, other than the centre */
+		private int[] active;
+		private final double[] x;
+		private final double[] b;
+		private final double[] r;
+		/* interpolation along each axis, reused by every call */
+		private final int[] ax = new int[2], ay = new int[2], az = new int[2];
+		private final double[] wx = new double[2], wy = new double[2], wz = new double[2];
+
+		/** Constructor
+		 * @param int sizeX
+		 * @param int sizeY
+		 * @param int sizeZ
+		 */
+		Level(int sizeX, int sizeY, int sizeZ) {
+			nx = sizeX;
+			ny = sizeY;
+			nz = sizeZ;
+			size = nx*ny*nz;
+			stencil = new double[27][];
+			shift = new int[27];
+			for(int o = 0; o<27; o++) {
+				shift[o] = (o%3-1)+nx*((o/3)%3-1)+nx*ny*(o/9-1);
+			}
+			x = new double[size];
+			b = new double[size];
+			r = new double[size];
+		}
+
+		/** @return boolean true if some axis is longer than 3 points */
+		boolean canCoarsen() {
+			return nx>3 || ny>3 || nz>3;
+		}
+
+		/** @return Level the next coarser level, without its operator */
+		Level coarser() {
+			return new Level(half(nx), half(ny), half(nz));
+		}
+
+		/** @param int n - points along an axis
+		 * @return int points along it on the coarser level
+		 */
+		private static int half(int n) {
+			return n>3 ? (n+1)/2 : n;
+		}
+
+		/** @return int position of a point */
+		int index(int px, int py, int pz) {
+			return px+nx*(py+ny*pz);
+		}
+
+		/** @return boolean true if a point lies on this level */
+		boolean inside(int px, int py, int pz) {
+			return px>=0 && px<nx && py>=0 && py<ny && pz>=0 && pz<nz;
+		}
+
+		/** get the array of one stencil offset, allocated when first used
+		 * @param int o
+		 * @return double[]
+		 */
+		double[] stencil(int o) {
+			if(stencil[o] == null) {
+				stencil[o] = new double[size];
+			}
+			return stencil[o];
+		}
+
+		/** note which offsets the finished operator uses */
+		void finish() {
+			int count = 0;
+			int[] used = new int[27];
+			for(int o = 0; o<27; o++) {
+				if(stencil[o] != null && o != CENTER) {
+					used[count++] = o;
+				}
+			}
+			active = Arrays.copyOf(used, count);
+		}
+
+		/** add a symmetric coupling between two neighbouring positions
+		 * @param int p
+		 * @param int q
+		 * @param double value
+		 */
+		void couple(int p, int q, double value) {
+			int d = Math.abs(q-p);
+			/* offset of q from p along x, y or z, checked in that order as strides coincide on flat lattices */
+			int o = nx>1 && d == 1 ? 14 : ny>1 && d == nx ? 16 : 22;
+			if(q<p) {
+				o = 26-o;
+			}
+			stencil(o)[p] += value;
+			stencil(26-o)[q] += value;
+		}
+
+		/** Coarse points a point of this level is interpolated from, with their weights - linear along each axis that is coarsened, tensor product across axes
+		 * @return int number of coarse points written
+		 */
+		int interpolation(int px, int py, int pz, int[] cx, int[] cy, int[] cz, double[] w) {
+			if(!inside(px, py, pz)) {
+				return 0;
+			}
+			int count = 0;
+			int kx = axis(px, nx, ax, wx);
+			int ky = axis(py, ny, ay, wy);
+			int kz = axis(pz, nz, az, wz);
+			for(int k = 0; k<kz; k++) {
+				for(int j = 0; j<ky; j++) {
+					for(int i = 0; i<kx; i++) {
+						cx[count] = ax[i];
+						cy[count] = ay[j];
+						cz[count] = az[k];
+						w[count++] = wx[i]*wy[j]*wz[k];
+					}
+				}
+			}
+			return count;
+		}
+
+		/** linear interpolation along one axis
+		 * @param int p - fine coordinate
+		 * @param int n - fine points along the axis
+		 * @param int[] c - coarse coordinates written
+		 * @param double[] w - weights written
+		 * @return int number of coarse points
+		 */
+		private static int axis(int p, int n, int[] c, double[] w) {
+			if(n<=3 || p%2 == 0) {
+				c[0] = n<=3 ? p : p/2;
+				w[0] = 1.0;
+				return 1;
+			}
+			c[0] = p/2;
+			if(p/2+1<half(n)) {
+				c[1] = p/2+1;
+				w[0] = 0.5;
+				w[1] = 0.5;
+				return 2;
+			}
+			/* the last point of an even axis has only one coarse neighbour */
+			w[0] = 1.0;
+			return 1;
+		}
+
+		/** one Gauss-Seidel sweep on A x = b
+		 * @param boolean forward - false to sweep backwards, the adjoint of a forward sweep
+		 */
+		void sweep(boolean forward) {
+			double[] diagonal = stencil[CENTER];
+			for(int step = 0; step<size; step++) {
+				int p = forward ? step : size-1-step;
+				x[p] = (b[p]-offDiagonal(p))/diagonal[p];
+			}
+		}
+
+		/** sum of the off-diagonal stencil entries of a point times x
+		 * @param int p
+		 * @return double
+		 */
+		private double offDiagonal(int p) {
+			double sum = 0.0;
+			for(int o:active) {
+				/* coefficients to points outside the level are zero, so only the array bounds need checking */
+				int q = p+shift[o];
+				if(q>=0 && q<size) {
+					sum += stencil[o][p]*x[q];
+				}
+			}
+			return sum;
+		}
+
+		/** r = b - A x */
+		void residual() {
+			double[] diagonal = stencil[CENTER];
+			for(int p = 0; p<size; p++) {
+				r[p] = b[p]-diagonal[p]*x[p]-offDiagonal(p);
+			}
+		}
+
+		/** b of the coarser level = R r
+		 * @param Level coarse
+		 */
+		void restrict(Level coarse) {
+			Arrays.fill(coarse.b, 0.0);
+			int[] cx = new int[8], cy = new int[8], cz = new int[8];
+			double[] w = new double[8];
+			for(int pz = 0; pz<nz; pz++) {
+				for(int py = 0; py<ny; py++) {
+					for(int px = 0; px<nx; px++) {
+						double value = r[index(px, py, pz)];
+						int n = interpolation(px, py, pz, cx, cy, cz, w);
+						for(int i = 0; i<n; i++) {
+							coarse.b[coarse.index(cx[i], cy[i], cz[i])] += w[i]*value;
+						}
+					}
+				}
+			}
+		}
+
+		/** x += P x of the coarser level
+		 * @param Level coarse
+		 */
+		void prolong(Level coarse) {
+			int[] cx = new int[8], cy = new int[8], cz = new int[8];
+			double[] w = new double[8];
+			for(int pz = 0; pz<nz; pz++) {
+				for(int py = 0; py<ny; py++) {
+					for(int px = 0; px<nx; px++) {
+						int n = interpolation(px, py, pz, cx, cy, cz, w);
+						double sum = 0.0;
+						for(int i = 0; i<n; i++) {
+							sum += w[i]*coarse.x[coarse.index(cx[i], cy[i], cz[i])];
+						}
+						x[index(px, py, pz)] += sum;
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,210 @@
+package circuit;
+import java.util.Arrays;
+
+/**
+ * A hash map from primitive long keys to primitive int values.
+ *
+ * Uses open addressing with linear probing over plain arrays, so lookups do not box keys or allocate entry objects the way HashMap<Long,Integer> would.
+ * Two node Ids are packed into a single long key with pack(), which lets components be grouped by the pair of nodes they connect in a single pass.
+ *
+ * @author Michael Sinclair.
+ * @version 2.509
+ * @since 18 October 2026.
+ */
+
+public class LongIntHashMap {
+	/* instance variables */
+	private long[] keys;
+	private int[] values;
+	private boolean[] used;
+	private int size;
+	/* capacity is always a power of two so the hash can be masked */
+	private int mask;
+
+	/** Constructor for an empty map sized for the expected number of entries
+	 * @param int expected
+	 */
+	public LongIntHashMap(int expected) {
+		int capacity = 16;
+		/* keep the load factor at or below one half */
+		while(capacity<2*expected) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	/** Copy constructor, the copy and the original can then be changed independently
+	 * @param LongIntHashMap other
+	 */
+	public LongIntHashMap(LongIntHashMap other) {
+		keys = other.keys.clone();
+		values = other.values.clone();
+		used = other.used.clone();
+		size = other.size;
+		mask = other.mask;
+	}
+
+	/* methods */
+
+	/** Pack two ints into one long key
+	 * @param int high
+	 * @param int low
+	 * @return long
+	 */
+	public static long pack(int high, int low) {
+		return ((long)high<<32) | (low & 0xffffffffL);
+	}
+
+	/** get the value stored for a key
+	 * @param long key
+	 * @param int missing - returned when the key is not present
+	 * @return int
+	 */
+	public int get(long key, int missing) {
+		int i = slot(key);
+		while(used[i]) {
+			if(keys[i] == key) {
+				return values[i];
+			}
+			i = (i+1) & mask;
+		}
+		return missing;
+	}
+
+	/** store a value for a key, replacing any previous value
+	 * @param long key
+	 * @param int value
+	 */
+	public void put(long key, int value) {
+		int i = slot(key);
+		while(used[i]) {
+			if(keys[i] == key) {
+				values[i] = value;
+				return;
+			}
+			i = (i+1) & mask;
+		}
+		used[i] = true;
+		keys[i] = key;
+		values[i] = value;
+		/* grow before the table gets more than half full */
+		if(++size*2>keys.length) {
+			rehash(keys.length*2);
+		}
+	}
+
+	/** get the value for a key, storing the given value first if the key is not present yet
+	 * @param long key
+	 * @param int value
+	 * @return int the value now stored for the key
+	 */
+	public int putIfAbsent(long key, int value) {
+		int i = slot(key);
+		while(used[i]) {
+			if(keys[i] == key) {
+				return values[i];
+			}
+			i = (i+1) & mask;
+		}
+		used[i] = true;
+		keys[i] = key;
+		values[i] = value;
+		if(++size*2>keys.length) {
+			rehash(keys.length*2);
+		}
+		return value;
+	}
+
+	/** test if a key is present
+	 * @param long key
+	 * @return boolean
+	 */
+	public boolean containsKey(long key) {
+		int i = slot(key);
+		while(used[i]) {
+			if(keys[i] == key) {
+				return true;
+			}
+			i = (i+1) & mask;
+		}
+		return false;
+	}
+
+	/** remove a key, shifting later entries of the probe sequence back so no tombstones are needed
+	 * @param long key
+	 * @return boolean true if the key was present
+	 */
+	public boolean remove(long key) {
+		int i = slot(key);
+		while(used[i]) {
+			if(keys[i] == key) {
+				/* close the gap left at i */
+				int gap = i;
+				int j = (i+1) & mask;
+				while(used[j]) {
+					int home = slot(keys[j]);
+					/* move entry j into the gap if its home slot is not between the gap and j */
+					if(((j-home) & mask)>=((j-gap) & mask)) {
+						keys[gap] = keys[j];
+						values[gap] = values[j];
+						gap = j;
+					}
+					j = (j+1) & mask;
+				}
+				used[gap] = false;
+				size--;
+				return true;
+			}
+			i = (i+1) & mask;
+		}
+		return false;
+	}
+
+	/** get the number of entries
+	 * @return int size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/** remove all entries, keeping the allocated capacity */
+	public void clear() {
+		Arrays.fill(used, false);
+		size = 0;
+	}
+
+	/** find the home slot of a key - mixes the bits so sequential node Ids do not cluster
+	 * @param long key
+	 * @return int
+	 */
+	private int slot(long key) {
+		long h = key*0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h>>>32)) & mask;
+	}
+
+	/** allocate empty tables
+	 * @param int capacity
+	 */
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		used = new boolean[capacity];
+		mask = capacity-1;
+		size = 0;
+	}
+
+	/** move every entry into larger tables
+	 * @param int capacity
+	 */
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		boolean[] oldUsed = used;
+		allocate(capacity);
+		for(int i = 0; i<oldKeys.length; i++) {
+			if(oldUsed[i]) {
+				put(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+}
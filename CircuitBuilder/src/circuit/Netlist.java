@@ -0,0 +1,243 @@
+package circuit;
+import java.util.Arrays;
+
+/**
+ * A netlist read from a file or stream, held as growable primitive arrays until it is turned into a CompactCircuit.
+ *
+ * Lines use the same syntax as the interactive program - R X Y Z for a resistor and V X Y Z for a voltage source - plus a ground directive G X (or GROUND X).
+ * Blank lines and lines starting with * or # are comments. Components are checked with the same rules as the Resistor and Voltage constructors and are numbered R1, R2, ... and V1, V2, ...
+ * in the order they are read, as they would be when entered into a new circuit. A voltage source is stored with its nodes in increasing Id order, negating the voltage if they were swapped.
+ *
+ * The ground defaults to node 0 if no ground directive is given.
+ *
+ * @author Michael Sinclair.
+ * @version 2.521
+ * @since 18 October 2026.
+ */
+
+public class Netlist {
+	/* smallest accepted magnitude, the same as Resistor and Voltage */
+	private static final double MIN_VALUE = 0.00001;
+
+	/* instance variables */
+	private int count;
+	private int[] first;
+	private int[] second;
+	private double[] values;
+	private byte[] kinds;
+	private int[] ids;
+	private int resistors;
+	private int voltages;
+	private int ground;
+	private boolean groundGiven;
+
+	/** Constructor for an empty netlist */
+	public Netlist() {
+		this(16);
+	}
+
+	/** Constructor for a netlist expected to hold a given number of components
+	 * @param int expected
+	 */
+	public Netlist(int expected) {
+		allocate(Math.max(expected, 16));
+		count = 0;
+		resistors = 0;
+		voltages = 0;
+		ground = 0;
+	}
+
+	/* methods */
+
+	/** Parse one line of a netlist
+	 * @param String line
+	 * @return boolean true if the line was a ground directive
+	 * @throws IllegalArgumentException if the line is not valid
+	 */
+	public boolean parseLine(String line) {
+		String trimmed = line.trim();
+		if(trimmed.isEmpty() || trimmed.charAt(0) == '*' || trimmed.charAt(0) == '#') {
+			return false;
+		}
+		String[] fields = trimmed.split("\\s+");
+		String type = fields[0].toUpperCase();
+		if(type.equals("G") || type.equals("GROUND")) {
+			if(fields.length != 2) {
+				throw new IllegalArgumentException("Ground syntax is G X.");
+			}
+			setGround(Integer.parseInt(fields[1]));
+			return true;
+		}
+		if(fields.length != 4 || !type.equals("R") && !type.equals("V")) {
+			throw new IllegalArgumentException("Input must be R/V X Y Z.");
+		}
+		add(type.charAt(0), Integer.parseInt(fields[1]), Integer.parseInt(fields[2]), Double.parseDouble(fields[3]));
+		return false;
+	}
+
+	/** Add a component
+	 * @param char type - 'R' or 'V'
+	 * @param int node1
+	 * @param int node2
+	 * @param double value - Ohms or Volts
+	 * @throws IllegalArgumentException if the component is not valid
+	 */
+	public void add(char type, int node1, int node2, double value) {
+		if(node1 == node2) {
+			throw new IllegalArgumentException("Components must be connected to two different nodes.");
+		}
+		if(type == 'R') {
+			if(!(value > MIN_VALUE)) {
+				throw new IllegalArgumentException("Resistance must be greater than 0.");
+			}
+			if(Double.isInfinite(value)) {
+				throw new IllegalArgumentException("Resistance must be finite.");
+			}
+			append(node1, node2, value, CompactCircuit.RESISTOR, ++resistors);
+		}
+		else if(type == 'V') {
+			if(!(Math.abs(value) > MIN_VALUE)) {
+				throw new IllegalArgumentException("Voltage must be greater than 0.");
+			}
+			if(Double.isInfinite(value)) {
+				throw new IllegalArgumentException("Voltage must be finite.");
+			}
+			/* polarity is directed to increasing node Id */
+			if(node1>node2) {
+				append(node2, node1, -value, CompactCircuit.VOLTAGE, ++voltages);
+			}
+			else {
+				append(node1, node2, value, CompactCircuit.VOLTAGE, ++voltages);
+			}
+		}
+		else {
+			throw new IllegalArgumentException("Component type must be R or V.");
+		}
+	}
+
+	/** Build the compact circuit - the arrays are handed over without copying, so the netlist is left empty with the ground unchanged
+	 * @return CompactCircuit
+	 */
+	public CompactCircuit toCompact() {
+		CompactCircuit compact = new CompactCircuit(count, first, second, values, kinds, ids);
+		allocate(16);
+		count = 0;
+		resistors = 0;
+		voltages = 0;
+		return compact;
+	}
+
+	/** Empty the netlist so it can be reused for the next circuit, the ground is reset to node 0 */
+	public void clear() {
+		count = 0;
+		resistors = 0;
+		voltages = 0;
+		ground = 0;
+		groundGiven = false;
+	}
+
+	/** get the number of components
+	 * @return int
+	 */
+	public int size() {
+		return count;
+	}
+
+	/** get the ground node Id
+	 * @return int
+	 */
+	public int getGround() {
+		return ground;
+	}
+
+	/** set the ground node Id
+	 * @param int id
+	 */
+	public void setGround(int id) {
+		ground = id;
+		groundGiven = true;
+	}
+
+	/** test if a ground directive has been read since the netlist was created or cleared
+	 * @return boolean
+	 */
+	public boolean hasGround() {
+		return groundGiven;
+	}
+
+	/** get the number of resistors
+	 * @return int
+	 */
+	public int getResistorCount() {
+		return resistors;
+	}
+
+	/** get the number of voltage sources
+	 * @return int
+	 */
+	public int getVoltageCount() {
+		return voltages;
+	}
+
+	/** get the distinct node Ids of the components in ascending order
+	 * @return int[]
+	 */
+	protected int[] distinctNodeIds() {
+		return CompactCircuit.distinctIds(count, first, second);
+	}
+
+	/** copy the components into the arrays of a larger circuit - component Ids are shifted by the number of resistors and voltage sources that come before this netlist
+	 * @param int offset - position of the first component in the target arrays
+	 * @param int[] targetFirst
+	 * @param int[] targetSecond
+	 * @param double[] targetValues
+	 * @param byte[] targetKinds
+	 * @param int[] targetIds
+	 * @param int resistorOffset
+	 * @param int voltageOffset
+	 */
+	protected void copyTo(int offset, int[] targetFirst, int[] targetSecond, double[] targetValues, byte[] targetKinds, int[] targetIds, int resistorOffset, int voltageOffset) {
+		System.arraycopy(first, 0, targetFirst, offset, count);
+		System.arraycopy(second, 0, targetSecond, offset, count);
+		System.arraycopy(values, 0, targetValues, offset, count);
+		System.arraycopy(kinds, 0, targetKinds, offset, count);
+		for(int k = 0; k<count; k++) {
+			targetIds[offset+k] = ids[k]+(kinds[k] == CompactCircuit.VOLTAGE ? voltageOffset : resistorOffset);
+		}
+	}
+
+	/** allocate empty arrays
+	 * @param int capacity
+	 */
+	private void allocate(int capacity) {
+		first = new int[capacity];
+		second = new int[capacity];
+		values = new double[capacity];
+		kinds = new byte[capacity];
+		ids = new int[capacity];
+	}
+
+	/** store a component, growing the arrays when full
+	 * @param int node1
+	 * @param int node2
+	 * @param double value
+	 * @param byte kind
+	 * @param int id
+	 */
+	private void append(int node1, int node2, double value, byte kind, int id) {
+		if(count == first.length) {
+			int capacity = 2*count;
+			first = Arrays.copyOf(first, capacity);
+			second = Arrays.copyOf(second, capacity);
+			values = Arrays.copyOf(values, capacity);
+			kinds = Arrays.copyOf(kinds, capacity);
+			ids = Arrays.copyOf(ids, capacity);
+		}
+		first[count] = node1;
+		second[count] = node2;
+		values[count] = value;
+		kinds[count] = kind;
+		ids[count] = id;
+		count++;
+	}
+}
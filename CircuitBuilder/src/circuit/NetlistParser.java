@@ -0,0 +1,405 @@
+package circuit;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Netlist parser that reads straight from the bytes of a memory-mapped file.
+ *
+ * The file is mapped read-only with FileChannel.map, so the operating system pages it in as it is read and it never passes through a heap buffer. Integers and doubles are parsed
+ * directly from the bytes without creating a String per line or per field - a decimal with at most 15 significant digits and a small exponent is converted exactly with one multiply
+ * or divide by a power of ten, anything else (long mantissas, large exponents, NaN, Infinity or hex) falls back to Double.parseDouble on that one field.
+ * Components go into the primitive arrays of a Netlist, so loading allocates nothing per component.
+ *
+ * The syntax is the same as Netlist.parseLine() - R X Y Z, V X Y Z, G X, comment lines starting with * or #, and END between circuits.
+ *
+ * @author Michael Sinclair.
+ * @version 2.507
+ * @since 18 October 2026.
+ */
+
+public class NetlistParser {
+	/* powers of ten that are exact as doubles */
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+	/* mantissas up to 2^53 are exact as doubles, 15 digits always fit */
+	private static final int EXACT_DIGITS = 15;
+
+	/* instance variables */
+	private final ByteBuffer buffer;
+	private final int limit;
+	private int position;
+	private int lineNumber;
+	/* start of the line being parsed */
+	private int lineStart;
+
+	/** Constructor for a buffer holding netlist text, parsed from its position to its limit
+	 * @param ByteBuffer bytes
+	 */
+	public NetlistParser(ByteBuffer bytes) {
+		buffer = bytes;
+		position = bytes.position();
+		limit = bytes.limit();
+		lineNumber = 0;
+	}
+
+	/* methods */
+
+	/** Map a netlist file into memory
+	 * @param Path file
+	 * @return NetlistParser
+	 * @throws IOException if the file cannot be read or is 2 GB or larger
+	 */
+	public static NetlistParser open(Path file) throws IOException {
+		return new NetlistParser(map(file));
+	}
+
+	/** Map a file into memory read-only
+	 * @param Path file
+	 * @return MappedByteBuffer
+	 * @throws IOException if the file cannot be read or is 2 GB or larger
+	 */
+	protected static MappedByteBuffer map(Path file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if(size>=Integer.MAX_VALUE) {
+				throw new IOException("Netlist "+file+" is too large to map, netlists must be smaller than 2 GB.");
+			}
+			/* the mapping stays valid after the channel is closed */
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+	}
+
+	/** test if there is anything left to parse
+	 * @return boolean
+	 */
+	public boolean hasMore() {
+		return position<limit;
+	}
+
+	/** rough number of components left, used to size a netlist before parsing - assumes short lines such as R 12 13 4.7
+	 * @return int
+	 */
+	public int estimateComponents() {
+		return (limit-position)/16;
+	}
+
+	/** Parse the next circuit, up to an END line or the end of the buffer, into a netlist
+	 * @param Netlist netlist
+	 * @return boolean true if the circuit was finished by an END line
+	 * @throws IllegalArgumentException with the line number if a line is not valid, the rest of the circuit can then be skipped with skipCircuit()
+	 */
+	public boolean next(Netlist netlist) {
+		while(position<limit) {
+			lineStart = position;
+			lineNumber++;
+			skipBlanks();
+			if(position>=limit) {
+				return false;
+			}
+			byte b = buffer.get(position);
+			if(b == '\n' || b == '*' || b == '#') {
+				skipLine();
+				continue;
+			}
+			try {
+				if(parseLine(netlist)) {
+					return true;
+				}
+			} catch (IllegalArgumentException e) {
+				/* leave the parser at the start of the next line */
+				position = lineStart;
+				skipLine();
+				throw new IllegalArgumentException("line "+lineNumber+": "+e.getMessage());
+			}
+		}
+		return false;
+	}
+
+	/** Skip the rest of the current circuit, up to and including its END line */
+	public void skipCircuit() {
+		while(position<limit) {
+			lineStart = position;
+			lineNumber++;
+			skipBlanks();
+			boolean end = matchWord("END") && atLineEnd();
+			skipLine();
+			if(end) {
+				return;
+			}
+		}
+	}
+
+	/** Parse one line that is not blank or a comment
+	 * @param Netlist netlist
+	 * @return boolean true if the line was END
+	 */
+	private boolean parseLine(Netlist netlist) {
+		if(matchWord("END")) {
+			expectLineEnd("END must be on a line of its own.");
+			return true;
+		}
+		if(matchWord("G") || matchWord("GROUND")) {
+			netlist.setGround(parseInt("Ground syntax is G X."));
+			expectLineEnd("Ground syntax is G X.");
+			return false;
+		}
+		char type;
+		if(matchWord("R")) {
+			type = 'R';
+		}
+		else if(matchWord("V")) {
+			type = 'V';
+		}
+		else {
+			throw new IllegalArgumentException("Input must be R/V X Y Z.");
+		}
+		int node1 = parseInt("Input must be R/V X Y Z.");
+		int node2 = parseInt("Input must be R/V X Y Z.");
+		double value = parseDouble("Input must be R/V X Y Z.");
+		expectLineEnd("Input must be R/V X Y Z.");
+		netlist.add(type, node1, node2, value);
+		return false;
+	}
+
+	/** parse an integer field
+	 * @param String syntax - message if the field is missing
+	 * @return int
+	 */
+	private int parseInt(String syntax) {
+		skipBlanks();
+		int start = position;
+		boolean negative = false;
+		if(position<limit && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+			negative = buffer.get(position++) == '-';
+		}
+		long result = 0;
+		int digits = 0;
+		while(position<limit) {
+			int d = buffer.get(position)-'0';
+			if(d<0 || d>9) {
+				break;
+			}
+			result = 10*result+d;
+			/* stop before a long could overflow */
+			if(result>(long)Integer.MAX_VALUE+1) {
+				throw new NumberFormatException("Node Id out of range: "+text(start));
+			}
+			digits++;
+			position++;
+		}
+		if(digits == 0) {
+			throw new IllegalArgumentException(position>=limit || isLineEnd(buffer.get(position)) ? syntax : "For input string: \""+text(start)+"\"");
+		}
+		checkFieldEnd(start);
+		result = negative ? -result : result;
+		if(result>Integer.MAX_VALUE) {
+			throw new NumberFormatException("Node Id out of range: "+text(start));
+		}
+		return (int)result;
+	}
+
+	/** parse a double field
+	 * @param String syntax - message if the field is missing
+	 * @return double
+	 */
+	private double parseDouble(String syntax) {
+		skipBlanks();
+		int start = position;
+		if(position>=limit || isLineEnd(buffer.get(position))) {
+			throw new IllegalArgumentException(syntax);
+		}
+		boolean negative = false;
+		if(buffer.get(position) == '-' || buffer.get(position) == '+') {
+			negative = buffer.get(position++) == '-';
+		}
+		long mantissa = 0;
+		int significant = 0;
+		int exponent = 0;
+		int digits = 0;
+		boolean point = false;
+		while(position<limit) {
+			byte b = buffer.get(position);
+			if(b == '.' && !point) {
+				point = true;
+				position++;
+				continue;
+			}
+			int d = b-'0';
+			if(d<0 || d>9) {
+				break;
+			}
+			digits++;
+			position++;
+			/* leading zeros are not significant */
+			if(mantissa == 0 && d == 0) {
+				exponent -= point ? 1 : 0;
+				continue;
+			}
+			if(significant<18) {
+				mantissa = 10*mantissa+d;
+				significant++;
+				exponent -= point ? 1 : 0;
+			}
+			else {
+				/* the digit is dropped, which is only exact if it is a zero - the fallback below handles that */
+				significant++;
+				exponent += point ? 0 : 1;
+			}
+		}
+		if(digits>0 && position<limit && (buffer.get(position) == 'e' || buffer.get(position) == 'E')) {
+			position++;
+			boolean negativeExponent = false;
+			if(position<limit && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+				negativeExponent = buffer.get(position++) == '-';
+			}
+			int e = 0;
+			int exponentDigits = 0;
+			while(position<limit) {
+				int d = buffer.get(position)-'0';
+				if(d<0 || d>9) {
+					break;
+				}
+				/* saturate, anything this large is handled by the fallback */
+				e = Math.min(10*e+d, 100000);
+				exponentDigits++;
+				position++;
+			}
+			if(exponentDigits == 0) {
+				return fallback(start);
+			}
+			exponent += negativeExponent ? -e : e;
+		}
+		if(digits == 0 || position<limit && !isSeparator(buffer.get(position))) {
+			return fallback(start);
+		}
+		double result;
+		if(mantissa == 0) {
+			result = 0.0;
+		}
+		else if(significant<=EXACT_DIGITS && exponent>=-22 && exponent<=22) {
+			/* both operands are exact, so the one rounding gives the correctly rounded result */
+			result = exponent<0 ? mantissa/POWERS_OF_TEN[-exponent] : mantissa*POWERS_OF_TEN[exponent];
+		}
+		else {
+			return fallback(start);
+		}
+		return negative ? -result : result;
+	}
+
+	/** parse a double field the slow way, for forms the fast path does not handle
+	 * @param int start
+	 * @return double
+	 */
+	private double fallback(int start) {
+		position = start;
+		while(position<limit && !isSeparator(buffer.get(position))) {
+			position++;
+		}
+		return Double.parseDouble(text(start));
+	}
+
+	/** consume a word if it is next on the line, in any case, and is followed by a separator
+	 * @param String word - upper case
+	 * @return boolean
+	 */
+	private boolean matchWord(String word) {
+		int end = position+word.length();
+		if(end>limit || end<limit && !isSeparator(buffer.get(end))) {
+			return false;
+		}
+		for(int i = 0; i<word.length(); i++) {
+			if(Character.toUpperCase((char)buffer.get(position+i)) != word.charAt(i)) {
+				return false;
+			}
+		}
+		position = end;
+		return true;
+	}
+
+	/** make sure a field ends at a separator
+	 * @param int start
+	 */
+	private void checkFieldEnd(int start) {
+		if(position<limit && !isSeparator(buffer.get(position))) {
+			while(position<limit && !isSeparator(buffer.get(position))) {
+				position++;
+			}
+			throw new NumberFormatException("For input string: \""+text(start)+"\"");
+		}
+	}
+
+	/** make sure nothing but blanks is left on the line, and move to the next line
+	 * @param String message
+	 */
+	private void expectLineEnd(String message) {
+		if(!atLineEnd()) {
+			throw new IllegalArgumentException(message);
+		}
+		skipLine();
+	}
+
+	/** test if only blanks are left on the line
+	 * @return boolean
+	 */
+	private boolean atLineEnd() {
+		skipBlanks();
+		return position>=limit || buffer.get(position) == '\n';
+	}
+
+	/** move past spaces, tabs and carriage returns */
+	private void skipBlanks() {
+		while(position<limit) {
+			byte b = buffer.get(position);
+			if(b != ' ' && b != '\t' && b != '\r') {
+				return;
+			}
+			position++;
+		}
+	}
+
+	/** move to the start of the next line */
+	private void skipLine() {
+		while(position<limit && buffer.get(position++) != '\n') {
+			/* skip */
+		}
+	}
+
+	/** test for the end of a field
+	 * @param byte b
+	 * @return boolean
+	 */
+	private static boolean isSeparator(byte b) {
+		return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+	}
+
+	/** test for the end of a line
+	 * @param byte b
+	 * @return boolean
+	 */
+	private static boolean isLineEnd(byte b) {
+		return b == '\r' || b == '\n';
+	}
+
+	/** copy the bytes of a field into a String, only used for the fallback and error messages
+	 * @param int start
+	 * @return String
+	 */
+	private String text(int start) {
+		int end = start;
+		while(end<limit && !isSeparator(buffer.get(end))) {
+			end++;
+		}
+		byte[] bytes = new byte[end-start];
+		for(int i = 0; i<bytes.length; i++) {
+			bytes[i] = buffer.get(start+i);
+		}
+		return new String(bytes, StandardCharsets.US_ASCII);
+	}
+}
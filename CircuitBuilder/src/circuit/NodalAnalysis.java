@@ -0,0 +1,195 @@
+package circuit;
+import java.util.ArrayList;
+
+/**
+ * Modified nodal analysis (MNA) engine used by CircuitAnalysis.
+ *
+ * Unlike the series/parallel reduction this works for any topology, including bridge and mesh networks. The unknowns are the voltage at every non-ground node followed by the current through
+ * every voltage source. Resistors are stamped as conductances and each voltage source adds one constraint row, the resulting sparse system is then solved with a sparse LU factorization.
+ *
+ * The engine runs directly on the arrays of a CompactCircuit, matrix rows are the dense node indices with the ground row left out, so node Ids of any size or spacing only cost one row each.
+ * The matrix is factored in the minimum degree order found by FillOrdering rather than in node Id order, results are still read back by node Id.
+ *
+ * A very small conductance (GMIN) from every node to ground keeps the matrix non-singular when part of the circuit is left floating, in the same way SPICE does - floating nodes simply settle at 0V.
+ *
+ * The factorization is kept after solve(), so ParameterSweep can update the solution for new component values with extra solves instead of new factorizations.
+ *
+ * Results by node Id, node currents and the equivalent resistance are found by CircuitSolver from the node voltages and branch currents solved here.
+ *
+ * Sign conventions follow the rest of the program: a voltage source raises the potential from its first (smaller Id) node to its second node, and resistor currents are positive from node 1 to node 2.
+ *
+ * @author Michael Sinclair.
+ * @version 2.516
+ * @since 18 October 2026.
+ */
+
+public class NodalAnalysis extends CircuitSolver {
+	/* conductance added from every node to ground so floating sections do not make the matrix singular */
+	private static final double GMIN = 1e-12;
+	/* pivot tolerance handed to the LU factorization */
+	private static final double PIVOT_TOLERANCE = 0.1;
+
+	/* instance variables */
+	/* dense index of the ground node */
+	private final int groundIndex;
+	private final int nodeRows;
+	private int sourceRows;
+	/* matrix row of each voltage source, -1 for resistors */
+	private final int[] sourceRow;
+	/* solution vector - node voltages then voltage source currents */
+	private double[] solution;
+	/* factorization of the system, kept so other right hand sides can be solved without factoring again */
+	private SparseLU lu;
+
+	/** Constructor for a list of components, converted to compact form first
+	 * @param int groundId
+	 * @param ArrayList<Component> comps
+	 */
+	public NodalAnalysis(int groundId, ArrayList<Component> comps) {
+		this(groundId, CompactCircuit.fromComponents(comps));
+	}
+
+	/** Constructor sets up the row numbering of the circuit, call solve() to perform the analysis
+	 * @param int groundId
+	 * @param CompactCircuit compact
+	 */
+	public NodalAnalysis(int groundId, CompactCircuit compact) {
+		super(compact);
+		groundIndex = circuit.indexOf(groundId);
+		if(groundIndex<0) {
+			throw new IllegalArgumentException("Ground node "+groundId+" is not connected to any component.");
+		}
+		/* every node but ground gets a row */
+		nodeRows = circuit.getNodeCount()-1;
+		sourceRow = new int[circuit.getComponentCount()];
+		sourceRows = 0;
+		for(int k = 0; k<circuit.getComponentCount(); k++) {
+			sourceRow[k] = circuit.getKind(k) == CompactCircuit.VOLTAGE ? nodeRows+sourceRows++ : -1;
+		}
+	}
+
+	/* methods */
+
+	/** Build the MNA system and solve it */
+	@Override
+	public void solve() {
+		int size = nodeRows+sourceRows;
+		int count = 0;
+		/* each resistor or voltage source stamps at most 4 entries and each node one GMIN entry */
+		int capacity = 4*circuit.getComponentCount()+nodeRows;
+		int[] rows = new int[capacity];
+		int[] cols = new int[capacity];
+		double[] vals = new double[capacity];
+		double[] rhs = new double[size];
+		for(int i = 0; i<nodeRows; i++) {
+			rows[count] = i;
+			cols[count] = i;
+			vals[count++] = GMIN;
+		}
+		for(int k = 0; k<circuit.getComponentCount(); k++) {
+			int a = row(circuit.getNode1(k));
+			int b = row(circuit.getNode2(k));
+			if(circuit.getKind(k) == CompactCircuit.RESISTOR) {
+				double g = 1.0/circuit.getValue(k);
+				if(a>=0) {
+					rows[count] = a; cols[count] = a; vals[count++] = g;
+				}
+				if(b>=0) {
+					rows[count] = b; cols[count] = b; vals[count++] = g;
+				}
+				if(a>=0 && b>=0) {
+					rows[count] = a; cols[count] = b; vals[count++] = -g;
+					rows[count] = b; cols[count] = a; vals[count++] = -g;
+				}
+			}
+			else {
+				/* V(node2) - V(node1) = v, the source current unknown enters the KCL rows of both nodes */
+				int source = sourceRow[k];
+				if(b>=0) {
+					rows[count] = b; cols[count] = source; vals[count++] = 1.0;
+					rows[count] = source; cols[count] = b; vals[count++] = 1.0;
+				}
+				if(a>=0) {
+					rows[count] = a; cols[count] = source; vals[count++] = -1.0;
+					rows[count] = source; cols[count] = a; vals[count++] = -1.0;
+				}
+				rhs[source] = circuit.getValue(k);
+			}
+		}
+		SparseMatrix matrix = SparseMatrix.fromTriplets(size, rows, cols, vals, count);
+		/* eliminate in a fill-reducing order rather than in node Id order */
+		lu = new SparseLU(matrix, FillOrdering.minimumDegree(matrix), PIVOT_TOLERANCE);
+		solution = lu.solve(rhs);
+	}
+
+	/** get voltage of a node by its dense index
+	 * @param int node
+	 * @return double
+	 */
+	@Override
+	public double nodeVoltage(int node) {
+		int r = row(node);
+		return r<0 ? 0.0 : solution[r];
+	}
+
+	/** get the current through a component, positive from node 1 to node 2
+	 * @param int edge
+	 * @return double
+	 */
+	@Override
+	public double branchCurrent(int edge) {
+		if(circuit.getKind(edge) == CompactCircuit.RESISTOR) {
+			return (nodeVoltage(circuit.getNode1(edge))-nodeVoltage(circuit.getNode2(edge)))/circuit.getValue(edge);
+		}
+		/* the MNA unknown is the current entering the source at node 2, the delivered current is its negative */
+		return -solution[sourceRow[edge]];
+	}
+
+	/** get the number of voltage sources in the system
+	 * @return int sourceRows
+	 */
+	public int getSourceCount() {
+		return sourceRows;
+	}
+
+	/** Solve the factored system for another right hand side, for example to update the solution after a change of one component
+	 * @param double[] b - one entry per matrix row
+	 * @return double[] x
+	 */
+	protected double[] solveSystem(double[] b) {
+		return lu.solve(b);
+	}
+
+	/** get the solution vector - node voltages by matrix row, then voltage source currents
+	 * @return double[]
+	 */
+	protected double[] getSolution() {
+		return solution;
+	}
+
+	/** get the number of rows of the system
+	 * @return int
+	 */
+	protected int getSize() {
+		return nodeRows+sourceRows;
+	}
+
+	/** find the matrix row of a voltage source
+	 * @param int edge
+	 * @return int row, -1 for resistors
+	 */
+	protected int sourceRow(int edge) {
+		return sourceRow[edge];
+	}
+
+	/** find the matrix row of a node index
+	 * @param int node
+	 * @return int row, -1 for ground
+	 */
+	protected int row(int node) {
+		if(node == groundIndex) {
+			return -1;
+		}
+		return node<groundIndex ? node : node-1;
+	}
+}
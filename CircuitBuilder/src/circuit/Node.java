@@ -6,17 +6,23 @@ import java.util.ArrayList;
  * 
  * Contains an id that describes the node, as well as the voltage at the node (to be added), the current leaving the node (to be added) and an array list of components attached to the node.
  * 
+ * The attachments are only changed by the Circuit the node belongs to, while it holds its edit lock - readers on other threads use the node lists of a published Circuit.Version instead.
+ * 
  * 
  * @author Michael Sinclair.
- * @version 2.400
+ * @version 2.521
  * @since 12 February 2019.
  */
 
 public class Node implements Comparable<Node>{
+	/* above this many attachments the position of each attachment is indexed so that disconnecting stays O(1) on high-degree nodes such as a ground bus */
+	private static final int INDEX_THRESHOLD = 16;
 	/*Instance variables*/
     private final int id;
     private double voltageAt;
     private ArrayList<Component> attachments;
+    /* position of each attachment keyed by Component.key(), null until the node has many attachments - components built outside a Circuit all have Id 0 and share a key, so they are not indexed */
+    private LongIntHashMap attachmentIndex;
     private double currentLeaving;
     
     /**Assign an id to this node.
@@ -48,7 +54,7 @@ public class Node implements Comparable<Node>{
     /** get voltage at Node
      * @return double voltageAt
      * */
-    protected double getVoltage() {
+    public double getVoltage() {
     	return voltageAt;
     }
     
@@ -62,7 +68,7 @@ public class Node implements Comparable<Node>{
     /** get current leaving Node
      * @return double currentLeaving
      * */
-    protected double getCurrent() {
+    public double getCurrent() {
     	return currentLeaving;
     }
     
@@ -70,18 +76,65 @@ public class Node implements Comparable<Node>{
      * @param Component component
      * */
     protected void connect(Component component) {
+    	if(attachmentIndex != null && isIndexed(component)) {
+    		attachmentIndex.put(component.key(), attachments.size());
+    	}
     	attachments.add(component);
+    	if(attachmentIndex == null && attachments.size()>INDEX_THRESHOLD) {
+    		/* node has become large, start indexing its attachments */
+    		attachmentIndex = new LongIntHashMap(2*INDEX_THRESHOLD);
+    		for(int i = 0; i<attachments.size(); i++) {
+    			if(isIndexed(attachments.get(i))) {
+    				attachmentIndex.put(attachments.get(i).key(), i);
+    			}
+    		}
+    	}
     }
     
     /** disconnect a component from this node, methods for tracking component connections
+     * the last attachment is moved into the freed position so the order of attachments is not kept
      * 
      * @param Component component
      */
     protected void disconnect(Component component) {
-    	attachments.remove(component);
+    	int i;
+    	if(attachmentIndex == null || !isIndexed(component)) {
+    		i = attachments.indexOf(component);
+    	}
+    	else {
+    		i = attachmentIndex.get(component.key(), -1);
+    		attachmentIndex.remove(component.key());
+    	}
+    	if(i<0) {
+    		return;
+    	}
+    	int last = attachments.size()-1;
+    	if(i != last) {
+    		Component moved = attachments.get(last);
+    		attachments.set(i, moved);
+    		if(attachmentIndex != null && isIndexed(moved)) {
+    			attachmentIndex.put(moved.key(), i);
+    		}
+    	}
+    	attachments.remove(last);
+    }
+    
+    /** test if a component can be found through the attachment index, only components with an Id from a Circuit have a key of their own
+     * @param Component component
+     * @return boolean
+     */
+    private static boolean isIndexed(Component component) {
+    	return component.getId() != 0;
+    }
+    
+    /** disconnect every component from this node
+     */
+    protected void clearAttachments() {
+    	attachments.clear();
+    	attachmentIndex = null;
     }
     
-    /** get the list of attachments that are attached to this node
+    /** get the list of attachments that are attached to this node - use connect/disconnect to change it
      * 
      * @return ArrayList<Component> attachments
      */
@@ -0,0 +1,145 @@
+package circuit;
+import java.util.ArrayList;
+
+/**
+ * Registry of the nodes in a circuit, mapping node Id to Node object.
+ *
+ * The map is an open addressing hash table over a primitive int[] of keys, so looking a node up does not box the Id or walk a list - finding or creating a node is O(1)
+ * and loading a netlist with N components costs O(N) rather than O(N^2). Nodes are also kept in a list in the order they were created for iteration.
+ *
+ * @author Michael Sinclair.
+ * @version 2.502
+ * @since 18 October 2026.
+ */
+
+public class NodeRegistry {
+	/* instance variables */
+	private int[] keys;
+	/* a null value marks an empty slot */
+	private Node[] values;
+	private int mask;
+	private ArrayList<Node> nodes;
+
+	/** Constructor for an empty registry */
+	public NodeRegistry() {
+		this(16);
+	}
+
+	/** Constructor for a registry expected to hold a given number of nodes
+	 * @param int expected
+	 */
+	public NodeRegistry(int expected) {
+		nodes = new ArrayList<>(expected);
+		allocate(capacityFor(expected));
+	}
+
+	/* methods */
+
+	/** find a node by Id
+	 * @param int id
+	 * @return Node or null if no node has this Id
+	 */
+	public Node find(int id) {
+		int i = slot(id);
+		while(values[i] != null) {
+			if(keys[i] == id) {
+				return values[i];
+			}
+			i = (i+1) & mask;
+		}
+		return null;
+	}
+
+	/** find a node by Id, creating it if it does not exist yet - ensures components are attached to the same node objects
+	 * @param int id
+	 * @return Node
+	 */
+	public Node findOrCreate(int id) {
+		int i = slot(id);
+		while(values[i] != null) {
+			if(keys[i] == id) {
+				return values[i];
+			}
+			i = (i+1) & mask;
+		}
+		Node node = new Node(id);
+		keys[i] = id;
+		values[i] = node;
+		nodes.add(node);
+		/* keep the table at most half full */
+		if(nodes.size()*2>keys.length) {
+			rehash(keys.length*2);
+		}
+		return node;
+	}
+
+	/** make room for a number of nodes in total, used before loading large netlists
+	 * @param int expected
+	 */
+	public void ensureCapacity(int expected) {
+		nodes.ensureCapacity(expected);
+		int capacity = capacityFor(expected);
+		if(capacity>keys.length) {
+			rehash(capacity);
+		}
+	}
+
+	/** get all nodes in the order they were created
+	 * @return ArrayList<Node> nodes
+	 */
+	public ArrayList<Node> getNodes() {
+		return nodes;
+	}
+
+	/** get the number of nodes
+	 * @return int
+	 */
+	public int size() {
+		return nodes.size();
+	}
+
+	/** find the home slot of an Id - mixes the bits so sequential Ids spread over the table
+	 * @param int id
+	 * @return int
+	 */
+	private int slot(int id) {
+		int h = id*0x9E3779B9;
+		return (h ^ (h>>>16)) & mask;
+	}
+
+	/** smallest power of two table that keeps the load at or below one half
+	 * @param int expected
+	 * @return int
+	 */
+	private static int capacityFor(int expected) {
+		int capacity = 16;
+		while(capacity<2*expected) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	/** allocate empty tables
+	 * @param int capacity
+	 */
+	private void allocate(int capacity) {
+		keys = new int[capacity];
+		values = new Node[capacity];
+		mask = capacity-1;
+	}
+
+	/** move every node into larger tables
+	 * @param int capacity
+	 */
+	private void rehash(int capacity) {
+		allocate(capacity);
+		for(Node node:nodes) {
+			int i = slot(node.getId());
+			while(values[i] != null) {
+				i = (i+1) & mask;
+			}
+			keys[i] = node.getId();
+			values[i] = node;
+		}
+	}
+}
@@ -0,0 +1,251 @@
+package circuit;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Loads one large netlist on all cores of a ForkJoinPool.
+ *
+ * The mapped file is split into chunks at line boundaries and every chunk is parsed by its own NetlistParser into its own Netlist, so the parsing threads share nothing.
+ * Each chunk then sorts its distinct node Ids, the sorted chunk tables are merged into one global node table, and each chunk copies its components into the arrays of the whole circuit
+ * at its own offset, numbering its resistors and voltage sources after those of the chunks before it. The CompactCircuit is built on the merged node table, so the result is exactly
+ * what a sequential load of the same file gives.
+ *
+ * The loader only handles a single circuit. If the netlist is too small to split, or any chunk finds an END line or an invalid line, load() returns null and the file should be read
+ * with a sequential NetlistParser, which also reports errors with the right line numbers.
+ *
+ * @author Michael Sinclair.
+ * @version 2.508
+ * @since 18 October 2026.
+ */
+
+public class ParallelNetlistLoader {
+	/* smaller files are not worth splitting */
+	private static final int MIN_CHUNK = 1<<20;
+	/* chunks per thread, so a slow chunk does not hold up the others */
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	/* instance variables */
+	private final ByteBuffer buffer;
+	private final ForkJoinPool pool;
+	private int ground;
+
+	/** Constructor for a buffer holding netlist text, loaded on the common pool
+	 * @param ByteBuffer bytes
+	 */
+	public ParallelNetlistLoader(ByteBuffer bytes) {
+		this(bytes, ForkJoinPool.commonPool());
+	}
+
+	/** Constructor for a buffer holding netlist text
+	 * @param ByteBuffer bytes
+	 * @param ForkJoinPool threads
+	 */
+	public ParallelNetlistLoader(ByteBuffer bytes, ForkJoinPool threads) {
+		buffer = bytes;
+		pool = threads;
+		ground = 0;
+	}
+
+	/* methods */
+
+	/** Map a netlist file into memory
+	 * @param Path file
+	 * @return ParallelNetlistLoader
+	 * @throws IOException if the file cannot be read or is 2 GB or larger
+	 */
+	public static ParallelNetlistLoader open(Path file) throws IOException {
+		return new ParallelNetlistLoader(NetlistParser.map(file));
+	}
+
+	/** Load the netlist
+	 * @return CompactCircuit, or null if the netlist has to be read sequentially
+	 */
+	public CompactCircuit load() {
+		int[] bounds = chunkBounds();
+		int chunks = bounds.length-1;
+		if(chunks<2) {
+			return null;
+		}
+		ChunkTask[] tasks = new ChunkTask[chunks];
+		for(int c = 0; c<chunks; c++) {
+			tasks[c] = new ChunkTask(buffer, bounds[c], bounds[c+1], c == chunks-1);
+			pool.execute(tasks[c]);
+		}
+		/* offsets of each chunk in the whole circuit, and the distinct node Ids of all chunks */
+		int[] offset = new int[chunks+1];
+		int[] resistorOffset = new int[chunks+1];
+		int[] voltageOffset = new int[chunks+1];
+		int idCount = 0;
+		boolean sequential = false;
+		for(int c = 0; c<chunks; c++) {
+			tasks[c].join();
+			sequential |= tasks[c].failed;
+			if(sequential) {
+				continue;
+			}
+			Netlist part = tasks[c].netlist;
+			offset[c+1] = offset[c]+part.size();
+			resistorOffset[c+1] = resistorOffset[c]+part.getResistorCount();
+			voltageOffset[c+1] = voltageOffset[c]+part.getVoltageCount();
+			idCount += tasks[c].nodeIds.length;
+			/* the last ground directive in the file wins */
+			if(part.hasGround()) {
+				ground = part.getGround();
+			}
+		}
+		if(sequential) {
+			return null;
+		}
+		int[] sortedIds = mergeNodeIds(tasks, idCount);
+		int count = offset[chunks];
+		int[] first = new int[count];
+		int[] second = new int[count];
+		double[] values = new double[count];
+		byte[] kinds = new byte[count];
+		int[] ids = new int[count];
+		CopyTask[] copies = new CopyTask[chunks];
+		for(int c = 0; c<chunks; c++) {
+			copies[c] = new CopyTask(tasks[c].netlist, offset[c], resistorOffset[c], voltageOffset[c], first, second, values, kinds, ids);
+			/* the chunk's own buffers are no longer needed once it has been copied */
+			tasks[c] = null;
+			pool.execute(copies[c]);
+		}
+		for(CopyTask copy:copies) {
+			copy.join();
+		}
+		return new CompactCircuit(count, first, second, values, kinds, ids, sortedIds);
+	}
+
+	/** get the ground node Id given in the netlist, found by load()
+	 * @return int, 0 if the netlist has no ground directive
+	 */
+	public int getGround() {
+		return ground;
+	}
+
+	/** split the buffer into chunks that each start at the beginning of a line
+	 * @return int[] chunk c is bounds[c] to bounds[c+1]
+	 */
+	private int[] chunkBounds() {
+		int start = buffer.position();
+		int end = buffer.limit();
+		int chunks = (int)Math.max(1, Math.min((long)pool.getParallelism()*CHUNKS_PER_THREAD, (end-start)/MIN_CHUNK));
+		int[] bounds = new int[chunks+1];
+		bounds[0] = start;
+		int used = 1;
+		for(int c = 1; c<chunks; c++) {
+			int split = Math.max(start+(int)((long)(end-start)*c/chunks), bounds[used-1]);
+			/* move the split past the end of the line it falls in */
+			while(split<end && buffer.get(split-1) != '\n') {
+				split++;
+			}
+			if(split>bounds[used-1] && split<end) {
+				bounds[used++] = split;
+			}
+		}
+		bounds[used++] = end;
+		return Arrays.copyOf(bounds, used);
+	}
+
+	/** merge the sorted node Id tables of all chunks into one
+	 * @param ChunkTask[] tasks
+	 * @param int idCount - total length of the chunk tables
+	 * @return int[] every node Id once, in ascending order
+	 */
+	private static int[] mergeNodeIds(ChunkTask[] tasks, int idCount) {
+		int[] all = new int[idCount];
+		int filled = 0;
+		for(ChunkTask task:tasks) {
+			System.arraycopy(task.nodeIds, 0, all, filled, task.nodeIds.length);
+			filled += task.nodeIds.length;
+			task.nodeIds = null;
+		}
+		Arrays.parallelSort(all);
+		return CompactCircuit.unique(all, idCount);
+	}
+
+	/** Parses one chunk into its own netlist and sorts its node Ids */
+	private static class ChunkTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final ByteBuffer bytes;
+		/* an END line is only allowed at the very end of the last chunk */
+		private final boolean last;
+		private Netlist netlist;
+		private int[] nodeIds;
+		/* the chunk holds an END line or an invalid line */
+		private boolean failed;
+
+		/** Constructor
+		 * @param ByteBuffer whole - buffer of the whole netlist
+		 * @param int start
+		 * @param int end
+		 * @param boolean lastChunk
+		 */
+		ChunkTask(ByteBuffer whole, int start, int end, boolean lastChunk) {
+			ByteBuffer slice = whole.duplicate();
+			slice.limit(end);
+			slice.position(start);
+			bytes = slice;
+			last = lastChunk;
+		}
+
+		@Override
+		protected void compute() {
+			NetlistParser parser = new NetlistParser(bytes);
+			netlist = new Netlist(parser.estimateComponents());
+			try {
+				boolean ended = parser.next(netlist);
+				failed = ended && (!last || parser.hasMore());
+			} catch (IllegalArgumentException e) {
+				failed = true;
+			}
+			nodeIds = failed ? null : netlist.distinctNodeIds();
+		}
+	}
+
+	/** Copies one chunk into the arrays of the whole circuit */
+	private static class CopyTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Netlist netlist;
+		private final int offset;
+		private final int resistorOffset;
+		private final int voltageOffset;
+		private final int[] first;
+		private final int[] second;
+		private final double[] values;
+		private final byte[] kinds;
+		private final int[] ids;
+
+		/** Constructor
+		 * @param Netlist part
+		 * @param int at - position of the chunk's first component
+		 * @param int resistorsBefore
+		 * @param int voltagesBefore
+		 * @param int[] targetFirst
+		 * @param int[] targetSecond
+		 * @param double[] targetValues
+		 * @param byte[] targetKinds
+		 * @param int[] targetIds
+		 */
+		CopyTask(Netlist part, int at, int resistorsBefore, int voltagesBefore, int[] targetFirst, int[] targetSecond, double[] targetValues, byte[] targetKinds, int[] targetIds) {
+			netlist = part;
+			offset = at;
+			resistorOffset = resistorsBefore;
+			voltageOffset = voltagesBefore;
+			first = targetFirst;
+			second = targetSecond;
+			values = targetValues;
+			kinds = targetKinds;
+			ids = targetIds;
+		}
+
+		@Override
+		protected void compute() {
+			netlist.copyTo(offset, first, second, values, kinds, ids, resistorOffset, voltageOffset);
+		}
+	}
+}
@@ -0,0 +1,240 @@
+package circuit;
+import java.util.function.Consumer;
+
+/**
+ * Sweep of one resistor over a range of values, found from a single factorization of the circuit.
+ *
+ * Changing the resistance of one resistor between matrix rows a and b only changes the nodal matrix by dg * u u^T with u = e_a - e_b, a rank-1 update. After NodalAnalysis has factored
+ * the matrix A and solved A x = b once, one more solve gives w = A^-1 u, and by the Sherman-Morrison formula the solution for any new value of the resistor is
+ *
+ *     x' = x - w * dg (u^T x) / (1 + dg u^T w)
+ *
+ * which costs one pass over the solution vector instead of a new factorization. A sweep of any number of points therefore costs about as much as one analysis plus one extra solve.
+ *
+ * Each point is handed out as it is found, as a CircuitSolver holding the updated solution, so node voltages, component currents and the equivalent resistance of every point are read
+ * the same way as for a full analysis.
+ *
+ * @author Michael Sinclair.
+ * @version 2.516
+ * @since 18 October 2026.
+ */
+
+public class ParameterSweep {
+	/* instance variables */
+	private final CompactCircuit circuit;
+	private final NodalAnalysis nodal;
+	/* component index of the swept resistor */
+	private final int edge;
+	/* matrix rows of the ends of the swept resistor, -1 for ground */
+	private final int rowA;
+	private final int rowB;
+	/* conductance of the swept resistor in the factored matrix */
+	private final double conductance;
+	/* solution with the resistor at its value in the circuit, and A^-1 u */
+	private final double[] base;
+	private final double[] response;
+	/* u^T x and u^T w */
+	private final double baseDrop;
+	private final double responseDrop;
+	/* sum of the voltage source values, as used for the equivalent resistance of a full analysis */
+	private final double totalV;
+
+	/** Constructor for a circuit, sweeps the resistor with the given Id in its current snapshot
+	 * @param int groundId
+	 * @param Circuit cir
+	 * @param int resistorId - Id of the resistor, the number after R
+	 */
+	public ParameterSweep(int groundId, Circuit cir, int resistorId) {
+		this(groundId, cir.snapshot(), resistorId);
+	}
+
+	/** Constructor factors the circuit once and solves for the response to the swept resistor
+	 * @param int groundId
+	 * @param CompactCircuit compact
+	 * @param int resistorId - Id of the resistor, the number after R
+	 * @throws IllegalArgumentException if there is no such resistor or the ground node is not in the circuit
+	 * @throws IllegalStateException if the circuit has no voltage source
+	 */
+	public ParameterSweep(int groundId, CompactCircuit compact, int resistorId) {
+		circuit = compact;
+		int found = -1;
+		double sum = 0.0;
+		int sources = 0;
+		for(int k = 0; k<circuit.getComponentCount(); k++) {
+			if(circuit.getKind(k) == CompactCircuit.VOLTAGE) {
+				sum += circuit.getValue(k);
+				sources++;
+			}
+			else if(circuit.getComponentId(k) == resistorId) {
+				found = k;
+			}
+		}
+		if(found<0) {
+			throw new IllegalArgumentException("There is no resistor R"+resistorId+" in the circuit.");
+		}
+		if(sources == 0) {
+			throw new IllegalStateException("Cannot sweep a circuit without a voltage source.");
+		}
+		edge = found;
+		totalV = sum;
+		nodal = new NodalAnalysis(groundId, circuit);
+		nodal.solve();
+		rowA = nodal.row(circuit.getNode1(edge));
+		rowB = nodal.row(circuit.getNode2(edge));
+		conductance = 1.0/circuit.getValue(edge);
+		base = nodal.getSolution();
+		double[] u = new double[nodal.getSize()];
+		if(rowA>=0) {
+			u[rowA] += 1.0;
+		}
+		if(rowB>=0) {
+			u[rowB] -= 1.0;
+		}
+		response = nodal.solveSystem(u);
+		baseDrop = drop(base);
+		responseDrop = drop(response);
+	}
+
+	/* methods */
+
+	/** Solution of the circuit with the swept resistor at a new value
+	 * @param double resistance
+	 * @return Point
+	 * @throws IllegalArgumentException if the resistance is not positive
+	 * @throws IllegalStateException if the update is singular, the new value leaves the circuit without a solution
+	 */
+	public Point at(double resistance) {
+		if(!(resistance>0.0)) {
+			throw new IllegalArgumentException("Resistance must be positive, not "+resistance+".");
+		}
+		double change = 1.0/resistance-conductance;
+		double denominator = 1.0+change*responseDrop;
+		if(Math.abs(denominator)<1e-14) {
+			throw new IllegalStateException("The circuit has no solution with R"+circuit.getComponentId(edge)+" = "+resistance+" Ohms.");
+		}
+		double scale = change*baseDrop/denominator;
+		double[] x = new double[base.length];
+		for(int i = 0; i<x.length; i++) {
+			x[i] = base[i]-scale*response[i];
+		}
+		return new Point(resistance, x);
+	}
+
+	/** Sweep the resistor over the given values, each point is handed to the consumer as soon as it is found
+	 * @param double[] values - resistances to solve at, in the order they are wanted
+	 * @param Consumer<Point> results
+	 */
+	public void sweep(double[] values, Consumer<Point> results) {
+		for(double value:values) {
+			results.accept(at(value));
+		}
+	}
+
+	/** Evenly spaced values from first to last
+	 * @param double first
+	 * @param double last
+	 * @param int points - at least 1, a single point is at first
+	 * @return double[]
+	 */
+	public static double[] linear(double first, double last, int points) {
+		if(points<1) {
+			throw new IllegalArgumentException("A sweep needs at least one point.");
+		}
+		double[] values = new double[points];
+		for(int i = 0; i<points; i++) {
+			values[i] = points == 1 ? first : first+(last-first)*i/(points-1);
+		}
+		return values;
+	}
+
+	/** get the Id of the swept resistor
+	 * @return int
+	 */
+	public int getResistorId() {
+		return circuit.getComponentId(edge);
+	}
+
+	/** get the value of the swept resistor in the circuit
+	 * @return double
+	 */
+	public double getBaseValue() {
+		return circuit.getValue(edge);
+	}
+
+	/** u^T v - the drop across the swept resistor for a solution vector
+	 * @param double[] v
+	 * @return double
+	 */
+	private double drop(double[] v) {
+		return (rowA<0 ? 0.0 : v[rowA])-(rowB<0 ? 0.0 : v[rowB]);
+	}
+
+	/**
+	 * One point of a sweep - the solution of the circuit with the swept resistor at one value, read like any other CircuitSolver.
+	 */
+	public final class Point extends CircuitSolver {
+		/* value of the swept resistor at this point */
+		private final double value;
+		/* updated solution vector, laid out as in NodalAnalysis */
+		private final double[] solution;
+
+		/** Constructor
+		 * @param double resistance
+		 * @param double[] x
+		 */
+		private Point(double resistance, double[] x) {
+			super(ParameterSweep.this.circuit);
+			value = resistance;
+			solution = x;
+		}
+
+		/** Already solved by the rank-1 update, nothing to do */
+		@Override
+		public void solve() {
+		}
+
+		/** get voltage of a node by its dense index
+		 * @param int node
+		 * @return double
+		 */
+		@Override
+		public double nodeVoltage(int node) {
+			int r = nodal.row(node);
+			return r<0 ? 0.0 : solution[r];
+		}
+
+		/** get the current through a component, positive from node 1 to node 2 - the swept resistor uses its value at this point
+		 * @param int k
+		 * @return double
+		 */
+		@Override
+		public double branchCurrent(int k) {
+			if(circuit.getKind(k) == CompactCircuit.RESISTOR) {
+				double resistance = k == edge ? value : circuit.getValue(k);
+				return (nodeVoltage(circuit.getNode1(k))-nodeVoltage(circuit.getNode2(k)))/resistance;
+			}
+			return -solution[nodal.sourceRow(k)];
+		}
+
+		/** get the value of the swept resistor at this point
+		 * @return double
+		 */
+		public double getValue() {
+			return value;
+		}
+
+		/** get the equivalent resistance seen by the voltage sources at this point
+		 * @return double
+		 */
+		public double getTotalResistance() {
+			return equivalentResistance(totalV);
+		}
+
+		/** get the total current delivered by the voltage sources at this point
+		 * @return double
+		 */
+		public double getTotalCurrent() {
+			return totalV/getTotalResistance();
+		}
+	}
+}
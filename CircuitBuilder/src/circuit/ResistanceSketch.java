@@ -0,0 +1,377 @@
+package circuit;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Approximate resistance between any two nodes of a circuit too large for exact queries, from a Johnson-Lindenstrauss sketch of its electrical distances.
+ *
+ * The resistance between a and b is the squared length of W^1/2 B L^-1 (e_a - e_b), where B is the resistor incidence matrix, W their conductances and L the grounded conductance matrix.
+ * Projecting onto k random directions (random +-1/sqrt(k) weights on the resistors, Q) keeps every such length within a factor 1 +- error with high probability once k is about
+ * 4 ln N / (error^2/2 - error^3/3), so the sketch is the k vectors Z = Q W^1/2 B L^-1, found with k solves of the conjugate gradient engine - O(log N) solves for a fixed error.
+ * A query is then the squared distance between the k coordinates of the two nodes, O(log N) time however large the circuit. Voltage sources are shorted as for EffectiveResistance,
+ * by merging the nodes they join before solving.
+ *
+ * Coordinates are stored as floats node by node, so the k coordinates of a node are next to each other, in segments of at most 2GB. save() writes the sketch to a file that load() maps back into memory
+ * without reading it, so a sketch can be built once and queried by later runs - the file only holds node Ids and coordinates, it belongs to the circuit version it was built from.
+ *
+ * @author Michael Sinclair.
+ * @version 2.515
+ * @since 18 October 2026.
+ */
+
+public class ResistanceSketch {
+	/* file header - magic number, format version, then node count, dimension and random seed */
+	private static final int MAGIC = 0x43425253;
+	private static final int FORMAT = 1;
+	private static final int HEADER_BYTES = 24;
+	/* largest segment of coordinates, the limit of one mapped buffer */
+	private static final long SEGMENT_BYTES = Integer.MAX_VALUE;
+	/* relative residual of the solves, well below any useful error bound */
+	private static final double SOLVE_TOLERANCE = 1e-8;
+
+	/* instance variables */
+	/* node Ids in increasing order, the position of an Id is its node index */
+	private final int[] nodeIds;
+	/* connected part of each node, there is no path between nodes in different parts */
+	private final int[] part;
+	private final int dimension;
+	private final long seed;
+	/* coordinates, node by node */
+	private final FloatBuffer[] segments;
+	private final int nodesPerSegment;
+
+	/** Constructor for a sketch already built or loaded
+	 * @param int[] ids
+	 * @param int[] parts
+	 * @param int k
+	 * @param long randomSeed
+	 * @param FloatBuffer[] coordinates
+	 * @param int perSegment
+	 */
+	private ResistanceSketch(int[] ids, int[] parts, int k, long randomSeed, FloatBuffer[] coordinates, int perSegment) {
+		nodeIds = ids;
+		part = parts;
+		dimension = k;
+		seed = randomSeed;
+		segments = coordinates;
+		nodesPerSegment = perSegment;
+	}
+
+	/* methods */
+
+	/** Number of random directions needed for the relative error bound to hold for every pair of nodes with high probability
+	 * @param int nodes
+	 * @param double error - for example 0.1 for resistances within 10%
+	 * @return int
+	 */
+	public static int dimension(int nodes, double error) {
+		if(!(error>0.0 && error<1.0)) {
+			throw new IllegalArgumentException("Error bound must be between 0 and 1.");
+		}
+		double k = 4*Math.log(Math.max(2, nodes))/(error*error/2-error*error*error/3);
+		return (int)Math.min(Integer.MAX_VALUE, Math.ceil(k));
+	}
+
+	/** Build the sketch of a circuit for a relative error bound
+	 * @param CompactCircuit circuit
+	 * @param double error
+	 * @param ForkJoinPool pool - threads for the solves, or null for the common pool
+	 * @return ResistanceSketch
+	 */
+	public static ResistanceSketch build(CompactCircuit circuit, double error, ForkJoinPool pool) {
+		return build(circuit, dimension(circuit.getNodeCount(), error), System.nanoTime(), pool);
+	}
+
+	/** Build the sketch of a circuit with a given number of random directions
+	 * @param CompactCircuit circuit
+	 * @param int k - number of directions, see dimension()
+	 * @param long randomSeed - the same seed gives the same sketch
+	 * @param ForkJoinPool pool - threads for the solves, or null for the common pool
+	 * @return ResistanceSketch
+	 */
+	public static ResistanceSketch build(CompactCircuit circuit, int k, long randomSeed, ForkJoinPool pool) {
+		if(k<1) {
+			throw new IllegalArgumentException("A sketch needs at least one direction.");
+		}
+		int nodes = circuit.getNodeCount();
+		int[] group = sourceGroups(circuit);
+		CompactCircuit shorted = shortSources(circuit, group);
+		/* node of the shorted circuit each node was merged into, -1 if it has no resistors left */
+		int[] merged = new int[nodes];
+		for(int i = 0; i<nodes; i++) {
+			merged[i] = shorted.indexOf(circuit.getNodeId(group[i]));
+		}
+		/* the resistances do not depend on which node is taken as ground */
+		IterativeAnalysis solver = shorted.getNodeCount() == 0 ? null : new IterativeAnalysis(shorted.getNodeId(0), shorted);
+		if(solver != null) {
+			solver.setTolerance(SOLVE_TOLERANCE);
+			solver.setMaxIterations(Math.max(10000, nodes));
+		}
+		int perSegment = (int)Math.max(1, Math.min(nodes, SEGMENT_BYTES/4/k));
+		FloatBuffer[] segments = new FloatBuffer[(nodes+perSegment-1)/perSegment];
+		for(int s = 0; s<segments.length; s++) {
+			segments[s] = FloatBuffer.wrap(new float[Math.min(perSegment, nodes-s*perSegment)*k]);
+		}
+		float scale = (float)(1.0/Math.sqrt(k));
+		/* each direction has its own random stream split from the seed, so the sketch does not depend on the order the solves run in */
+		SplittableRandom root = new SplittableRandom(randomSeed);
+		SplittableRandom[] streams = new SplittableRandom[k];
+		for(int d = 0; d<k; d++) {
+			streams[d] = root.split();
+		}
+		Runnable solves = () -> IntStream.range(0, k).parallel().forEach(d -> {
+			SplittableRandom random = streams[d];
+			/* B^T W^1/2 q for random signs q on the resistors */
+			double[] injected = new double[shorted.getNodeCount()];
+			for(int e = 0; e<shorted.getComponentCount(); e++) {
+				double weight = random.nextBoolean() ? scale : -scale;
+				weight /= Math.sqrt(shorted.getValue(e));
+				injected[shorted.getNode1(e)] += weight;
+				injected[shorted.getNode2(e)] -= weight;
+			}
+			double[] z = solver.potentials(injected);
+			for(int i = 0; i<nodes; i++) {
+				segments[i/perSegment].put((i%perSegment)*k+d, merged[i]<0 ? 0.0f : (float)z[merged[i]]);
+			}
+		});
+		if(solver != null) {
+			(pool == null ? ForkJoinPool.commonPool() : pool).submit(solves).join();
+		}
+		int[] ids = new int[nodes];
+		for(int i = 0; i<nodes; i++) {
+			ids[i] = circuit.getNodeId(i);
+		}
+		return new ResistanceSketch(ids, connectedParts(circuit), k, randomSeed, segments, perSegment);
+	}
+
+	/** Copy the resistors of a circuit with the nodes joined by voltage sources merged into one, resistors left between a merged node and itself are dropped
+	 * @param CompactCircuit circuit
+	 * @param int[] group - node each node is merged into
+	 * @return CompactCircuit made of resistors only
+	 */
+	private static CompactCircuit shortSources(CompactCircuit circuit, int[] group) {
+		int count = circuit.getComponentCount();
+		int[] first = new int[count];
+		int[] second = new int[count];
+		double[] values = new double[count];
+		byte[] kinds = new byte[count];
+		int[] ids = new int[count];
+		int kept = 0;
+		for(int k = 0; k<count; k++) {
+			if(circuit.getKind(k) != CompactCircuit.RESISTOR) {
+				continue;
+			}
+			int a = circuit.getNodeId(group[circuit.getNode1(k)]);
+			int b = circuit.getNodeId(group[circuit.getNode2(k)]);
+			if(a == b) {
+				continue;
+			}
+			first[kept] = Math.min(a, b);
+			second[kept] = Math.max(a, b);
+			values[kept] = circuit.getValue(k);
+			kinds[kept] = CompactCircuit.RESISTOR;
+			ids[kept] = circuit.getComponentId(k);
+			kept++;
+		}
+		return new CompactCircuit(kept, first, second, values, kinds, ids);
+	}
+
+	/** Find the nodes joined by voltage sources alone
+	 * @param CompactCircuit circuit
+	 * @return int[] smallest node index joined to each node, the node itself if it has no sources
+	 */
+	private static int[] sourceGroups(CompactCircuit circuit) {
+		int nodes = circuit.getNodeCount();
+		int[] group = new int[nodes];
+		for(int i = 0; i<nodes; i++) {
+			group[i] = i;
+		}
+		for(int k = 0; k<circuit.getComponentCount(); k++) {
+			if(circuit.getKind(k) == CompactCircuit.VOLTAGE) {
+				int a = find(group, circuit.getNode1(k));
+				int b = find(group, circuit.getNode2(k));
+				group[Math.max(a, b)] = Math.min(a, b);
+			}
+		}
+		for(int i = 0; i<nodes; i++) {
+			group[i] = find(group, i);
+		}
+		return group;
+	}
+
+	/** find the representative of a node in a union-find forest, halving the path on the way
+	 * @param int[] parent
+	 * @param int i
+	 * @return int
+	 */
+	private static int find(int[] parent, int i) {
+		while(parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	/** Label the connected parts of a circuit, through resistors and voltage sources
+	 * @param CompactCircuit circuit
+	 * @return int[] part of each dense node
+	 */
+	private static int[] connectedParts(CompactCircuit circuit) {
+		int nodes = circuit.getNodeCount();
+		int[] start = circuit.getAdjStart();
+		int[] edges = circuit.getAdjEdge();
+		int[] parts = new int[nodes];
+		Arrays.fill(parts, -1);
+		int[] stack = new int[nodes];
+		for(int i = 0; i<nodes; i++) {
+			if(parts[i]>=0) {
+				continue;
+			}
+			int top = 0;
+			stack[top++] = i;
+			parts[i] = i;
+			while(top>0) {
+				int node = stack[--top];
+				for(int p = start[node]; p<start[node+1]; p++) {
+					int other = circuit.otherNode(edges[p], node);
+					if(parts[other]<0) {
+						parts[other] = i;
+						stack[top++] = other;
+					}
+				}
+			}
+		}
+		return parts;
+	}
+
+	/** Approximate resistance between two nodes
+	 * @param int nodeId1
+	 * @param int nodeId2
+	 * @return double - infinite for nodes with no path between them
+	 * @throws IllegalArgumentException if a node is not in the sketch
+	 */
+	public double resistance(int nodeId1, int nodeId2) {
+		int a = Arrays.binarySearch(nodeIds, nodeId1);
+		int b = Arrays.binarySearch(nodeIds, nodeId2);
+		if(a<0 || b<0) {
+			throw new IllegalArgumentException("Node "+(a<0 ? nodeId1 : nodeId2)+" is not connected to any component.");
+		}
+		if(part[a] != part[b]) {
+			return Double.POSITIVE_INFINITY;
+		}
+		FloatBuffer first = segments[a/nodesPerSegment];
+		FloatBuffer second = segments[b/nodesPerSegment];
+		int p = (a%nodesPerSegment)*dimension;
+		int q = (b%nodesPerSegment)*dimension;
+		double sum = 0.0;
+		for(int d = 0; d<dimension; d++) {
+			double difference = first.get(p+d)-second.get(q+d);
+			sum += difference*difference;
+		}
+		return sum;
+	}
+
+	/** Write the sketch to a file
+	 * @param Path file
+	 * @throws IOException
+	 */
+	public void save(Path file) throws IOException {
+		int nodes = nodeIds.length;
+		long size = HEADER_BYTES+8L*nodes+4L*nodes*dimension;
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer head = ByteBuffer.allocate(HEADER_BYTES+8*nodes).order(ByteOrder.LITTLE_ENDIAN);
+			head.putInt(MAGIC).putInt(FORMAT).putInt(nodes).putInt(dimension).putLong(seed);
+			head.asIntBuffer().put(nodeIds).put(part);
+			writeFully(channel, head, 0);
+			long position = HEADER_BYTES+8L*nodes;
+			for(FloatBuffer segment:segments) {
+				ByteBuffer bytes = ByteBuffer.allocate(4*segment.capacity()).order(ByteOrder.LITTLE_ENDIAN);
+				FloatBuffer source = segment.duplicate();
+				source.clear();
+				bytes.asFloatBuffer().put(source);
+				writeFully(channel, bytes, position);
+				position += bytes.capacity();
+			}
+			if(channel.size() != size) {
+				throw new IOException("Sketch file "+file+" was not written completely.");
+			}
+		}
+	}
+
+	/** write a whole buffer at a position of a channel
+	 * @param FileChannel channel
+	 * @param ByteBuffer bytes
+	 * @param long position
+	 * @throws IOException
+	 */
+	private static void writeFully(FileChannel channel, ByteBuffer bytes, long position) throws IOException {
+		bytes.clear();
+		while(bytes.hasRemaining()) {
+			position += channel.write(bytes, position);
+		}
+	}
+
+	/** Map a sketch file written by save() - the coordinates are read from the file as they are queried, only the node Ids are loaded
+	 * @param Path file
+	 * @return ResistanceSketch
+	 * @throws IOException if the file cannot be read or is not a sketch
+	 */
+	public static ResistanceSketch load(Path file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer head = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			while(head.hasRemaining() && channel.read(head, head.position())>=0) {
+				/* keep reading until the header is complete */
+			}
+			head.flip();
+			if(head.remaining()<HEADER_BYTES || head.getInt() != MAGIC || head.getInt() != FORMAT) {
+				throw new IOException(file+" is not a resistance sketch.");
+			}
+			int nodes = head.getInt();
+			int k = head.getInt();
+			long randomSeed = head.getLong();
+			long tables = HEADER_BYTES+8L*nodes;
+			if(nodes<0 || k<1 || channel.size() != tables+4L*nodes*k) {
+				throw new IOException(file+" is not a complete resistance sketch.");
+			}
+			IntBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, 8L*nodes).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+			int[] ids = new int[nodes];
+			int[] parts = new int[nodes];
+			table.get(ids).get(parts);
+			int perSegment = (int)Math.max(1, Math.min(nodes, SEGMENT_BYTES/4/k));
+			FloatBuffer[] segments = new FloatBuffer[nodes == 0 ? 0 : (nodes+perSegment-1)/perSegment];
+			long position = tables;
+			for(int s = 0; s<segments.length; s++) {
+				long bytes = 4L*k*Math.min(perSegment, nodes-s*perSegment);
+				MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, bytes);
+				segments[s] = mapped.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+				position += bytes;
+			}
+			return new ResistanceSketch(ids, parts, k, randomSeed, segments, perSegment);
+		}
+	}
+
+	/** get the number of random directions, the length of each node's coordinates
+	 * @return int
+	 */
+	public int getDimension() {
+		return dimension;
+	}
+
+	/** get the number of nodes sketched
+	 * @return int
+	 */
+	public int getNodeCount() {
+		return nodeIds.length;
+	}
+}
@@ -17,15 +17,23 @@ package circuit;
 public class Resistor extends Component implements Comparable<Component>{
     /*Instance variables.*/
     private double resistance;
-    protected static int resnum = 1;
     /* for testing doubles with uncertainty in last digits do not test against 0.0 directly - instead compare to a very small number - declared statically to reduce overhead*/
     private static double nonZeroNonNegativeResistance= 0.00001;
     
-    /**Constructor that checks that resistor is non-zero and non-negative, sets resistance and attaches nodes
+    /**Constructor that checks that resistor is non-zero and non-negative, sets resistance and attaches nodes - the Id is assigned when the resistor is added to a circuit
      * @param res.
      * @param nod1
      * @param nod2*/
     public Resistor(double res, Node nod1, Node nod2) {
+    	this(res, nod1, nod2, 0);
+    }
+    
+    /**Constructor with a given Id, used to rebuild components from a circuit snapshot
+     * @param double res
+     * @param Node nod1
+     * @param Node nod2
+     * @param int id*/
+    protected Resistor(double res, Node nod1, Node nod2, int id) {
     	super(nod1,nod2);
         /*Ensure resistor is greater than 0, and not negative.*/
         if (res <= Resistor.nonZeroNonNegativeResistance){
@@ -37,8 +45,7 @@ public class Resistor extends Component implements Comparable<Component>{
         }
         /*Create the resistor variables.*/
         resistance = res;
-        setId(Resistor.resnum);
-        Resistor.resnum++;
+        setId(id);
         currentThrough=0.0;
     }
       
@@ -0,0 +1,174 @@
+package circuit;
+
+/**
+ * Sensitivity of the circuit results to every resistor, found by the adjoint method from one factorization of the circuit.
+ *
+ * For a result J = c^T x of the nodal system A x = b, changing the conductance of resistor k between matrix rows a and b changes A by dg * u u^T with u = e_a - e_b, so
+ *
+ *     dJ/dg_k = -(u^T y)(u^T x)    where A^T y = c
+ *
+ * One solve of the adjoint system for y therefore gives the derivative of J with respect to every resistor at once, and dJ/dR_k = (u^T y)(u^T x) / R_k^2.
+ * The MNA matrix is symmetric, so the adjoint system is solved with the same factorization as the circuit itself.
+ *
+ * The total current and resistance follow from the power P = sum of v * i over the voltage sources, which is -v^T x over the source rows. Its adjoint right hand side is -b, so y = -x without
+ * another solve and dP/dR_k = -i_k^2 - the derivatives of the totals are read straight from the branch currents. Node voltages take one adjoint solve each.
+ * The number of solves does not depend on the number of resistors, only filling in the derivatives is one pass over the components.
+ *
+ * Derivatives are given by snapshot component index, voltage sources always have 0.
+ *
+ * @author Michael Sinclair.
+ * @version 2.519
+ * @since 18 October 2026.
+ */
+
+public class SensitivityAnalysis {
+	/* instance variables */
+	private final CompactCircuit circuit;
+	private final NodalAnalysis nodal;
+	/* sum of the voltage source values, as used for the equivalent resistance of a full analysis */
+	private final double totalV;
+	/* power delivered by the voltage sources */
+	private final double power;
+
+	/** Constructor for a circuit, finds the sensitivities of its current snapshot
+	 * @param int groundId
+	 * @param Circuit cir
+	 */
+	public SensitivityAnalysis(int groundId, Circuit cir) {
+		this(groundId, cir.snapshot());
+	}
+
+	/** Constructor factors and solves the circuit once
+	 * @param int groundId
+	 * @param CompactCircuit compact
+	 * @throws IllegalArgumentException if the ground node is not in the circuit
+	 * @throws IllegalStateException if the circuit has no voltage source
+	 */
+	public SensitivityAnalysis(int groundId, CompactCircuit compact) {
+		this(solved(new NodalAnalysis(groundId, compact)));
+	}
+
+	/** Constructor for a nodal analysis that has already been solved, its factorization is reused for the adjoint solves
+	 * @param NodalAnalysis solved
+	 * @throws IllegalStateException if the circuit has no voltage source
+	 */
+	protected SensitivityAnalysis(NodalAnalysis solved) {
+		nodal = solved;
+		circuit = solved.circuit;
+		double sum = 0.0;
+		double delivered = 0.0;
+		int sources = 0;
+		for(int k = 0; k<circuit.getComponentCount(); k++) {
+			if(circuit.getKind(k) == CompactCircuit.VOLTAGE) {
+				sum += circuit.getValue(k);
+				sources++;
+				delivered += circuit.getValue(k)*nodal.branchCurrent(k);
+			}
+		}
+		if(sources == 0) {
+			throw new IllegalStateException("Cannot find sensitivities of a circuit without a voltage source.");
+		}
+		totalV = sum;
+		power = delivered;
+	}
+
+	/* methods */
+
+	/** Solve a nodal analysis and hand it back
+	 * @param NodalAnalysis engine
+	 * @return NodalAnalysis
+	 */
+	private static NodalAnalysis solved(NodalAnalysis engine) {
+		engine.solve();
+		return engine;
+	}
+
+	/** Derivative of the total resistance seen by the voltage sources with respect to each resistor, dRtotal/dR_k = (Vtotal i_k / P)^2
+	 * @return double[] by component index
+	 */
+	public double[] resistanceSensitivities() {
+		double[] result = new double[circuit.getComponentCount()];
+		double scale = totalV/power;
+		for(int k = 0; k<result.length; k++) {
+			if(circuit.getKind(k) == CompactCircuit.RESISTOR) {
+				double i = nodal.branchCurrent(k)*scale;
+				result[k] = i*i;
+			}
+		}
+		return result;
+	}
+
+	/** Derivative of the total current delivered by the voltage sources with respect to each resistor, dI/dR_k = -i_k^2 / Vtotal
+	 * @return double[] by component index
+	 */
+	public double[] currentSensitivities() {
+		double[] result = new double[circuit.getComponentCount()];
+		for(int k = 0; k<result.length; k++) {
+			if(circuit.getKind(k) == CompactCircuit.RESISTOR) {
+				double i = nodal.branchCurrent(k);
+				result[k] = -i*i/totalV;
+			}
+		}
+		return result;
+	}
+
+	/** Derivative of the voltage of one node with respect to each resistor, from one adjoint solve
+	 * @param int nodeId
+	 * @return double[] by component index, all 0 for the ground node
+	 * @throws IllegalArgumentException if the node is not in the circuit
+	 */
+	public double[] voltageSensitivities(int nodeId) {
+		int index = circuit.indexOf(nodeId);
+		if(index<0) {
+			throw new IllegalArgumentException("Node "+nodeId+" is not connected to any component.");
+		}
+		double[] result = new double[circuit.getComponentCount()];
+		int r = nodal.row(index);
+		if(r<0) {
+			return result;
+		}
+		double[] c = new double[nodal.getSize()];
+		c[r] = 1.0;
+		double[] adjoint = nodal.solveSystem(c);
+		double[] x = nodal.getSolution();
+		for(int k = 0; k<result.length; k++) {
+			if(circuit.getKind(k) == CompactCircuit.RESISTOR) {
+				double resistance = circuit.getValue(k);
+				result[k] = drop(k, adjoint)*drop(k, x)/(resistance*resistance);
+			}
+		}
+		return result;
+	}
+
+	/** get the total resistance seen by the voltage sources
+	 * @return double
+	 */
+	public double getTotalResistance() {
+		return totalV*totalV/power;
+	}
+
+	/** get the total current delivered by the voltage sources
+	 * @return double
+	 */
+	public double getTotalCurrent() {
+		return power/totalV;
+	}
+
+	/** get the circuit the sensitivities are found for, to read component Ids by index
+	 * @return CompactCircuit
+	 */
+	public CompactCircuit getCircuit() {
+		return circuit;
+	}
+
+	/** u^T v - the drop across a component for a vector laid out as the nodal solution
+	 * @param int k
+	 * @param double[] v
+	 * @return double
+	 */
+	private double drop(int k, double[] v) {
+		int a = nodal.row(circuit.getNode1(k));
+		int b = nodal.row(circuit.getNode2(k));
+		return (a<0 ? 0.0 : v[a])-(b<0 ? 0.0 : v[b]);
+	}
+}
@@ -0,0 +1,571 @@
+package circuit;
+import java.util.Arrays;
+
+/**
+ * Series/parallel resistor reduction that runs on a CompactCircuit without creating or modifying any Node or Component objects.
+ *
+ * The reduction first merges all resistors that are in parallel between the same two nodes, then collapses whole serial chains from a worklist of nodes whose connections have changed,
+ * merging each equivalent with any resistor already joining the ends of its chain. The compact circuit is only read - the working state is a set of primitive arrays owned by the reducer,
+ * with the resistors at each node kept in doubly linked lists so that removing a resistor is O(1).
+ *
+ * Voltage sources are never reduced, and a node with a voltage source attached is never treated as the middle of a serial chain.
+ *
+ * Networks that are not series/parallel, such as bridges and meshes, can be reduced further with reduceStars(), which eliminates the remaining nodes one at a time with the star-mesh
+ * transformation (the Y-Delta transformation for a node with three resistors). Nodes with the fewest resistors go first to keep the fill-in small, so dangling parts, serial chains and
+ * parallel resistors created along the way are reduced as soon as they appear. The transformations are not recorded in the DecompositionTree.
+ *
+ * The reducer can also record every step in a DecompositionTree, which Circuit keeps so that later edits can be applied without reducing the whole circuit again.
+ *
+ * @author Michael Sinclair.
+ * @version 2.518
+ * @since 18 October 2026.
+ */
+
+public class SeriesParallelReducer {
+	/* nodes with more resistors than this are not eliminated, the fill-in would cost more than a nodal solve */
+	private static final int MAX_STAR_DEGREE = 128;
+
+	/* instance variables */
+	private final CompactCircuit circuit;
+	private final int nodeCount;
+	/* working resistors - the original resistors first, then the equivalents created during reduction */
+	private int edgeCount;
+	private int[] end1;
+	private int[] end2;
+	private double[] resistance;
+	private boolean[] alive;
+	/* resistors at each node as linked lists of half edges, half edge 2e is resistor e seen from end1 and 2e+1 from end2 */
+	private int[] head;
+	private int[] next;
+	private int[] prev;
+	private int[] degree;
+	/* nodes with a voltage source attached */
+	private boolean[] blocked;
+	private int aliveCount;
+	/* decomposition being recorded, or null, and the tree node of each working resistor */
+	private DecompositionTree tree;
+	private int[] treeOf;
+
+	/** Constructor sets up the working arrays from the resistors of a compact circuit
+	 * @param CompactCircuit compact
+	 */
+	public SeriesParallelReducer(CompactCircuit compact) {
+		this(compact, false);
+	}
+
+	/** Constructor that can also record the decomposition tree of the reduction
+	 * @param CompactCircuit compact
+	 * @param boolean recordTree
+	 */
+	public SeriesParallelReducer(CompactCircuit compact, boolean recordTree) {
+		circuit = compact;
+		nodeCount = circuit.getNodeCount();
+		int count = circuit.getComponentCount();
+		/* every reduction removes at least two resistors and adds one, so twice the original count is enough room */
+		int capacity = 2*count+1;
+		end1 = new int[capacity];
+		end2 = new int[capacity];
+		resistance = new double[capacity];
+		alive = new boolean[capacity];
+		next = new int[2*capacity];
+		prev = new int[2*capacity];
+		head = new int[nodeCount];
+		Arrays.fill(head, -1);
+		degree = new int[nodeCount];
+		blocked = new boolean[nodeCount];
+		edgeCount = 0;
+		aliveCount = 0;
+		tree = recordTree ? new DecompositionTree(2*count) : null;
+		treeOf = recordTree ? new int[capacity] : null;
+		for(int k = 0; k<count; k++) {
+			if(circuit.getKind(k) == CompactCircuit.RESISTOR) {
+				int a = circuit.getNode1(k);
+				int b = circuit.getNode2(k);
+				int e = addEdge(a, b, circuit.getValue(k));
+				if(tree != null) {
+					treeOf[e] = tree.addLeaf(LongIntHashMap.pack('R', circuit.getComponentId(k)), circuit.getNodeId(a), circuit.getNodeId(b), circuit.getValue(k));
+				}
+			}
+			else {
+				blocked[circuit.getNode1(k)] = true;
+				blocked[circuit.getNode2(k)] = true;
+			}
+		}
+	}
+
+	/* methods */
+
+	/** Reduce the circuit as far as series and parallel combination allows */
+	public void reduce() {
+		reduceParallel();
+		reduceSeries();
+		/* the parts left over are the roots of the decomposition */
+		if(tree != null) {
+			int[] roots = new int[aliveCount];
+			int count = 0;
+			for(int e = 0; e<edgeCount; e++) {
+				if(alive[e]) {
+					roots[count++] = treeOf[e];
+				}
+			}
+			tree.setRoots(roots, count);
+		}
+	}
+
+	/** Merge every group of resistors between the same two nodes into one equivalent, in one pass keyed by the packed pair of node indices */
+	protected void reduceParallel() {
+		int count = edgeCount;
+		LongIntHashMap firstOf = new LongIntHashMap(count);
+		/* conductance sum of each group, stored at the group's first resistor */
+		double[] conductance = new double[count];
+		int[] groupSize = new int[count];
+		int[] groupOf = new int[count];
+		for(int e = 0; e<count; e++) {
+			if(!alive[e]) {
+				continue;
+			}
+			int first = firstOf.putIfAbsent(pairKey(end1[e], end2[e]), e);
+			groupOf[e] = first;
+			groupSize[first]++;
+			conductance[first] += 1/resistance[e];
+		}
+		/* tree node of each group, stored at the group's first resistor */
+		int[] groupNode = tree == null ? null : new int[count];
+		for(int e = 0; e<count; e++) {
+			if(!alive[e] || groupSize[groupOf[e]]<2) {
+				continue;
+			}
+			if(tree != null) {
+				int first = groupOf[e];
+				if(first == e) {
+					groupNode[first] = tree.addInternal(DecompositionTree.PARALLEL, circuit.getNodeId(end1[e]), circuit.getNodeId(end2[e]));
+				}
+				tree.addChild(groupNode[first], treeOf[e]);
+			}
+			removeEdge(e);
+		}
+		for(int e = 0; e<count; e++) {
+			if(groupSize[e]>1) {
+				int merged = addEdge(end1[e], end2[e], 1/conductance[e]);
+				if(tree != null) {
+					tree.finish(groupNode[e]);
+					treeOf[merged] = groupNode[e];
+				}
+			}
+		}
+	}
+
+	/** Collapse serial chains from a worklist - every node starts queued and only the end nodes of a collapsed chain are queued again */
+	protected void reduceSeries() {
+		int[] stack = new int[nodeCount];
+		boolean[] queued = new boolean[nodeCount];
+		int top = 0;
+		for(int n = nodeCount-1; n>=0; n--) {
+			stack[top++] = n;
+			queued[n] = true;
+		}
+		int[] ends = new int[2];
+		while(top>0) {
+			int node = stack[--top];
+			queued[node] = false;
+			if(!isSeriesNode(node) || !collapseChain(node, ends)) {
+				continue;
+			}
+			for(int end:ends) {
+				if(!queued[end]) {
+					queued[end] = true;
+					stack[top++] = end;
+				}
+			}
+		}
+	}
+
+	/** Test if a node is in the middle of a serial chain - exactly two resistors leading to two different nodes and no voltage source
+	 * @param int node
+	 * @return boolean
+	 */
+	protected boolean isSeriesNode(int node) {
+		if(blocked[node] || degree[node] != 2) {
+			return false;
+		}
+		int h = head[node];
+		return farEnd(h>>1, node) != farEnd(next[h]>>1, node);
+	}
+
+	/** Collapse the serial chain through a node into one resistor between its ends
+	 * @param int start
+	 * @param int[] ends - receives the two end nodes
+	 * @return boolean false if the chain is a closed ring that was left alone
+	 */
+	private boolean collapseChain(int start, int[] ends) {
+		double total = 0.0;
+		int[] startEdges = {head[start]>>1, next[head[start]]>>1};
+		/* walk each way until a node that is not in the middle of a chain, first only to find the ends */
+		for(int side = 0; side<2; side++) {
+			int edge = startEdges[side];
+			int current = farEnd(edge, start);
+			total += resistance[edge];
+			while(current != start && isSeriesNode(current)) {
+				edge = otherEdge(current, edge);
+				current = farEnd(edge, current);
+				total += resistance[edge];
+			}
+			/* a closed ring has no ends and carries no current */
+			if(current == start) {
+				return false;
+			}
+			ends[side] = current;
+		}
+		/* a chain from a node back to itself carries no current and is simply dropped */
+		boolean dropped = ends[0] == ends[1];
+		int chainNode = tree == null || dropped ? -1 : tree.addInternal(DecompositionTree.SERIES, circuit.getNodeId(ends[0]), circuit.getNodeId(ends[1]));
+		/* then remove the chain */
+		for(int side = 0; side<2; side++) {
+			int edge = startEdges[side];
+			int current = farEnd(edge, start);
+			while(true) {
+				if(chainNode>=0) {
+					tree.addChild(chainNode, treeOf[edge]);
+				}
+				if(current == ends[side]) {
+					removeEdge(edge);
+					break;
+				}
+				int following = otherEdge(current, edge);
+				removeEdge(edge);
+				edge = following;
+				current = farEnd(edge, current);
+			}
+		}
+		if(dropped) {
+			return true;
+		}
+		int part = chainNode;
+		if(chainNode>=0) {
+			tree.finish(chainNode);
+		}
+		/* merge with a resistor already joining the ends */
+		int small = degree[ends[0]]<=degree[ends[1]] ? ends[0] : ends[1];
+		int large = small == ends[0] ? ends[1] : ends[0];
+		for(int h = head[small]; h>=0; h = next[h]) {
+			if(farEnd(h>>1, small) == large) {
+				double other = resistance[h>>1];
+				total = total*other/(total+other);
+				if(tree != null) {
+					part = tree.addInternal(DecompositionTree.PARALLEL, circuit.getNodeId(ends[0]), circuit.getNodeId(ends[1]));
+					tree.addChild(part, chainNode);
+					tree.addChild(part, treeOf[h>>1]);
+					tree.finish(part);
+				}
+				removeEdge(h>>1);
+				break;
+			}
+		}
+		int merged = addEdge(Math.min(ends[0], ends[1]), Math.max(ends[0], ends[1]), total);
+		if(tree != null) {
+			treeOf[merged] = part;
+		}
+		return true;
+	}
+
+	/** Eliminate every node without a voltage source attached with star-mesh transformations, lowest degree first - run after reduce() on circuits that are not series/parallel.
+	 * Each resistor between the eliminated node and a neighbour i with conductance gi is replaced by resistors between every pair of neighbours i and j with conductance gi*gj/G,
+	 * G being the sum of the conductances at the node, and merged with any resistor already between them.
+	 * @return boolean false if it stopped because every node left has more than MAX_STAR_DEGREE resistors
+	 */
+	public boolean reduceStars() {
+		/* the working resistor between each pair of nodes, so new resistors are merged in parallel with existing ones */
+		LongIntHashMap between = new LongIntHashMap(aliveCount);
+		for(int e = 0; e<edgeCount; e++) {
+			if(alive[e]) {
+				between.put(pairKey(end1[e], end2[e]), e);
+			}
+		}
+		DegreeQueue queue = new DegreeQueue(nodeCount);
+		for(int n = 0; n<nodeCount; n++) {
+			if(!blocked[n] && degree[n]>0) {
+				queue.push(n, degree[n]);
+			}
+		}
+		int[] neighbour = new int[16];
+		double[] conductance = new double[16];
+		while(!queue.isEmpty()) {
+			long top = queue.pop();
+			int node = (int)top;
+			int d = (int)(top>>>32);
+			/* skip entries left behind by a later change of degree */
+			if(d != degree[node] || d == 0) {
+				continue;
+			}
+			/* the queue is ordered by degree, so every node left is as large */
+			if(d>MAX_STAR_DEGREE) {
+				return false;
+			}
+			if(d>neighbour.length) {
+				neighbour = new int[2*d];
+				conductance = new double[2*d];
+			}
+			/* take the star off the node */
+			double total = 0.0;
+			int count = 0;
+			while(head[node]>=0) {
+				int e = head[node]>>1;
+				neighbour[count] = farEnd(e, node);
+				conductance[count] = 1/resistance[e];
+				total += conductance[count];
+				count++;
+				between.remove(pairKey(end1[e], end2[e]));
+				removeEdge(e);
+			}
+			/* and replace it with the mesh between its neighbours */
+			for(int p = 0; p<count; p++) {
+				for(int q = p+1; q<count; q++) {
+					addConductance(between, neighbour[p], neighbour[q], conductance[p]*conductance[q]/total);
+				}
+			}
+			for(int p = 0; p<count; p++) {
+				if(!blocked[neighbour[p]]) {
+					queue.push(neighbour[p], degree[neighbour[p]]);
+				}
+			}
+		}
+		return true;
+	}
+
+	/** add a conductance between two nodes, in parallel with the resistor already between them if there is one
+	 * @param LongIntHashMap between
+	 * @param int a
+	 * @param int b
+	 * @param double g
+	 */
+	private void addConductance(LongIntHashMap between, int a, int b, double g) {
+		if(a == b) {
+			return;
+		}
+		long key = pairKey(a, b);
+		int e = between.get(key, -1);
+		if(e>=0) {
+			resistance[e] = 1/(1/resistance[e]+g);
+		}
+		else {
+			between.put(key, addEdge(Math.min(a, b), Math.max(a, b), 1/g));
+		}
+	}
+
+	/** get the decomposition recorded during reduce()
+	 * @return DecompositionTree, or null if the reducer was not asked to record it
+	 */
+	public DecompositionTree getTree() {
+		return tree;
+	}
+
+	/** Reduce a copy of a circuit whose resistor Ids are replaced by their component index + 1, so the leaf of component k is getLeaf(LongIntHashMap.pack('R', k+1))
+	 * even if the circuit repeats Ids, as circuits built from components outside a Circuit do
+	 * @param CompactCircuit compact
+	 * @return DecompositionTree
+	 */
+	protected static DecompositionTree indexedTree(CompactCircuit compact) {
+		int count = compact.getComponentCount();
+		int[] first = new int[count];
+		int[] second = new int[count];
+		double[] values = new double[count];
+		byte[] kinds = new byte[count];
+		int[] ids = new int[count];
+		for(int k = 0; k<count; k++) {
+			first[k] = compact.getNodeId(compact.getNode1(k));
+			second[k] = compact.getNodeId(compact.getNode2(k));
+			values[k] = compact.getValue(k);
+			kinds[k] = compact.getKind(k);
+			ids[k] = k+1;
+		}
+		SeriesParallelReducer reducer = new SeriesParallelReducer(new CompactCircuit(count, first, second, values, kinds, ids), true);
+		reducer.reduce();
+		return reducer.getTree();
+	}
+
+	/** get the number of resistors left after reduction
+	 * @return int
+	 */
+	public int remainingResistors() {
+		return aliveCount;
+	}
+
+	/** get the sum of the resistors left, which is the total resistance once the circuit is reduced to one resistor
+	 * @return double
+	 */
+	public double remainingResistance() {
+		double sum = 0.0;
+		for(int e = 0; e<edgeCount; e++) {
+			if(alive[e]) {
+				sum += resistance[e];
+			}
+		}
+		return sum;
+	}
+
+	/** add a working resistor and link it into the lists of both its nodes
+	 * @param int a
+	 * @param int b
+	 * @param double r
+	 * @return int resistor index
+	 */
+	private int addEdge(int a, int b, double r) {
+		/* only the star-mesh transformation can need more room than the constructor gave */
+		if(edgeCount == end1.length) {
+			grow();
+		}
+		int e = edgeCount++;
+		end1[e] = a;
+		end2[e] = b;
+		resistance[e] = r;
+		alive[e] = true;
+		aliveCount++;
+		link(2*e, a);
+		link(2*e+1, b);
+		return e;
+	}
+
+	/** double the room for working resistors */
+	private void grow() {
+		int capacity = 2*end1.length;
+		end1 = Arrays.copyOf(end1, capacity);
+		end2 = Arrays.copyOf(end2, capacity);
+		resistance = Arrays.copyOf(resistance, capacity);
+		alive = Arrays.copyOf(alive, capacity);
+		next = Arrays.copyOf(next, 2*capacity);
+		prev = Arrays.copyOf(prev, 2*capacity);
+		if(treeOf != null) {
+			treeOf = Arrays.copyOf(treeOf, capacity);
+		}
+	}
+
+	/** remove a working resistor from the lists of both its nodes
+	 * @param int e
+	 */
+	private void removeEdge(int e) {
+		alive[e] = false;
+		aliveCount--;
+		unlink(2*e, end1[e]);
+		unlink(2*e+1, end2[e]);
+	}
+
+	/** push a half edge onto the front of a node's list
+	 * @param int h
+	 * @param int node
+	 */
+	private void link(int h, int node) {
+		prev[h] = -1;
+		next[h] = head[node];
+		if(head[node]>=0) {
+			prev[head[node]] = h;
+		}
+		head[node] = h;
+		degree[node]++;
+	}
+
+	/** take a half edge out of a node's list
+	 * @param int h
+	 * @param int node
+	 */
+	private void unlink(int h, int node) {
+		if(prev[h]>=0) {
+			next[prev[h]] = next[h];
+		}
+		else {
+			head[node] = next[h];
+		}
+		if(next[h]>=0) {
+			prev[next[h]] = prev[h];
+		}
+		degree[node]--;
+	}
+
+	/** get the node at the other end of a working resistor
+	 * @param int e
+	 * @param int node
+	 * @return int
+	 */
+	private int farEnd(int e, int node) {
+		return end1[e] == node ? end2[e] : end1[e];
+	}
+
+	/** get the other resistor at a node with exactly two resistors
+	 * @param int node
+	 * @param int e
+	 * @return int
+	 */
+	private int otherEdge(int node, int e) {
+		int h = head[node];
+		return (h>>1) == e ? next[h]>>1 : h>>1;
+	}
+
+	/** key for a pair of nodes that does not depend on their order
+	 * @param int a
+	 * @param int b
+	 * @return long
+	 */
+	private static long pairKey(int a, int b) {
+		return a<b ? LongIntHashMap.pack(a, b) : LongIntHashMap.pack(b, a);
+	}
+
+	/** Min-heap of nodes keyed by degree, a node is pushed again whenever its degree changes and the old entries are skipped when popped */
+	private static class DegreeQueue {
+		private long[] heap;
+		private int size;
+
+		/** Constructor
+		 * @param int expected
+		 */
+		DegreeQueue(int expected) {
+			heap = new long[Math.max(expected, 16)];
+			size = 0;
+		}
+
+		/** test if the queue is empty
+		 * @return boolean
+		 */
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		/** add a node
+		 * @param int node
+		 * @param int degree
+		 */
+		void push(int node, int degree) {
+			if(size == heap.length) {
+				heap = Arrays.copyOf(heap, 2*size);
+			}
+			/* degree in the high half so entries order by degree, then by node */
+			long entry = (long)degree<<32 | node;
+			int i = size++;
+			while(i>0 && heap[(i-1)/2]>entry) {
+				heap[i] = heap[(i-1)/2];
+				i = (i-1)/2;
+			}
+			heap[i] = entry;
+		}
+
+		/** remove the entry with the lowest degree
+		 * @return long degree in the high half, node in the low half
+		 */
+		long pop() {
+			long top = heap[0];
+			long last = heap[--size];
+			int i = 0;
+			while(2*i+1<size) {
+				int child = 2*i+1;
+				if(child+1<size && heap[child+1]<heap[child]) {
+					child++;
+				}
+				if(heap[child]>=last) {
+					break;
+				}
+				heap[i] = heap[child];
+				i = child;
+			}
+			heap[i] = last;
+			return top;
+		}
+	}
+}
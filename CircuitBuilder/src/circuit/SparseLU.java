@@ -0,0 +1,268 @@
+package circuit;
+import java.util.Arrays;
+
+/**
+ * Sparse direct LU factorization with threshold partial pivoting, P*A = L*U.
+ *
+ * Uses the left-looking Gilbert-Peierls algorithm: each column of L and U is found by a sparse triangular solve whose non-zero pattern is discovered by a depth first search,
+ * so the total work is proportional to the number of floating point operations rather than to n squared. For the very sparse matrices produced by circuits this is close to linear.
+ *
+ * The diagonal entry is preferred as pivot whenever it is within the pivot tolerance of the largest candidate, which keeps fill-in low for the nodal matrices where the diagonal usually dominates.
+ *
+ * Once factored, solve() does not modify the factorization so a single factorization can be reused for any number of right hand sides.
+ *
+ * @author Michael Sinclair.
+ * @version 2.500
+ * @since 18 October 2026.
+ */
+
+public class SparseLU {
+	/* instance variables */
+	private final int n;
+	/* L is unit lower triangular with the unit diagonal stored first in each column */
+	private int[] lStart;
+	private int[] lIndex;
+	private double[] lValues;
+	/* U is upper triangular with the diagonal stored last in each column */
+	private int[] uStart;
+	private int[] uIndex;
+	private double[] uValues;
+	/* row permutation - pivotOf[row] gives the pivot step the row was chosen at */
+	private int[] pivotOf;
+	/* column permutation, null for the natural order */
+	private final int[] colOrder;
+
+	/** Factor a matrix in its natural column order
+	 * @param SparseMatrix a
+	 * @param double tolerance - diagonal pivot is kept if at least tolerance times the largest entry in the column, 1.0 gives plain partial pivoting
+	 */
+	public SparseLU(SparseMatrix a, double tolerance) {
+		this(a, null, tolerance);
+	}
+
+	/** Factor a matrix with the columns taken in the given order
+	 * @param SparseMatrix a
+	 * @param int[] order - order[k] is the column eliminated at step k, or null
+	 * @param double tolerance
+	 */
+	public SparseLU(SparseMatrix a, int[] order, double tolerance) {
+		n = a.size();
+		colOrder = order;
+		factor(a, tolerance);
+	}
+
+	/* methods */
+
+	/** Perform the factorization
+	 * @param SparseMatrix a
+	 * @param double tolerance
+	 */
+	private void factor(SparseMatrix a, double tolerance) {
+		int[] ap = a.getColStart();
+		int[] ai = a.getRowIndex();
+		double[] ax = a.getValues();
+		/* initial guess at the storage needed, grown on demand */
+		int guess = 4*a.nonZeros()+n;
+		lStart = new int[n+1];
+		uStart = new int[n+1];
+		lIndex = new int[guess];
+		lValues = new double[guess];
+		uIndex = new int[guess];
+		uValues = new double[guess];
+		pivotOf = new int[n];
+		Arrays.fill(pivotOf, -1);
+		/* dense work vector and pattern stacks for the sparse triangular solve */
+		double[] x = new double[n];
+		int[] pattern = new int[n];
+		int[] stack = new int[n];
+		int[] stackPos = new int[n];
+		int[] mark = new int[n];
+		int lnz = 0;
+		int unz = 0;
+		for(int k = 0; k<n; k++) {
+			lStart[k] = lnz;
+			uStart[k] = unz;
+			/* make sure there is room for a full column in both factors */
+			if(lnz+n>lIndex.length) {
+				int size = 2*lIndex.length+n;
+				lIndex = Arrays.copyOf(lIndex, size);
+				lValues = Arrays.copyOf(lValues, size);
+			}
+			if(unz+n>uIndex.length) {
+				int size = 2*uIndex.length+n;
+				uIndex = Arrays.copyOf(uIndex, size);
+				uValues = Arrays.copyOf(uValues, size);
+			}
+			int col = colOrder == null ? k : colOrder[k];
+			/* find the pattern of x = L \ A(:,col) - stored in pattern[top..n-1] in topological order */
+			int top = n;
+			for(int p = ap[col]; p<ap[col+1]; p++) {
+				if(mark[ai[p]] != k+1) {
+					top = depthFirst(ai[p], k+1, top, pattern, stack, stackPos, mark);
+				}
+			}
+			/* scatter the column and eliminate with the already computed columns of L */
+			for(int p = top; p<n; p++) {
+				x[pattern[p]] = 0.0;
+			}
+			for(int p = ap[col]; p<ap[col+1]; p++) {
+				x[ai[p]] = ax[p];
+			}
+			for(int p = top; p<n; p++) {
+				int j = pattern[p];
+				int jcol = pivotOf[j];
+				if(jcol<0) {
+					continue;
+				}
+				double xj = x[j];
+				for(int q = lStart[jcol]+1; q<lStart[jcol+1]; q++) {
+					x[lIndex[q]] -= lValues[q]*xj;
+				}
+			}
+			/* choose the pivot, move pivoted rows into U */
+			int pivotRow = -1;
+			double largest = -1.0;
+			for(int p = top; p<n; p++) {
+				int i = pattern[p];
+				if(pivotOf[i]<0) {
+					double t = Math.abs(x[i]);
+					if(t>largest) {
+						largest = t;
+						pivotRow = i;
+					}
+				}
+				else {
+					uIndex[unz] = pivotOf[i];
+					uValues[unz++] = x[i];
+				}
+			}
+			if(pivotRow == -1 || largest<=0.0) {
+				throw new IllegalStateException("Matrix is singular - circuit is not uniquely solvable.");
+			}
+			/* prefer the diagonal to limit fill-in */
+			if(pivotOf[col]<0 && Math.abs(x[col])>=largest*tolerance) {
+				pivotRow = col;
+			}
+			double pivot = x[pivotRow];
+			uIndex[unz] = k;
+			uValues[unz++] = pivot;
+			pivotOf[pivotRow] = k;
+			lIndex[lnz] = pivotRow;
+			lValues[lnz++] = 1.0;
+			for(int p = top; p<n; p++) {
+				int i = pattern[p];
+				if(pivotOf[i]<0) {
+					lIndex[lnz] = i;
+					lValues[lnz++] = x[i]/pivot;
+				}
+				x[i] = 0.0;
+			}
+		}
+		lStart[n] = lnz;
+		uStart[n] = unz;
+		/* rewrite L row indices in pivot order and trim the storage */
+		for(int p = 0; p<lnz; p++) {
+			lIndex[p] = pivotOf[lIndex[p]];
+		}
+		lIndex = Arrays.copyOf(lIndex, lnz);
+		lValues = Arrays.copyOf(lValues, lnz);
+		uIndex = Arrays.copyOf(uIndex, unz);
+		uValues = Arrays.copyOf(uValues, unz);
+	}
+
+	/** Non-recursive depth first search through the graph of L starting at row j, pushing finished rows onto pattern[] from the top down
+	 * @param int j
+	 * @param int stamp - marks visited rows for the current column
+	 * @param int top
+	 * @param int[] pattern
+	 * @param int[] stack
+	 * @param int[] stackPos
+	 * @param int[] mark
+	 * @return int new top of pattern
+	 */
+	private int depthFirst(int j, int stamp, int top, int[] pattern, int[] stack, int[] stackPos, int[] mark) {
+		int head = 0;
+		stack[0] = j;
+		while(head>=0) {
+			j = stack[head];
+			int jcol = pivotOf[j];
+			if(mark[j] != stamp) {
+				/* first visit - skip the unit diagonal of L */
+				mark[j] = stamp;
+				stackPos[head] = jcol<0 ? 0 : lStart[jcol]+1;
+			}
+			boolean done = true;
+			int end = jcol<0 ? 0 : lStart[jcol+1];
+			for(int p = stackPos[head]; p<end; p++) {
+				int i = lIndex[p];
+				if(mark[i] == stamp) {
+					continue;
+				}
+				/* pause here and descend into row i */
+				stackPos[head] = p;
+				stack[++head] = i;
+				done = false;
+				break;
+			}
+			if(done) {
+				head--;
+				pattern[--top] = j;
+			}
+		}
+		return top;
+	}
+
+	/** Solve A*x = b using the factorization - b is not modified and the method is safe to call from several threads at once
+	 * @param double[] b
+	 * @return double[] x
+	 */
+	public double[] solve(double[] b) {
+		double[] x = new double[n];
+		/* apply the row permutation */
+		for(int i = 0; i<n; i++) {
+			x[pivotOf[i]] = b[i];
+		}
+		/* forward substitution with unit lower triangular L */
+		for(int j = 0; j<n; j++) {
+			double xj = x[j];
+			if(xj != 0.0) {
+				for(int p = lStart[j]+1; p<lStart[j+1]; p++) {
+					x[lIndex[p]] -= lValues[p]*xj;
+				}
+			}
+		}
+		/* back substitution with U */
+		for(int j = n-1; j>=0; j--) {
+			double xj = x[j]/uValues[uStart[j+1]-1];
+			x[j] = xj;
+			if(xj != 0.0) {
+				for(int p = uStart[j]; p<uStart[j+1]-1; p++) {
+					x[uIndex[p]] -= uValues[p]*xj;
+				}
+			}
+		}
+		/* undo the column permutation */
+		if(colOrder == null) {
+			return x;
+		}
+		double[] out = new double[n];
+		for(int k = 0; k<n; k++) {
+			out[colOrder[k]] = x[k];
+		}
+		return out;
+	}
+
+	/** get the number of non-zeros in both factors, useful to judge fill-in
+	 * @return int
+	 */
+	public int factorNonZeros() {
+		return lStart[n]+uStart[n];
+	}
+
+	/** get the dimension of the factored matrix
+	 * @return int n
+	 */
+	public int size() {
+		return n;
+	}
+}
@@ -0,0 +1,139 @@
+package circuit;
+import java.util.Arrays;
+
+/**
+ * A square sparse matrix stored in compressed sparse column (CSC) form.
+ *
+ * Column j holds its row indices in rowIndex[colStart[j]] to rowIndex[colStart[j+1]-1] with the matching values in values[], so only non-zero entries are stored.
+ *
+ * Matrices are normally assembled from (row, column, value) triplets where duplicate entries are summed, which matches how circuit components are stamped into a nodal matrix.
+ *
+ * @author Michael Sinclair.
+ * @version 2.500
+ * @since 18 October 2026.
+ */
+
+public class SparseMatrix {
+	/* instance variables */
+	private final int n;
+	private final int[] colStart;
+	private final int[] rowIndex;
+	private final double[] values;
+
+	/** Constructor for an already compressed matrix
+	 * @param int size
+	 * @param int[] colStart
+	 * @param int[] rowIndex
+	 * @param double[] values
+	 */
+	public SparseMatrix(int size, int[] colStart, int[] rowIndex, double[] values) {
+		n = size;
+		this.colStart = colStart;
+		this.rowIndex = rowIndex;
+		this.values = values;
+	}
+
+	/* methods */
+
+	/** Build a compressed matrix from triplets, summing duplicate entries - runs in O(n + count)
+	 * @param int size
+	 * @param int[] rows
+	 * @param int[] cols
+	 * @param double[] vals
+	 * @param int count
+	 * @return SparseMatrix
+	 */
+	public static SparseMatrix fromTriplets(int size, int[] rows, int[] cols, double[] vals, int count) {
+		/* count entries per column */
+		int[] start = new int[size+1];
+		for(int k = 0; k<count; k++) {
+			start[cols[k]+1]++;
+		}
+		for(int j = 0; j<size; j++) {
+			start[j+1] += start[j];
+		}
+		/* scatter triplets into their columns */
+		int[] next = new int[size];
+		System.arraycopy(start, 0, next, 0, size);
+		int[] ri = new int[count];
+		double[] rv = new double[count];
+		for(int k = 0; k<count; k++) {
+			int p = next[cols[k]]++;
+			ri[p] = rows[k];
+			rv[p] = vals[k];
+		}
+		/* sum duplicates within each column - last[] remembers where a row was last written in the current column */
+		int[] last = new int[size];
+		Arrays.fill(last, -1);
+		int nz = 0;
+		int[] outStart = new int[size+1];
+		for(int j = 0; j<size; j++) {
+			int colBegin = nz;
+			for(int p = start[j]; p<start[j+1]; p++) {
+				int i = ri[p];
+				if(last[i]>=colBegin) {
+					rv[last[i]] += rv[p];
+				}
+				else {
+					last[i] = nz;
+					ri[nz] = i;
+					rv[nz] = rv[p];
+					nz++;
+				}
+			}
+			outStart[j+1] = nz;
+		}
+		return new SparseMatrix(size, outStart, Arrays.copyOf(ri, nz), Arrays.copyOf(rv, nz));
+	}
+
+	/** Multiply this matrix by a vector, y = A*x
+	 * @param double[] x
+	 * @param double[] y
+	 */
+	public void multiply(double[] x, double[] y) {
+		Arrays.fill(y, 0, n, 0.0);
+		for(int j = 0; j<n; j++) {
+			double xj = x[j];
+			if(xj != 0.0) {
+				for(int p = colStart[j]; p<colStart[j+1]; p++) {
+					y[rowIndex[p]] += values[p]*xj;
+				}
+			}
+		}
+	}
+
+	/** get the dimension of the matrix
+	 * @return int n
+	 */
+	public int size() {
+		return n;
+	}
+
+	/** get the number of stored entries
+	 * @return int
+	 */
+	public int nonZeros() {
+		return colStart[n];
+	}
+
+	/** get column pointers
+	 * @return int[] colStart
+	 */
+	protected int[] getColStart() {
+		return colStart;
+	}
+
+	/** get row indices
+	 * @return int[] rowIndex
+	 */
+	protected int[] getRowIndex() {
+		return rowIndex;
+	}
+
+	/** get stored values
+	 * @return double[] values
+	 */
+	protected double[] getValues() {
+		return values;
+	}
+}
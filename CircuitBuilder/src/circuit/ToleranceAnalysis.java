@@ -0,0 +1,536 @@
+package circuit;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Monte Carlo tolerance analysis of a series/parallel circuit - the distribution of its total resistance and current when every resistor may be anywhere within a tolerance of its value.
+ *
+ * The series/parallel decomposition of the circuit is compiled once into a flat program over a stack of accumulators: opening a SERIES or PARALLEL part pushes an accumulator,
+ * a resistor adds its resistance or its conductance to the accumulator on top, and closing a part adds its resistance or conductance to the part above, as the aggregates of
+ * DecompositionTree and parallelResistors() do. The program is run on a block of samples at a time, every accumulator holds one value per sample of the block and every step is a
+ * simple loop over primitive arrays which the JIT compiles to SIMD instructions, so each step costs a fraction of a cycle per sample.
+ *
+ * Blocks are split across a ForkJoin pool. The random stream is split with SplittableRandom along the same fixed task tree every time, so a seed gives the same samples on any number of threads.
+ *
+ * Every sampled total resistance is kept, 8 bytes per sample, so percentiles are exact. The current is the total voltage over the resistance, so its percentiles follow from the resistance
+ * percentiles in reverse order.
+ *
+ * @author Michael Sinclair.
+ * @version 2.518
+ * @since 18 October 2026.
+ */
+
+public class ToleranceAnalysis {
+	/* distributions of a resistor within its tolerance */
+	public static final byte UNIFORM = 0;
+	/* normal with the tolerance as 3 standard deviations, draws beyond the tolerance are clipped to it */
+	public static final byte NORMAL = 1;
+
+	/* program steps - push an accumulator, add a resistance or conductance of a resistor, pop and add the value or the inverse of the value */
+	private static final byte OPEN = 0;
+	private static final byte ADD_RESISTANCE = 1;
+	private static final byte ADD_CONDUCTANCE = 2;
+	private static final byte CLOSE_ADD = 3;
+	private static final byte CLOSE_INVERT = 4;
+	/* samples evaluated together by each step */
+	private static final int BLOCK = 256;
+	/* blocks evaluated by one task */
+	private static final int BLOCKS_PER_TASK = 16;
+
+	/* instance variables */
+	private final CompactCircuit circuit;
+	/* compiled program, the resistor index of each resistor step and -1 otherwise */
+	private final byte[] steps;
+	private final int[] operand;
+	private final int stackDepth;
+	private final double totalV;
+	private final int voltageSources;
+	/* relative tolerance of each component index */
+	private final double[] tolerance;
+	private byte distribution;
+	private long seed;
+	private ForkJoinPool pool;
+	/* sorted total resistance of every sample of the last run */
+	private double[] results;
+
+	/** Constructor for a circuit, analyzes its current snapshot
+	 * @param Circuit cir
+	 */
+	public ToleranceAnalysis(Circuit cir) {
+		this(cir.snapshot());
+	}
+
+	/** Constructor reduces the circuit and compiles its decomposition, every resistor starts with no tolerance
+	 * @param CompactCircuit compact
+	 * @throws IllegalArgumentException if the circuit is not series/parallel
+	 */
+	public ToleranceAnalysis(CompactCircuit compact) {
+		circuit = compact;
+		int count = circuit.getComponentCount();
+		double sum = 0.0;
+		int sources = 0;
+		for(int k = 0; k<count; k++) {
+			if(circuit.getKind(k) == CompactCircuit.VOLTAGE) {
+				sum += circuit.getValue(k);
+				sources++;
+			}
+		}
+		totalV = sum;
+		voltageSources = sources;
+		/* leaves are found by component index even if the circuit repeats Ids */
+		DecompositionTree tree = SeriesParallelReducer.indexedTree(circuit);
+		if(tree.getRootCount() != 1) {
+			throw new IllegalArgumentException("Tolerance analysis needs a circuit of series and parallel resistors only.");
+		}
+		int[] resistorOf = new int[tree.size()];
+		Arrays.fill(resistorOf, -1);
+		for(int k = 0; k<count; k++) {
+			int leaf = circuit.getKind(k) == CompactCircuit.RESISTOR ? tree.getLeaf(LongIntHashMap.pack('R', k+1)) : -1;
+			if(leaf>=0) {
+				resistorOf[leaf] = k;
+			}
+		}
+		/* walk the tree depth first, the whole circuit is one more series part around the root so a single resistor needs no special case */
+		byte[] program = new byte[2*tree.size()+2];
+		int[] arguments = new int[program.length];
+		int length = 0;
+		int depth = 1;
+		int deepest = 1;
+		program[length++] = OPEN;
+		int t = tree.getRoot();
+		while(true) {
+			byte outer = depth == 1 ? DecompositionTree.SERIES : tree.getKind(tree.getParent(t));
+			if(tree.getKind(t) == DecompositionTree.LEAF) {
+				program[length] = outer == DecompositionTree.SERIES ? ADD_RESISTANCE : ADD_CONDUCTANCE;
+				arguments[length++] = resistorOf[t];
+			}
+			else {
+				program[length++] = OPEN;
+				deepest = Math.max(deepest, ++depth);
+				t = tree.getFirstChild(t);
+				continue;
+			}
+			/* close every part whose last child is done, then go on to the next sibling */
+			while(depth>1 && tree.getNextSibling(t)<0) {
+				t = tree.getParent(t);
+				depth--;
+				byte above = depth == 1 ? DecompositionTree.SERIES : tree.getKind(tree.getParent(t));
+				/* a series resistance adds to a series part, a parallel part holds a conductance and adds to a parallel part as it is */
+				program[length++] = (tree.getKind(t) == DecompositionTree.SERIES) == (above == DecompositionTree.SERIES) ? CLOSE_ADD : CLOSE_INVERT;
+			}
+			if(depth == 1) {
+				break;
+			}
+			t = tree.getNextSibling(t);
+		}
+		steps = Arrays.copyOf(program, length);
+		operand = Arrays.copyOf(arguments, length);
+		stackDepth = deepest;
+		tolerance = new double[count];
+		distribution = UNIFORM;
+		seed = 0x5DEECE66DL;
+		pool = null;
+		results = null;
+	}
+
+	/* methods */
+
+	/** Set the same tolerance for every resistor
+	 * @param double relative - for example 0.05 for 5%
+	 */
+	public void setTolerance(double relative) {
+		checkTolerance(relative);
+		for(int k = 0; k<tolerance.length; k++) {
+			tolerance[k] = circuit.getKind(k) == CompactCircuit.RESISTOR ? relative : 0.0;
+		}
+	}
+
+	/** Set the tolerance of one resistor
+	 * @param int resistorId - Id of the resistor, the number after R
+	 * @param double relative
+	 */
+	public void setTolerance(int resistorId, double relative) {
+		checkTolerance(relative);
+		for(int k = 0; k<tolerance.length; k++) {
+			if(circuit.getKind(k) == CompactCircuit.RESISTOR && circuit.getComponentId(k) == resistorId) {
+				tolerance[k] = relative;
+				return;
+			}
+		}
+		throw new IllegalArgumentException("There is no resistor R"+resistorId+" in the circuit.");
+	}
+
+	/** Set how resistors are spread within their tolerance
+	 * @param byte type - UNIFORM or NORMAL
+	 */
+	public void setDistribution(byte type) {
+		if(type != UNIFORM && type != NORMAL) {
+			throw new IllegalArgumentException("Unknown distribution "+type+".");
+		}
+		distribution = type;
+	}
+
+	/** Set the seed of the random samples, the same seed gives the same samples on any pool
+	 * @param long value
+	 */
+	public void setSeed(long value) {
+		seed = value;
+	}
+
+	/** Set the pool the samples are evaluated on
+	 * @param ForkJoinPool threads - or null for the common pool
+	 */
+	public void setPool(ForkJoinPool threads) {
+		pool = threads;
+	}
+
+	/** Draw the given number of samples and evaluate the circuit for each
+	 * @param int samples
+	 */
+	public void run(int samples) {
+		if(samples<1) {
+			throw new IllegalArgumentException("At least one sample is needed.");
+		}
+		double[] totals = new double[samples];
+		int blocks = (samples+BLOCK-1)/BLOCK;
+		(pool == null ? ForkJoinPool.commonPool() : pool).invoke(new SampleTask(totals, 0, blocks, new SplittableRandom(seed)));
+		Arrays.parallelSort(totals);
+		results = totals;
+	}
+
+	/** get the number of samples of the last run
+	 * @return int
+	 */
+	public int getSampleCount() {
+		return results().length;
+	}
+
+	/** get the total resistance of the circuit with every resistor at its value
+	 * @return double
+	 */
+	public double getNominalResistance() {
+		double[] out = new double[1];
+		double[] stack = new double[stackDepth];
+		evaluate(out, 0, 1, stack, null, null);
+		return out[0];
+	}
+
+	/** get the smallest sampled total resistance
+	 * @return double
+	 */
+	public double getMinimum() {
+		return results()[0];
+	}
+
+	/** get the largest sampled total resistance
+	 * @return double
+	 */
+	public double getMaximum() {
+		double[] sorted = results();
+		return sorted[sorted.length-1];
+	}
+
+	/** get the mean of the sampled total resistance
+	 * @return double
+	 */
+	public double getMean() {
+		double sum = 0.0;
+		for(double r:results()) {
+			sum += r;
+		}
+		return sum/results.length;
+	}
+
+	/** get the standard deviation of the sampled total resistance
+	 * @return double
+	 */
+	public double getStandardDeviation() {
+		double mean = getMean();
+		double sum = 0.0;
+		for(double r:results) {
+			sum += (r-mean)*(r-mean);
+		}
+		return results.length<2 ? 0.0 : Math.sqrt(sum/(results.length-1));
+	}
+
+	/** get a percentile of the total resistance, the nearest sample below it
+	 * @param double percent - from 0 to 100
+	 * @return double
+	 */
+	public double percentile(double percent) {
+		if(!(percent>=0.0 && percent<=100.0)) {
+			throw new IllegalArgumentException("Percentile must be from 0 to 100, not "+percent+".");
+		}
+		double[] sorted = results();
+		return sorted[(int)Math.floor(percent/100.0*(sorted.length-1))];
+	}
+
+	/** get a percentile of the total current delivered by the voltage sources
+	 * @param double percent - from 0 to 100
+	 * @return double
+	 */
+	public double currentPercentile(double percent) {
+		return voltage()/percentile(100.0-percent);
+	}
+
+	/** Fraction of the samples whose total resistance is within limits, the yield of a circuit that must stay within them
+	 * @param double low
+	 * @param double high
+	 * @return double
+	 */
+	public double yield(double low, double high) {
+		double[] sorted = results();
+		return (double)(upperBound(sorted, high)-lowerBound(sorted, low))/sorted.length;
+	}
+
+	/** Histogram of the total resistance, bins of equal width from getMinimum() to getMaximum()
+	 * @param int bins
+	 * @return int[] samples in each bin
+	 */
+	public int[] histogram(int bins) {
+		double[] sorted = results();
+		return histogram(sorted, bins, false);
+	}
+
+	/** Histogram of the total current, bins of equal width from the smallest to the largest sampled current
+	 * @param int bins
+	 * @return int[] samples in each bin
+	 */
+	public int[] currentHistogram(int bins) {
+		voltage();
+		return histogram(results(), bins, true);
+	}
+
+	/** get the total voltage of the sources, which the current follows from
+	 * @return double
+	 */
+	public double getTotalVoltage() {
+		return totalV;
+	}
+
+	/** Whether the circuit has a voltage source, so that a current flows and the current results can be asked for - sources may still sum to 0 Volts
+	 * @return boolean
+	 */
+	public boolean hasVoltageSource() {
+		return voltageSources>0;
+	}
+
+	/** Run the compiled program on a range of samples
+	 * @param double[] totals - total resistance of each sample is written here
+	 * @param int from - first sample
+	 * @param int count - number of samples, at most BLOCK
+	 * @param double[] stack - accumulators, stackDepth blocks of count values
+	 * @param double[] draws - scratch for the random draws, null for every resistor at its value
+	 * @param SplittableRandom random
+	 */
+	private void evaluate(double[] totals, int from, int count, double[] stack, double[] draws, SplittableRandom random) {
+		int top = -1;
+		for(int p = 0; p<steps.length; p++) {
+			switch(steps[p]) {
+			case OPEN:
+				top += count;
+				Arrays.fill(stack, top-count+1, top+1, 0.0);
+				break;
+			case ADD_RESISTANCE:
+			case ADD_CONDUCTANCE: {
+				int k = operand[p];
+				double nominal = circuit.getValue(k);
+				double spread = tolerance[k];
+				int base = top-count+1;
+				if(draws == null || spread == 0.0) {
+					double add = steps[p] == ADD_RESISTANCE ? nominal : 1/nominal;
+					for(int s = 0; s<count; s++) {
+						stack[base+s] += add;
+					}
+					break;
+				}
+				draw(draws, count, random);
+				double scale = nominal*spread;
+				if(steps[p] == ADD_RESISTANCE) {
+					for(int s = 0; s<count; s++) {
+						stack[base+s] += nominal+scale*draws[s];
+					}
+				}
+				else {
+					for(int s = 0; s<count; s++) {
+						stack[base+s] += 1/(nominal+scale*draws[s]);
+					}
+				}
+				break;
+			}
+			default: {
+				/* pop the finished part and add it, or its inverse, to the part below */
+				int base = top-count+1;
+				int below = base-count;
+				if(steps[p] == CLOSE_ADD) {
+					for(int s = 0; s<count; s++) {
+						stack[below+s] += stack[base+s];
+					}
+				}
+				else {
+					for(int s = 0; s<count; s++) {
+						stack[below+s] += 1/stack[base+s];
+					}
+				}
+				top -= count;
+				break;
+			}
+			}
+		}
+		System.arraycopy(stack, 0, totals, from, count);
+	}
+
+	/** fill the draws with numbers from -1 to 1 in the selected distribution
+	 * @param double[] draws
+	 * @param int count
+	 * @param SplittableRandom random
+	 */
+	private void draw(double[] draws, int count, SplittableRandom random) {
+		if(distribution == UNIFORM) {
+			for(int s = 0; s<count; s++) {
+				draws[s] = 2*random.nextDouble()-1;
+			}
+			return;
+		}
+		/* Box-Muller pairs, standard deviation 1/3 so the tolerance is 3 sigma */
+		for(int s = 0; s<count; s += 2) {
+			double radius = Math.sqrt(-2*Math.log(1-random.nextDouble()))/3;
+			double angle = 2*Math.PI*random.nextDouble();
+			draws[s] = Math.max(-1.0, Math.min(1.0, radius*Math.cos(angle)));
+			if(s+1<count) {
+				draws[s+1] = Math.max(-1.0, Math.min(1.0, radius*Math.sin(angle)));
+			}
+		}
+	}
+
+	/** count sorted resistances into equal bins, by resistance or by the current it gives
+	 * @param double[] sorted
+	 * @param int bins
+	 * @param boolean current
+	 * @return int[]
+	 */
+	private int[] histogram(double[] sorted, int bins, boolean current) {
+		if(bins<1) {
+			throw new IllegalArgumentException("A histogram needs at least one bin.");
+		}
+		double low = current ? totalV/sorted[sorted.length-1] : sorted[0];
+		double high = current ? totalV/sorted[0] : sorted[sorted.length-1];
+		int[] counts = new int[bins];
+		double width = (high-low)/bins;
+		for(double r:sorted) {
+			double x = current ? totalV/r : r;
+			int bin = width>0 ? (int)((x-low)/width) : 0;
+			counts[Math.min(Math.max(bin, 0), bins-1)]++;
+		}
+		return counts;
+	}
+
+	/** get the results of the last run
+	 * @return double[] sorted
+	 */
+	private double[] results() {
+		if(results == null) {
+			throw new IllegalStateException("No samples yet, call run() first.");
+		}
+		return results;
+	}
+
+	/** get the total voltage, there must be a voltage source for a current to flow
+	 * @return double
+	 */
+	private double voltage() {
+		if(voltageSources == 0) {
+			throw new IllegalStateException("Circuit has no voltage source, so no current flows.");
+		}
+		return totalV;
+	}
+
+	/** check a tolerance is a fraction of the value that keeps every resistor positive
+	 * @param double relative
+	 */
+	private static void checkTolerance(double relative) {
+		if(!(relative>=0.0 && relative<1.0)) {
+			throw new IllegalArgumentException("Tolerance must be from 0 up to 1, not "+relative+".");
+		}
+	}
+
+	/** first index of a sorted array holding a value of at least x
+	 * @param double[] sorted
+	 * @param double x
+	 * @return int
+	 */
+	private static int lowerBound(double[] sorted, double x) {
+		int lo = 0, hi = sorted.length;
+		while(lo<hi) {
+			int mid = (lo+hi)>>>1;
+			if(sorted[mid]<x) {
+				lo = mid+1;
+			}
+			else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/** first index of a sorted array holding a value above x
+	 * @param double[] sorted
+	 * @param double x
+	 * @return int
+	 */
+	private static int upperBound(double[] sorted, double x) {
+		int lo = 0, hi = sorted.length;
+		while(lo<hi) {
+			int mid = (lo+hi)>>>1;
+			if(sorted[mid]<=x) {
+				lo = mid+1;
+			}
+			else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Evaluates a range of blocks, halving the range and splitting the random stream until a task holds BLOCKS_PER_TASK blocks.
+	 */
+	private final class SampleTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final double[] totals;
+		private final int first;
+		private final int last;
+		private final SplittableRandom random;
+
+		/** Constructor
+		 * @param double[] totals
+		 * @param int first - first block
+		 * @param int last - block after the last
+		 * @param SplittableRandom random
+		 */
+		private SampleTask(double[] totals, int first, int last, SplittableRandom random) {
+			this.totals = totals;
+			this.first = first;
+			this.last = last;
+			this.random = random;
+		}
+
+		@Override
+		protected void compute() {
+			if(last-first>BLOCKS_PER_TASK) {
+				int middle = (first+last)>>>1;
+				SplittableRandom right = random.split();
+				invokeAll(new SampleTask(totals, first, middle, random), new SampleTask(totals, middle, last, right));
+				return;
+			}
+			double[] stack = new double[stackDepth*BLOCK];
+			double[] draws = new double[BLOCK];
+			for(int b = first; b<last; b++) {
+				int from = b*BLOCK;
+				evaluate(totals, from, Math.min(BLOCK, totals.length-from), stack, draws, random);
+			}
+		}
+	}
+}
@@ -1,22 +1,31 @@
 package circuit;
-import java.util.ArrayList;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
   
 /**
  * Main function that creates a circuit, and takes input from user to add resistors or voltage sources to the circuit, and display components within the circuit.
  * 
  * Plan to add functionality that will check that the user has input a complete circuit (complete path from node 0 to node 0 through the circuit)
  * 
+ * Started with -batch the program reads netlists from files or standard input instead of prompting, see runBatch().
+ * 
  * Plan to add functionality that would allow inductors and capacitors to the circuit, likely using rectangular form complex calculations, and possibly phasors.
  * 
  * Plan to add functionality that will allow voltage sources to be placed anywhere within the circuit.
  * 
  * Plan to add functionality that will calculate voltages at each node and current leaving each node.
  * 
- * Plan to add functionality to process Y-Delta transformations for resistors that can't be serial or parallel calculated.
+ * Resistors that can't be serial or parallel calculated are reduced with Y-Delta (star-mesh) transformations.
  * 
  * @author Michael Sinclair.
- * @version 2.410
+ * @version 2.521
  * @since 15 February 2019.
  */
 
@@ -30,11 +39,15 @@ public class UserMain {
      * @param String[] args.
      */
 	public static void main(String[] args){
+		
+		/* batch mode reads netlists without prompting */
+		if(args.length>0) {
+			System.exit(runBatch(args));
+		}
         
         /* Create objects in main */
-        Circuit cir = Circuit.getInstance();
+        Circuit cir = new Circuit();
         Scanner user = new Scanner(System.in);
-        ArrayList<Node> nodeList = new ArrayList<>();
         
         /*Instruct user on  how to use program.*/
         instructUser();
@@ -45,7 +58,7 @@ public class UserMain {
 			try {
 				/* test inputs */
 				input = user.nextLine();
-				if(input.equals("add") || input.equals("edit") || input.equals("display") || input.equals("calculate") || input.equals("end")) {
+				if(input.equals("add") || input.equals("edit") || input.equals("display") || input.equals("calculate") || input.equals("total") || input.equals("sweep") || input.equals("tolerance") || input.equals("sensitivity") || input.equals("worstcase") || input.equals("load") || input.equals("end")) {
 					break;
 				}
 				/* if not a viable input, allow user to retry */
@@ -87,12 +100,12 @@ public class UserMain {
         		
 	            /* If resistor is being added */
 	            if ((input.charAt(0) == 'r'||input.charAt(0) == 'R')&&input.charAt(1)==' '){
-	            	addResistor(input, nodeList, user, cir);
+	            	addResistor(input, user, cir);
 	            }
 	            
 	            /* If voltage source is being added */
 	            else if ((input.charAt(0) == 'v'||input.charAt(0) == 'V')&&input.charAt(1)==' '){
-	                addVoltage(input,nodeList,user,cir);
+	                addVoltage(input, user, cir);
 	            }
 	            /* catch other bad inputs */
 	            else {
@@ -103,7 +116,7 @@ public class UserMain {
 	            
             /* option to remove components */
             else if ("edit".equals(input)){
-            	editComponent(input, nodeList, user, cir);
+            	editComponent(input, user, cir);
             }
         
             /*If 'display' is input - print out the circuit components.*/
@@ -111,9 +124,39 @@ public class UserMain {
             	displayCircuit(cir);
             }
             
+            /* replace the circuit with a netlist file */
+            else if ("load".equals(input)) {
+            	loadNetlist(input, user, cir);
+            }
+            
             /* calculate Total Current/Voltage */
             else if ("calculate".equals(input)) {
-            	calculate(input, nodeList, user, cir);
+            	calculate(input, user, cir);
+            }
+            
+            /* only the totals, kept up to date by the edits */
+            else if ("total".equals(input)) {
+            	total(cir);
+            }
+            
+            /* sweep one resistor over a range of values */
+            else if ("sweep".equals(input)) {
+            	sweep(input, user, cir);
+            }
+            
+            /* Monte Carlo spread of total resistance and current */
+            else if ("tolerance".equals(input)) {
+            	tolerance(input, user, cir);
+            }
+            
+            /* derivatives of total resistance and current with respect to every resistor */
+            else if ("sensitivity".equals(input)) {
+            	sensitivity(input, user, cir);
+            }
+            
+            /* guaranteed bounds on total resistance and current */
+            else if ("worstcase".equals(input)) {
+            	worstCase(input, user, cir);
             }
         
             /* loop back for invalid inputs */
@@ -140,10 +183,17 @@ public class UserMain {
 	public static void instructUser(){
         System.out.println("Welcome to the circuit builder program.");
         System.out.println("Input 'add' to add components into the circuit.");
-        System.out.println("Input 'edit' to remove components from the circuit.");
+        System.out.println("Input 'edit' to remove components from the circuit or change the value of a resistor.");
         System.out.println("Input 'display' to display components currently in the circuit.");
         System.out.println("Input 'calculate' to determine total resistance and current in circuit.");
+        System.out.println("Input 'total' to determine only the total resistance and current, without reducing the circuit again after resistor values were changed.");
+        System.out.println("Input 'sweep' to calculate total resistance and current for a range of values of one resistor.");
+        System.out.println("Input 'tolerance' to estimate the spread of total resistance and current when every resistor has a tolerance.");
+        System.out.println("Input 'sensitivity' to calculate how much the total resistance and current change with the value of each resistor.");
+        System.out.println("Input 'worstcase' to calculate bounds on total resistance and current when every resistor has a tolerance.");
+        System.out.println("Input 'load' to replace the circuit with the components of a netlist file.");
         System.out.println("Input 'end' to end the program.");
+        System.out.println("Start the program with -batch [-totals] [-threads N] [file ...] to analyze netlist files without prompts.");
         System.out.println();
         System.out.println("Input resistors (R) and voltage sources (V) into the circuit by the following syntax:");
         System.out.println("R/V X Y Z");
@@ -155,11 +205,11 @@ public class UserMain {
         System.out.println("");
         System.out.println("Rules:");
         System.out.println("Voltage/Resistor values must be non-zero and Resistor values must also be non-negative. Voltage polarity is directed to increasing node Id.");
-        System.out.println("Calculation function will assume that nodes are ordered and sequential from 0 to N-1 where N is the total number of nodes.");
+        System.out.println("Node Ids may be any integers and need not be sequential, the calculation asks which node is the ground.");
         System.out.println("Voltage sources cannot be placed in parallel with eachother.");
         System.out.println("");
-        System.out.println("V2.410 Notes:");
-        System.out.println("Resistors must be connected serially or in parallel. This program does not currently support connections that are neither.");
+        System.out.println("V2.500 Notes:");
+        System.out.println("Resistors that are not connected serially or in parallel (such as bridge networks) are reduced with Y-Delta transformations.");
         System.out.println("Currently the program only supports purely directly serial voltage sources, one of which must be between nodes 0 and 1.");
         System.out.println("Voltages may not be connected in parallel with resistors.");
         System.out.println("Currently it is the user's responsibility to enter a complete circuit.");
@@ -167,13 +217,80 @@ public class UserMain {
         System.out.println("Enter a command.");
 	}
 	
+	/** Run the non-interactive batch mode - usage: -batch [-totals] [-threads N] [file ...], the netlist is read from standard input when no file or - is given
+	 * 
+	 * Circuits are analyzed concurrently on all cores unless -threads 1 is given.
+	 * @param String[] args
+	 * @return int exit status - 0 if every circuit was analyzed, 1 if some could not be, 2 for bad arguments or unreadable files
+	 */
+	public static int runBatch(String[] args) {
+		String usage = "Usage: UserMain -batch [-totals] [-threads N] [file ...]";
+		if(!args[0].equals("-batch")) {
+			System.err.println(usage);
+			return 2;
+		}
+		boolean totals = false;
+		int threads = Runtime.getRuntime().availableProcessors();
+		int first = 1;
+		while(first<args.length && args[first].startsWith("-") && !args[first].equals("-")) {
+			if(args[first].equals("-totals")) {
+				totals = true;
+				first++;
+			}
+			else if(args[first].equals("-threads") && first+1<args.length) {
+				try {
+					threads = Integer.parseInt(args[first+1]);
+				} catch (NumberFormatException e) {
+					threads = 0;
+				}
+				if(threads<1) {
+					System.err.println(usage);
+					return 2;
+				}
+				first += 2;
+			}
+			else {
+				System.err.println(usage);
+				return 2;
+			}
+		}
+		/* results are written in one buffered stream rather than flushed line by line */
+		PrintStream out = new PrintStream(new BufferedOutputStream(System.out, 1<<16), false);
+		ForkJoinPool pool = threads>1 ? new ForkJoinPool(threads) : null;
+		BatchAnalysis batch = new BatchAnalysis(out, totals, pool);
+		int status = 0;
+		for(int i = first; i<Math.max(args.length, first+1); i++) {
+			String source = i<args.length ? args[i] : "-";
+			try {
+				if(source.equals("-")) {
+					batch.run(new BufferedReader(new InputStreamReader(System.in)), source);
+				}
+				else {
+					batch.run(Paths.get(source));
+				}
+			} catch (IOException e) {
+				/* report the file and carry on with the next one */
+				out.flush();
+				System.err.println(e);
+				status = 2;
+			}
+		}
+		out.flush();
+		if(pool != null) {
+			pool.shutdown();
+		}
+		if(status == 0 && batch.getFailureCount()>0) {
+			status = 1;
+		}
+		return status;
+	}
+	
 	/** Add a resistor to the circuit 
 	 * @param String input
-	 * @param ArrayList<Node> nodeList
 	 * @param Scanner user
 	 * @param Circuit cir
 	 */
-	public static void addResistor(String input, ArrayList<Node> nodeList, Scanner user, Circuit cir){
+	public static void addResistor(String input, Scanner user, Circuit cir){
 		int firstNode = 0;
     	int secondNode=0;
     	double rVal=0.0;
@@ -217,15 +334,13 @@ public class UserMain {
     	}
     	
         /* create nodes if they do not already exist*/
-    	Node node1 = findOrCreate(firstNode, nodeList);
-    	Node node2 = findOrCreate(secondNode, nodeList);
+    	Node node1 = cir.findOrCreateNode(firstNode);
+    	Node node2 = cir.findOrCreateNode(secondNode);
 
     	/*Create and add resistor to circuit.*/
     	Resistor resistor = new Resistor(rVal, node1, node2);
+        /* the circuit connects it to its nodes */
         cir.addComponent(resistor);
-    	/* track node connections */
-    	node1.connect(resistor);
-    	node2.connect(resistor);
         
         System.out.println("Added Resistor: "+resistor.toString());
         
@@ -233,11 +348,10 @@ public class UserMain {
 	
 	/** Add a voltage to the circuit
 	 * @param String input
-	 * @param ArrayList<Node> nodeList
 	 * @param Scanner user
 	 * @param Circuit cir
 	 */
-	public static void addVoltage(String input, ArrayList<Node> nodeList, Scanner user, Circuit cir) {
+	public static void addVoltage(String input, Scanner user, Circuit cir) {
 		int firstNode=0;
 		int secondNode=0;
 		double vVal=0.0;
@@ -277,28 +391,25 @@ public class UserMain {
 		}
 	    
 	    /* create nodes if they do not already exist*/
-		Node node1 = findOrCreate(firstNode, nodeList);
-		Node node2 = findOrCreate(secondNode, nodeList);
+		Node node1 = cir.findOrCreateNode(firstNode);
+		Node node2 = cir.findOrCreateNode(secondNode);
 	
 		/*Create and add resistor to circuit.*/
 		Voltage voltage = new Voltage(vVal, node1, node2);
+		/* the circuit connects it to its nodes */
 	    cir.addComponent(voltage);
-		/* track node connections */
-		node1.connect(voltage);
-		node2.connect(voltage);
 	    
 	    System.out.println("Voltage added: "+voltage.toString());
 	}
 	
 	/** Method to perform calculation operation
 	 * @param String input
-	 * @param ArrayList<Node> nodeList
 	 * @param Scanner user
 	 * @param Circuit cir
 	 */
-	public static void calculate(String input, ArrayList<Node> nodeList, Scanner user, Circuit cir) {
+	public static void calculate(String input, Scanner user, Circuit cir) {
 		/* if there are components in the circuit */
-		if(cir.getComponents().size()!=0) {
+		if(cir.snapshot().getComponentCount()!=0) {
 	    	/* get ground voltage */
 	        System.out.println("");
 	    	System.out.println("Where is the ground voltage? Enter the unique node ID number only.");
@@ -326,10 +437,16 @@ public class UserMain {
 	    	System.out.println("");
 	    	
 	    	/* perform the circuit analysis */
-	    	CircuitAnalysis Calculate = new CircuitAnalysis(ground, cir.getComponents(), nodeList);
-	    	Calculate.analyzeCircuit();
-	    	/* clear the old calculate object */
-	    	Calculate = null;
+	    	try {
+		    	CircuitAnalysis Calculate = new CircuitAnalysis(ground, cir);
+		    	Calculate.analyzeCircuit();
+		    	/* clear the old calculate object */
+		    	Calculate = null;
+	    	} catch (IllegalArgumentException | IllegalStateException e) {
+	    		/* circuit could not be solved, e.g. ground not in the circuit or voltage sources in parallel */
+	    		System.out.println(e);
+	    		System.out.println("Circuit could not be analyzed.");
+	    	}
 	    	/* instruct user to continue altering circuit */
 	    	System.out.println("");
 	    	System.out.println("You may continue to operate on the circuit.");
@@ -341,14 +458,285 @@ public class UserMain {
 		}
 	}
 	
-	/** Method to edit/remove components from circuit
+	/** Method to print only the total voltage, resistance and current - O(depth) after the circuit was changed by edits the circuit could apply to its decomposition tree, such as resistor values
+	 * @param Circuit cir
+	 */
+	public static void total(Circuit cir) {
+		try {
+			double resistance = cir.totalResistance();
+			double voltage = cir.totalVoltage();
+			System.out.println("Total voltage in circuit is: "+voltage+" Volts.");
+			System.out.println("Total resistance in circuit is: "+resistance+" Ohms.");
+			if(cir.voltageSourceCount()>0) {
+				System.out.println("Total current is: "+voltage/resistance+" Amps.");
+			}
+			else {
+				System.out.println("Circuit has no voltage source, so no current flows.");
+			}
+		} catch (IllegalArgumentException | IllegalStateException e) {
+			/* circuit could not be solved, e.g. voltage sources in parallel */
+			System.out.println(e);
+			System.out.println("Circuit could not be analyzed.");
+		}
+	}
+	
+	/** Method to sweep one resistor over evenly spaced values - the circuit is factored once and each point is printed as soon as it is found
 	 * @param String input
-	 * @param ArrayList<Node> nodeList
 	 * @param Scanner user
 	 * @param Circuit cir
 	 */
-	public static void editComponent(String input, ArrayList<Node> nodeList, Scanner user, Circuit cir) {
-    	System.out.println("Which component would you like to remove? Enter only the unique identifier with no spaces (Ex. R1 or V2):");
+	public static void sweep(String input, Scanner user, Circuit cir) {
+		if(cir.snapshot().getComponentCount()==0) {
+			System.out.println("Must have components in circuit before sweeping.");
+			return;
+		}
+		System.out.println("Which resistor would you like to sweep? Enter only the unique identifier with no spaces (Ex. R1):");
+		input = user.nextLine().trim();
+		int resistorId;
+		while(true) {
+			try {
+				if(input.length()<2 || Character.toUpperCase(input.charAt(0))!='R') {
+					throw new NumberFormatException(input);
+				}
+				resistorId = Integer.parseInt(input.substring(1));
+				break;
+			} catch (NumberFormatException e) {
+				System.out.println("Invalid input. Enter R followed by the resistor number (Ex. R1):");
+				input = user.nextLine().trim();
+			}
+		}
+		System.out.println("Enter the first resistance, last resistance and number of points separated by spaces (Ex. 10 1000 100):");
+		input = user.nextLine();
+		double first, last;
+		int points;
+		while(true) {
+			try {
+				String[] values = input.trim().split("\\s+");
+				if(values.length!=3) {
+					throw new NumberFormatException(input);
+				}
+				first = Double.parseDouble(values[0]);
+				last = Double.parseDouble(values[1]);
+				points = Integer.parseInt(values[2]);
+				if(!(first>0) || !(last>0) || points<1) {
+					throw new NumberFormatException(input);
+				}
+				break;
+			} catch (NumberFormatException e) {
+				System.out.println("Invalid input. Enter two positive resistances and a positive number of points:");
+				input = user.nextLine();
+			}
+		}
+		System.out.println("Where is the ground voltage? Enter the unique node ID number only.");
+		input = user.nextLine();
+		int ground;
+		while(true) {
+			try {
+				ground = Integer.parseInt(input);
+				break;
+			} catch (NumberFormatException e) {
+				System.out.println("Invalid input. Enter only the node ID (an integer value):");
+				input = user.nextLine();
+			}
+		}
+		System.out.println("");
+		try {
+			ParameterSweep sweep = new ParameterSweep(ground, cir, resistorId);
+			System.out.println("Sweeping R"+resistorId+" from "+first+" to "+last+" Ohms:");
+			sweep.sweep(ParameterSweep.linear(first, last, points), point -> System.out.println("R"+sweep.getResistorId()+" = "+point.getValue()+" Ohms: total resistance "
+					+point.getTotalResistance()+" Ohms, total current "+point.getTotalCurrent()+" Amps."));
+		} catch (IllegalArgumentException | IllegalStateException e) {
+			/* no such resistor, ground not in the circuit or no voltage source */
+			System.out.println(e);
+			System.out.println("Sweep could not be completed.");
+		}
+		System.out.println("");
+		System.out.println("You may continue to operate on the circuit.");
+	}
+	
+	/** Method to estimate the spread of total resistance and current by Monte Carlo sampling of every resistor within a tolerance
+	 * @param String input
+	 * @param Scanner user
+	 * @param Circuit cir
+	 */
+	public static void tolerance(String input, Scanner user, Circuit cir) {
+		if(cir.snapshot().getComponentCount()==0) {
+			System.out.println("Must have components in circuit before estimating tolerances.");
+			return;
+		}
+		System.out.println("Enter the resistor tolerance in percent and the number of samples separated by a space (Ex. 5 1000000):");
+		input = user.nextLine();
+		double percent;
+		int samples;
+		while(true) {
+			try {
+				String[] values = input.trim().split("\\s+");
+				if(values.length!=2) {
+					throw new NumberFormatException(input);
+				}
+				percent = Double.parseDouble(values[0]);
+				samples = Integer.parseInt(values[1]);
+				if(!(percent>=0) || percent>=100 || samples<1) {
+					throw new NumberFormatException(input);
+				}
+				break;
+			} catch (NumberFormatException e) {
+				System.out.println("Invalid input. Enter a tolerance from 0 up to 100 percent and a positive number of samples:");
+				input = user.nextLine();
+			}
+		}
+		System.out.println("");
+		try {
+			ToleranceAnalysis analysis = new ToleranceAnalysis(cir);
+			analysis.setTolerance(percent/100);
+			analysis.run(samples);
+			System.out.println("Nominal total resistance is: "+analysis.getNominalResistance()+" Ohms.");
+			System.out.println("Mean total resistance is: "+analysis.getMean()+" Ohms, standard deviation "+analysis.getStandardDeviation()+" Ohms.");
+			boolean driven = analysis.hasVoltageSource();
+			for(double p:new double[]{0, 1, 5, 50, 95, 99, 100}) {
+				System.out.println(p+"% percentile: "+analysis.percentile(p)+" Ohms"+(driven ? ", "+analysis.currentPercentile(p)+" Amps." : "."));
+			}
+			int[] bins = analysis.histogram(10);
+			double width = (analysis.getMaximum()-analysis.getMinimum())/bins.length;
+			System.out.println("Total resistance histogram:");
+			for(int b = 0; b<bins.length; b++) {
+				StringBuilder bar = new StringBuilder();
+				for(long n = 0; n<Math.round(50.0*bins[b]/samples); n++) {
+					bar.append('#');
+				}
+				System.out.println((analysis.getMinimum()+b*width)+" Ohms: "+bins[b]+" "+bar);
+			}
+		} catch (IllegalArgumentException e) {
+			/* circuit is not series/parallel */
+			System.out.println(e);
+			System.out.println("Tolerance could not be estimated.");
+		}
+		System.out.println("");
+		System.out.println("You may continue to operate on the circuit.");
+	}
+	
+	/** Method to print the derivative of the total resistance and current with respect to every resistor, all found from one analysis of the circuit
+	 * @param String input
+	 * @param Scanner user
+	 * @param Circuit cir
+	 */
+	public static void sensitivity(String input, Scanner user, Circuit cir) {
+		if(cir.snapshot().getComponentCount()==0) {
+			System.out.println("Must have components in circuit before finding sensitivities.");
+			return;
+		}
+		System.out.println("Where is the ground voltage? Enter the unique node ID number only.");
+		input = user.nextLine();
+		int ground;
+		while(true) {
+			try {
+				ground = Integer.parseInt(input);
+				break;
+			} catch (NumberFormatException e) {
+				System.out.println("Invalid input. Enter only the node ID (an integer value):");
+				input = user.nextLine();
+			}
+		}
+		System.out.println("");
+		try {
+			SensitivityAnalysis sensitivity = new SensitivityAnalysis(ground, cir);
+			CompactCircuit circuit = sensitivity.getCircuit();
+			double[] resistance = sensitivity.resistanceSensitivities();
+			double[] current = sensitivity.currentSensitivities();
+			System.out.println("Total resistance is: "+sensitivity.getTotalResistance()+" Ohms, total current is: "+sensitivity.getTotalCurrent()+" Amps.");
+			for(int k = 0; k<circuit.getComponentCount(); k++) {
+				if(circuit.getKind(k) == CompactCircuit.RESISTOR) {
+					System.out.println("R"+circuit.getComponentId(k)+": total resistance changes by "+resistance[k]+" Ohms and total current by "+current[k]+" Amps per Ohm.");
+				}
+			}
+		} catch (IllegalArgumentException | IllegalStateException e) {
+			/* ground not in the circuit or no voltage source */
+			System.out.println(e);
+			System.out.println("Sensitivities could not be found.");
+		}
+		System.out.println("");
+		System.out.println("You may continue to operate on the circuit.");
+	}
+	
+	/** Method to print bounds on the total resistance and current when every resistor may be anywhere within a tolerance, estimated with nodal analysis if the circuit is not series/parallel
+	 * @param String input
+	 * @param Scanner user
+	 * @param Circuit cir
+	 */
+	public static void worstCase(String input, Scanner user, Circuit cir) {
+		if(cir.snapshot().getComponentCount()==0) {
+			System.out.println("Must have components in circuit before finding bounds.");
+			return;
+		}
+		System.out.println("Enter the resistor tolerance in percent (Ex. 5):");
+		input = user.nextLine();
+		double percent;
+		while(true) {
+			try {
+				percent = Double.parseDouble(input.trim());
+				if(!(percent>=0) || percent>=100) {
+					throw new NumberFormatException(input);
+				}
+				break;
+			} catch (NumberFormatException e) {
+				System.out.println("Invalid input. Enter a tolerance from 0 up to 100 percent:");
+				input = user.nextLine();
+			}
+		}
+		System.out.println("");
+		try {
+			WorstCaseAnalysis analysis = new WorstCaseAnalysis(cir);
+			analysis.setTolerance(percent/100);
+			analysis.run();
+			System.out.println("Total resistance is between "+analysis.getMinimumResistance()+" and "+analysis.getMaximumResistance()+" Ohms"+(analysis.isSeriesParallel() ? "." : " (estimated)."));
+			if(analysis.hasVoltageSource()) {
+				System.out.println("Total current is between "+analysis.getMinimumCurrent()+" and "+analysis.getMaximumCurrent()+" Amps.");
+			}
+		} catch (IllegalStateException e) {
+			/* not series/parallel and not exactly one voltage source */
+			System.out.println(e);
+			System.out.println("Bounds could not be found.");
+		}
+		System.out.println("");
+		System.out.println("You may continue to operate on the circuit.");
+	}
+	
+	/** Method to replace the circuit with the first circuit of a netlist file, read through a memory mapping - large netlists are loaded on all cores
+	 * @param String input
+	 * @param Scanner user
+	 * @param Circuit cir
+	 */
+	public static void loadNetlist(String input, Scanner user, Circuit cir) {
+		System.out.println("Enter the netlist file to load:");
+		input = user.nextLine();
+		CompactCircuit loaded;
+		try {
+			Path file = Paths.get(input.trim());
+			loaded = ParallelNetlistLoader.open(file).load();
+			/* small netlists and netlists holding several circuits are read sequentially */
+			if(loaded == null) {
+				NetlistParser parser = NetlistParser.open(file);
+				Netlist netlist = new Netlist(parser.estimateComponents());
+				parser.next(netlist);
+				loaded = netlist.toCompact();
+			}
+		} catch (IOException | IllegalArgumentException e) {
+			/* file missing or not a valid netlist - the circuit is left as it was */
+			System.out.println(e);
+			System.out.println("Netlist not loaded.");
+			return;
+		}
+		cir.load(loaded);
+		System.out.println("Loaded "+loaded.getComponentCount()+" components. The ground is chosen when calculating.");
+	}
+	
+	/** Method to edit/remove components from circuit - a resistor followed by a value has its resistance changed instead of being removed
+	 * @param String input
+	 * @param Scanner user
+	 * @param Circuit cir
+	 */
+	public static void editComponent(String input, Scanner user, Circuit cir) {
+    	System.out.println("Which component would you like to remove? Enter only the unique identifier with no spaces (Ex. R1 or V2), or a resistor and its new resistance to change it instead (Ex. R1 50):");
         /* store values */
     	input = user.nextLine();
     	/* store input */
@@ -356,11 +744,17 @@ public class UserMain {
     	/* initialize letter with a dummy value */
     	char letter = '\0';
     	String number = "";
+    	/* new resistance, 0 to remove the component */
+    	double rVal = 0.0;
     	/* test user input */
     	while(true) {
         	try {
+        		String[] inputSplit = input.split(" ");
+        		if(inputSplit.length>2) {
+        			throw new IllegalArgumentException("Enter the component, followed only by a new resistance to change it.");
+        		}
         		/* store each character separately */
-        		question = input.toCharArray();
+        		question = inputSplit[0].toCharArray();
         		/* if the first character entered is not in fact a character */
         		if(!Character.isLetter(question[0])) {
         			/* instruct user on error and to retry */
@@ -381,12 +775,22 @@ public class UserMain {
         		if(number.length()<1) {
         			throw new IllegalArgumentException("Must enter the unique Id of the component you wish to remove.");
         		}
+        		if(inputSplit.length == 2) {
+        			if(letter!='r' && letter!='R') {
+        				throw new IllegalArgumentException("Only the value of a resistor can be changed.");
+        			}
+        			rVal = Double.parseDouble(inputSplit[1]);
+        			/* same check as adding a resistor, which also rejects NaN */
+        			if(!(rVal >= 0.00001) || Double.isInfinite(rVal)) {
+        				throw new IllegalArgumentException("You enterred a resistance of "+rVal+". Resistances must be positive and non-zero.");
+        			}
+        		}
         		/* if no exceptions are thrown */
         		break;
         	} catch(IllegalArgumentException e) {
         		/* instruct user on error and to retry */
         		System.out.println(e);
-        		System.out.println("Invalid input. Enter only the Letter (R or V) and the number of the component you wish to remove. Try again:");
+        		System.out.println("Invalid input. Enter only the Letter (R or V) and the number of the component you wish to remove, followed by a new resistance to change a resistor instead. Try again:");
         		/* clear the number string or else previous values will still be held within the string */
         		number = "";
         	    input = user.nextLine();
@@ -400,58 +804,30 @@ public class UserMain {
         	}
     	}
         
-        /* if resistor requested */
-        if (letter == 'r' || letter == 'R') {
-        	boolean flag = false;
-        	Resistor Check=null;
-        	/*check if it is in the list */
-        	for (int i = 0; i <cir.getComponents().size();i++){
-        		/* if that component is a resistor */
-        		if(cir.getComponents().get(i) instanceof Resistor){
-        			Check = (Resistor)cir.getComponents().get(i);
-        			if (Check.getId() == Integer.parseInt(number)){
-        				/* if it is a resistor and in the list, remove it */
-        				cir.getComponents().get(i).getNode1().disconnect(cir.getComponents().get(i));
-        				cir.getComponents().get(i).getNode2().disconnect(cir.getComponents().get(i));
-        				cir.getComponents().remove(i);
-        				System.out.println("Removed component.");
-        				/* stop searching */
-        				flag = true;
-        				break;
-        			}
-        		}
+    	/* change the value of a resistor - the circuit updates its decomposition tree in place */
+    	if (rVal>0.0) {
+    		if (cir.setResistance(Integer.parseInt(number), rVal)) {
+    			System.out.println("Changed resistance.");
+    		}
+    		else {
+    			System.out.println("Resistor not found.");
+    		}
+    	}
+        /* if a resistor or voltage requested - the circuit finds and removes it by type and Id directly */
+    	else if (letter == 'r' || letter == 'R' || letter == 'v' || letter == 'V') {
+        	Component removed = cir.removeComponent(Character.toUpperCase(letter), Integer.parseInt(number));
+        	/* the circuit also disconnects it from its nodes */
+        	if (removed != null) {
+        		System.out.println("Removed component.");
         	}
-        	if (!flag) {
-        		/* if it was not found*/
+        	/* if it was not found*/
+        	else if (letter == 'r' || letter == 'R') {
         		System.out.println("Resistor not found.");
-        		}
-       }
-        
-        /* if voltage requested */
-        else if (letter == 'v' || letter == 'V') {
-        	boolean flag = false;
-        	Voltage Check=null;
-        	/*check if it is in the list */
-        	for (int i = 0; i <cir.getComponents().size();i++){
-        		/* if that component is a voltage */
-        		if(cir.getComponents().get(i) instanceof Voltage){
-        			Check = (Voltage)cir.getComponents().get(i);
-        			if (Check.getId() == Integer.parseInt(number)){
-        				/* if it is a voltage and in the list, remove it */
-        				cir.getComponents().get(i).getNode1().disconnect(cir.getComponents().get(i));
-        				cir.getComponents().get(i).getNode2().disconnect(cir.getComponents().get(i));
-        				cir.getComponents().remove(i);
-        				System.out.println("Removed component.");
-        				flag = true;
-        				break;
-        			}
-        		}
         	}
-    		/* if it was not found*/
-        	if (!flag) {
+        	else {
         		System.out.println("Voltage not found.");
-        		}
-       }
+        	}
+        }
        /* if bad input */
        else System.out.println("Input component not recognized.");
 	}
@@ -461,7 +837,7 @@ public class UserMain {
 	 */
 	public static void displayCircuit(Circuit cir) {
     	/* if there are components */
-    	if(cir.getComponents().size()>0) {
+    	if(cir.snapshot().getComponentCount()>0) {
         	System.out.println("");
     		System.out.println("Components in circuit are:");
     		System.out.println(cir.toString());
@@ -472,19 +848,4 @@ public class UserMain {
     		System.out.println("No Components have been added yet.");
     	}
 	}
-	
-    /** Method to ensure duplicate nodes are not created and that components are attached to the same node objects 
-     * @param int nodeId
-     * @param ArrayList<Node> nodeList
-     * @return Node*/
-    public static Node findOrCreate(int nodeId, ArrayList<Node> nodeList) {
-        for(Node node : nodeList) {
-            if (node.getId() == nodeId)
-                return node;
-        }
-
-        Node newNode = new Node(nodeId);
-        nodeList.add(newNode);
-        return newNode;
-    }
 }
@@ -15,15 +15,23 @@ package circuit;
 public class Voltage extends Component implements Comparable<Component>{
     /*Instance variables.*/
     private double voltage;
-    protected static int vnum = 1;
     /* for testing doubles with uncertainty in last digits do not test against 0.0 directly - instead compare to a very small number - declared statically to reduce overhead*/
     private static double nonZeroVoltage= 0.00001;
     
-    /**Constructor checks that voltage is non-zero, sets voltage and attaches two nodes with consistent polarity
+    /**Constructor checks that voltage is non-zero, sets voltage and attaches two nodes with consistent polarity - the Id is assigned when the voltage source is added to a circuit
      * @param double v.
      * @param Node nod1
      * @param Node nod2*/
     public Voltage(double v, Node nod1, Node nod2) {
+    	this(v, nod1, nod2, 0);
+    }
+    
+    /**Constructor with a given Id, used to rebuild components from a circuit snapshot
+     * @param double v
+     * @param Node nod1
+     * @param Node nod2
+     * @param int id*/
+    protected Voltage(double v, Node nod1, Node nod2, int id) {
     	super(nod1,nod2);
         /*Check that voltage is non-zero.*/
         if (Math.abs(v) <= nonZeroVoltage){ 
@@ -34,8 +42,7 @@ public class Voltage extends Component implements Comparable<Component>{
             throw new IllegalArgumentException("Nodes must both exist before attaching voltage source.");
         }
         voltage = v;
-        setId(Voltage.vnum);
-        Voltage.vnum++;
+        setId(id);
         
         /*Need a consistent directionality in the circuit, defined as in the direction of increasing node numbers - for example V 2 1 1.0 is equivalent to V 1 2 -1.0.*/
         if (nodal1.getId()>nodal2.getId()){   
@@ -0,0 +1,317 @@
+package circuit;
+
+/**
+ * Worst-case analysis - bounds on the total resistance and current when every resistor may be anywhere within a range around its value.
+ *
+ * For a series/parallel circuit the ranges are carried as intervals through the decomposition tree in one pass: a series part adds the lower and the upper ends of its children, a parallel part
+ * adds their conductances as parallelResistors() does, the lower end of a conductance coming from the upper end of a resistance. Every operation is rounded outward, the lower end down and the
+ * upper end up by one unit in the last place, so the bounds hold for the exact values and not only for the rounded ones. Each resistor appears once in the tree, so the intervals do not grow
+ * from dependencies and the bounds are as tight as the ranges allow.
+ *
+ * Circuits that are not series/parallel use the Laplacian of the circuit instead, and must have exactly one voltage source. By Rayleigh's monotonicity law the resistance between the two
+ * nodes of that source can only rise when any resistance rises, so the total resistance is smallest with every resistor at the lower end of its range and largest with every resistor at the
+ * upper end. With several sources the total is not such a resistance and the extremes need not be at these corners, so such circuits are rejected. The two extremes are each solved with
+ * NodalAnalysis and widened by a relative FACTORIZATION_MARGIN. That margin covers the rounding of a reasonably conditioned factorization but is not a rigorous bound, so these bounds are
+ * estimates, unlike the series/parallel bounds which hold for the exact values.
+ *
+ * Either way the cost is one or two analyses, independent of the number of samples a Monte Carlo analysis with ToleranceAnalysis would need.
+ *
+ * @author Michael Sinclair.
+ * @version 2.520
+ * @since 18 October 2026.
+ */
+
+public class WorstCaseAnalysis {
+	/* relative widening of the bounds found by nodal analysis, to cover the rounding of the factorization of a reasonably conditioned circuit */
+	private static final double FACTORIZATION_MARGIN = 1e-9;
+
+	/* instance variables */
+	private final CompactCircuit circuit;
+	/* decomposition with its leaves by component index, null if the circuit is not series/parallel */
+	private final DecompositionTree tree;
+	private final int[] resistorOf;
+	private final double totalV;
+	private final int voltageSources;
+	/* range of each component index */
+	private final double[] low;
+	private final double[] high;
+	/* bounds on the total resistance found by the last run, NaN before it */
+	private double minimum;
+	private double maximum;
+
+	/** Constructor for a circuit, analyzes its current snapshot
+	 * @param Circuit cir
+	 */
+	public WorstCaseAnalysis(Circuit cir) {
+		this(cir.snapshot());
+	}
+
+	/** Constructor reduces the circuit, every resistor starts with a range of only its value
+	 * @param CompactCircuit compact
+	 */
+	public WorstCaseAnalysis(CompactCircuit compact) {
+		circuit = compact;
+		int count = circuit.getComponentCount();
+		low = new double[count];
+		high = new double[count];
+		double sum = 0.0;
+		int sources = 0;
+		for(int k = 0; k<count; k++) {
+			low[k] = circuit.getValue(k);
+			high[k] = circuit.getValue(k);
+			if(circuit.getKind(k) == CompactCircuit.VOLTAGE) {
+				sum += circuit.getValue(k);
+				sources++;
+			}
+		}
+		totalV = sum;
+		voltageSources = sources;
+		/* leaves are found by component index even if the circuit repeats Ids */
+		DecompositionTree reduced = SeriesParallelReducer.indexedTree(circuit);
+		if(reduced.getRootCount() == 1) {
+			tree = reduced;
+			resistorOf = new int[tree.size()];
+			for(int k = 0; k<count; k++) {
+				int leaf = circuit.getKind(k) == CompactCircuit.RESISTOR ? tree.getLeaf(LongIntHashMap.pack('R', k+1)) : -1;
+				if(leaf>=0) {
+					resistorOf[leaf] = k;
+				}
+			}
+		}
+		else {
+			tree = null;
+			resistorOf = null;
+		}
+		minimum = Double.NaN;
+		maximum = Double.NaN;
+	}
+
+	/* methods */
+
+	/** Set the same relative tolerance for every resistor, each lies in [R - R*relative, R + R*relative]
+	 * @param double relative - for example 0.05 for 5%
+	 */
+	public void setTolerance(double relative) {
+		checkTolerance(relative);
+		for(int k = 0; k<low.length; k++) {
+			if(circuit.getKind(k) == CompactCircuit.RESISTOR) {
+				setRange(k, relative);
+			}
+		}
+	}
+
+	/** Set the relative tolerance of one resistor
+	 * @param int resistorId - Id of the resistor, the number after R
+	 * @param double relative
+	 */
+	public void setTolerance(int resistorId, double relative) {
+		checkTolerance(relative);
+		setRange(find(resistorId), relative);
+	}
+
+	/** Set the range of one resistor in Ohms
+	 * @param int resistorId - Id of the resistor, the number after R
+	 * @param double lowest
+	 * @param double highest
+	 */
+	public void setRange(int resistorId, double lowest, double highest) {
+		if(!(lowest>0.0 && lowest<=highest)) {
+			throw new IllegalArgumentException("Range must be positive with the lowest value first, not "+lowest+" to "+highest+".");
+		}
+		int k = find(resistorId);
+		low[k] = lowest;
+		high[k] = highest;
+	}
+
+	/** Find the bounds on the total resistance for the ranges set so far */
+	public void run() {
+		if(tree != null) {
+			intervals();
+			return;
+		}
+		if(voltageSources != 1) {
+			throw new IllegalStateException("Circuit cannot be reduced to series/parallel resistors and needs exactly one voltage source for bounds by nodal analysis, it has "+voltageSources+".");
+		}
+		minimum = Math.nextDown(extreme(low)*(1.0-FACTORIZATION_MARGIN));
+		maximum = Math.nextUp(extreme(high)*(1.0+FACTORIZATION_MARGIN));
+	}
+
+	/** Whether the bounds are carried through the series/parallel decomposition and hold for the exact values, rather than estimated with nodal analysis
+	 * @return boolean
+	 */
+	public boolean isSeriesParallel() {
+		return tree != null;
+	}
+
+	/** get the lower bound on the total resistance
+	 * @return double
+	 */
+	public double getMinimumResistance() {
+		checkRun();
+		return minimum;
+	}
+
+	/** get the upper bound on the total resistance
+	 * @return double
+	 */
+	public double getMaximumResistance() {
+		checkRun();
+		return maximum;
+	}
+
+	/** get the lower bound on the total current delivered by the voltage sources
+	 * @return double
+	 */
+	public double getMinimumCurrent() {
+		checkRun();
+		double v = voltage();
+		return Math.nextDown(v>0.0 ? v/maximum : v/minimum);
+	}
+
+	/** get the upper bound on the total current delivered by the voltage sources
+	 * @return double
+	 */
+	public double getMaximumCurrent() {
+		checkRun();
+		double v = voltage();
+		return Math.nextUp(v>0.0 ? v/minimum : v/maximum);
+	}
+
+	/** get the total voltage of the sources, which the current follows from
+	 * @return double
+	 */
+	public double getTotalVoltage() {
+		return totalV;
+	}
+
+	/** Whether the circuit has a voltage source, so that a current flows and the current bounds can be asked for - sources may still sum to 0 Volts
+	 * @return boolean
+	 */
+	public boolean hasVoltageSource() {
+		return voltageSources>0;
+	}
+
+	/** Carry the ranges through the decomposition tree, children before their parents */
+	private void intervals() {
+		int size = tree.size();
+		double[] lower = new double[size];
+		double[] upper = new double[size];
+		/* depth first order from an explicit stack, as ladders can be far deeper than the call stack - walked backwards every node comes after its children */
+		int[] order = new int[size];
+		int[] stack = new int[size];
+		int top = 0;
+		int length = 0;
+		stack[top++] = tree.getRoot();
+		while(top>0) {
+			int t = stack[--top];
+			order[length++] = t;
+			for(int c = tree.getFirstChild(t); c>=0; c = tree.getNextSibling(c)) {
+				stack[top++] = c;
+			}
+		}
+		for(int i = length-1; i>=0; i--) {
+			int t = order[i];
+			byte kind = tree.getKind(t);
+			if(kind == DecompositionTree.LEAF) {
+				lower[t] = low[resistorOf[t]];
+				upper[t] = high[resistorOf[t]];
+			}
+			else if(kind == DecompositionTree.SERIES) {
+				double a = 0.0;
+				double b = 0.0;
+				for(int c = tree.getFirstChild(t); c>=0; c = tree.getNextSibling(c)) {
+					a = Math.nextDown(a+lower[c]);
+					b = Math.nextUp(b+upper[c]);
+				}
+				lower[t] = Math.max(a, 0.0);
+				upper[t] = b;
+			}
+			else {
+				/* the smallest conductance comes from the largest resistances */
+				double a = 0.0;
+				double b = 0.0;
+				for(int c = tree.getFirstChild(t); c>=0; c = tree.getNextSibling(c)) {
+					a = Math.nextDown(a+Math.nextDown(1.0/upper[c]));
+					b = Math.nextUp(b+Math.nextUp(1.0/lower[c]));
+				}
+				lower[t] = Math.max(Math.nextDown(1.0/b), 0.0);
+				upper[t] = Math.nextUp(1.0/Math.max(a, 0.0));
+			}
+		}
+		minimum = lower[tree.getRoot()];
+		maximum = upper[tree.getRoot()];
+	}
+
+	/** Total resistance with every resistor at one end of its range, by nodal analysis
+	 * @param double[] values - low or high
+	 * @return double
+	 */
+	private double extreme(double[] values) {
+		int count = circuit.getComponentCount();
+		int[] firstIds = new int[count];
+		int[] secondIds = new int[count];
+		byte[] kinds = new byte[count];
+		int[] ids = new int[count];
+		for(int k = 0; k<count; k++) {
+			firstIds[k] = circuit.getNodeId(circuit.getNode1(k));
+			secondIds[k] = circuit.getNodeId(circuit.getNode2(k));
+			kinds[k] = circuit.getKind(k);
+			ids[k] = circuit.getComponentId(k);
+		}
+		CompactCircuit bound = new CompactCircuit(count, firstIds, secondIds, values.clone(), kinds, ids);
+		/* the equivalent resistance does not depend on which node is ground */
+		NodalAnalysis nodal = new NodalAnalysis(bound.getNodeId(0), bound);
+		nodal.solve();
+		return nodal.equivalentResistance(totalV);
+	}
+
+	/** Set the range of a component index from a relative tolerance, rounded outward
+	 * @param int k
+	 * @param double relative
+	 */
+	private void setRange(int k, double relative) {
+		double value = circuit.getValue(k);
+		double spread = Math.nextUp(value*relative);
+		low[k] = relative == 0.0 ? value : Math.nextDown(value-spread);
+		high[k] = relative == 0.0 ? value : Math.nextUp(value+spread);
+	}
+
+	/** find the component index of a resistor
+	 * @param int resistorId
+	 * @return int
+	 */
+	private int find(int resistorId) {
+		for(int k = 0; k<low.length; k++) {
+			if(circuit.getKind(k) == CompactCircuit.RESISTOR && circuit.getComponentId(k) == resistorId) {
+				return k;
+			}
+		}
+		throw new IllegalArgumentException("There is no resistor R"+resistorId+" in the circuit.");
+	}
+
+	/** check run() has been called */
+	private void checkRun() {
+		if(Double.isNaN(minimum)) {
+			throw new IllegalStateException("Bounds have not been found yet, call run() first.");
+		}
+	}
+
+	/** get the total voltage, there must be a voltage source for a current to flow
+	 * @return double
+	 */
+	private double voltage() {
+		if(voltageSources == 0) {
+			throw new IllegalStateException("Circuit has no voltage source, so no current flows.");
+		}
+		return totalV;
+	}
+
+	/** check a tolerance is a fraction of the value that keeps every resistor positive
+	 * @param double relative
+	 */
+	private static void checkTolerance(double relative) {
+		if(!(relative>=0.0 && relative<1.0)) {
+			throw new IllegalArgumentException("Tolerance must be from 0 up to 1, not "+relative+".");
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package testPackage;
+
+import static org.junit.Assert.*;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import circuit.BatchAnalysis;
+
+/**
+ * Tests the batch mode on a netlist stream holding four circuits, three of which are invalid, and that a concurrent batch prints the same results in the same order.
+ * 
+ * @author Michael Sinclair.
+ * @version 2.521
+ * @since 18 October 2026.
+ */
+
+public class BatchAnalysisTest {
+
+	@Test
+	public void testNetlistStream() throws IOException {
+		String netlist = "* 10 Ohms and 15 Ohms in series, ground at node 0\n"
+				+ "V 0 1 5\nR 1 2 10\nR 2 0 15\nG 0\nEND\n"
+				+ "# invalid resistor\n"
+				+ "V 0 1 5\nR 1 0 -3\nEND\n"
+				+ "V 0 1 5\nR 1 0 NaN\nEND\n"
+				+ "V 0 1 1e400\nR 1 0 5\n";
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		BatchAnalysis batch = new BatchAnalysis(new PrintStream(bytes), false);
+		batch.run(new BufferedReader(new StringReader(netlist)), "test");
+		assertEquals(4, batch.getCircuitCount());
+		assertEquals(3, batch.getFailureCount());
+		String[] lines = bytes.toString().split("\\R");
+		assertEquals("circuit 1 test", lines[0]);
+		assertEquals(25.0, Double.parseDouble(lines[3].substring("resistance ".length())), 0.00001);
+		assertEquals(0.2, Double.parseDouble(lines[4].substring("current ".length())), 0.00001);
+		/* node 2 sits between the resistors */
+		assertEquals(3.0, Double.parseDouble(lines[7].substring("node 2 ".length())), 0.00001);
+		assertEquals("circuit 2 test", lines[12]);
+		assertEquals("error line 9: Resistance must be greater than 0.", lines[13]);
+		/* values that do not parse to a finite number are rejected too */
+		assertEquals("circuit 3 test", lines[15]);
+		assertEquals("error line 12: Resistance must be greater than 0.", lines[16]);
+		assertEquals("circuit 4 test", lines[18]);
+		assertEquals("error line 14: Voltage must be finite.", lines[19]);
+	}
+
+	@Test
+	public void testConcurrentBatch() throws IOException {
+		/* ladders of different lengths so the circuits finish out of order */
+		StringBuilder netlist = new StringBuilder();
+		for(int c = 1; c<=200; c++) {
+			netlist.append("V 0 1 ").append(c).append('\n');
+			for(int n = 1; n<=c%17+1; n++) {
+				netlist.append("R ").append(n).append(' ').append(n+1).append(" 2\n");
+				netlist.append("R ").append(n+1).append(" 0 ").append(n).append('\n');
+			}
+			netlist.append(c%50 == 0 ? "R 1 1 5\n" : "").append("END\n");
+		}
+		ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+		new BatchAnalysis(new PrintStream(sequential), false).run(new BufferedReader(new StringReader(netlist.toString())), "test");
+		ByteArrayOutputStream concurrent = new ByteArrayOutputStream();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		BatchAnalysis batch = new BatchAnalysis(new PrintStream(concurrent), false, pool);
+		batch.run(new BufferedReader(new StringReader(netlist.toString())), "test");
+		pool.shutdown();
+		assertEquals(200, batch.getCircuitCount());
+		assertEquals(4, batch.getFailureCount());
+		assertEquals(sequential.toString(), concurrent.toString());
+	}
+
+}
@@ -1,6 +1,9 @@
 package testPackage;
 
 import static org.junit.Assert.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 
 import org.junit.AfterClass;
@@ -8,7 +11,10 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import circuit.CircuitAnalysis;
+import circuit.CompactCircuit;
 import circuit.Component;
+import circuit.EffectiveResistance;
+import circuit.ResistanceSketch;
 import circuit.Node;
 import circuit.Resistor;
 import circuit.Voltage;
@@ -18,10 +24,12 @@ import circuit.Voltage;
  * 
  * Current test circuit contains: parallel resistors between the same two nodes, parallel resistors between different nodes and serial resistors.
  * 
+ * Also checks resistances between specific nodes against the same values worked out by hand, exactly and from a sketch saved to a file and mapped back.
+ * 
  * Useful for testing this level of proven functionality in the program, as I continue to expand on the program.
  * 
  * @author Michael Sinclair.
- * @version 2.400
+ * @version 2.521
  * @since 12 February 2019.
  */
 
@@ -85,5 +93,55 @@ public class CalculationTest {
 		testComps = null;
 		testNodes = null;
 	}
-
+	
+	@Test
+	public void testSpecificNodeResistance() {
+		CircuitAnalysis testCircuit = new CircuitAnalysis(testGround,testComps,testNodes);
+		/* the voltage source is shorted, so nodes 0 and 1 are the same point */
+		assertEquals(0.0, testCircuit.findSpecificNodeResistance(testNodes.get(0), testNodes.get(1)), 0.0);
+		/* from node 2 to node 4: 50 Ohms in parallel with 10 + 70 + 60 Ohms through the shorted source, or 20 || 30 + 40 Ohms through node 3 */
+		double r24 = 1/(1/50.0+1/140.0+1/(12.0+40.0));
+		assertEquals(r24, testCircuit.findSpecificNodeResistance(testNodes.get(2), testNodes.get(4)), 0.0000001);
+		double r23 = 1/(1/20.0+1/30.0+1/(40.0+1/(1/50.0+1/140.0)));
+		assertEquals(r23, testCircuit.findSpecificNodeResistance(testNodes.get(3), testNodes.get(2)), 0.0000001);
+		/* many queries at once give the same answers */
+		EffectiveResistance resistance = new EffectiveResistance(CompactCircuit.fromComponents(testComps));
+		int[] first = new int[600];
+		int[] second = new int[600];
+		for(int i = 0; i<first.length; i++) {
+			first[i] = i%6;
+			second[i] = (i/6)%6;
+		}
+		double[] results = resistance.resistances(first, second, null);
+		for(int i = 0; i<first.length; i++) {
+			assertEquals(resistance.resistance(first[i], second[i]), results[i], 0.0);
+			assertEquals(resistance.resistance(second[i], first[i]), results[i], 0.0000001);
+		}
+		assertEquals(r23, results[2+3*6], 0.0000001);
+	}
+	
+	@Test
+	public void testResistanceSketch() throws IOException {
+		CircuitAnalysis testCircuit = new CircuitAnalysis(testGround,testComps,testNodes);
+		double exact = testCircuit.findSpecificNodeResistance(testNodes.get(3), testNodes.get(2));
+		/* within the 50% error bound, seeded so the test does not depend on the random directions drawn */
+		testCircuit.setApproximateResistance(0.5, 7L);
+		assertEquals(exact, testCircuit.findSpecificNodeResistance(testNodes.get(3), testNodes.get(2)), 0.5*exact);
+		assertEquals(0.0, testCircuit.findSpecificNodeResistance(testNodes.get(0), testNodes.get(1)), 0.0000001);
+		/* a saved sketch gives the same answers once mapped back in */
+		ResistanceSketch sketch = ResistanceSketch.build(CompactCircuit.fromComponents(testComps), 64, 7L, null);
+		Path file = Files.createTempFile("sketch", ".bin");
+		try {
+			sketch.save(file);
+			ResistanceSketch loaded = ResistanceSketch.load(file);
+			assertEquals(64, loaded.getDimension());
+			for(int a = 0; a<6; a++) {
+				for(int b = 0; b<6; b++) {
+					assertEquals(sketch.resistance(a, b), loaded.resistance(a, b), 0.0);
+				}
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
 }
@@ -0,0 +1,278 @@
+package testPackage;
+
+import static org.junit.Assert.*;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import circuit.Circuit;
+import circuit.CompactCircuit;
+import circuit.CompiledCircuit;
+import circuit.DecompositionTree;
+import circuit.LongIntHashMap;
+import circuit.NodalAnalysis;
+import circuit.SeriesParallelReducer;
+import circuit.ToleranceAnalysis;
+import circuit.UserMain;
+import circuit.WorstCaseAnalysis;
+
+/**
+ * Tests that in place changes to a series-parallel decomposition give the same total resistance as reducing the changed circuit again, also when a resistor value is edited through the user commands.
+ * 
+ * Also checks Monte Carlo tolerance analysis, which evaluates the compiled decomposition for many sampled resistor values, and the evaluator generated from the decomposition.
+ * Worst-case bounds are checked against the circuit with its resistors at the ends of their ranges, reduced directly or by nodal analysis for a bridge, where every combination of ends is tried.
+ * 
+ * Uses the circuit of CalculationTest, built directly in compact form so the component Ids are known.
+ * 
+ * @author Michael Sinclair.
+ * @version 2.521
+ * @since 18 October 2026.
+ */
+
+public class DecompositionTreeTest {
+
+	/** build the test circuit with resistor 1 changed and optionally an extra resistor R8 between nodes 2 and 4, and reduce it
+	 * @param double r1
+	 * @param boolean extra
+	 * @return DecompositionTree
+	 */
+	private static DecompositionTree reduce(double r1, boolean extra) {
+		SeriesParallelReducer reducer = new SeriesParallelReducer(circuit(r1, extra), true);
+		reducer.reduce();
+		return reducer.getTree();
+	}
+
+	@Test
+	public void testWorstCaseAnalysis() {
+		/* scaling every resistor scales the total, so the bounds of a 5% tolerance must hold 0.95 and 1.05 of the nominal value and be no wider than rounding */
+		double nominal = reduce(10.0, false).getTotalResistance();
+		WorstCaseAnalysis analysis = new WorstCaseAnalysis(circuit(10.0, false));
+		assertTrue(analysis.isSeriesParallel());
+		analysis.setTolerance(0.05);
+		analysis.run();
+		assertTrue(analysis.getMinimumResistance()<=0.95*nominal && analysis.getMinimumResistance()>0.95*nominal*(1-1e-12));
+		assertTrue(analysis.getMaximumResistance()>=1.05*nominal && analysis.getMaximumResistance()<1.05*nominal*(1+1e-12));
+		assertTrue(analysis.getMinimumCurrent()<=5.0/analysis.getMaximumResistance() && analysis.getMaximumCurrent()>=5.0/analysis.getMinimumResistance());
+		/* one resistor over a range gives the totals at its ends */
+		analysis = new WorstCaseAnalysis(circuit(10.0, true));
+		analysis.setRange(1, 5.0, 20.0);
+		analysis.run();
+		assertEquals(reduce(5.0, true).getTotalResistance(), analysis.getMinimumResistance(), 1e-9);
+		assertEquals(reduce(20.0, true).getTotalResistance(), analysis.getMaximumResistance(), 1e-9);
+		/* a bridge is bounded by nodal analysis of its extremes */
+		CompactCircuit bridge = new CompactCircuit(6, new int[]{0, 1, 1, 2, 3, 2}, new int[]{1, 2, 3, 0, 0, 3}, new double[]{10.0, 10.0, 20.0, 30.0, 40.0, 50.0},
+				new byte[]{CompactCircuit.VOLTAGE, 0, 0, 0, 0, 0}, new int[]{1, 1, 2, 3, 4, 5});
+		NodalAnalysis nodal = new NodalAnalysis(0, bridge);
+		nodal.solve();
+		nominal = nodal.equivalentResistance(10.0);
+		analysis = new WorstCaseAnalysis(bridge);
+		assertFalse(analysis.isSeriesParallel());
+		analysis.setTolerance(0.1);
+		analysis.run();
+		assertTrue(analysis.getMinimumResistance()<=0.9*nominal && analysis.getMinimumResistance()>0.9*nominal*(1-1e-8));
+		assertTrue(analysis.getMaximumResistance()>=1.1*nominal && analysis.getMaximumResistance()<1.1*nominal*(1+1e-8));
+		/* a bridge with two sources is not bounded by its corners */
+		try {
+			analysis = new WorstCaseAnalysis(new CompactCircuit(7, new int[]{0, 1, 1, 2, 3, 2, 3}, new int[]{1, 2, 3, 0, 0, 3, 0},
+					new double[]{10.0, 10.0, 20.0, 30.0, 40.0, 50.0, 5.0}, new byte[]{CompactCircuit.VOLTAGE, 0, 0, 0, 0, 0, CompactCircuit.VOLTAGE}, new int[]{1, 1, 2, 3, 4, 5, 2}));
+			analysis.run();
+			fail("two sources accepted");
+		} catch (IllegalStateException e) {
+			/* expected */
+		}
+	}
+
+	@Test
+	public void testWorstCaseCorners() {
+		/* unequal ranges on a bridge, checked against every combination of the ends of the ranges */
+		double[][] ranges = {{9.0, 11.0}, {15.0, 22.0}, {29.0, 31.0}, {10.0, 80.0}, {45.0, 55.0}};
+		CompactCircuit bridge = new CompactCircuit(6, new int[]{0, 1, 1, 2, 3, 2}, new int[]{1, 2, 3, 0, 0, 3}, new double[]{10.0, 10.0, 20.0, 30.0, 40.0, 50.0},
+				new byte[]{CompactCircuit.VOLTAGE, 0, 0, 0, 0, 0}, new int[]{1, 1, 2, 3, 4, 5});
+		WorstCaseAnalysis analysis = new WorstCaseAnalysis(bridge);
+		for(int r = 0; r<ranges.length; r++) {
+			analysis.setRange(r+1, ranges[r][0], ranges[r][1]);
+		}
+		analysis.run();
+		double lowest = Double.POSITIVE_INFINITY;
+		double highest = 0.0;
+		for(int corner = 0; corner<1<<ranges.length; corner++) {
+			double[] values = {10.0, 0.0, 0.0, 0.0, 0.0, 0.0};
+			for(int r = 0; r<ranges.length; r++) {
+				values[r+1] = ranges[r][(corner>>r)&1];
+			}
+			NodalAnalysis nodal = new NodalAnalysis(0, new CompactCircuit(6, new int[]{0, 1, 1, 2, 3, 2}, new int[]{1, 2, 3, 0, 0, 3}, values,
+					new byte[]{CompactCircuit.VOLTAGE, 0, 0, 0, 0, 0}, new int[]{1, 1, 2, 3, 4, 5}));
+			nodal.solve();
+			lowest = Math.min(lowest, nodal.equivalentResistance(10.0));
+			highest = Math.max(highest, nodal.equivalentResistance(10.0));
+		}
+		assertTrue(analysis.getMinimumResistance()<=lowest && analysis.getMinimumResistance()>lowest*(1-1e-8));
+		assertTrue(analysis.getMaximumResistance()>=highest && analysis.getMaximumResistance()<highest*(1+1e-8));
+		assertTrue(analysis.hasVoltageSource());
+	}
+
+	/** build the test circuit with resistor 1 changed and optionally an extra resistor R8 between nodes 2 and 4
+	 * @param double r1
+	 * @param boolean extra
+	 * @return CompactCircuit
+	 */
+	private static CompactCircuit circuit(double r1, boolean extra) {
+		int count = extra ? 9 : 8;
+		int[] first = {0, 1, 2, 2, 3, 2, 4, 0, 2};
+		int[] second = {1, 2, 3, 3, 4, 4, 5, 5, 4};
+		double[] values = {5.0, r1, 20.0, 30.0, 40.0, 50.0, 60.0, 70.0, 80.0};
+		byte[] kinds = {CompactCircuit.VOLTAGE, 0, 0, 0, 0, 0, 0, 0, 0};
+		int[] ids = {1, 1, 2, 3, 4, 5, 6, 7, 8};
+		return new CompactCircuit(count, first, second, values, kinds, ids);
+	}
+
+	@Test
+	public void testIncrementalChanges() {
+		DecompositionTree tree = reduce(10.0, false);
+		assertEquals(1, tree.getRootCount());
+		assertEquals(165.4901961, tree.getTotalResistance(), 0.00001);
+		/* changing a resistor only recomputes its path to the root */
+		assertTrue(tree.updateResistor(LongIntHashMap.pack('R', 1), 25.0));
+		assertEquals(reduce(25.0, false).getTotalResistance(), tree.getTotalResistance(), 0.00001);
+		/* a resistor across nodes 2 and 4 goes in parallel with the part already between them */
+		assertTrue(tree.addResistor(LongIntHashMap.pack('R', 8), 2, 4, 80.0));
+		assertEquals(reduce(25.0, true).getTotalResistance(), tree.getTotalResistance(), 0.00001);
+		/* it can be taken out again, but removing a serial resistor needs the tree to be rebuilt */
+		assertTrue(tree.removeResistor(LongIntHashMap.pack('R', 8)));
+		assertEquals(reduce(25.0, false).getTotalResistance(), tree.getTotalResistance(), 0.00001);
+		assertFalse(tree.removeResistor(LongIntHashMap.pack('R', 1)));
+	}
+
+	@Test
+	public void testEditedTotals() {
+		/* the same circuit entered through the user commands, the total command reads the tree the circuit keeps up to date as resistor values are edited */
+		Circuit cir = new Circuit();
+		PrintStream console = System.out;
+		ByteArrayOutputStream printed = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(printed));
+		double[] totals = new double[3];
+		try {
+			Scanner none = new Scanner("");
+			UserMain.addVoltage("V 0 1 5.0", none, cir);
+			String[] resistors = {"R 1 2 10.0", "R 2 3 20.0", "R 2 3 30.0", "R 3 4 40.0", "R 2 4 50.0", "R 4 5 60.0", "R 5 0 70.0"};
+			for(String resistor:resistors) {
+				UserMain.addResistor(resistor, none, cir);
+			}
+			totals[0] = printedTotal(printed, cir);
+			UserMain.editComponent("edit", new Scanner("R1 25.0\n"), cir);
+			totals[1] = printedTotal(printed, cir);
+			/* a value that is not a valid resistance is asked for again */
+			UserMain.editComponent("edit", new Scanner("R1 -3\nR1 1000\n"), cir);
+			totals[2] = printedTotal(printed, cir);
+		} finally {
+			System.setOut(console);
+		}
+		assertEquals(165.4901961, totals[0], 0.00001);
+		assertEquals(reduce(25.0, false).getTotalResistance(), totals[1], 0.00001);
+		assertEquals(reduce(1000.0, false).getTotalResistance(), totals[2], 0.00001);
+	}
+
+	/** Run the total command and read the total resistance it prints
+	 * @param ByteArrayOutputStream printed - everything printed so far, cleared
+	 * @param Circuit cir
+	 * @return double
+	 */
+	private static double printedTotal(ByteArrayOutputStream printed, Circuit cir) {
+		printed.reset();
+		UserMain.total(cir);
+		String output = printed.toString();
+		String label = "Total resistance in circuit is: ";
+		int start = output.indexOf(label);
+		assertTrue("Not printed: "+label, start>=0);
+		start += label.length();
+		return Double.parseDouble(output.substring(start, output.indexOf(' ', start)));
+	}
+
+	@Test
+	public void testToleranceAnalysis() {
+		ToleranceAnalysis analysis = new ToleranceAnalysis(circuit(10.0, false));
+		assertEquals(165.4901961, analysis.getNominalResistance(), 0.00001);
+		/* without tolerance every sample is the nominal circuit */
+		analysis.run(1000);
+		assertEquals(analysis.getNominalResistance(), analysis.getMinimum(), 1e-9);
+		assertEquals(analysis.getNominalResistance(), analysis.getMaximum(), 1e-9);
+		/* every resistor within 5% keeps the total within 5%, and the spread is centred on the nominal value */
+		analysis.setTolerance(0.05);
+		analysis.setPool(new ForkJoinPool(1));
+		analysis.run(100000);
+		double nominal = analysis.getNominalResistance();
+		assertEquals(100000, analysis.getSampleCount());
+		assertTrue(analysis.getMinimum()>=0.95*nominal && analysis.getMaximum()<=1.05*nominal);
+		assertEquals(nominal, analysis.getMean(), 0.002*nominal);
+		assertTrue(analysis.percentile(5)<nominal && analysis.percentile(95)>nominal);
+		assertEquals(5.0/analysis.getMaximum(), analysis.currentPercentile(0), 1e-12);
+		assertEquals(1.0, analysis.yield(0.95*nominal, 1.05*nominal), 0.0);
+		int total = 0;
+		for(int bin:analysis.histogram(10)) {
+			total += bin;
+		}
+		assertEquals(100000, total);
+		/* the same seed gives the same samples on any number of threads */
+		double p95 = analysis.percentile(95);
+		double deviation = analysis.getStandardDeviation();
+		analysis.setPool(new ForkJoinPool(3));
+		analysis.run(100000);
+		assertEquals(p95, analysis.percentile(95), 0.0);
+		assertEquals(deviation, analysis.getStandardDeviation(), 1e-12);
+		/* 3 sigma normal spread is narrower than uniform spread over the same tolerance */
+		analysis.setDistribution(ToleranceAnalysis.NORMAL);
+		analysis.run(100000);
+		assertTrue(analysis.getStandardDeviation()<deviation);
+		/* sources that cancel still drive the circuit, only a circuit without any source has no current */
+		ToleranceAnalysis cancelled = new ToleranceAnalysis(new CompactCircuit(3, new int[]{0, 1, 2}, new int[]{1, 2, 0}, new double[]{5.0, -5.0, 10.0},
+				new byte[]{CompactCircuit.VOLTAGE, CompactCircuit.VOLTAGE, 0}, new int[]{1, 2, 1}));
+		assertTrue(cancelled.hasVoltageSource());
+		assertEquals(0.0, cancelled.getTotalVoltage(), 0.0);
+		assertFalse(new ToleranceAnalysis(new CompactCircuit(1, new int[]{0}, new int[]{1}, new double[]{10.0}, new byte[]{0}, new int[]{1})).hasVoltageSource());
+		/* the extra resistor R8 still leaves a series/parallel circuit, a bridge does not */
+		assertEquals(reduce(10.0, true).getTotalResistance(), new ToleranceAnalysis(circuit(10.0, true)).getNominalResistance(), 0.00001);
+		try {
+			new ToleranceAnalysis(new CompactCircuit(6, new int[]{0, 1, 1, 2, 3, 2}, new int[]{1, 2, 3, 0, 0, 3}, new double[]{10.0, 10.0, 20.0, 30.0, 40.0, 50.0},
+					new byte[]{CompactCircuit.VOLTAGE, 0, 0, 0, 0, 0}, new int[]{1, 1, 2, 3, 4, 5}));
+			fail("bridge accepted");
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+	}
+
+	@Test
+	public void testCompiledCircuit() {
+		CompiledCircuit compiled = CompiledCircuit.compile(circuit(10.0, true));
+		double[] values = CompiledCircuit.values(circuit(10.0, true));
+		double[] currents = new double[values.length];
+		assertEquals(9, compiled.getComponentCount());
+		assertEquals(reduce(10.0, true).getTotalResistance(), compiled.resistance(values), 1e-9);
+		/* new values give the same results as reducing and solving the changed circuit */
+		for(double r1:new double[]{1.0, 25.0, 1000.0}) {
+			values[1] = r1;
+			double total = compiled.currents(values, currents);
+			assertEquals(reduce(r1, true).getTotalResistance(), total, 1e-9);
+			assertEquals(total, compiled.resistance(values), 0.0);
+			NodalAnalysis nodal = new NodalAnalysis(0, circuit(r1, true));
+			nodal.solve();
+			for(int k = 0; k<values.length; k++) {
+				assertEquals(nodal.branchCurrent(k), currents[k], 1e-9);
+			}
+		}
+		/* the source voltage is a value too */
+		values[0] = 10.0;
+		compiled.currents(values, currents);
+		assertEquals(10.0/compiled.resistance(values), currents[0], 1e-12);
+		try {
+			CompiledCircuit.compile(new CompactCircuit(6, new int[]{0, 1, 1, 2, 3, 2}, new int[]{1, 2, 3, 0, 0, 3}, new double[]{10.0, 10.0, 20.0, 30.0, 40.0, 50.0},
+					new byte[]{CompactCircuit.VOLTAGE, 0, 0, 0, 0, 0}, new int[]{1, 1, 2, 3, 4, 5}));
+			fail("bridge compiled");
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+	}
+
+}
@@ -0,0 +1,432 @@
+package testPackage;
+
+import static org.junit.Assert.*;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import circuit.Circuit;
+import circuit.CircuitAnalysis;
+import circuit.CompactCircuit;
+import circuit.FillOrdering;
+import circuit.IterativeAnalysis;
+import circuit.LatticeMultigrid;
+import circuit.Component;
+import circuit.NodalAnalysis;
+import circuit.Node;
+import circuit.ParameterSweep;
+import circuit.Resistor;
+import circuit.SensitivityAnalysis;
+import circuit.SparseLU;
+import circuit.SparseMatrix;
+import circuit.UserMain;
+import circuit.Voltage;
+
+/**
+ * Tests the nodal analysis engine on a bridge circuit that cannot be reduced by series/parallel combination, and checks node specific results, also as printed by the calculate command.
+ * Also checks that star-mesh reduction of a resistor grid gives the same total resistance as nodal analysis, and that the fill-reducing order gives the same solution with smaller factors.
+ * The iterative engine is checked against nodal analysis on a larger grid driven by a chain of two sources, and its multigrid mode on a declared 3D lattice.
+ * A resistor sweep by rank-1 updates is checked against a full analysis at each value, and adjoint sensitivities against finite differences.
+ * Node Ids spread over the whole int range are renumbered without a table sized by the range.
+ * 
+ * @author Michael Sinclair.
+ * @version 2.519
+ * @since 18 October 2026.
+ */
+
+public class NodalAnalysisTest {
+
+	@Test
+	public void testSparseNodeIds() {
+		/* a source and two resistors in series between Ids at both ends of the int range */
+		ArrayList<Node> nodes = new ArrayList<>();
+		ArrayList<Component> comps = new ArrayList<>();
+		nodes.add(new Node(-7));
+		nodes.add(new Node(1000000000));
+		nodes.add(new Node(Integer.MAX_VALUE));
+		comps.add(new Voltage(5.0,nodes.get(0),nodes.get(2)));
+		comps.add(new Resistor(10.0,nodes.get(0),nodes.get(1)));
+		comps.add(new Resistor(15.0,nodes.get(1),nodes.get(2)));
+		CircuitAnalysis sparse = new CircuitAnalysis(-7,comps,nodes);
+		sparse.analyzeCircuit();
+		assertEquals(25.0,sparse.getR(),0.0000001);
+		assertEquals(3,sparse.getNodeList().size());
+		assertEquals(5.0*15.0/25.0,nodes.get(2).getVoltage()-nodes.get(1).getVoltage(),0.0000001);
+		/* the compact form renumbers the same Ids in increasing order */
+		CompactCircuit compact = CompactCircuit.fromComponents(comps);
+		assertEquals(0, compact.indexOf(-7));
+		assertEquals(2, compact.indexOf(Integer.MAX_VALUE));
+		assertEquals(-1, compact.indexOf(3));
+		NodalAnalysis nodal = new NodalAnalysis(-7, compact);
+		nodal.solve();
+		assertEquals(25.0, nodal.equivalentResistance(5.0), 0.0000001);
+	}
+
+	@Test
+	public void testBridgeCircuit() {
+		/* unbalanced Wheatstone bridge driven by 10V between nodes 0 and 1, node 0 is ground */
+		ArrayList<Node> nodes = new ArrayList<>();
+		ArrayList<Component> comps = new ArrayList<>();
+		for(int i = 0; i<4; i++) {
+			nodes.add(new Node(i));
+		}
+		comps.add(new Voltage(10.0,nodes.get(0),nodes.get(1)));
+		comps.add(new Resistor(10.0,nodes.get(1),nodes.get(2)));
+		comps.add(new Resistor(20.0,nodes.get(1),nodes.get(3)));
+		comps.add(new Resistor(30.0,nodes.get(2),nodes.get(0)));
+		comps.add(new Resistor(40.0,nodes.get(3),nodes.get(0)));
+		comps.add(new Resistor(50.0,nodes.get(2),nodes.get(3)));
+		CircuitAnalysis bridge = new CircuitAnalysis(0,comps,nodes);
+		bridge.analyzeCircuit();
+		/* expected values worked out by hand with nodal analysis: V2 = 7.4118, V3 = 6.8235 */
+		assertEquals(10.0,bridge.getV(),0.00001);
+		assertEquals(23.94366,bridge.getR(),0.0001);
+		assertEquals(10.0,nodes.get(1).getVoltage(),0.00001);
+		assertEquals(7.41176,nodes.get(2).getVoltage(),0.0001);
+		assertEquals(6.82353,nodes.get(3).getVoltage(),0.0001);
+		/* current through the bridge resistor flows from node 2 to node 3 */
+		assertEquals((7.41176-6.82353)/50.0,comps.get(5).getCurrent(),0.00001);
+		/* the source delivers the full circuit current */
+		assertEquals(bridge.getV()/bridge.getR(),comps.get(0).getCurrent(),0.00001);
+	}
+
+	@Test
+	public void testCalculateBridge() {
+		/* the same bridge entered through the user commands, the calculate command prints the node voltages and currents since it leaves the circuit's objects alone */
+		Circuit cir = new Circuit();
+		PrintStream console = System.out;
+		ByteArrayOutputStream printed = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(printed));
+		try {
+			Scanner none = new Scanner("");
+			UserMain.addVoltage("V 0 1 10.0", none, cir);
+			UserMain.addResistor("R 1 2 10.0", none, cir);
+			UserMain.addResistor("R 1 3 20.0", none, cir);
+			UserMain.addResistor("R 2 0 30.0", none, cir);
+			UserMain.addResistor("R 3 0 40.0", none, cir);
+			UserMain.addResistor("R 2 3 50.0", none, cir);
+			UserMain.calculate("calculate", new Scanner("0\n"), cir);
+		} finally {
+			System.setOut(console);
+		}
+		String output = printed.toString();
+		assertEquals(0.0,printedValue(output,"Voltage at node 0 is: "),0.00001);
+		assertEquals(10.0,printedValue(output,"Voltage at node 1 is: "),0.00001);
+		assertEquals(7.41176,printedValue(output,"Voltage at node 2 is: "),0.0001);
+		assertEquals(6.82353,printedValue(output,"Voltage at node 3 is: "),0.0001);
+		assertEquals((7.41176-6.82353)/50.0,printedValue(output,"Current through R5 is: "),0.00001);
+		assertEquals(10.0/23.94366,printedValue(output,"Current through V1 is: "),0.00001);
+	}
+
+	@Test
+	public void testStarMeshGrid() {
+		/* 8 by 8 grid of resistors with 10V across opposite corners, node 0 is ground */
+		int side = 8;
+		int count = 2*side*(side-1)+1;
+		int[] first = new int[count];
+		int[] second = new int[count];
+		double[] values = new double[count];
+		byte[] kinds = new byte[count];
+		int[] ids = new int[count];
+		first[0] = 0;
+		second[0] = side*side-1;
+		values[0] = 10.0;
+		kinds[0] = CompactCircuit.VOLTAGE;
+		ids[0] = 1;
+		int k = 1;
+		for(int n = 0; n<side*side; n++) {
+			for(int step:new int[]{1, side}) {
+				if(step == 1 && n%side == side-1 || n+step>=side*side) {
+					continue;
+				}
+				first[k] = n;
+				second[k] = n+step;
+				values[k] = 1.0+(7*k)%5;
+				kinds[k] = CompactCircuit.RESISTOR;
+				ids[k] = k;
+				k++;
+			}
+		}
+		CompactCircuit grid = new CompactCircuit(count, first, second, values, kinds, ids);
+		CircuitAnalysis reduced = new CircuitAnalysis(0, grid);
+		reduced.analyze();
+		CircuitAnalysis nodal = new CircuitAnalysis(0, grid);
+		nodal.setNodalAnalysis(true);
+		nodal.analyze();
+		assertEquals(nodal.getR(), reduced.getR(), 0.0000001);
+	}
+
+	@Test
+	public void testFillOrdering() {
+		/* nodal matrix of a 30 by 30 grid numbered row by row */
+		int side = 30;
+		int n = side*side;
+		int[] rows = new int[5*n];
+		int[] cols = new int[5*n];
+		double[] vals = new double[5*n];
+		int count = 0;
+		for(int i = 0; i<n; i++) {
+			rows[count] = i; cols[count] = i; vals[count++] = 4.5;
+			for(int j:new int[]{i%side == side-1 ? -1 : i+1, i+side<n ? i+side : -1}) {
+				if(j>=0) {
+					rows[count] = i; cols[count] = j; vals[count++] = -1.0;
+					rows[count] = j; cols[count] = i; vals[count++] = -1.0;
+				}
+			}
+		}
+		SparseMatrix a = SparseMatrix.fromTriplets(n, rows, cols, vals, count);
+		int[] order = FillOrdering.minimumDegree(a);
+		/* the order is a permutation */
+		boolean[] seen = new boolean[n];
+		for(int col:order) {
+			assertFalse(seen[col]);
+			seen[col] = true;
+		}
+		SparseLU natural = new SparseLU(a, 0.1);
+		SparseLU ordered = new SparseLU(a, order, 0.1);
+		assertTrue(ordered.factorNonZeros()<natural.factorNonZeros());
+		double[] b = new double[n];
+		b[0] = 1.0;
+		b[n-1] = -1.0;
+		double[] x = natural.solve(b);
+		double[] y = ordered.solve(b);
+		for(int i = 0; i<n; i++) {
+			assertEquals(x[i], y[i], 0.0000001);
+		}
+	}
+
+
+	@Test
+	public void testIterativeGrid() {
+		/* 80 by 80 grid driven by two 5V sources in series from ground at node 0 through node 10000 to the far corner */
+		int side = 80;
+		int count = 2*side*(side-1)+2;
+		int[] first = new int[count];
+		int[] second = new int[count];
+		double[] values = new double[count];
+		byte[] kinds = new byte[count];
+		int[] ids = new int[count];
+		first[0] = 0;
+		second[0] = 10000;
+		first[1] = side*side-1;
+		second[1] = 10000;
+		values[0] = 5.0;
+		values[1] = -5.0;
+		kinds[0] = CompactCircuit.VOLTAGE;
+		kinds[1] = CompactCircuit.VOLTAGE;
+		ids[0] = 1;
+		ids[1] = 2;
+		int k = 2;
+		for(int n = 0; n<side*side; n++) {
+			for(int step:new int[]{1, side}) {
+				if(step == 1 && n%side == side-1 || n+step>=side*side) {
+					continue;
+				}
+				first[k] = n;
+				second[k] = n+step;
+				values[k] = 1.0+(7*k)%5;
+				kinds[k] = CompactCircuit.RESISTOR;
+				ids[k] = k;
+				k++;
+			}
+		}
+		CompactCircuit grid = new CompactCircuit(count, first, second, values, kinds, ids);
+		CircuitAnalysis direct = new CircuitAnalysis(0, grid);
+		direct.setNodalAnalysis(true);
+		direct.analyze();
+		ForkJoinPool pool = new ForkJoinPool(2);
+		for(byte preconditioner:new byte[]{IterativeAnalysis.JACOBI, IterativeAnalysis.INCOMPLETE_CHOLESKY, IterativeAnalysis.MULTIGRID}) {
+			CircuitAnalysis iterative = new CircuitAnalysis(0, grid);
+			iterative.setNodalAnalysis(true);
+			iterative.setIterativeSolver(preconditioner, 1e-12, pool);
+			iterative.analyze();
+			assertEquals(direct.getR(), iterative.getR(), 0.0000001);
+			for(int n = 0; n<side*side; n += 37) {
+				assertEquals(direct.getNodeVoltage(n), iterative.getNodeVoltage(n), 0.0000001);
+			}
+			for(int e = 0; e<count; e += 41) {
+				assertEquals(direct.getComponentCurrent(e), iterative.getComponentCurrent(e), 0.0000001);
+			}
+			assertEquals(direct.getComponentCurrent(1), iterative.getComponentCurrent(1), 0.0000001);
+		}
+		pool.shutdown();
+		/* incomplete Cholesky needs fewer iterations, and starting from the solution needs none */
+		IterativeAnalysis jacobi = new IterativeAnalysis(0, grid);
+		jacobi.setPreconditioner(IterativeAnalysis.JACOBI);
+		jacobi.solve();
+		IterativeAnalysis cholesky = new IterativeAnalysis(0, grid);
+		cholesky.solve();
+		assertTrue(cholesky.getIterations()<jacobi.getIterations());
+		double[] solution = new double[grid.getNodeCount()];
+		for(int n = 0; n<solution.length; n++) {
+			solution[n] = cholesky.nodeVoltage(n);
+		}
+		IterativeAnalysis warm = new IterativeAnalysis(0, grid);
+		warm.setTolerance(1e-6);
+		warm.setInitialVoltages(solution);
+		warm.solve();
+		assertEquals(0, warm.getIterations());
+	}
+
+	@Test
+	public void testMultigridLattice() {
+		/* 6 x 5 x 4 lattice of nodes 100 and up with 12V across opposite corners, the first corner is ground */
+		int nx = 6, ny = 5, nz = 4;
+		int last = nx*ny*nz-1;
+		ArrayList<Node> nodes = new ArrayList<>();
+		ArrayList<Component> comps = new ArrayList<>();
+		for(int p = 0; p<=last; p++) {
+			nodes.add(new Node(100+p));
+		}
+		nodes.add(new Node(0));
+		comps.add(new Voltage(12.0,nodes.get(0),nodes.get(last)));
+		/* a resistor leaving the lattice */
+		comps.add(new Resistor(2.0,nodes.get(last),nodes.get(last+1)));
+		for(int p = 0; p<=last; p++) {
+			if(p%nx<nx-1) {
+				comps.add(new Resistor(1.0+p%3,nodes.get(p),nodes.get(p+1)));
+			}
+			if((p/nx)%ny<ny-1) {
+				comps.add(new Resistor(2.0,nodes.get(p),nodes.get(p+nx)));
+			}
+			if(p+nx*ny<=last) {
+				comps.add(new Resistor(1.0+p%2,nodes.get(p),nodes.get(p+nx*ny)));
+			}
+		}
+		assertNull(LatticeMultigrid.detect(CompactCircuit.fromComponents(comps)));
+		CircuitAnalysis multigrid = new CircuitAnalysis(100, comps, nodes);
+		multigrid.setNodalAnalysis(true);
+		multigrid.setLattice(100, nx, ny, nz, 1e-12);
+		try {
+			multigrid.analyze();
+			fail("resistor outside the lattice accepted");
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+		/* without it the lattice is found from the node Ids, and results are written into the nodes and components */
+		comps.remove(1);
+		nodes.remove(last+1);
+		assertTrue(Arrays.equals(new int[]{100, nx, ny, nz}, LatticeMultigrid.detect(CompactCircuit.fromComponents(comps))));
+		CircuitAnalysis direct = new CircuitAnalysis(100, comps, nodes);
+		direct.setNodalAnalysis(true);
+		direct.analyze();
+		double[] voltages = new double[nodes.size()];
+		double[] currents = new double[comps.size()];
+		for(int i = 0; i<nodes.size(); i++) {
+			voltages[i] = nodes.get(i).getVoltage();
+		}
+		for(int k = 0; k<comps.size(); k++) {
+			currents[k] = comps.get(k).getCurrent();
+		}
+		multigrid = new CircuitAnalysis(100, comps, nodes);
+		multigrid.setNodalAnalysis(true);
+		multigrid.setIterativeSolver(IterativeAnalysis.MULTIGRID, 1e-12, null);
+		multigrid.analyze();
+		assertEquals(direct.getR(), multigrid.getR(), 0.0000001);
+		for(int i = 0; i<nodes.size(); i++) {
+			assertEquals(voltages[i], nodes.get(i).getVoltage(), 0.0000001);
+		}
+		for(int k = 0; k<comps.size(); k++) {
+			assertEquals(currents[k], comps.get(k).getCurrent(), 0.0000001);
+		}
+	}
+
+	@Test
+	public void testParameterSweep() {
+		/* sweep the bridge resistor R5 of the Wheatstone bridge, each point must match a full analysis of the bridge with that value */
+		ParameterSweep sweep = new ParameterSweep(0, bridge(50.0), 5);
+		assertEquals(50.0, sweep.getBaseValue(), 0.0);
+		double[] values = ParameterSweep.linear(1.0, 1000.0, 4);
+		assertTrue(Arrays.equals(new double[]{1.0, 334.0, 667.0, 1000.0}, values));
+		ArrayList<ParameterSweep.Point> points = new ArrayList<>();
+		sweep.sweep(values, points::add);
+		assertEquals(values.length, points.size());
+		for(ParameterSweep.Point point:points) {
+			CircuitAnalysis full = new CircuitAnalysis(0, bridge(point.getValue()));
+			full.setNodalAnalysis(true);
+			full.analyze();
+			assertEquals(full.getR(), point.getTotalResistance(), 0.0000001);
+			assertEquals(full.getV()/full.getR(), point.getTotalCurrent(), 0.0000001);
+			for(int id = 0; id<4; id++) {
+				assertEquals(full.getNodeVoltage(id), point.voltage(id), 0.0000001);
+			}
+			for(int k = 0; k<6; k++) {
+				assertEquals(full.getComponentCurrent(k), point.branchCurrent(k), 0.0000001);
+			}
+		}
+		/* the value in the circuit gives back the original solution */
+		assertEquals(23.94366, sweep.at(50.0).getTotalResistance(), 0.0001);
+		try {
+			new ParameterSweep(0, bridge(50.0), 9);
+			fail("missing resistor accepted");
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+	}
+
+	@Test
+	public void testSensitivity() {
+		/* every derivative of the bridge must match a central difference of full analyses */
+		double[] values = {10.0, 10.0, 20.0, 30.0, 40.0, 50.0};
+		CircuitAnalysis analysis = new CircuitAnalysis(0, bridge(values));
+		analysis.setNodalAnalysis(true);
+		analysis.analyze();
+		SensitivityAnalysis sensitivity = analysis.sensitivity();
+		assertEquals(analysis.getR(), sensitivity.getTotalResistance(), 0.0000001);
+		double[] resistance = sensitivity.resistanceSensitivities();
+		double[] current = sensitivity.currentSensitivities();
+		double[] voltage = sensitivity.voltageSensitivities(2);
+		assertEquals(0.0, resistance[0], 0.0);
+		for(int k = 1; k<6; k++) {
+			double step = 0.0001;
+			values[k] += step;
+			CircuitAnalysis up = new CircuitAnalysis(0, bridge(values));
+			up.setNodalAnalysis(true);
+			up.analyze();
+			values[k] -= 2*step;
+			CircuitAnalysis down = new CircuitAnalysis(0, bridge(values));
+			down.setNodalAnalysis(true);
+			down.analyze();
+			values[k] += step;
+			assertEquals((up.getR()-down.getR())/(2*step), resistance[k], 0.000001);
+			assertEquals((up.getV()/up.getR()-down.getV()/down.getR())/(2*step), current[k], 0.000001);
+			assertEquals((up.getNodeVoltage(2)-down.getNodeVoltage(2))/(2*step), voltage[k], 0.000001);
+		}
+		/* ground never moves */
+		assertTrue(Arrays.equals(new double[6], sensitivity.voltageSensitivities(0)));
+	}
+
+	/** Wheatstone bridge of testBridgeCircuit with Ids R1 to R5 and V1, the bridge resistor R5 between nodes 2 and 3 set to r5
+	 * @param double r5
+	 * @return CompactCircuit
+	 */
+	private static CompactCircuit bridge(double r5) {
+		return bridge(new double[]{10.0, 10.0, 20.0, 30.0, 40.0, r5});
+	}
+
+	/** Wheatstone bridge of testBridgeCircuit with the values of V1 and R1 to R5 given in that order
+	 * @param double[] values
+	 * @return CompactCircuit
+	 */
+	private static CompactCircuit bridge(double[] values) {
+		return new CompactCircuit(6, new int[]{0, 1, 1, 2, 3, 2}, new int[]{1, 2, 3, 0, 0, 3}, values.clone(),
+				new byte[]{CompactCircuit.VOLTAGE, 0, 0, 0, 0, 0}, new int[]{1, 1, 2, 3, 4, 5});
+	}
+
+	/** Read the number printed after a label, up to the unit that follows it
+	 * @param String output
+	 * @param String label
+	 * @return double
+	 */
+	private static double printedValue(String output, String label) {
+		int start = output.indexOf(label);
+		assertTrue("Not printed: "+label, start>=0);
+		start += label.length();
+		return Double.parseDouble(output.substring(start, output.indexOf(' ', start)));
+	}
+}
@@ -0,0 +1,67 @@
+package testPackage;
+
+import static org.junit.Assert.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import circuit.CompactCircuit;
+import circuit.Netlist;
+import circuit.NetlistParser;
+import circuit.ParallelNetlistLoader;
+
+/**
+ * Tests that loading a netlist in parallel chunks gives exactly the circuit a sequential load gives, and that the parser reads values exactly as Double.parseDouble does.
+ * 
+ * @author Michael Sinclair.
+ * @version 2.521
+ * @since 18 October 2026.
+ */
+
+public class ParallelNetlistLoaderTest {
+
+	@Test
+	public void testNumberParsing() {
+		/* short decimals take the fast path, long mantissas, large exponents and other forms fall back, all must give the same bits */
+		String[] values = {"4.7", "+12", "0.1", ".5", "7.", "1e3", "1E+2", "2.5e-3", "4.7e30", "1e22", "1e23", "1e-4", "100000000000000000000000e-22", "000047", "0047.500", "0.000123",
+				"123456789012345", "1234567890123456", "12345678901234567", "1.2345678901234567890e5", "0.30000000000000004", "179.76931348623157e306",
+				"0000000000000000000012.5", "1.00000000000000000000001", "0x1p3"};
+		for(String value:values) {
+			Netlist netlist = new Netlist();
+			new NetlistParser(ByteBuffer.wrap(("R 1 2 "+value+"\nV 2 1 "+value+"\n").getBytes(StandardCharsets.US_ASCII))).next(netlist);
+			CompactCircuit circuit = netlist.toCompact();
+			assertEquals(value, Double.parseDouble(value), circuit.getValue(0), 0.0);
+			/* the source is stored from the smaller node Id, which flips its sign */
+			assertEquals(value, -Double.parseDouble(value), circuit.getValue(1), 0.0);
+		}
+	}
+
+	@Test
+	public void testSameAsSequential() {
+		/* a resistor ladder with a few voltage sources, large enough to be split into several chunks */
+		StringBuilder sb = new StringBuilder("G 0\n");
+		for(int i = 1; i<200000; i++) {
+			sb.append(i%5000 == 0 ? "V " : "R ").append(i).append(' ').append(i%7 == 0 ? 0 : i+1).append(' ').append(1+i%97*0.25).append('\n');
+		}
+		byte[] bytes = sb.toString().getBytes(StandardCharsets.US_ASCII);
+		ParallelNetlistLoader loader = new ParallelNetlistLoader(ByteBuffer.wrap(bytes), new ForkJoinPool(4));
+		CompactCircuit parallel = loader.load();
+		assertNotNull(parallel);
+		Netlist netlist = new Netlist();
+		new NetlistParser(ByteBuffer.wrap(bytes)).next(netlist);
+		CompactCircuit sequential = netlist.toCompact();
+		assertEquals(sequential.getComponentCount(), parallel.getComponentCount());
+		assertEquals(sequential.getNodeCount(), parallel.getNodeCount());
+		for(int k = 0; k<sequential.getComponentCount(); k++) {
+			assertEquals(sequential.getNode1(k), parallel.getNode1(k));
+			assertEquals(sequential.getNode2(k), parallel.getNode2(k));
+			assertEquals(sequential.getValue(k), parallel.getValue(k), 0.0);
+			assertEquals(sequential.getKind(k), parallel.getKind(k));
+			assertEquals(sequential.getComponentId(k), parallel.getComponentId(k));
+		}
+		assertEquals(0, loader.getGround());
+	}
+
+}